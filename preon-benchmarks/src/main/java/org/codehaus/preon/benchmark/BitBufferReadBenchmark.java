@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.benchmark;
+
+import org.codehaus.preon.buffer.BitBuffer;
+import org.codehaus.preon.buffer.ByteOrder;
+import org.codehaus.preon.buffer.DefaultBitBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading values of a given width at a given (unaligned) offset using {@link DefaultBitBuffer} against the
+ * byte-at-a-time algorithm it used to implement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitBufferReadBenchmark {
+
+    /** The number of values read per invocation. */
+    private static final int VALUES = 1024;
+
+    @Param({"1", "3", "8", "13", "16", "27", "32", "47", "57", "64"})
+    public int nrBits;
+
+    @Param({"0", "3", "7"})
+    public int offset;
+
+    @Param({"BigEndian", "LittleEndian"})
+    public ByteOrder byteOrder;
+
+    private BitBuffer bitBuffer;
+
+    private ByteAtATimeBitReader reader;
+
+    @Setup
+    public void setUp() {
+        byte[] data = new byte[(VALUES * 64) / 8 + 16];
+        new Random(0).nextBytes(data);
+        bitBuffer = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        reader = new ByteAtATimeBitReader(ByteBuffer.wrap(data));
+    }
+
+    @Benchmark
+    public long wordAtATime() {
+        long result = 0;
+        long bitPos = offset;
+        for (int i = 0; i < VALUES; i++) {
+            result ^= bitBuffer.readAsLong(bitPos, nrBits, byteOrder);
+            bitPos += nrBits;
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long byteAtATime() {
+        long result = 0;
+        long bitPos = offset;
+        for (int i = 0; i < VALUES; i++) {
+            result ^= reader.readAsLong(bitPos, nrBits, byteOrder);
+            bitPos += nrBits;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.benchmark;
+
+import org.codehaus.preon.buffer.ByteOrder;
+import org.codehaus.preon.channel.BitChannel;
+import org.codehaus.preon.channel.ByteBufferBitChannel;
+import org.codehaus.preon.channel.OutputStreamBitChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing values of a given width, preceded by a few bits to make them unaligned if required, using an {@link
+ * OutputStreamBitChannel} writing to a {@link ByteArrayOutputStream} against a {@link ByteBufferBitChannel}. Both start
+ * out with a small buffer, growing on demand.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitChannelWriteBenchmark {
+
+    /** The number of values written per invocation. */
+    private static final int VALUES = 1024;
+
+    @Param({"1", "3", "8", "13", "16", "32", "47", "64"})
+    public int nrBits;
+
+    @Param({"0", "3"})
+    public int offset;
+
+    @Param({"BigEndian", "LittleEndian"})
+    public ByteOrder byteOrder;
+
+    private long[] values;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        values = new long[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = random.nextLong();
+        }
+        bytes = new byte[VALUES];
+        random.nextBytes(bytes);
+    }
+
+    @Benchmark
+    public int outputStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeValues(new OutputStreamBitChannel(out));
+        return out.size();
+    }
+
+    @Benchmark
+    public int byteBuffer() throws IOException {
+        ByteBufferBitChannel channel = new ByteBufferBitChannel();
+        writeValues(channel);
+        return channel.getByteBuffer().remaining();
+    }
+
+    @Benchmark
+    public int outputStreamBytes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeBytes(new OutputStreamBitChannel(out));
+        return out.size();
+    }
+
+    @Benchmark
+    public int byteBufferBytes() throws IOException {
+        ByteBufferBitChannel channel = new ByteBufferBitChannel();
+        writeBytes(channel);
+        return channel.getByteBuffer().remaining();
+    }
+
+    private void writeValues(BitChannel channel) throws IOException {
+        if (offset > 0) {
+            channel.write(offset, (byte) 0);
+        }
+        for (int i = 0; i < VALUES; i++) {
+            channel.write(nrBits, values[i], byteOrder);
+        }
+    }
+
+    /** Writes byte arrays of 64 bytes; only the offset is taken into account. */
+    private void writeBytes(BitChannel channel) throws IOException {
+        if (offset > 0) {
+            channel.write(offset, (byte) 0);
+        }
+        for (int i = 0; i < VALUES; i += 64) {
+            channel.write(bytes, i, 64);
+        }
+    }
+
+}
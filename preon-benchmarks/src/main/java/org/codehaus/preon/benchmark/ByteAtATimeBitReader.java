@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.benchmark;
+
+import org.codehaus.preon.buffer.ByteOrder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The byte-at-a-time algorithm {@link org.codehaus.preon.buffer.DefaultBitBuffer} used before it started loading
+ * entire words. Only kept around as a baseline for {@link BitBufferReadBenchmark}.
+ */
+class ByteAtATimeBitReader {
+
+    private final ByteBuffer byteBuffer;
+
+    ByteAtATimeBitReader(ByteBuffer byteBuffer) {
+        this.byteBuffer = byteBuffer;
+    }
+
+    long readAsLong(long bitPos, int nrBits, ByteOrder byteOrder) {
+        int nrReadBytes = (int) (((bitPos % 8) + nrBits + 7) / 8);
+        int firstBytePos = (int) (bitPos >> 3);
+        long result = 0L;
+        for (int i = 0; i < nrReadBytes; i++) {
+            long bytePortion = 0xFF & (byteBuffer.get(firstBytePos++));
+            if (byteOrder == ByteOrder.LittleEndian)
+                result = result | bytePortion << (i << 3);
+            else
+                result = bytePortion << ((nrReadBytes - i - 1) << 3) | result;
+        }
+        long shiftBits;
+        if (byteOrder == ByteOrder.BigEndian)
+            shiftBits = 7 - ((nrBits + bitPos + 7) % 8);
+        else
+            shiftBits = bitPos % 8;
+        return (0xFFFFFFFFFFFFFFFFL >>> (64 - nrBits)) & (result >> shiftBits);
+    }
+
+}
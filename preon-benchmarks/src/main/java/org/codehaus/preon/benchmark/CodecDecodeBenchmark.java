@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.benchmark;
+
+import org.codehaus.preon.Codec;
+import org.codehaus.preon.Codecs;
+import org.codehaus.preon.DecodingException;
+import org.codehaus.preon.annotation.Bound;
+import org.codehaus.preon.annotation.BoundList;
+import org.codehaus.preon.annotation.BoundNumber;
+import org.codehaus.preon.annotation.BoundObject;
+import org.codehaus.preon.buffer.ByteOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding a small message (an RTP header) using a {@link Codec} created by {@link Codecs#create(Class)},
+ * setting every field reflectively, with one created by {@link Codecs#compile(Class)}, using specialized bindings for
+ * fields of a primitive type. The packet benchmarks decode a header followed by a number of nested objects, each of
+ * them created through a {@link org.codehaus.preon.Builder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecDecodeBenchmark {
+
+    private byte[] message;
+
+    private Codec<RtpHeader> reflective;
+
+    private Codec<RtpHeader> compiled;
+
+    private byte[] packet;
+
+    private Codec<RtpPacket> packetCodec;
+
+    @Setup
+    public void setUp() {
+        message = new byte[12];
+        new Random(0).nextBytes(message);
+        reflective = Codecs.create(RtpHeader.class);
+        compiled = Codecs.compile(RtpHeader.class);
+        packet = new byte[12 + 4 * RtpPacket.CSRC_COUNT];
+        new Random(0).nextBytes(packet);
+        packetCodec = Codecs.create(RtpPacket.class);
+    }
+
+    @Benchmark
+    public RtpHeader reflective() throws DecodingException {
+        return Codecs.decode(reflective, message);
+    }
+
+    @Benchmark
+    public RtpHeader compiled() throws DecodingException {
+        return Codecs.decode(compiled, message);
+    }
+
+    @Benchmark
+    public RtpPacket packet() throws DecodingException {
+        return Codecs.decode(packetCodec, packet);
+    }
+
+    public static class RtpPacket {
+
+        public static final int CSRC_COUNT = 8;
+
+        @BoundObject
+        public RtpHeader header;
+
+        @BoundList(size = "8", type = Csrc.class)
+        public Csrc[] csrcs;
+
+    }
+
+    public static class Csrc {
+
+        @BoundNumber(size = "32", byteOrder = ByteOrder.BigEndian)
+        public long identifier;
+
+    }
+
+    public static class RtpHeader {
+
+        @BoundNumber(size = "2")
+        public byte version;
+
+        @Bound
+        public boolean padding;
+
+        @Bound
+        public boolean extension;
+
+        @BoundNumber(size = "4")
+        public byte csrcCount;
+
+        @Bound
+        public boolean marker;
+
+        @BoundNumber(size = "7")
+        public byte payloadType;
+
+        @BoundNumber(size = "16", byteOrder = ByteOrder.BigEndian)
+        public int sequenceNumber;
+
+        @BoundNumber(size = "32", byteOrder = ByteOrder.BigEndian)
+        public long timestamp;
+
+        @BoundNumber(size = "32", byteOrder = ByteOrder.BigEndian)
+        public long ssrc;
+
+    }
+
+}
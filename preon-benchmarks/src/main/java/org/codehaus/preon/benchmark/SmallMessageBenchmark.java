@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.benchmark;
+
+import org.codehaus.preon.buffer.BitBuffer;
+import org.codehaus.preon.buffer.ByteArrayBitBuffer;
+import org.codehaus.preon.buffer.DefaultBitBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding the fields of a small message (laid out like an RTP header) from a byte array, either by wrapping
+ * the array in a {@link ByteBuffer} and a {@link DefaultBitBuffer}, or by reading it through a {@link
+ * ByteArrayBitBuffer}. As in <code>Codecs.decode(Codec, byte...)</code>, a new buffer is created for every message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmallMessageBenchmark {
+
+    private byte[] message;
+
+    @Setup
+    public void setUp() {
+        message = new byte[12];
+        new Random(0).nextBytes(message);
+    }
+
+    @Benchmark
+    public long byteBuffer() {
+        return decode(new DefaultBitBuffer(ByteBuffer.wrap(message)));
+    }
+
+    @Benchmark
+    public long byteArray() {
+        return decode(new ByteArrayBitBuffer(message));
+    }
+
+    private static long decode(BitBuffer buffer) {
+        long result = buffer.readAsByte(2);
+        result ^= buffer.readAsBoolean() ? 1 : 0;
+        result ^= buffer.readAsBoolean() ? 2 : 0;
+        result ^= buffer.readAsByte(4);
+        result ^= buffer.readAsBoolean() ? 4 : 0;
+        result ^= buffer.readAsByte(7);
+        result ^= buffer.readAsInt(16);
+        result ^= buffer.readAsLong(32);
+        result ^= buffer.readAsLong(32);
+        return result;
+    }
+
+}
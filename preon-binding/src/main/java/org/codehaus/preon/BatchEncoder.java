@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon;
+
+import org.codehaus.preon.channel.SeekableBitChannel;
+
+import java.io.IOException;
+
+/**
+ * Encodes many values using the same {@link Codec}, back to back, into a single {@link SeekableBitChannel}. All set-up
+ * (the {@link Resolver}, the channel and the index) is done once per batch, rather than once per value. Each call
+ * returns an index holding the position of every value in the channel, so individual values can be located
+ * afterwards.
+ * <p/>
+ * In order to reuse the storage behind the channel from one batch to the next, pass in a {@link
+ * org.codehaus.preon.channel.ByteBufferBitChannel} writing to a pooled buffer.
+ *
+ * @param <T> The type of values to be encoded.
+ */
+public class BatchEncoder<T> {
+
+    private final Codec<T> codec;
+
+    /** Whether each value is expected to start at a byte boundary. */
+    private final boolean byteAligned;
+
+    private final Resolver resolver = new NullResolver();
+
+    /**
+     * Constructs a new instance, encoding values right after each other.
+     *
+     * @param codec The codec to be used.
+     */
+    public BatchEncoder(Codec<T> codec) {
+        this(codec, false);
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param codec       The codec to be used.
+     * @param byteAligned Whether each value needs to be padded with zero bits up to the next byte boundary.
+     */
+    public BatchEncoder(Codec<T> codec, boolean byteAligned) {
+        this.codec = codec;
+        this.byteAligned = byteAligned;
+    }
+
+    /**
+     * Encodes the values to the channel passed in.
+     *
+     * @param values  The values to be encoded.
+     * @param channel The channel receiving the data.
+     * @return The positions of the values in the channel, in bits, followed by the position following the last
+     *         value; holding one more element than the number of values.
+     * @throws IOException If the codec fails to encode any of the values.
+     */
+    public long[] encode(Iterable<? extends T> values, SeekableBitChannel channel) throws IOException {
+        long[] index = new long[16];
+        int count = 0;
+        for (T value : values) {
+            if (count == index.length - 1) {
+                index = resize(index, index.length << 1);
+            }
+            index[count++] = encode(value, channel);
+        }
+        index[count] = channel.getBitPos();
+        return count == index.length - 1 ? index : resize(index, count + 1);
+    }
+
+    /**
+     * Encodes the values to the channel passed in.
+     *
+     * @param values  The values to be encoded.
+     * @param channel The channel receiving the data.
+     * @return The positions of the values in the channel, in bits, followed by the position following the last
+     *         value; holding one more element than the number of values.
+     * @throws IOException If the codec fails to encode any of the values.
+     */
+    public long[] encode(T[] values, SeekableBitChannel channel) throws IOException {
+        long[] index = new long[values.length + 1];
+        for (int i = 0; i < values.length; i++) {
+            index[i] = encode(values[i], channel);
+        }
+        index[values.length] = channel.getBitPos();
+        return index;
+    }
+
+    /** Encodes a single value, and returns the position at which it starts. */
+    private long encode(T value, SeekableBitChannel channel) throws IOException {
+        long result = channel.getBitPos();
+        codec.encode(value, channel, resolver);
+        if (byteAligned) {
+            int bits = channel.getRelativeBitPos();
+            if (bits != 0) {
+                channel.write(8 - bits, (byte) 0);
+            }
+        }
+        return result;
+    }
+
+    private static long[] resize(long[] index, int length) {
+        long[] result = new long[length];
+        System.arraycopy(index, 0, result, 0, Math.min(index.length, length));
+        return result;
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon;
+
+import org.codehaus.preon.codec.GeneratedCodec;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry of {@link Codec Codecs}, making sure a {@link Codec} for a given type is constructed once, and then
+ * shared among all of its users. The registry can be used by multiple threads concurrently. Looking up a {@link Codec}
+ * that has been constructed before never blocks. If several threads request a {@link Codec} for a type that hasn't been
+ * constructed yet, then they may all construct one, but only the first one registered will be returned to all of
+ * them.
+ * <p/>
+ * The registry holds on to the types for which it constructed {@link Codec Codecs}. Applications loading types
+ * dynamically should {@link #evict(ClassLoader) evict} the {@link Codec Codecs} of a {@link ClassLoader} before
+ * discarding it.
+ *
+ * @see Codecs#create(Class)
+ */
+public class CodecRegistry {
+
+    /** The registry used by {@link Codecs#create(Class)}. */
+    private static final CodecRegistry DEFAULT = new CodecRegistry(new DefaultCodecFactory());
+
+    /** The {@link Codec Codecs} registered, by type. */
+    private final ConcurrentMap<Class<?>, Codec<?>> codecs = new ConcurrentHashMap<Class<?>, Codec<?>>();
+
+    /** The {@link CodecFactory} constructing {@link Codec Codecs} not generated at compile time. */
+    private final CodecFactory factory;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param factory The {@link CodecFactory} constructing {@link Codec Codecs} for types for which no {@link Codec}
+     *                has been generated at compile time. The factory needs to support being called by multiple
+     *                threads at the same time.
+     */
+    public CodecRegistry(CodecFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the registry used by {@link Codecs#create(Class)}.
+     *
+     * @return The registry used by {@link Codecs#create(Class)}.
+     */
+    public static CodecRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the {@link Codec} for the given type, constructing it if the registry doesn't hold one yet. If a {@link
+     * Codec} has been generated for the type at compile time, then that {@link Codec} will be used.
+     *
+     * @param <T>  The type of object constructed using the {@link Codec}.
+     * @param type The type of object constructed using the {@link Codec}.
+     * @return A {@link Codec} capable of decoding/encoding instances of the type passed in.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> get(Class<T> type) {
+        Codec<T> codec = (Codec<T>) codecs.get(type);
+        if (codec == null) {
+            codec = GeneratedCodec.find(type);
+            if (codec == null) {
+                codec = factory.create(null, type, null);
+            }
+            Codec<T> registered = (Codec<T>) codecs.putIfAbsent(type, codec);
+            if (registered != null) {
+                codec = registered;
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * Removes the {@link Codec} for the given type, if any.
+     *
+     * @param type The type of object constructed using the {@link Codec}.
+     */
+    public void evict(Class<?> type) {
+        codecs.remove(type);
+    }
+
+    /**
+     * Removes the {@link Codec Codecs} for all types loaded by the given {@link ClassLoader}, or by any of its
+     * descendants.
+     *
+     * @param loader The {@link ClassLoader} about to be discarded.
+     */
+    public void evict(ClassLoader loader) {
+        for (Iterator<Class<?>> iterator = codecs.keySet().iterator(); iterator.hasNext();) {
+            if (isLoadedBy(iterator.next(), loader)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /** Removes all {@link Codec Codecs}. */
+    public void clear() {
+        codecs.clear();
+    }
+
+    /**
+     * Returns the number of {@link Codec Codecs} held by this registry.
+     *
+     * @return The number of {@link Codec Codecs} held by this registry.
+     */
+    public int size() {
+        return codecs.size();
+    }
+
+    private static boolean isLoadedBy(Class<?> type, ClassLoader loader) {
+        for (ClassLoader current = type.getClassLoader(); current != null; current = current.getParent()) {
+            if (current == loader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
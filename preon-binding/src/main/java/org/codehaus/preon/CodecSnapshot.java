@@ -0,0 +1,246 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.preon.el.ExpressionCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Speeds up the construction of {@link Codec Codecs} by keeping a snapshot of the work done while constructing them in
+ * a file. Constructing a {@link Codec} is dominated by parsing the Limbo expressions found in the annotations of the
+ * types bound. The snapshot holds the parsed expressions, as well as a fingerprint of every type for which a {@link
+ * Codec} was constructed. When a {@link Codec} is created for the same type in a later run, the parsed expressions are
+ * taken from the snapshot, provided none of these types changed in the meantime.
+ * <p/>
+ * If the snapshot does not exist, cannot be read, or was created for different versions of the types, then the {@link
+ * Codec} is constructed from scratch, and the snapshot is written anew. The snapshot is written to a temporary file
+ * first, and then moved into place, so other processes never observe a partially written snapshot. The snapshot is an
+ * optimization only: failing to read or write it never prevents a {@link Codec} from being created.
+ *
+ * @see ExpressionCache
+ */
+public class CodecSnapshot {
+
+    /** The first four bytes of a snapshot file. */
+    private static final int MAGIC = 0x50524e53;
+
+    /** The version of the snapshot format. */
+    private static final int VERSION = 1;
+
+    /** The file holding the snapshot. */
+    private final File file;
+
+    /** The {@link CodecFactory} constructing the actual {@link Codec Codecs}. */
+    private final DefaultCodecFactory factory;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param file The file holding the snapshot. It doesn't need to exist.
+     */
+    public CodecSnapshot(File file) {
+        this(file, new DefaultCodecFactory());
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param file    The file holding the snapshot. It doesn't need to exist.
+     * @param factory The {@link DefaultCodecFactory} constructing the actual {@link Codec Codecs}.
+     */
+    public CodecSnapshot(File file, DefaultCodecFactory factory) {
+        this.file = file;
+        this.factory = factory;
+    }
+
+    /**
+     * Creates a {@link Codec} for the given type, reusing the work captured in the snapshot if it is still current, or
+     * (re)writing the snapshot if it isn't.
+     *
+     * @param <T>  The type of object constructed using the {@link Codec}.
+     * @param type The type of object constructed using the {@link Codec}.
+     * @return A {@link Codec} capable of decoding/encoding instances of the type passed in.
+     */
+    public <T> Codec<T> create(Class<T> type) {
+        boolean current = load(type);
+        ExpressionCache.Recording recording = ExpressionCache.startRecording();
+        Codec<T> codec;
+        Set<String> expressions;
+        try {
+            codec = factory.create(type);
+        } finally {
+            expressions = recording.stop();
+        }
+        if (!current) {
+            save(type, codec, expressions);
+        }
+        return codec;
+    }
+
+    /**
+     * Returns whether the snapshot exists and has been created for the current version of the type passed in, and of
+     * all types that type depends upon.
+     *
+     * @param type The type of object for which a {@link Codec} is to be constructed.
+     * @return <code>true</code> if the snapshot can be used for constructing a {@link Codec} for the type.
+     */
+    public boolean isCurrent(Class<?> type) {
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(file));
+            return readHeader(type, new DataInputStream(in));
+        } catch (IOException ioe) {
+            return false;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /** Loads the parsed expressions from the snapshot, returning <code>false</code> if the snapshot isn't current. */
+    private boolean load(Class<?> type) {
+        if (!file.isFile()) {
+            return false;
+        }
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(file));
+            DataInputStream data = new DataInputStream(in);
+            return readHeader(type, data) && ExpressionCache.readFrom(data);
+        } catch (IOException ioe) {
+            return false;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private boolean readHeader(Class<?> type, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || !type.getName().equals(in.readUTF())) {
+            return false;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            long fingerprint = in.readLong();
+            try {
+                Class<?> dependency = Class.forName(name, false, type.getClassLoader());
+                if (getFingerprint(dependency) != fingerprint) {
+                    return false;
+                }
+            } catch (ClassNotFoundException cnfe) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the snapshot, holding the expressions used while constructing the {@link Codec}. Silently leaves the
+     * snapshot out of date if it cannot be written.
+     */
+    private void save(Class<?> type, Codec<?> codec, Collection<String> expressions) {
+        Set<Class<?>> types = new LinkedHashSet<Class<?>>();
+        types.add(type);
+        Class<?>[] constructed = DefaultCodecFactory.getConstructedTypes(codec);
+        if (constructed != null) {
+            for (Class<?> dependency : constructed) {
+                types.add(dependency);
+            }
+        }
+        File temp = null;
+        OutputStream out = null;
+        boolean written = false;
+        try {
+            temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+            out = new BufferedOutputStream(new FileOutputStream(temp));
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeUTF(type.getName());
+            data.writeInt(types.size());
+            for (Class<?> dependency : types) {
+                data.writeUTF(dependency.getName());
+                data.writeLong(getFingerprint(dependency));
+            }
+            ExpressionCache.writeTo(data, expressions);
+            data.close();
+            // Some platforms refuse to rename onto an existing file
+            written = temp.renameTo(file) || (file.delete() && temp.renameTo(file));
+        } catch (IOException ioe) {
+            // Next time, the snapshot will simply not be current.
+        } finally {
+            IOUtils.closeQuietly(out);
+            if (!written && temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns a fingerprint of the type passed in, covering the annotations of the type and its superclasses, and the
+     * names, types and annotations of their fields. The order in which these are reported by reflection doesn't
+     * matter.
+     */
+    static long getFingerprint(Class<?> type) {
+        long fingerprint = 0;
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            fingerprint = 31 * fingerprint + current.getName().hashCode();
+            fingerprint = 31 * fingerprint + getFingerprint(current.getDeclaredAnnotations());
+            long fields = 0;
+            for (Field field : current.getDeclaredFields()) {
+                long hash = field.getName().hashCode();
+                hash = 31 * hash + field.getGenericType().toString().hashCode();
+                hash = 31 * hash + getFingerprint(field.getDeclaredAnnotations());
+                fields += hash;
+            }
+            fingerprint = 31 * fingerprint + fields;
+        }
+        return fingerprint;
+    }
+
+    private static long getFingerprint(Annotation[] annotations) {
+        long fingerprint = 0;
+        for (Annotation annotation : annotations) {
+            fingerprint += annotation.toString().hashCode();
+        }
+        return fingerprint;
+    }
+
+}
@@ -24,14 +24,15 @@
  */
 package org.codehaus.preon;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
 import javax.xml.stream.XMLStreamException;
@@ -44,9 +45,24 @@ import nl.flotsam.pecia.builder.xml.StreamingXmlWriter;
 import nl.flotsam.pecia.builder.xml.XmlWriter;
 import org.codehaus.preon.binding.BindingDecorator;
 import org.codehaus.preon.buffer.BitBuffer;
+import org.codehaus.preon.buffer.BitCursor;
+import org.codehaus.preon.buffer.BitSource;
+import org.codehaus.preon.buffer.ByteArrayBitBuffer;
 import org.codehaus.preon.buffer.DefaultBitBuffer;
+import org.codehaus.preon.buffer.MappedFileBitBuffer;
+import org.codehaus.preon.buffer.OffHeapBitBuffer;
+import org.codehaus.preon.buffer.StreamingBitBuffer;
 import org.codehaus.preon.channel.BitChannel;
+import org.codehaus.preon.channel.BitChannelException;
+import org.codehaus.preon.channel.ByteBufferBitChannel;
+import org.codehaus.preon.channel.CountingBitChannel;
+import org.codehaus.preon.channel.GatheringBitChannel;
 import org.codehaus.preon.channel.OutputStreamBitChannel;
+import org.codehaus.preon.codec.GeneratedCodec;
+import org.codehaus.preon.codec.Layout;
+import org.codehaus.preon.codec.ObjectCodec;
+import org.codehaus.preon.el.BindingException;
+import org.codehaus.preon.el.Expression;
 
 import org.apache.commons.io.IOUtils;
 
@@ -165,12 +181,28 @@ public class Codecs {
      */
     public static <T> T decode(Codec<T> codec, byte... buffer)
             throws DecodingException {
-        return decode(codec, ByteBuffer.wrap(buffer));
+        return decode(codec, new ByteArrayBitBuffer(buffer), null, null);
     }
 
     public static <T> T decode(Codec<T> codec, Builder builder, byte... buffer)
             throws DecodingException {
-        return decode(codec, ByteBuffer.wrap(buffer), builder);
+        return decode(codec, new ByteArrayBitBuffer(buffer), builder, null);
+    }
+
+    /**
+     * Decodes an object from a region of the array of bytes passed in, without copying or wrapping it.
+     *
+     * @param <T>    The of object to be decoded.
+     * @param codec  The {@link Codec} that will take care of the actual work.
+     * @param buffer An array of bytes holding the encoded data.
+     * @param offset The position of the first byte of the encoded data.
+     * @param length The number of bytes holding the encoded data.
+     * @return The decoded object.
+     * @throws DecodingException If the {@link Codec} fails to decode a value from the buffer passed in.
+     */
+    public static <T> T decode(Codec<T> codec, byte[] buffer, int offset, int length)
+            throws DecodingException {
+        return decode(codec, new ByteArrayBitBuffer(buffer, offset, length), null, null);
     }
 
     /**
@@ -192,6 +224,21 @@ public class Codecs {
         return decode(codec, new DefaultBitBuffer(buffer), builder, null);
     }
 
+    /**
+     * Decodes an object from the {@link BitSource} passed in, reading through a {@link BitCursor} of its own. Since the
+     * source is never modified, any number of threads can decode from the same source concurrently.
+     *
+     * @param <T>    The of object to be decoded.
+     * @param codec  The {@link Codec} that will take care of the actual work.
+     * @param source The {@link BitSource} holding the encoded data, such as a {@link MappedFileBitBuffer}.
+     * @return The decoded object.
+     * @throws DecodingException If the {@link Codec} fails to decode a value from the source passed in.
+     */
+    public static <T> T decode(Codec<T> codec, BitSource source)
+            throws DecodingException {
+        return decode(codec, new BitCursor(source), null, null);
+    }
+
     public static <T> T decode(Codec<T> codec, BitBuffer buffer, Builder builder, Resolver resolver)
             throws DecodingException {
         if (builder == null) {
@@ -216,24 +263,79 @@ public class Codecs {
         return decode(codec, null, file);
     }
 
+    /**
+     * Decodes an object from the file passed in. The file is mapped into memory. Files larger than 2 GB are mapped in
+     * segments, using a {@link MappedFileBitBuffer}. Since segments are mapped on demand, the file is then kept open
+     * for as long as the decoded object (which may load parts of it lazily) refers to it, unless decoding fails. To
+     * decide when the file gets closed, decode from a {@link MappedFileBitBuffer} of your own instead:
+     * <p/>
+     * <pre>
+     * MappedFileBitBuffer buffer = new MappedFileBitBuffer(file);
+     * try {
+     *     T result = Codecs.decode(codec, buffer, builder, null);
+     *     ...
+     * } finally {
+     *     buffer.close();
+     * }
+     * </pre>
+     *
+     * @param <T>     The of object to be decoded.
+     * @param codec   The {@link Codec} that will take care of the actual work.
+     * @param builder The {@link Builder} used to construct objects, or <code>null</code> for the default.
+     * @param file    The {@link File} providing the data to be decoded.
+     * @return The decoded object.
+     * @throws FileNotFoundException If the {@link File} does not exist.
+     * @throws IOException           If the system fails to read data from the file.
+     * @throws DecodingException     If the {@link Codec} fails to decode a value from the buffer passed in.
+     * @see MappedFileBitBuffer
+     */
     public static <T> T decode(Codec<T> codec, Builder builder, File file)
             throws FileNotFoundException, IOException, DecodingException {
-        FileInputStream in = null;
-        FileChannel channel = null;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        FileChannel channel = in.getChannel();
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            boolean decoded = false;
+            try {
+                T result = decode(codec, new MappedFileBitBuffer(channel, MappedFileBitBuffer.DEFAULT_SEGMENT_SIZE),
+                        builder, null);
+                decoded = true;
+                return result;
+            } finally {
+                if (!decoded) {
+                    channel.close();
+                }
+            }
+        }
         try {
-            in = new FileInputStream(file);
-            channel = in.getChannel();
-            int fileSize = (int) channel.size();
-            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
-                    fileSize);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
             return decode(codec, buffer, builder);
         } finally {
-            if (channel != null) {
-                channel.close();
-            }
+            channel.close();
         }
     }
 
+    /**
+     * Decodes an object from the {@link InputStream} passed in. Data is pulled from the stream on demand, using a
+     * bounded window, so the stream does not need to be read into memory entirely.
+     *
+     * @param <T>   The of object to be decoded.
+     * @param codec The {@link Codec} that will take care of the actual work.
+     * @param in    The {@link InputStream} providing the data to be decoded.
+     * @return The decoded object.
+     * @throws DecodingException If the {@link Codec} fails to decode a value from the stream passed in.
+     * @see StreamingBitBuffer
+     */
+    public static <T> T decode(Codec<T> codec, InputStream in)
+            throws DecodingException {
+        return decode(codec, null, in);
+    }
+
+    public static <T> T decode(Codec<T> codec, Builder builder, InputStream in)
+            throws DecodingException {
+        return decode(codec, new StreamingBitBuffer(in), builder, null);
+    }
+
     /**
      * Encodes the value to the channel passed in, using the given Codec. So why not have this operation on codec
      * instead? Well, it <em>is</em> actually there. However, there will be quite a few overloaded versions of this
@@ -250,10 +352,97 @@ public class Codecs {
         codec.encode(value, channel, new NullResolver());
     }
 
+    /**
+     * Encodes the value to a byte array. If the size of the encoded representation is known in advance, the value is
+     * encoded directly into an array of exactly that size. Otherwise, it is encoded into a buffer growing on demand. If
+     * the number of bits written is not a multiple of 8, the last byte is padded with zero bits.
+     *
+     * @param value The object that needs to be encoded.
+     * @param codec The codec to be used.
+     * @param <T>   The type of object to be encoded.
+     * @return The encoded representation of the value.
+     * @throws IOException If the codec fails to encode the value.
+     * @see ByteBufferBitChannel
+     */
     public static <T> byte[] encode(T value, Codec<T> codec) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        encode(value, codec, out);
-        return out.toByteArray();
+        long size = getByteSize(codec);
+        ByteBufferBitChannel channel;
+        if (size >= 0 && size <= Integer.MAX_VALUE) {
+            channel = new ByteBufferBitChannel(ByteBuffer.allocate((int) size));
+        } else {
+            channel = new ByteBufferBitChannel();
+        }
+        encode(value, codec, channel);
+        channel.close();
+        ByteBuffer encoded = channel.getByteBuffer();
+        if (encoded.hasArray() && encoded.arrayOffset() == 0 && encoded.array().length == encoded.remaining()) {
+            return encoded.array();
+        } else {
+            byte[] result = new byte[encoded.remaining()];
+            encoded.get(result);
+            return result;
+        }
+    }
+
+    /**
+     * Encodes the value into the buffer passed in, starting at its position, and advances the position past the data
+     * written. If the number of bits written is not a multiple of 8, the last byte is padded with zero bits. Combined
+     * with {@link #sizeOf(Object, Codec)}, this allows buffers to be pooled and reused, without any intermediate
+     * copies.
+     *
+     * @param value  The object that needs to be encoded.
+     * @param codec  The codec to be used.
+     * @param buffer The buffer receiving the data.
+     * @param <T>    The type of object to be encoded.
+     * @return The number of bits written, excluding padding.
+     * @throws IOException                                      If the codec fails to encode the value.
+     * @throws org.codehaus.preon.channel.BitChannelException If the buffer is too small to hold the data.
+     */
+    public static <T> long encode(T value, Codec<T> codec, ByteBuffer buffer) throws IOException {
+        ByteBufferBitChannel channel = new ByteBufferBitChannel(buffer);
+        encode(value, codec, channel);
+        long result = channel.getBitPos();
+        channel.close();
+        return result;
+    }
+
+    /**
+     * Encodes the value into the array passed in, starting at <code>offset</code>. If the number of bits written is not
+     * a multiple of 8, the last byte is padded with zero bits.
+     *
+     * @param value  The object that needs to be encoded.
+     * @param codec  The codec to be used.
+     * @param buffer The array receiving the data.
+     * @param offset The position of the first byte to be written.
+     * @param <T>    The type of object to be encoded.
+     * @return The number of bits written, excluding padding.
+     * @throws IOException                                      If the codec fails to encode the value.
+     * @throws org.codehaus.preon.channel.BitChannelException If the array is too small to hold the data.
+     * @see #encode(Object, Codec, ByteBuffer)
+     */
+    public static <T> long encode(T value, Codec<T> codec, byte[] buffer, int offset) throws IOException {
+        return encode(value, codec, ByteBuffer.wrap(buffer, offset, buffer.length - offset));
+    }
+
+    /**
+     * Returns the number of bits occupied by the encoded representation of the value. If the size expression of the
+     * codec does not depend on the value, it is simply evaluated. Otherwise, the value is encoded to a {@link
+     * CountingBitChannel}, which discards the data.
+     *
+     * @param value The object to be encoded.
+     * @param codec The codec to be used.
+     * @param <T>   The type of object to be encoded.
+     * @return The number of bits occupied by the encoded representation, excluding padding.
+     * @throws IOException If the codec fails to encode the value.
+     */
+    public static <T> long sizeOf(T value, Codec<T> codec) throws IOException {
+        long size = getBitSize(codec);
+        if (size >= 0) {
+            return size;
+        }
+        CountingBitChannel channel = new CountingBitChannel();
+        encode(value, codec, channel);
+        return channel.getBitPos();
     }
 
     public static <T> void encode(T value, Codec<T> codec, OutputStream out) throws IOException {
@@ -261,14 +450,175 @@ public class Codecs {
     }
 
     /**
-     * Creates a {@link Codec} for the given type.
+     * Encodes the value to the file passed in, replacing its contents. If the size of the encoded representation is
+     * known in advance, the file is sized accordingly and mapped into memory, and the value is encoded directly into the
+     * mapped buffer. Otherwise, the data is staged in direct buffers and written to the file's {@link FileChannel} in
+     * gathering writes, so large files are written at the speed of the disk. The data is written to a temporary file
+     * first, which only replaces the file passed in once the value has been encoded completely. If encoding fails, the
+     * file is left untouched.
+     *
+     * @param value The object that needs to be encoded.
+     * @param codec The codec to be used.
+     * @param file  The {@link File} receiving the data.
+     * @param <T>   The type of object to be encoded.
+     * @throws FileNotFoundException If the {@link File} cannot be created.
+     * @throws IOException           If the system fails to write data to the file.
+     * @see ByteBufferBitChannel
+     * @see GatheringBitChannel
+     */
+    public static <T> void encode(T value, Codec<T> codec, File file) throws FileNotFoundException, IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        boolean written = false;
+        try {
+            long size = getByteSize(codec);
+            if (size < 0 || size > Integer.MAX_VALUE || !encodeMapped(value, codec, temp, size)) {
+                FileChannel channel = new FileOutputStream(temp).getChannel();
+                GatheringBitChannel bitChannel = new GatheringBitChannel(channel);
+                try {
+                    encode(value, codec, bitChannel);
+                } finally {
+                    bitChannel.close();
+                }
+            }
+            // Some platforms refuse to rename onto an existing file
+            written = temp.renameTo(file) || (file.delete() && temp.renameTo(file));
+            if (!written) {
+                throw new IOException("Failed to replace " + file + " with " + temp);
+            }
+        } finally {
+            if (!written) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Encodes the value into the file passed in, mapped into memory at the size the codec claims to need. The mapping
+     * is released before the file is truncated to the number of bytes actually written.
+     *
+     * @return <code>false</code> if the codec attempted to write more data than its size expression claimed, in which
+     *         case the contents of the file are undefined.
+     */
+    private static <T> boolean encodeMapped(T value, Codec<T> codec, File file, long size) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(size);
+            MappedByteBuffer mapped = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            long written;
+            try {
+                ByteBufferBitChannel bitChannel = new ByteBufferBitChannel(mapped);
+                try {
+                    encode(value, codec, bitChannel);
+                    bitChannel.close();
+                } catch (BitChannelException bce) {
+                    // The size expression underestimated the size
+                    return false;
+                }
+                written = mapped.position();
+            } finally {
+                OffHeapBitBuffer.free(mapped);
+            }
+            if (written < size) {
+                // The size expression overestimated the size; drop the bytes not written
+                out.setLength(written);
+            }
+            return true;
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the number of bytes occupied by the encoded representation of any value, if the size expression of the
+     * codec does not depend on the value, or <code>-1</code> otherwise.
+     */
+    private static long getByteSize(Codec<?> codec) {
+        long size = getBitSize(codec);
+        return size >= 0 ? (size + 7) >>> 3 : -1;
+    }
+
+    /**
+     * Returns the number of bits occupied by the encoded representation of any value, if the size expression of the
+     * codec does not depend on the value, or <code>-1</code> otherwise.
+     */
+    private static long getBitSize(Codec<?> codec) {
+        Expression<Integer, Resolver> size = codec.getSize();
+        if (size == null || size.isParameterized()) {
+            return -1;
+        }
+        try {
+            return size.eval(new NullResolver()).longValue();
+        } catch (BindingException be) {
+            return -1;
+        }
+    }
+
+    /**
+     * Creates a {@link Codec} for the given type. If a {@link Codec} has been generated for the type at compile time,
+     * then that {@link Codec} will be returned. Otherwise, it will be constructed through reflection. {@link Codec
+     * Codecs} are constructed only once; subsequent calls for the same type return the same {@link Codec}, taken from
+     * the {@link CodecRegistry#getDefault() default registry}.
      *
      * @param <T>  The of object constructed using the {@link Codec}.
      * @param type The type of object constructed using the {@link Codec}.
      * @return A {@link Codec} capable of decoding/encoding instances of the type passed in.
+     * @see org.codehaus.preon.codec.GeneratedCodec
+     * @see CodecRegistry
      */
     public static <T> Codec<T> create(Class<T> type) {
-        return new DefaultCodecFactory().create(type);
+        return CodecRegistry.getDefault().get(type);
+    }
+
+    /**
+     * Creates a {@link Codec} for the given type, keeping a snapshot of the parsed expressions in the file passed in,
+     * to speed up creating the same {@link Codec} in a later run. If a {@link Codec} has been generated for the type at
+     * compile time, then that {@link Codec} will be returned, and the snapshot is left alone.
+     *
+     * @param <T>      The of object constructed using the {@link Codec}.
+     * @param type     The type of object constructed using the {@link Codec}.
+     * @param snapshot The file holding the snapshot. It doesn't need to exist.
+     * @return A {@link Codec} capable of decoding/encoding instances of the type passed in.
+     * @see CodecSnapshot
+     */
+    public static <T> Codec<T> create(Class<T> type, File snapshot) {
+        Codec<T> generated = GeneratedCodec.find(type);
+        if (generated != null) {
+            return generated;
+        }
+        return new CodecSnapshot(snapshot).create(type);
+    }
+
+    /**
+     * Returns the layout of the type decoded by the {@link Codec} passed in, if the positions of all of its fields are
+     * constant.
+     *
+     * @param codec The {@link Codec}, as returned by one of the <code>create</code> methods.
+     * @return The layout of the type, or <code>null</code> if its fields do not have constant positions, or if the
+     *         {@link Codec} does not support introspection.
+     * @see Layout
+     */
+    public static Layout getLayout(Codec<?> codec) {
+        Codec<?> unwrapped = DefaultCodecFactory.unwrap(codec);
+        if (unwrapped instanceof ObjectCodec) {
+            return ((ObjectCodec<?>) unwrapped).getLayout();
+        } else if (unwrapped instanceof GeneratedCodec) {
+            return ((GeneratedCodec<?>) unwrapped).getLayout();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a {@link Codec} for the given type, compiling the bindings of primitive fields into specialized bindings
+     * reading and writing the fields without boxing. Other fields are bound as {@link #create(Class)} would.
+     *
+     * @param <T>  The of object constructed using the {@link Codec}.
+     * @param type The type of object constructed using the {@link Codec}.
+     * @return A {@link Codec} capable of decoding/encoding instances of the type passed in.
+     * @see org.codehaus.preon.codec.CompilingBindingFactory
+     */
+    public static <T> Codec<T> compile(Class<T> type) {
+        return new DefaultCodecFactory(true).create(type);
     }
 
     /**
@@ -24,9 +24,14 @@
  */
 package org.codehaus.preon;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
 /**
- * The default implementation of the {@link Builder} interface, simply invoking {@link Class#newInstance()} on the class
- * passed in.
+ * The default implementation of the {@link Builder} interface, simply invoking the default constructor of the class
+ * passed in. The builder itself does not cache anything; {@link Codec Codecs} creating many instances of the same type
+ * are expected to look up the constructor once using {@link #getConstructor(Class)}, and hold on to it for as long as
+ * they exist. Instances can safely be shared among threads.
  *
  * @author Wilfred Springer
  */
@@ -39,7 +44,44 @@ public class DefaultBuilder implements Builder {
      */
 
     public <T> T create(Class<T> type) throws InstantiationException, IllegalAccessException {
-        return type.newInstance();
+        return newInstance(getConstructor(type));
+    }
+
+    /**
+     * Returns the default constructor of the given type.
+     *
+     * @param type The type of instance desired.
+     * @param <T>  The type of instance we need.
+     * @return The default constructor of the type.
+     * @throws InstantiationException If the type does not have a default constructor.
+     */
+    public static <T> Constructor<T> getConstructor(Class<T> type) throws InstantiationException {
+        try {
+            return type.getDeclaredConstructor();
+        } catch (NoSuchMethodException nsme) {
+            throw new InstantiationException("Missing default constructor in " + type.getName() + ".");
+        }
+    }
+
+    /**
+     * Creates a default instance using the constructor passed in, reporting failures the same way {@link
+     * #create(Class)} does.
+     *
+     * @param constructor The default constructor, as returned by {@link #getConstructor(Class)}.
+     * @param <T>         The type of instance we need.
+     * @return A new instance.
+     * @throws InstantiationException If the constructor fails.
+     * @throws IllegalAccessException If we are not allowed to invoke the constructor.
+     */
+    public static <T> T newInstance(Constructor<T> constructor) throws InstantiationException, IllegalAccessException {
+        try {
+            return constructor.newInstance();
+        } catch (InvocationTargetException ite) {
+            InstantiationException ie = new InstantiationException("Failed to call default constructor of "
+                    + constructor.getDeclaringClass().getName() + ".");
+            ie.initCause(ite.getCause());
+            throw ie;
+        }
     }
 
 }
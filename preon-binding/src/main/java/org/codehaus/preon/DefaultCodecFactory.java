@@ -48,6 +48,25 @@ import java.util.List;
  */
 public class DefaultCodecFactory implements CodecFactory {
 
+    /** Whether bindings of primitive fields are compiled, using a {@link CompilingBindingFactory}. */
+    private final boolean compiling;
+
+    /** Constructs a new instance, creating bindings through reflection only. */
+    public DefaultCodecFactory() {
+        this(false);
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param compiling Whether bindings of primitive fields need to be compiled into specialized bindings, skipping
+     *                  boxing, expression evaluation and builder decoration while decoding and encoding.
+     * @see CompilingBindingFactory
+     */
+    public DefaultCodecFactory(boolean compiling) {
+        this.compiling = compiling;
+    }
+
     public <T> Codec<T> create(Class<T> type) {
         return create(null, type, null);
     }
@@ -70,6 +89,9 @@ public class DefaultCodecFactory implements CodecFactory {
 
         // Create the default BindingFactory.
         BindingFactory bindingFactory = new StandardBindingFactory();
+        if (compiling) {
+            bindingFactory = new CompilingBindingFactory(bindingFactory);
+        }
         bindingFactory = new ConditionalBindingFactory(bindingFactory);
         if (bindingDecorators.length != 0) {
             bindingFactory = new DecoratingBindingFactory(bindingFactory, bindingDecorators);
@@ -83,6 +105,7 @@ public class DefaultCodecFactory implements CodecFactory {
         List<CodecDecorator> decorators = new ArrayList<CodecDecorator>();
         decorators.add(new LazyLoadingCodecDecorator());
         decorators.add(new SlicingCodecDecorator());
+        decorators.add(new LengthPrefixCodecDecorator());
         decorators.add(new ByteAligningDecorator());
         decorators.add(new InitCodecDecorator());
         decorators.addAll(Arrays.asList(addOnDecorators));
@@ -129,6 +152,42 @@ public class DefaultCodecFactory implements CodecFactory {
         return new DefaultCodec<T>(top.create(metadata, type, null), created);
     }
 
+    /**
+     * Returns the types of objects for which {@link Codec Codecs} have been constructed while constructing the {@link
+     * Codec} passed in.
+     *
+     * @param codec A {@link Codec} constructed by a {@link DefaultCodecFactory}.
+     * @return The types of objects for which {@link Codec Codecs} have been constructed, or <code>null</code> if the
+     *         {@link Codec} has not been constructed by a {@link DefaultCodecFactory}.
+     */
+    static Class<?>[] getConstructedTypes(Codec<?> codec) {
+        if (codec instanceof DefaultCodecFactory.DefaultCodec) {
+            List<Codec<?>> created = ((DefaultCodecFactory.DefaultCodec<?>) codec).created;
+            Class<?>[] types = new Class<?>[created.size()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = created.get(i).getType();
+            }
+            return types;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the {@link Codec} wrapped by a {@link Codec} constructed by a {@link DefaultCodecFactory}.
+     *
+     * @param codec A {@link Codec}.
+     * @return The {@link Codec} wrapped, or the {@link Codec} passed in if it has not been constructed by a {@link
+     *         DefaultCodecFactory}.
+     */
+    static Codec<?> unwrap(Codec<?> codec) {
+        if (codec instanceof DefaultCodecFactory.DefaultCodec) {
+            return ((DefaultCodecFactory.DefaultCodec<?>) codec).delegate;
+        } else {
+            return codec;
+        }
+    }
+
     /**
      * The default {@link Codec}.
      *
@@ -27,12 +27,14 @@ package org.codehaus.preon.annotation;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 
-import org.codehaus.preon.Codec;
 import org.codehaus.preon.buffer.ByteOrder;
 
 
 /**
- * The annotation used to indicate the discriminator used to recognize an instance of this class.
+ * The annotation used to indicate that a (compound) value is preceded by a numeric prefix holding its length, in bytes.
+ * While decoding, only a slice of the BitBuffer holding that number of bytes is passed on. While encoding, the value is
+ * padded to a whole number of bytes, and the prefix is filled in afterwards, if the channel allows bits written before
+ * to be patched. Useful as an alternative to {@link Slice}.
  *
  * @author Wilfred Springer
  */
@@ -47,9 +49,17 @@ public @interface LengthPrefix {
     ByteOrder endian() default ByteOrder.LittleEndian;
 
     /**
-     * The number of bits used to represent the numeric value. Defaults to 0, allowing the {@link Codec} to make its own
-     * decision on the number of bits to be used; however, they are expected to respect the following defaults:
+     * The number of bits used to represent the length. (A Limbo expression.)
+     *
+     * @return The number of bits used to represent the length. Defaults to 32.
+     */
+    String size() default "32";
+
+    /**
+     * Whether the length includes the bytes occupied by the prefix itself, as with BSON documents.
+     *
+     * @return <code>true</code> if the length includes the prefix. Defaults to <code>false</code>.
      */
-    String size() default "";
+    boolean inclusive() default false;
 
 }
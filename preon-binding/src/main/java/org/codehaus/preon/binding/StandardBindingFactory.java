@@ -33,13 +33,13 @@ import org.codehaus.preon.*;
 import org.codehaus.preon.buffer.BitBuffer;
 import org.codehaus.preon.buffer.BitBufferException;
 import org.codehaus.preon.channel.BitChannel;
-import org.codehaus.preon.reflect.ReflectionUtils;
 import org.codehaus.preon.rendering.CamelCaseRewriter;
 import org.codehaus.preon.rendering.IdentifierRewriter;
 
 import java.lang.reflect.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.io.IOException;
 
 /**
@@ -51,7 +51,7 @@ import java.io.IOException;
 public class StandardBindingFactory implements BindingFactory {
 
     /** A unique id for bindings generated by this class. */
-    private static int id;
+    private static final AtomicInteger id = new AtomicInteger();
 
     private IdentifierRewriter rewriter = new CamelCaseRewriter();
 
@@ -63,7 +63,7 @@ public class StandardBindingFactory implements BindingFactory {
 
     private static class FieldBinding implements Binding {
 
-        private String id = "binding" + StandardBindingFactory.id++;
+        private String id = "binding" + StandardBindingFactory.id.getAndIncrement();
 
         private Field field;
 
@@ -85,14 +85,12 @@ public class StandardBindingFactory implements BindingFactory {
             this.rewriter = rewriter;
             this.containerReference = containerReference;
             field.setAccessible(true);
-            Class<?> declaring = field.getDeclaringClass();
-            builderDecorator = new ContextualBuilderDecorator(declaring);
+            builderDecorator = createBuilderDecorator(field.getDeclaringClass());
         }
 
         public void load(Object object, BitBuffer buffer, Resolver resolver,
                          Builder builder) throws DecodingException {
             try {
-                ReflectionUtils.makeAssessible(field);
                 Object value = codec.decode(buffer, resolver, builderDecorator
                         .decorate(builder, object));
                 field.set(object, value);
@@ -150,7 +148,6 @@ public class StandardBindingFactory implements BindingFactory {
 
         public void save(Object value, BitChannel channel, Resolver resolver) throws IOException {
             try {
-                ReflectionUtils.makeAssessible(field);
                 codec.encode(field.get(value), channel, resolver);
             } catch (IllegalAccessException e) {
                 // TODO: Need a better way to handle this properly
@@ -160,6 +157,21 @@ public class StandardBindingFactory implements BindingFactory {
 
     }
 
+    /**
+     * Returns the {@link Decorator} to be applied to the {@link Builder} used for decoding values of fields declared in
+     * the given class. Only if the class declares non-static member classes, the {@link Builder} needs to be aware of
+     * the enclosing instance. In all other cases, the {@link Builder} is used as is, saving the creation of a new
+     * {@link Builder} for every value loaded.
+     */
+    private static Decorator<Builder> createBuilderDecorator(Class<?> declaring) {
+        ContextualBuilderDecorator decorator = new ContextualBuilderDecorator(declaring);
+        if (decorator.constructors.isEmpty()) {
+            return new NonDecoratingBuilderDecorator();
+        } else {
+            return decorator;
+        }
+    }
+
     private interface Decorator<T> {
 
         T decorate(T object, Object context);
@@ -178,50 +190,55 @@ public class StandardBindingFactory implements BindingFactory {
     private static class ContextualBuilderDecorator implements
             Decorator<Builder> {
 
-        private Class enclosing;
-
-        private List<Class> members;
+        /**
+         * The constructors of the non-static member classes, taking the enclosing instance, indexed by member class.
+         * Members lacking such a constructor are mapped to <code>null</code>.
+         */
+        private Map<Class<?>, Constructor<?>> constructors;
 
-        public ContextualBuilderDecorator(Class enclosing) {
-            this.enclosing = enclosing;
-            this.members = new ArrayList<Class>();
-            for (Class member : enclosing.getDeclaredClasses()) {
+        public ContextualBuilderDecorator(Class<?> enclosing) {
+            this.constructors = new HashMap<Class<?>, Constructor<?>>();
+            for (Class<?> member : enclosing.getDeclaredClasses()) {
                 if (!Modifier.isStatic(member.getModifiers())) {
-                    members.add(member);
+                    Constructor<?> constructor;
+                    try {
+                        constructor = member.getDeclaredConstructor(enclosing);
+                        constructor.setAccessible(true);
+                    } catch (NoSuchMethodException nsme) {
+                        constructor = null;
+                    }
+                    constructors.put(member, constructor);
                 }
             }
         }
 
         public Builder decorate(Builder builder, Object context) {
-            return new ContextualBuilder(enclosing, members, builder, context);
+            return new ContextualBuilder(constructors, builder, context);
         }
 
         private static class ContextualBuilder implements Builder {
 
-            private Class enclosing;
-            private List<Class> members;
+            private Map<Class<?>, Constructor<?>> constructors;
             private Builder delegate;
             private Object context;
 
-            public ContextualBuilder(Class enclosing, List<Class> members,
+            public ContextualBuilder(Map<Class<?>, Constructor<?>> constructors,
                                      Builder delegate, Object context) {
-                this.enclosing = enclosing;
-                this.members = members;
+                this.constructors = constructors;
                 this.delegate = delegate;
                 this.context = context;
             }
 
             public <T> T create(Class<T> type) throws InstantiationException,
                     IllegalAccessException {
-                if (members.contains(type)) {
-                    try {
-                        Constructor<T> constructor = type
-                                .getDeclaredConstructor(enclosing);
-                        constructor.setAccessible(true);
-                        return constructor.newInstance(context);
-                    } catch (NoSuchMethodException nsme) {
+                if (constructors.containsKey(type)) {
+                    Constructor<?> constructor = constructors.get(type);
+                    if (constructor == null) {
                         throw new InstantiationException(
                                 "Missing valid default constructor.");
+                    }
+                    try {
+                        return type.cast(constructor.newInstance(context));
                     } catch (IllegalArgumentException e) {
                         throw new InstantiationException(
                                 "Enclosing instance not accepted as argument.");
@@ -54,6 +54,12 @@ class ArrayCodec implements Codec<Object> {
     /** The type of element to be constructed. */
     private Class<?> type;
 
+    /**
+     * The {@link NumericCodec} decoding all elements at once, or <code>null</code> if elements need to be decoded one
+     * by one.
+     */
+    private NumericCodec numericCodec;
+
     /**
      * Constructs a new instance.
      *
@@ -66,6 +72,10 @@ class ArrayCodec implements Codec<Object> {
         this.size = expr;
         this.codec = codec;
         this.type = type;
+        if (codec instanceof NumericCodec && type.getComponentType().isPrimitive()
+                && ((NumericCodec) codec).isArrayDecodingSupported()) {
+            this.numericCodec = (NumericCodec) codec;
+        }
     }
 
     /*
@@ -78,6 +88,9 @@ class ArrayCodec implements Codec<Object> {
     public Object decode(BitBuffer buffer, Resolver resolver,
                          Builder builder) throws DecodingException {
         int length = size.eval(resolver).intValue();
+        if (numericCodec != null) {
+            return numericCodec.decodeArray(buffer, resolver, length);
+        }
         Object result = Array.newInstance(type.getComponentType(), length);
         for (int i = 0; i < length; i++) {
             Object value = codec.decode(buffer, resolver, builder);
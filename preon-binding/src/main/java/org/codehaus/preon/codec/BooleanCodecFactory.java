@@ -66,7 +66,7 @@ public class BooleanCodecFactory implements CodecFactory {
         }
     }
 
-    private static class BooleanCodec implements Codec<Boolean> {
+    static class BooleanCodec implements Codec<Boolean> {
 
         private boolean primitive;
 
@@ -34,6 +34,8 @@ import org.codehaus.preon.util.AnnotationUtils;
 import java.io.IOException;
 import java.lang.reflect.AnnotatedElement;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * An implementation of the {@link CodecFactory} interface that will prevent the same {@link Codec} from being
@@ -57,7 +59,9 @@ import java.util.*;
  * <p/> <p> Without using this {@link CodecFactory} decorator, the underlying {@link CodecFactory} might potentially
  * generate a stack overflow, creating {@link Codec Codecs} for Foo and Bar. </p> <p/> <p> Note that this class also
  * provides a convenient way to access the {@link Codec Codecs} created, which comes in handy when generating
- * documentation for all of these {@link Codec Codecs}. (See {@link #getCodecs()}.) </p>
+ * documentation for all of these {@link Codec Codecs}. (See {@link #getCodecs()}.) </p> <p/> <p> Instances of this
+ * class can be shared among threads. {@link Codec Codecs} already constructed are returned without locking, new {@link
+ * Codec Codecs} are constructed by one thread at a time. </p>
  *
  * @author Wilfred Springer
  */
@@ -67,7 +71,7 @@ public class CachingCodecFactory implements CodecFactory {
      * A list of all {@link Codecs} already constructed, indexed by just the
      * type. (In the future, this should include the metadata as well.)
      */
-    private Map<Key, CodecHolder<?>> created;
+    private ConcurrentMap<Key, CodecHolder<?>> created;
 
     /**
      * The object to which the actual construction of the {@link Codec} will be
@@ -96,7 +100,7 @@ public class CachingCodecFactory implements CodecFactory {
      *            before.
      */
     public CachingCodecFactory(CodecFactory delegate) {
-        created = new HashMap<Key, CodecHolder<?>>();
+        created = new ConcurrentHashMap<Key, CodecHolder<?>>();
         this.delegate = delegate;
     }
 
@@ -115,26 +119,39 @@ public class CachingCodecFactory implements CodecFactory {
     public <T> Codec<T> create(AnnotatedElement metadata, Class<T> type,
                                ResolverContext context) {
         Key key = new Key(metadata, type, context);
-        Codec<T> result = (Codec<T>) created.get(key);
-        if (result == null) {
-            CodecHolder<T> holder = new CodecHolder<T>(type);
-            created.put(key, holder);
-            result = delegate.create(metadata, type, context);
-            if (result == null) {
+        CodecHolder<T> holder = (CodecHolder<T>) created.get(key);
+        if (holder != null && holder.get() != null) {
+            return holder;
+        }
+        // Codecs are constructed by one thread at a time. A thread running
+        // into a holder that has not been resolved yet, while holding the
+        // lock, is constructing a Codec for a circular dependency.
+        synchronized (created) {
+            holder = (CodecHolder<T>) created.get(key);
+            if (holder == null) {
+                holder = new CodecHolder<T>(type);
+                created.put(key, holder);
+                boolean completed = false;
+                try {
+                    Codec<T> result = delegate.create(metadata, type, context);
+                    completed = true;
+                    if (result == null) {
+                        return null;
+                    } else {
+                        listener.constructed(result);
+                        holder.set(result);
+                        return result;
+                    }
+                } finally {
+                    if (!completed) {
+                        created.remove(key);
+                    }
+                }
+            } else if (holder.get() == null) {
                 return null;
             } else {
-                listener.constructed(result);
-                holder.set(result);
-                return result;
-            }
-        } else {
-            if (result instanceof CodecHolder) {
-                CodecHolder<T> holder = (CodecHolder<T>) result;
-                if (holder.get() == null) {
-                    return null;
-                }
+                return holder;
             }
-            return result;
         }
     }
 
@@ -150,9 +167,9 @@ public class CachingCodecFactory implements CodecFactory {
 
     private static class CodecHolder<T> implements Codec<T> {
 
-        private Codec<T> codec;
+        private volatile Codec<T> codec;
 
-        private Class<T> type;
+        private final Class<T> type;
 
         public CodecHolder(Class<T> type) {
             this.type = type;
@@ -194,13 +211,17 @@ public class CachingCodecFactory implements CodecFactory {
 
     }
 
+    /**
+     * The key of a {@link Codec} constructed. Its hash code is based on the type only, since calculating the hash code
+     * of annotations is relatively expensive, and Codecs for the same type with different metadata are rare.
+     */
     private static class Key {
 
-        private AnnotatedElement metadata;
+        private final AnnotatedElement metadata;
 
-        private Class<?> type;
+        private final Class<?> type;
 
-        private ResolverContext context;
+        private final ResolverContext context;
 
         public Key(AnnotatedElement metadata, Class<?> type,
                    ResolverContext context) {
@@ -216,23 +237,16 @@ public class CachingCodecFactory implements CodecFactory {
             } else {
                 Key key = (Key) obj;
                 // TODO: Add ResolverContext
-                return ((metadata == null && key.metadata == null) || AnnotationUtils
-                        .equivalent(metadata, key.metadata))
-                        && ((type == null && key.type == null) || type
-                        .equals(key.type));
+                return (type == null ? key.type == null : type.equals(key.type))
+                        && (metadata == key.metadata || AnnotationUtils
+                        .equivalent(metadata, key.metadata));
             }
         }
 
         @Override
         public int hashCode() {
             // TODO: Add ResolverContext
-            int result = 7;
-            result = result
-                    * 31
-                    + (metadata == null ? 0 : AnnotationUtils
-                    .calculateHashCode(metadata));
-            result = result * 31 + (type == null ? 0 : type.hashCode());
-            return result;
+            return type == null ? 0 : type.hashCode();
         }
 
     }
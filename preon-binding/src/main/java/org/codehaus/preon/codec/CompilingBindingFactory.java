@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.codec;
+
+import nl.flotsam.pecia.Documenter;
+import nl.flotsam.pecia.ParaContents;
+import nl.flotsam.pecia.SimpleContents;
+import org.codehaus.preon.Builder;
+import org.codehaus.preon.Codec;
+import org.codehaus.preon.DecodingException;
+import org.codehaus.preon.NullResolver;
+import org.codehaus.preon.Resolver;
+import org.codehaus.preon.ResolverContext;
+import org.codehaus.preon.binding.Binding;
+import org.codehaus.preon.binding.BindingFactory;
+import org.codehaus.preon.buffer.BitBuffer;
+import org.codehaus.preon.buffer.ByteOrder;
+import org.codehaus.preon.channel.BitChannel;
+import org.codehaus.preon.el.Expression;
+
+import java.io.IOException;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+
+/**
+ * A {@link BindingFactory} compiling bindings of primitive fields into specialized {@link Binding Bindings}, while
+ * leaving everything else to the {@link BindingFactory} it decorates.
+ * <p/>
+ * A field is compiled if it is an <code>int</code>, <code>long</code>, <code>short</code> or <code>byte</code> bound
+ * to a {@link NumericCodec} of the same type, with a fixed size and no value to match, or a <code>boolean</code>. The
+ * compiled binding reads the value with a primitive read and stores it with a primitive field store: the size is
+ * evaluated once, and no boxing or {@link Builder} decoration takes place. Encoding works the other way around. All
+ * other operations (documentation, references) are passed on to the binding created by the decorated factory, so
+ * compiled bindings can be decorated in the same way as the bindings they replace.
+ */
+public class CompilingBindingFactory implements BindingFactory {
+
+    private final BindingFactory decorated;
+
+    public CompilingBindingFactory(BindingFactory decorated) {
+        this.decorated = decorated;
+    }
+
+    public Binding create(AnnotatedElement metadata, Field field, Codec<?> codec, ResolverContext context,
+                          Documenter<ParaContents<?>> containerReference) {
+        Binding binding = decorated.create(metadata, field, codec, context, containerReference);
+        Class<?> type = field.getType();
+        if (codec instanceof BooleanCodecFactory.BooleanCodec && boolean.class.equals(type)) {
+            return new BooleanBinding(field, binding);
+        }
+        if (codec.getClass() == NumericCodec.class) {
+            NumericCodec numeric = (NumericCodec) codec;
+            if (type.isPrimitive() && numeric.isFixed() && NumericCodec.NUMERIC_TYPES.get(type) == numeric.type) {
+                int size = numeric.sizeExpr.eval(new NullResolver());
+                switch (numeric.type) {
+                    case Integer:
+                        return new IntBinding(field, binding, size, numeric.byteOrder);
+                    case Long:
+                        return new LongBinding(field, binding, size, numeric.byteOrder);
+                    case Short:
+                        return new ShortBinding(field, binding, size, numeric.byteOrder);
+                    case Byte:
+                        return new ByteBinding(field, binding, size, numeric.byteOrder);
+                }
+            }
+        }
+        return binding;
+    }
+
+    /**
+     * The base class of compiled bindings, passing everything but reading and writing on to the original binding.
+     * Compiled bindings can also read their field at an absolute position, which is what {@link ObjectCodec} does for
+     * types with a {@link Layout}.
+     */
+    abstract static class CompiledBinding implements Binding {
+
+        protected final Field field;
+
+        private final Binding binding;
+
+        protected CompiledBinding(Field field, Binding binding) {
+            this.field = field;
+            this.binding = binding;
+            field.setAccessible(true);
+        }
+
+        public void load(Object object, BitBuffer buffer, Resolver resolver, Builder builder)
+                throws DecodingException {
+            try {
+                load(object, buffer);
+            } catch (IllegalAccessException iae) {
+                throw new DecodingException(iae);
+            }
+        }
+
+        public void save(Object value, BitChannel channel, Resolver resolver) throws IOException {
+            try {
+                save(value, channel);
+            } catch (IllegalAccessException iae) {
+                // Same as the bindings created by StandardBindingFactory
+                throw new IllegalStateException(iae);
+            }
+        }
+
+        protected abstract void load(Object object, BitBuffer buffer) throws IllegalAccessException;
+
+        /** Loads the field from the given position, rather than from the current position. */
+        abstract void load(Object object, BitBuffer buffer, long bitPos) throws IllegalAccessException;
+
+        protected abstract void save(Object value, BitChannel channel) throws IOException, IllegalAccessException;
+
+        public <V extends SimpleContents<?>> V describe(V contents) {
+            return binding.describe(contents);
+        }
+
+        public <T, V extends ParaContents<T>> V writeReference(V contents) {
+            return binding.writeReference(contents);
+        }
+
+        public Class<?>[] getTypes() {
+            return binding.getTypes();
+        }
+
+        public Object get(Object context) throws IllegalArgumentException, IllegalAccessException {
+            return field.get(context);
+        }
+
+        public String getName() {
+            return binding.getName();
+        }
+
+        public Expression<Integer, Resolver> getSize() {
+            return binding.getSize();
+        }
+
+        public String getId() {
+            return binding.getId();
+        }
+
+        public Class<?> getType() {
+            return binding.getType();
+        }
+
+    }
+
+    private static class IntBinding extends CompiledBinding {
+
+        private final int size;
+
+        private final ByteOrder byteOrder;
+
+        public IntBinding(Field field, Binding binding, int size, ByteOrder byteOrder) {
+            super(field, binding);
+            this.size = size;
+            this.byteOrder = byteOrder;
+        }
+
+        protected void load(Object object, BitBuffer buffer) throws IllegalAccessException {
+            field.setInt(object, buffer.readAsInt(size, byteOrder));
+        }
+
+        void load(Object object, BitBuffer buffer, long bitPos) throws IllegalAccessException {
+            field.setInt(object, buffer.readAsInt(bitPos, size, byteOrder));
+        }
+
+        protected void save(Object value, BitChannel channel) throws IOException, IllegalAccessException {
+            channel.write(size, field.getInt(value), byteOrder);
+        }
+
+    }
+
+    private static class LongBinding extends CompiledBinding {
+
+        private final int size;
+
+        private final ByteOrder byteOrder;
+
+        public LongBinding(Field field, Binding binding, int size, ByteOrder byteOrder) {
+            super(field, binding);
+            this.size = size;
+            this.byteOrder = byteOrder;
+        }
+
+        protected void load(Object object, BitBuffer buffer) throws IllegalAccessException {
+            field.setLong(object, buffer.readAsLong(size, byteOrder));
+        }
+
+        void load(Object object, BitBuffer buffer, long bitPos) throws IllegalAccessException {
+            field.setLong(object, buffer.readAsLong(bitPos, size, byteOrder));
+        }
+
+        protected void save(Object value, BitChannel channel) throws IOException, IllegalAccessException {
+            channel.write(size, field.getLong(value), byteOrder);
+        }
+
+    }
+
+    private static class ShortBinding extends CompiledBinding {
+
+        private final int size;
+
+        private final ByteOrder byteOrder;
+
+        public ShortBinding(Field field, Binding binding, int size, ByteOrder byteOrder) {
+            super(field, binding);
+            this.size = size;
+            this.byteOrder = byteOrder;
+        }
+
+        protected void load(Object object, BitBuffer buffer) throws IllegalAccessException {
+            field.setShort(object, buffer.readAsShort(size, byteOrder));
+        }
+
+        void load(Object object, BitBuffer buffer, long bitPos) throws IllegalAccessException {
+            field.setShort(object, buffer.readAsShort(bitPos, size, byteOrder));
+        }
+
+        protected void save(Object value, BitChannel channel) throws IOException, IllegalAccessException {
+            channel.write(size, field.getShort(value), byteOrder);
+        }
+
+    }
+
+    private static class ByteBinding extends CompiledBinding {
+
+        private final int size;
+
+        private final ByteOrder byteOrder;
+
+        public ByteBinding(Field field, Binding binding, int size, ByteOrder byteOrder) {
+            super(field, binding);
+            this.size = size;
+            this.byteOrder = byteOrder;
+        }
+
+        protected void load(Object object, BitBuffer buffer) throws IllegalAccessException {
+            field.setByte(object, buffer.readAsByte(size, byteOrder));
+        }
+
+        void load(Object object, BitBuffer buffer, long bitPos) throws IllegalAccessException {
+            field.setByte(object, buffer.readAsByte(bitPos, size, byteOrder));
+        }
+
+        protected void save(Object value, BitChannel channel) throws IOException, IllegalAccessException {
+            // As NumericCodec does, ignoring the byte order
+            channel.write(size, field.getByte(value));
+        }
+
+    }
+
+    private static class BooleanBinding extends CompiledBinding {
+
+        public BooleanBinding(Field field, Binding binding) {
+            super(field, binding);
+        }
+
+        protected void load(Object object, BitBuffer buffer) throws IllegalAccessException {
+            field.setBoolean(object, buffer.readAsBoolean());
+        }
+
+        void load(Object object, BitBuffer buffer, long bitPos) throws IllegalAccessException {
+            field.setBoolean(object, buffer.readAsBoolean(bitPos));
+        }
+
+        protected void save(Object value, BitChannel channel) throws IOException, IllegalAccessException {
+            channel.write(field.getBoolean(value));
+        }
+
+    }
+
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.codec;
+
+import org.codehaus.preon.Codec;
+import org.codehaus.preon.CodecDescriptor;
+import org.codehaus.preon.Codecs;
+import org.codehaus.preon.DefaultCodecFactory;
+import org.codehaus.preon.Resolver;
+import org.codehaus.preon.el.Expression;
+import org.codehaus.preon.el.ast.IntegerNode;
+
+/**
+ * The base class of {@link Codec Codecs} generated at compile time by the Preon annotation processor. A generated
+ * {@link Codec} decodes and encodes the fields of its type directly, without reflection and without evaluating
+ * expressions at runtime. Everything that is not needed for decoding and encoding, such as the {@link CodecDescriptor},
+ * is taken from a {@link Codec} created through reflection, which is only constructed once it is requested.
+ * <p/>
+ * The generated {@link Codec} for a class is expected to reside in the package of that class, and to be named after the
+ * class, as defined by {@link #getCodecName(Class)}. Use {@link #find(Class)} to obtain an instance.
+ *
+ * @param <T> The type of object decoded and encoded.
+ */
+public abstract class GeneratedCodec<T> implements Codec<T> {
+
+    /** The suffix appended to the name of a class to obtain the name of its generated {@link Codec}. */
+    public static final String SUFFIX = "_PreonCodec";
+
+    /** The type of object decoded and encoded. */
+    private final Class<T> type;
+
+    /** The size of the encoded representation in bits, or <code>-1</code> if it depends on the data. */
+    private final int size;
+
+    /** The {@link Codec} created through reflection, or <code>null</code> if it has not been requested yet. */
+    private volatile Codec<T> reflective;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param type The type of object decoded and encoded.
+     * @param size The size of the encoded representation in bits, or <code>-1</code> if it depends on the data.
+     */
+    protected GeneratedCodec(Class<T> type, int size) {
+        this.type = type;
+        this.size = size;
+    }
+
+    public Expression<Integer, Resolver> getSize() {
+        if (size >= 0) {
+            return new IntegerNode<Resolver>(size);
+        } else {
+            return getReflectiveCodec().getSize();
+        }
+    }
+
+    public CodecDescriptor getCodecDescriptor() {
+        return getReflectiveCodec().getCodecDescriptor();
+    }
+
+    public Class<?>[] getTypes() {
+        return new Class[]{type};
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Returns the layout of the type, as determined by the {@link Codec} created through reflection.
+     *
+     * @return The layout of the type, or <code>null</code> if the offsets of its fields are not constant.
+     */
+    public Layout getLayout() {
+        return Codecs.getLayout(getReflectiveCodec());
+    }
+
+    /** Returns the {@link Codec} created through reflection, describing the same type as this {@link Codec}. */
+    protected Codec<T> getReflectiveCodec() {
+        Codec<T> result = reflective;
+        if (result == null) {
+            result = new DefaultCodecFactory().create(type);
+            reflective = result;
+        }
+        return result;
+    }
+
+    public String toString() {
+        return "Generated codec of " + type.getSimpleName();
+    }
+
+    /**
+     * Returns the fully qualified name of the generated {@link Codec} for the type passed in. For a class
+     * <code>com.acme.Outer.Inner</code>, that will be <code>com.acme.Outer_Inner_PreonCodec</code>.
+     *
+     * @param type The type for which a {@link Codec} has been generated.
+     * @return The fully qualified name of the generated {@link Codec}.
+     */
+    public static String getCodecName(Class<?> type) {
+        String name = type.getName();
+        int separator = name.lastIndexOf('.');
+        return name.substring(0, separator + 1) + name.substring(separator + 1).replace('$', '_') + SUFFIX;
+    }
+
+    /**
+     * Returns a new instance of the generated {@link Codec} for the type passed in, or <code>null</code> if no
+     * {@link Codec} has been generated for that type.
+     *
+     * @param type The type of object to be decoded and encoded.
+     * @return The generated {@link Codec}, or <code>null</code>.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Codec<T> find(Class<T> type) {
+        try {
+            Class<?> codec = Class.forName(getCodecName(type), true, type.getClassLoader());
+            if (GeneratedCodec.class.isAssignableFrom(codec)) {
+                GeneratedCodec<?> result = (GeneratedCodec<?>) codec.newInstance();
+                if (type.equals(result.getType())) {
+                    return (Codec<T>) result;
+                }
+            }
+            return null;
+        } catch (ClassNotFoundException cnfe) {
+            return null;
+        } catch (InstantiationException ie) {
+            return null;
+        } catch (IllegalAccessException iae) {
+            return null;
+        } catch (LinkageError le) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.codec;
+
+import org.codehaus.preon.NullResolver;
+import org.codehaus.preon.Resolver;
+import org.codehaus.preon.binding.Binding;
+import org.codehaus.preon.el.BindingException;
+import org.codehaus.preon.el.Expression;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The layout of a type of which all fields have a size that does not depend on the data decoded. For such a type, the
+ * position of every field relative to the start of its encoded representation is a constant, so fields can be read at
+ * absolute positions, and the data required can be checked up front.
+ * <p/>
+ * Layouts are only determined for flat types: types of which all fields are bound to primitive values, their
+ * wrappers, enums, strings or arrays of primitive values. The sizes of fields holding other objects are never taken
+ * into account, since evaluating them could require the size of the type itself.
+ *
+ * @see ObjectCodec#getLayout()
+ * @see org.codehaus.preon.Codecs#getLayout(org.codehaus.preon.Codec)
+ */
+public class Layout {
+
+    /** The names of the fields, in the order in which they are encoded. */
+    private final String[] names;
+
+    /** The offsets of the fields, in bits. */
+    private final int[] offsets;
+
+    /** The sizes of the fields, in bits. */
+    private final int[] sizes;
+
+    /** The size of the encoded representation, in bits. */
+    private final int size;
+
+    private Layout(String[] names, int[] offsets, int[] sizes, int size) {
+        this.names = names;
+        this.offsets = offsets;
+        this.sizes = sizes;
+        this.size = size;
+    }
+
+    /**
+     * Determines the layout of a type bound by the bindings passed in.
+     *
+     * @param bindings The bindings of the fields of the type, in the order in which they are encoded.
+     * @return The layout of the type, or <code>null</code> if the offsets of its fields are not constant.
+     */
+    static Layout create(List<Binding> bindings) {
+        int count = bindings.size();
+        String[] names = new String[count];
+        int[] offsets = new int[count];
+        int[] sizes = new int[count];
+        Resolver resolver = new NullResolver();
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            Binding binding = bindings.get(i);
+            if (!isFlat(binding.getType())) {
+                return null;
+            }
+            Expression<Integer, Resolver> size = binding.getSize();
+            if (size == null || size.isParameterized()) {
+                return null;
+            }
+            try {
+                sizes[i] = size.eval(resolver);
+            } catch (BindingException be) {
+                return null;
+            }
+            names[i] = binding.getName();
+            offsets[i] = offset;
+            offset += sizes[i];
+        }
+        return new Layout(names, offsets, sizes, offset);
+    }
+
+    private static boolean isFlat(Class<?> type) {
+        if (type == null) {
+            return false;
+        } else if (type.isArray()) {
+            return type.getComponentType().isPrimitive();
+        } else {
+            return type.isPrimitive() || type.isEnum() || type == String.class || type == Boolean.class
+                    || type == Byte.class || type == Short.class || type == Integer.class || type == Long.class
+                    || type == Float.class || type == Double.class;
+        }
+    }
+
+    /**
+     * Returns the size of the encoded representation.
+     *
+     * @return The size of the encoded representation, in bits.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the names of the fields, in the order in which they are encoded.
+     *
+     * @return The names of the fields, in the order in which they are encoded.
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * Returns the position of a field, relative to the start of the encoded representation.
+     *
+     * @param name The name of the field.
+     * @return The offset of the field, in bits.
+     * @throws IllegalArgumentException If there is no field with the given name.
+     */
+    public int getOffset(String name) {
+        return offsets[indexOf(name)];
+    }
+
+    /**
+     * Returns the size of a field.
+     *
+     * @param name The name of the field.
+     * @return The size of the field, in bits.
+     * @throws IllegalArgumentException If there is no field with the given name.
+     */
+    public int getSize(String name) {
+        return sizes[indexOf(name)];
+    }
+
+    /** Returns the offset of the field at the given index, in the order in which the fields are encoded. */
+    int getOffset(int index) {
+        return offsets[index];
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No field called " + name + ".");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Layout of ").append(size).append(" bits [");
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(names[i]).append('@').append(offsets[i]).append(':').append(sizes[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+}
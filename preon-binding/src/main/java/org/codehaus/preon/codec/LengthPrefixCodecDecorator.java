@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.codec;
+
+import org.codehaus.preon.el.Expression;
+import org.codehaus.preon.el.Expressions;
+import nl.flotsam.pecia.Documenter;
+import nl.flotsam.pecia.ParaContents;
+import nl.flotsam.pecia.SimpleContents;
+import org.codehaus.preon.*;
+import org.codehaus.preon.annotation.LengthPrefix;
+import org.codehaus.preon.buffer.BitBuffer;
+import org.codehaus.preon.buffer.ByteOrder;
+import org.codehaus.preon.channel.BitChannel;
+import org.codehaus.preon.channel.ByteBufferBitChannel;
+import org.codehaus.preon.channel.SeekableBitChannel;
+import org.codehaus.preon.descriptor.Documenters;
+
+import java.io.IOException;
+import java.lang.reflect.AnnotatedElement;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link CodecDecorator} creating {@link Codec Codecs} for values preceded by their length in bytes. Triggered by
+ * the {@link LengthPrefix} annotation.
+ * <p/>
+ * When encoding to a {@link SeekableBitChannel}, room for the length is reserved, the value is encoded right behind
+ * it, and the length is patched in afterwards, so the value is encoded only once, without intermediate copies. Other
+ * channels receive a copy of the value, encoded into a separate buffer first.
+ */
+public class LengthPrefixCodecDecorator implements CodecDecorator {
+
+    public <T> Codec<T> decorate(Codec<T> decorated, AnnotatedElement metadata,
+                                 Class<T> type, ResolverContext context) {
+        LengthPrefix prefix = null;
+        if (type.isAnnotationPresent(LengthPrefix.class)) {
+            prefix = type.getAnnotation(LengthPrefix.class);
+        } else if (metadata != null && metadata.isAnnotationPresent(LengthPrefix.class)) {
+            prefix = metadata.getAnnotation(LengthPrefix.class);
+        }
+        if (prefix != null) {
+            return new LengthPrefixCodec<T>(decorated, Expressions.createInteger(context, prefix.size()),
+                    prefix.endian(), prefix.inclusive());
+        } else {
+            return decorated;
+        }
+    }
+
+    private static class LengthPrefixCodec<T> implements Codec<T> {
+
+        private final Codec<T> decorated;
+
+        /** The number of bits used to represent the length. */
+        private final Expression<Integer, Resolver> sizeExpr;
+
+        private final ByteOrder endian;
+
+        /** Whether the length includes the bytes occupied by the prefix itself. */
+        private final boolean inclusive;
+
+        public LengthPrefixCodec(Codec<T> decorated, Expression<Integer, Resolver> sizeExpr, ByteOrder endian,
+                                 boolean inclusive) {
+            this.decorated = decorated;
+            this.sizeExpr = sizeExpr;
+            this.endian = endian;
+            this.inclusive = inclusive;
+        }
+
+        public T decode(BitBuffer buffer, Resolver resolver, Builder builder)
+                throws DecodingException {
+            int nrBits = sizeExpr.eval(resolver);
+            long length = buffer.readAsLong(nrBits, endian) - getPrefixBytes(nrBits);
+            if (length < 0) {
+                throw new DecodingException("Length prefix smaller than the prefix itself.");
+            }
+            return decorated.decode(buffer.slice(length << 3), resolver, builder);
+        }
+
+        public void encode(T value, BitChannel channel, Resolver resolver) throws IOException {
+            int nrBits = sizeExpr.eval(resolver);
+            if (channel instanceof SeekableBitChannel) {
+                SeekableBitChannel seekable = (SeekableBitChannel) channel;
+                long prefixPos = seekable.reserve(nrBits);
+                decorated.encode(value, channel, resolver);
+                long bits = seekable.getBitPos() - prefixPos - nrBits;
+                if ((bits & 7) != 0) {
+                    channel.write(8 - (int) (bits & 7), (byte) 0);
+                }
+                long length = ((bits + 7) >>> 3) + getPrefixBytes(nrBits);
+                seekable.patch(prefixPos, nrBits, length, endian);
+            } else {
+                ByteBufferBitChannel content = new ByteBufferBitChannel();
+                decorated.encode(value, content, resolver);
+                content.close();
+                ByteBuffer encoded = content.getByteBuffer();
+                byte[] bytes = new byte[encoded.remaining()];
+                encoded.get(bytes);
+                channel.write(nrBits, (long) bytes.length + getPrefixBytes(nrBits), endian);
+                channel.write(bytes, 0, bytes.length);
+            }
+        }
+
+        private int getPrefixBytes(int nrBits) {
+            return inclusive ? (nrBits + 7) >>> 3 : 0;
+        }
+
+        public Class<?>[] getTypes() {
+            return decorated.getTypes();
+        }
+
+        /**
+         * Returns the size of the prefix and the value padded to a whole number of bytes, if both are known in advance,
+         * or <code>null</code> otherwise.
+         */
+        public Expression<Integer, Resolver> getSize() {
+            Expression<Integer, Resolver> size = decorated.getSize();
+            if (size == null || size.isParameterized() || sizeExpr.isParameterized()) {
+                return null;
+            }
+            NullResolver resolver = new NullResolver();
+            int bits = ((size.eval(resolver) + 7) >>> 3) << 3;
+            return Expressions.createInteger(sizeExpr.eval(resolver) + bits, Resolver.class);
+        }
+
+        public Class<?> getType() {
+            return decorated.getType();
+        }
+
+        public CodecDescriptor getCodecDescriptor() {
+            return new CodecDescriptor() {
+
+                public <C extends SimpleContents<?>> Documenter<C> details(
+                        final String bufferReference) {
+                    return new Documenter<C>() {
+                        public void document(C target) {
+                            target.para().text("The format precedes ")
+                                    .document(
+                                            decorated.getCodecDescriptor()
+                                                    .reference(Adjective.THE, false))
+                                    .text(" by its length in bytes, represented as a ")
+                                    .document(Documenters.forExpression(sizeExpr))
+                                    .text("-bit " + (endian == ByteOrder.BigEndian ? "big" : "little")
+                                            + " endian integer.")
+                                    .end();
+                            target.document(decorated.getCodecDescriptor()
+                                    .details(bufferReference));
+                        }
+                    };
+                }
+
+                public String getTitle() {
+                    return null;
+                }
+
+                public <C extends ParaContents<?>> Documenter<C> reference(
+                        Adjective adjective, boolean startWithCapital) {
+                    return decorated.getCodecDescriptor().reference(adjective, false);
+                }
+
+                public boolean requiresDedicatedSection() {
+                    return false;
+                }
+
+                public <C extends ParaContents<?>> Documenter<C> summary() {
+                    return decorated.getCodecDescriptor().summary();
+                }
+
+            };
+        }
+
+    }
+
+}
@@ -26,6 +26,7 @@ package org.codehaus.preon.codec;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -338,6 +339,11 @@ public class ListCodecFactory implements CodecFactory {
 
     private static class DynamicListCodec<T> implements Codec<List<T>> {
 
+        /**
+         * The maximum number of elements decoded at once, if elements are decoded in bulk.
+         */
+        private static final int CHUNK_SIZE = 1024;
+
         private Codec<T> codec;
 
         public DynamicListCodec(Codec<T> codec) {
@@ -347,6 +353,9 @@ public class ListCodecFactory implements CodecFactory {
         public List<T> decode(BitBuffer buffer, Resolver resolver,
                               Builder builder) throws DecodingException {
             List<T> result = new LinkedList<T>();
+            if (codec instanceof NumericCodec && ((NumericCodec) codec).isArrayDecodingSupported()) {
+                decodeChunks((NumericCodec) codec, buffer, resolver, result);
+            }
             long mark = buffer.getBitPos();
             try {
                 while (true) {
@@ -367,6 +376,27 @@ public class ListCodecFactory implements CodecFactory {
             return result;
         }
 
+        /**
+         * Decodes as many elements as the buffer is holding, in chunks of at most {@link #CHUNK_SIZE} elements. If the
+         * size of the buffer is not known (yet), as with a {@link org.codehaus.preon.buffer.StreamingBitBuffer}, the
+         * elements are left to be decoded one by one. Any remaining elements will be decoded one by one as well.
+         */
+        @SuppressWarnings("unchecked")
+        private void decodeChunks(NumericCodec codec, BitBuffer buffer, Resolver resolver, List<T> result) {
+            int elementSize = codec.getSize().eval(resolver);
+            while (buffer.getBitBufBitSize() != Long.MAX_VALUE) {
+                long remaining = (buffer.getBitBufBitSize() - buffer.getBitPos()) / elementSize;
+                if (remaining <= 0) {
+                    return;
+                }
+                int count = (int) Math.min(remaining, CHUNK_SIZE);
+                Object values = codec.decodeArray(buffer, resolver, count);
+                for (int i = 0; i < count; i++) {
+                    result.add((T) Array.get(values, i));
+                }
+            }
+        }
+
         public void encode(List<T> value, BitChannel channel, Resolver resolver) {
             throw new UnsupportedOperationException();
         }
@@ -47,6 +47,7 @@ import org.codehaus.preon.ResolverContext;
 import org.codehaus.preon.annotation.Bound;
 import org.codehaus.preon.annotation.BoundNumber;
 import org.codehaus.preon.buffer.BitBuffer;
+import org.codehaus.preon.buffer.BitBufferException;
 import org.codehaus.preon.buffer.ByteOrder;
 import org.codehaus.preon.channel.BitChannel;
 import org.codehaus.preon.descriptor.Documenters;
@@ -129,6 +130,33 @@ public class NumericCodec implements Codec<Object> {
         return type.getType();
     }
 
+    /**
+     * Returns whether {@link #decodeArray(BitBuffer, Resolver, int)} can be used instead of decoding values one by
+     * one. This is not the case if every individual value needs to be checked against an expected value.
+     */
+    boolean isArrayDecodingSupported() {
+        return matchExpr == null;
+    }
+
+    /**
+     * Returns whether values can be decoded and encoded without evaluating any expression, since the size does not
+     * depend on the context, and no particular value is expected.
+     */
+    boolean isFixed() {
+        return matchExpr == null && !sizeExpr.isParameterized();
+    }
+
+    /**
+     * Decodes <code>count</code> consecutive values at once, using the bulk operations of the {@link BitBuffer}.
+     *
+     * @return An array of the primitive type corresponding to {@link #getType()}, such as an <code>int[]</code> for
+     *         {@link Integer}s.
+     */
+    Object decodeArray(BitBuffer buffer, Resolver resolver, int count) {
+        int size = ((Number) (this.sizeExpr.eval(resolver))).intValue();
+        return type.decodeArray(buffer, count, size, byteOrder);
+    }
+
     public CodecDescriptor getCodecDescriptor() {
         return new CodecDescriptor() {
 
@@ -212,6 +240,16 @@ public class NumericCodec implements Codec<Object> {
                 return java.lang.Float.intBitsToFloat(value);
             }
 
+            public float[] decodeArray(BitBuffer buffer, int count, int size, ByteOrder endian) {
+                int[] values = new int[count];
+                buffer.readAsIntArray(values, 0, count, size, endian);
+                float[] result = new float[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = java.lang.Float.intBitsToFloat(values[i]);
+                }
+                return result;
+            }
+
             public void encode(BitChannel channel, int size, ByteOrder endian, Object value) {
                 throw new UnsupportedOperationException("Encoding not supported for floats.");
             }
@@ -233,6 +271,16 @@ public class NumericCodec implements Codec<Object> {
                         size, endian));
             }
 
+            public double[] decodeArray(BitBuffer buffer, int count, int size, ByteOrder endian) {
+                long[] values = new long[count];
+                buffer.readAsLongArray(values, 0, count, size, endian);
+                double[] result = new double[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = java.lang.Double.longBitsToDouble(values[i]);
+                }
+                return result;
+            }
+
             public void encode(BitChannel channel, int size, ByteOrder endian, Object value) {
                 throw new UnsupportedOperationException("Encoding not supported for doubles.");
             }
@@ -252,6 +300,12 @@ public class NumericCodec implements Codec<Object> {
                 return buffer.readAsInt(size, endian);
             }
 
+            public int[] decodeArray(BitBuffer buffer, int count, int size, ByteOrder endian) {
+                int[] result = new int[count];
+                buffer.readAsIntArray(result, 0, count, size, endian);
+                return result;
+            }
+
             public void encode(BitChannel channel, int size, ByteOrder endian, Object value) throws IOException {
                 channel.write(size, (Integer) value, endian);
             }
@@ -270,6 +324,12 @@ public class NumericCodec implements Codec<Object> {
                 return buffer.readAsLong(size, endian);
             }
 
+            public long[] decodeArray(BitBuffer buffer, int count, int size, ByteOrder endian) {
+                long[] result = new long[count];
+                buffer.readAsLongArray(result, 0, count, size, endian);
+                return result;
+            }
+
             public void encode(BitChannel channel, int size, ByteOrder endian, Object value) throws IOException {
                 channel.write(size, (Long) value, endian);
             }
@@ -288,6 +348,19 @@ public class NumericCodec implements Codec<Object> {
                 return buffer.readAsShort(size, endian);
             }
 
+            public short[] decodeArray(BitBuffer buffer, int count, int size, ByteOrder endian) {
+                if (size > 16) {
+                    throw new BitBufferException("Cannot read " + size + " bits using 16 bit long numberBuf.");
+                }
+                int[] values = new int[count];
+                buffer.readAsIntArray(values, 0, count, size, endian);
+                short[] result = new short[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = (short) values[i];
+                }
+                return result;
+            }
+
             public void encode(BitChannel channel, int size, ByteOrder endian, Object value) throws IOException {
                 channel.write(size, (Short) value, endian);
             }
@@ -306,6 +379,19 @@ public class NumericCodec implements Codec<Object> {
                 return buffer.readAsByte(size, endian);
             }
 
+            public byte[] decodeArray(BitBuffer buffer, int count, int size, ByteOrder endian) {
+                if (size > 8) {
+                    throw new BitBufferException("Cannot read " + size + " bits using 8 bit long numberBuf.");
+                }
+                int[] values = new int[count];
+                buffer.readAsIntArray(values, 0, count, size, endian);
+                byte[] result = new byte[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = (byte) values[i];
+                }
+                return result;
+            }
+
             public void encode(BitChannel channel, int size, ByteOrder endian, Object value) throws IOException {
                 channel.write(size, (Byte) value);
             }
@@ -320,6 +406,14 @@ public class NumericCodec implements Codec<Object> {
         public abstract Object decode(BitBuffer buffer, int size,
                                       ByteOrder endian);
 
+        /**
+         * Decodes <code>count</code> consecutive values at once, using the bulk operations of the {@link BitBuffer}.
+         *
+         * @return An array of the primitive type corresponding to {@link #getType()}.
+         */
+        public abstract Object decodeArray(BitBuffer buffer, int count, int size,
+                                           ByteOrder endian);
+
         public abstract void encode(BitChannel channel, int size, ByteOrder endian, Object value) throws IOException;
 
         public abstract Class<?> getType();
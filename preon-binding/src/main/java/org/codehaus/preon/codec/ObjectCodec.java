@@ -29,6 +29,7 @@ import org.codehaus.preon.descriptor.Documenters;
 import org.codehaus.preon.channel.BitChannel;
 import org.codehaus.preon.binding.Binding;
 import org.codehaus.preon.buffer.BitBuffer;
+import org.codehaus.preon.buffer.BitBufferUnderflowException;
 import org.codehaus.preon.el.ObjectResolverContext;
 import org.codehaus.preon.rendering.IdentifierRewriter;
 import org.codehaus.preon.el.Expression;
@@ -39,6 +40,7 @@ import nl.flotsam.pecia.Table3Cols;
 import nl.flotsam.pecia.ParaContents;
 
 import java.util.List;
+import java.lang.reflect.Constructor;
 import java.io.IOException;
 
 /**
@@ -55,6 +57,15 @@ public class ObjectCodec<T> implements Codec<T> {
 
     private final ObjectResolverContext context;
 
+    /** The layout of the type, if {@link #analyzed}. */
+    private Layout layout;
+
+    /** Whether {@link #layout} has been determined. */
+    private volatile boolean analyzed;
+
+    /** The default constructor of {@link #type}, looked up once it is needed by the {@link DefaultBuilder}. */
+    private volatile Constructor<T> constructor;
+
     public ObjectCodec(Class<T> type, IdentifierRewriter rewriter,
                        ObjectResolverContext context) {
         assert type != null;
@@ -70,11 +81,16 @@ public class ObjectCodec<T> implements Codec<T> {
         assert buffer != null;
         assert builder != null;
         try {
-            final T result = builder.create(type);
+            final T result = create(builder);
             resolver = context.getResolver(result, resolver);
             // TODO: I think I need a replacement resolver here.
-            for (Binding binding : context.getBindings()) {
-                binding.load(result, buffer, resolver, builder);
+            Layout layout = getLayout();
+            if (layout == null) {
+                for (Binding binding : context.getBindings()) {
+                    binding.load(result, buffer, resolver, builder);
+                }
+            } else {
+                load(result, layout, buffer, resolver, builder);
             }
             return result;
         }
@@ -87,6 +103,60 @@ public class ObjectCodec<T> implements Codec<T> {
         }
     }
 
+    /**
+     * Creates a new instance of {@link #type}. Rather than having the {@link DefaultBuilder} look up the constructor
+     * every time, the constructor is held by this codec.
+     */
+    private T create(Builder builder) throws InstantiationException, IllegalAccessException {
+        if (builder.getClass() != DefaultBuilder.class) {
+            return builder.create(type);
+        }
+        Constructor<T> result = constructor;
+        if (result == null) {
+            result = DefaultBuilder.getConstructor(type);
+            constructor = result;
+        }
+        return DefaultBuilder.newInstance(result);
+    }
+
+    /**
+     * Loads all fields at the constant positions defined by the layout, checking once if the buffer holds enough data,
+     * and reading compiled fields at their absolute position.
+     */
+    private void load(T result, Layout layout, BitBuffer buffer, Resolver resolver, Builder builder)
+            throws DecodingException, IllegalAccessException {
+        long start = buffer.getBitPos();
+        if (layout.getSize() > buffer.getBitBufBitSize() - start) {
+            throw new BitBufferUnderflowException(start, layout.getSize());
+        }
+        List<Binding> bindings = context.getBindings();
+        for (int i = 0; i < bindings.size(); i++) {
+            Binding binding = bindings.get(i);
+            long bitPos = start + layout.getOffset(i);
+            if (binding instanceof CompilingBindingFactory.CompiledBinding) {
+                ((CompilingBindingFactory.CompiledBinding) binding).load(result, buffer, bitPos);
+            } else {
+                buffer.setBitPos(bitPos);
+                binding.load(result, buffer, resolver, builder);
+            }
+        }
+        buffer.setBitPos(start + layout.getSize());
+    }
+
+    /**
+     * Returns the layout of the type, if all of its fields have a constant size. The layout is determined when it is
+     * first needed, since the {@link Codec Codecs} of the fields may not have been fully constructed before.
+     *
+     * @return The layout of the type, or <code>null</code> if the offsets of its fields are not constant.
+     */
+    public Layout getLayout() {
+        if (!analyzed) {
+            layout = Layout.create(context.getBindings());
+            analyzed = true;
+        }
+        return layout;
+    }
+
     public void encode(T value, BitChannel channel, Resolver resolver) throws IOException {
         resolver = context.getResolver(value, resolver);
         for (Binding binding : context.getBindings()) {
@@ -60,7 +60,7 @@ public class AnnotationUtils {
     }
 
     public static int calculateHashCode(AnnotatedElement metadata) {
-        if (metadata == null) {
+        if (metadata != null) {
             int result = 0;
             for (Annotation annotation : metadata.getAnnotations()) {
                 result += annotation.hashCode();
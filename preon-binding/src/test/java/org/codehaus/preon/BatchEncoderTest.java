@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon;
+
+import org.codehaus.preon.annotation.BoundNumber;
+import org.codehaus.preon.buffer.ByteOrder;
+import org.codehaus.preon.channel.ByteBufferBitChannel;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BatchEncoderTest {
+
+    @Test
+    public void testEncodingBackToBack() throws IOException {
+        BatchEncoder<Record> encoder = new BatchEncoder<Record>(Codecs.create(Record.class));
+        ByteBufferBitChannel channel = new ByteBufferBitChannel();
+        long[] index = encoder.encode(new Record[]{new Record(0xabc), new Record(0xdef)}, channel);
+        assertArrayEquals(new long[]{0, 12, 24}, index);
+        assertArrayEquals(new byte[]{(byte) 0xab, (byte) 0xcd, (byte) 0xef}, toArray(channel.getByteBuffer()));
+    }
+
+    @Test
+    public void testEncodingByteAligned() throws IOException {
+        BatchEncoder<Record> encoder = new BatchEncoder<Record>(Codecs.create(Record.class), true);
+        List<Record> records = new ArrayList<Record>();
+        for (int i = 0; i < 100; i++) {
+            records.add(new Record(i));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(200);
+        long[] index = encoder.encode(records, new ByteBufferBitChannel(buffer));
+        assertEquals(101, index.length);
+        for (int i = 0; i <= 100; i++) {
+            assertEquals(i * 16, index[i]);
+        }
+        assertEquals(200, buffer.position());
+        assertEquals(99 << 4, (buffer.get(198) & 0xff) << 8 | buffer.get(199) & 0xff);
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+    public static class Record {
+
+        @BoundNumber(size = "12", byteOrder = ByteOrder.BigEndian)
+        int value;
+
+        public Record() {
+        }
+
+        public Record(int value) {
+            this.value = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon;
+
+import org.codehaus.preon.annotation.Bound;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CodecRegistryTest {
+
+    private CodecRegistry registry;
+
+    @Before
+    public void createRegistry() {
+        registry = new CodecRegistry(new DefaultCodecFactory());
+    }
+
+    @Test
+    public void shouldShareCodecs() throws DecodingException {
+        Codec<Spam> codec = registry.get(Spam.class);
+        assertSame(codec, registry.get(Spam.class));
+        assertNotSame(codec, registry.get(Eggs.class));
+        assertEquals(2, registry.size());
+        assertEquals(3, Codecs.decode(codec, (byte) 3).value);
+    }
+
+    @Test
+    public void shouldShareCodecsCreatedByCodecs() {
+        assertSame(Codecs.create(Spam.class), Codecs.create(Spam.class));
+    }
+
+    @Test
+    public void shouldShareCodecsAmongThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Codec<Spam>>> results = new ArrayList<Future<Codec<Spam>>>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(new Callable<Codec<Spam>>() {
+                    public Codec<Spam> call() {
+                        return registry.get(Spam.class);
+                    }
+                }));
+            }
+            Codec<Spam> codec = registry.get(Spam.class);
+            for (Future<Codec<Spam>> result : results) {
+                assertSame(codec, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldEvictCodecs() {
+        Codec<Spam> codec = registry.get(Spam.class);
+        registry.get(Eggs.class);
+        registry.evict(Eggs.class);
+        assertEquals(1, registry.size());
+        registry.evict(new URLClassLoader(new URL[0], Spam.class.getClassLoader()));
+        assertSame(codec, registry.get(Spam.class));
+        registry.evict(Spam.class.getClassLoader());
+        assertEquals(0, registry.size());
+        assertNotSame(codec, registry.get(Spam.class));
+    }
+
+    public static class Spam {
+
+        @Bound
+        byte value;
+
+    }
+
+    public static class Eggs {
+
+        @Bound
+        boolean value;
+
+    }
+
+}
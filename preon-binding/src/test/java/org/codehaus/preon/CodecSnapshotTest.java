@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.preon.annotation.Bound;
+import org.codehaus.preon.annotation.BoundNumber;
+import org.codehaus.preon.annotation.BoundObject;
+import org.codehaus.preon.buffer.ByteOrder;
+import org.codehaus.preon.el.ExpressionCache;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class CodecSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void createFile() {
+        file = new File(folder.getRoot(), "codecs.snapshot");
+        ExpressionCache.clear();
+    }
+
+    @Test
+    public void shouldWriteSnapshot() throws DecodingException {
+        CodecSnapshot snapshot = new CodecSnapshot(file);
+        assertFalse(snapshot.isCurrent(Record.class));
+        Codec<Record> codec = snapshot.create(Record.class);
+        assertTrue(file.isFile());
+        assertTrue(snapshot.isCurrent(Record.class));
+        assertFalse(snapshot.isCurrent(Header.class));
+        Record record = Codecs.decode(codec, (byte) 1, (byte) 0x05, (byte) 0xf0);
+        assertEquals(0x05f, record.header.value);
+    }
+
+    @Test
+    public void shouldReuseSnapshot() throws DecodingException {
+        Codecs.create(Record.class, file);
+        long written = file.lastModified();
+        ExpressionCache.clear();
+        Codec<Record> codec = Codecs.create(Record.class, file);
+        assertTrue(ExpressionCache.size() > 0);
+        assertEquals(written, file.lastModified());
+        Record record = Codecs.decode(codec, (byte) 1, (byte) 0x05, (byte) 0xf0);
+        assertEquals(0x05f, record.header.value);
+    }
+
+    @Test
+    public void shouldOnlySaveExpressionsOfCodec() {
+        Codecs.create(Record.class);
+        int used = ExpressionCache.size();
+        ExpressionCache.clear();
+        Codecs.create(OtherHeader.class);
+        new CodecSnapshot(file).create(Record.class);
+        ExpressionCache.clear();
+        new CodecSnapshot(file).create(Record.class);
+        assertEquals(used, ExpressionCache.size());
+        // Nothing but the snapshot itself is left behind.
+        assertArrayEquals(new String[]{file.getName()}, folder.getRoot().list());
+    }
+
+    @Test
+    public void shouldReplaceCorruptSnapshot() throws Exception {
+        FileUtils.writeStringToFile(file, "corrupt");
+        CodecSnapshot snapshot = new CodecSnapshot(file);
+        assertFalse(snapshot.isCurrent(Record.class));
+        assertNotNull(snapshot.create(Record.class));
+        assertTrue(snapshot.isCurrent(Record.class));
+    }
+
+    @Test
+    public void shouldFingerprintFieldsAndAnnotations() {
+        assertEquals(CodecSnapshot.getFingerprint(Header.class), CodecSnapshot.getFingerprint(Header.class));
+        assertFalse(CodecSnapshot.getFingerprint(Header.class) == CodecSnapshot.getFingerprint(OtherHeader.class));
+        assertFalse(CodecSnapshot.getFingerprint(Header.class) == CodecSnapshot.getFingerprint(Record.class));
+    }
+
+    public static class Record {
+
+        @BoundObject
+        Header header;
+
+    }
+
+    public static class Header {
+
+        @Bound
+        byte length;
+
+        @BoundNumber(size = "length * 8 + 4", byteOrder = ByteOrder.BigEndian)
+        int value;
+
+    }
+
+    public static class OtherHeader {
+
+        @Bound
+        byte length;
+
+        @BoundNumber(size = "length * 8 + 3", byteOrder = ByteOrder.BigEndian)
+        int value;
+
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DefaultBuilderTest {
+
+    private DefaultBuilder builder;
+
+    @Before
+    public void createBuilder() {
+        builder = new DefaultBuilder();
+    }
+
+    @Test
+    public void shouldCreateNewInstances() throws Exception {
+        Spam first = builder.create(Spam.class);
+        Spam second = builder.create(Spam.class);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotSame(first, second);
+        assertEquals(3, second.eggs);
+    }
+
+    @Test(expected = InstantiationException.class)
+    public void shouldRejectTypesWithoutDefaultConstructor() throws Exception {
+        builder.create(Bacon.class);
+    }
+
+    @Test
+    public void shouldReportFailingConstructors() throws Exception {
+        try {
+            builder.create(Ham.class);
+            fail();
+        } catch (InstantiationException ie) {
+            assertTrue(ie.getCause() instanceof UnsupportedOperationException);
+        }
+    }
+
+    @Test
+    public void shouldNotKeepClassesFromBeingUnloaded() throws Exception {
+        URL location = Spam.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader loader = new URLClassLoader(new URL[]{location}, null);
+        Class<?> type = loader.loadClass(Spam.class.getName());
+        assertNotSame(Spam.class, type);
+        assertNotNull(builder.create(type));
+        WeakReference<Class<?>> reference = new WeakReference<Class<?>>(type);
+        type = null;
+        loader = null;
+        for (int i = 0; i < 10 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+    }
+
+    public static class Spam {
+        private int eggs = 3;
+    }
+
+    public static class Bacon {
+        public Bacon(int slices) {
+        }
+    }
+
+    public static class Ham {
+        public Ham() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
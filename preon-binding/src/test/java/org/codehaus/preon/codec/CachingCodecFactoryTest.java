@@ -26,10 +26,18 @@ package org.codehaus.preon.codec;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.codehaus.preon.Codec;
 import org.codehaus.preon.CodecFactory;
+import org.codehaus.preon.ResolverContext;
 
 import org.easymock.EasyMock;
 
@@ -70,4 +78,38 @@ public class CachingCodecFactoryTest extends TestCase {
         EasyMock.verify(metadata, delegate, codec1, codec2);
     }
 
+    /** Tests if the {@link CachingCodecFactory} constructs a codec only once, even if requested concurrently. */
+    public void testConcurrentCreation() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        final CachingCodecFactory factory = new CachingCodecFactory(new CodecFactory() {
+            @SuppressWarnings("unchecked")
+            public <T> Codec<T> create(AnnotatedElement metadata, Class<T> type, ResolverContext context) {
+                created.incrementAndGet();
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                return (Codec<T>) codec1;
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Codec<String>>> results = new ArrayList<Future<Codec<String>>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Codec<String>>() {
+                    public Codec<String> call() {
+                        return factory.create(null, String.class, null);
+                    }
+                }));
+            }
+            for (Future<Codec<String>> result : results) {
+                assertNotNull(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, created.get());
+    }
+
 }
@@ -31,6 +31,7 @@ import org.codehaus.preon.annotation.Choices.Choice;
 import org.codehaus.preon.binding.BindingFactory;
 import org.codehaus.preon.binding.ConditionalBindingFactory;
 import org.codehaus.preon.binding.StandardBindingFactory;
+import org.codehaus.preon.buffer.BitBufferUnderflowException;
 import org.codehaus.preon.codec.IntegrationTest.Test21.Test23;
 import org.codehaus.preon.el.ImportStatic;
 import org.junit.Before;
@@ -38,10 +39,12 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.codehaus.preon.buffer.ByteOrder.BigEndian;
@@ -94,6 +97,46 @@ public class IntegrationTest {
         assertEquals(14, encoded[2]);
     }
 
+    @Test
+    public void testEncodingFile() throws IOException, DecodingException {
+        Codec<Test1> codec = Codecs.create(Test1.class);
+        Test1 object = new Test1();
+        object.value1 = 12;
+        object.value2 = 13;
+        object.value3 = 14;
+        File file = folder.newFile("test1.bin");
+        Codecs.encode(object, codec, file);
+        assertEquals(3, file.length());
+        Test1 replica = Codecs.decode(codec, file);
+        assertEquals(12, replica.value1);
+        assertEquals(13, replica.value2);
+        assertEquals(14, replica.value3);
+    }
+
+    @Test
+    public void testEncodingIntoBuffer() throws IOException {
+        Codec<Test1> codec = Codecs.create(Test1.class);
+        Test1 object = new Test1();
+        object.value1 = 12;
+        object.value2 = 13;
+        object.value3 = 14;
+        byte[] buffer = new byte[5];
+        assertEquals(24, Codecs.encode(object, codec, buffer, 1));
+        assertArrayEquals(new byte[]{0, 12, 13, 14, 0}, buffer);
+    }
+
+    @Test
+    public void testSizeOf() throws IOException {
+        Codec<Test1> codec = Codecs.create(Test1.class);
+        assertEquals(24, Codecs.sizeOf(new Test1(), codec));
+        Codec<Test6> conditional = Codecs.create(Test6.class);
+        Test6 object = new Test6();
+        object.value1 = 5;
+        assertEquals(16, Codecs.sizeOf(object, conditional));
+        object.value1 = 1;
+        assertEquals(8, Codecs.sizeOf(object, conditional));
+    }
+
     @Test
     public void testSomeFieldsTransient() throws DecodingException, FileNotFoundException {
         Codec<Test2> codec = Codecs.create(Test2.class);
@@ -569,6 +612,73 @@ public class IntegrationTest {
         assertEquals(0, out.list.get(0).b);
     }
 
+    @Test
+    public void testLengthPrefix() throws Exception {
+        Codec<Test55> codec = Codecs.create(Test55.class);
+        byte[] data = new byte[]{1, 0, 3, (byte) 0xab, (byte) 0xc0, 0, 2};
+        Test55 out = Codecs.decode(codec, data);
+        assertEquals(1, out.before);
+        assertEquals(0xabc, out.nested.value);
+        assertEquals(2, out.after);
+    }
+
+    @Test
+    public void testEncodingLengthPrefix() throws Exception {
+        Codec<Test55> codec = Codecs.create(Test55.class);
+        Test55 object = new Test55();
+        object.before = 1;
+        object.nested = new Test55_1();
+        object.nested.value = 0xabc;
+        object.after = 2;
+        byte[] expected = new byte[]{1, 0, 2, (byte) 0xab, (byte) 0xc0, 2};
+        assertArrayEquals(expected, Codecs.encode(object, codec));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Codecs.encode(object, codec, out);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    public void testCompiled() throws Exception {
+        Codec<Test56> reflective = Codecs.create(Test56.class);
+        Codec<Test56> compiled = Codecs.compile(Test56.class);
+        byte[] data = new byte[]{(byte) 0x81, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, (byte) 0xf0};
+        Test56 expected = Codecs.decode(reflective, data);
+        Test56 result = Codecs.decode(compiled, data);
+        assertTrue(result.flag);
+        assertEquals(expected.flag, result.flag);
+        assertEquals(expected.version, result.version);
+        assertEquals(expected.sequence, result.sequence);
+        assertEquals(expected.timestamp, result.timestamp);
+        assertEquals(expected.ssrc, result.ssrc);
+        assertEquals(expected.payloadType, result.payloadType);
+        assertEquals(expected.marker, result.marker);
+        assertEquals(0x0102, result.sequence);
+        assertArrayEquals(Codecs.encode(expected, reflective), Codecs.encode(result, compiled));
+        assertEquals(reflective.getSize().eval(null), compiled.getSize().eval(null));
+    }
+
+    @Test
+    public void testLayout() throws Exception {
+        Codec<Test56> compiled = Codecs.compile(Test56.class);
+        Layout layout = Codecs.getLayout(compiled);
+        assertNotNull(layout);
+        assertEquals(128, layout.getSize());
+        assertEquals(Arrays.asList("flag", "version", "sequence", "timestamp", "ssrc", "payloadType", "marker"),
+                layout.getNames());
+        assertEquals(8, layout.getOffset("sequence"));
+        assertEquals(88, layout.getOffset("ssrc"));
+        assertEquals(32, layout.getSize("ssrc"));
+        assertEquals(127, layout.getOffset("marker"));
+        assertEquals(layout.getSize(), Codecs.getLayout(Codecs.create(Test56.class)).getSize());
+        assertNull(Codecs.getLayout(Codecs.create(Test3.class)));
+        try {
+            Codecs.decode(compiled, new byte[15]);
+            fail("Expecting the missing bits to be detected up front.");
+        } catch (BitBufferUnderflowException bbue) {
+            // What we expect
+        }
+    }
+
 
     private static class TestResolver implements Resolver {
 
@@ -1104,5 +1214,51 @@ public class IntegrationTest {
         }
     }
 
+    public static class Test55 {
+
+        @Bound
+        byte before;
+
+        @BoundObject
+        @LengthPrefix(size = "16", endian = BigEndian)
+        Test55_1 nested;
+
+        @Bound
+        byte after;
+
+    }
+
+    public static class Test55_1 {
+
+        @BoundNumber(size = "12", byteOrder = BigEndian)
+        int value;
+
+    }
+
+    public static class Test56 {
+
+        @Bound
+        boolean flag;
+
+        @BoundNumber(size = "7")
+        byte version;
+
+        @BoundNumber(byteOrder = BigEndian)
+        short sequence;
+
+        @BoundNumber(byteOrder = BigEndian)
+        long timestamp;
+
+        @Bound
+        int ssrc;
+
+        @BoundNumber(size = "7")
+        byte payloadType;
+
+        @Bound
+        boolean marker;
+
+    }
+
 
 }
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.codec;
+
+import org.codehaus.preon.Resolver;
+import org.codehaus.preon.binding.Binding;
+import org.codehaus.preon.el.Expression;
+import org.codehaus.preon.el.ast.IntegerNode;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(org.mockito.runners.MockitoJUnitRunner.class)
+public class LayoutTest {
+
+    @Mock
+    private Binding binding1;
+
+    @Mock
+    private Binding binding2;
+
+    @Mock
+    private Binding binding3;
+
+    @Mock
+    private Expression<Integer, Resolver> parameterized;
+
+    @Test
+    public void shouldCalculateOffsets() {
+        bind(binding1, "flag", boolean.class, new IntegerNode<Resolver>(1));
+        bind(binding2, "version", byte.class, new IntegerNode<Resolver>(7));
+        bind(binding3, "data", byte[].class, new IntegerNode<Resolver>(64));
+        Layout layout = Layout.create(Arrays.asList(binding1, binding2, binding3));
+        assertNotNull(layout);
+        assertEquals(72, layout.getSize());
+        assertEquals(Arrays.asList("flag", "version", "data"), layout.getNames());
+        assertEquals(0, layout.getOffset("flag"));
+        assertEquals(1, layout.getOffset("version"));
+        assertEquals(8, layout.getOffset("data"));
+        assertEquals(64, layout.getSize("data"));
+        assertEquals(8, layout.getOffset(2));
+    }
+
+    @Test
+    public void shouldRejectParameterizedSizes() {
+        when(parameterized.isParameterized()).thenReturn(true);
+        bind(binding1, "length", int.class, new IntegerNode<Resolver>(8));
+        bind(binding2, "data", byte[].class, parameterized);
+        assertNull(Layout.create(Arrays.asList(binding1, binding2)));
+    }
+
+    @Test
+    public void shouldRejectNestedObjects() {
+        bind(binding1, "length", int.class, new IntegerNode<Resolver>(8));
+        doReturn(List.class).when(binding2).getType();
+        assertNull(Layout.create(Arrays.asList(binding1, binding2)));
+        verify(binding2, never()).getSize();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownFields() {
+        bind(binding1, "length", int.class, new IntegerNode<Resolver>(8));
+        Layout.create(Arrays.asList(binding1)).getOffset("data");
+    }
+
+    private static void bind(Binding binding, String name, Class<?> type, Expression<Integer, Resolver> size) {
+        when(binding.getName()).thenReturn(name);
+        doReturn(type).when(binding).getType();
+        when(binding.getSize()).thenReturn(size);
+    }
+
+}
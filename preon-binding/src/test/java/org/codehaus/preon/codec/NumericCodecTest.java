@@ -26,7 +26,9 @@ package org.codehaus.preon.codec;
 
 import org.codehaus.preon.el.Expression;
 import org.codehaus.preon.Resolver;
+import org.codehaus.preon.buffer.BitBuffer;
 import org.codehaus.preon.buffer.ByteOrder;
+import org.codehaus.preon.buffer.DefaultBitBuffer;
 import org.codehaus.preon.channel.BitChannel;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -38,6 +40,9 @@ import static org.mockito.Mockito.when;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
 
 @RunWith(MockitoJUnitRunner.class)
 public class NumericCodecTest {
@@ -61,4 +66,21 @@ public class NumericCodecTest {
         codec.encode(new Long(12L), channel, resolver);
         Mockito.verify(channel).write(3, 12L, ByteOrder.BigEndian);
     }
+
+    @Test
+    public void shouldDecodeArraysLikeIndividualValues() throws Exception {
+        byte[] data = {0x12, 0x34, 0x56, 0x78, (byte) 0x9A, (byte) 0xBC, (byte) 0xDE, (byte) 0xF0};
+        when(size.eval(resolver)).thenReturn(12);
+        for (NumericCodec.NumericType type : new NumericCodec.NumericType[]{
+                NumericCodec.NumericType.Short, NumericCodec.NumericType.Integer, NumericCodec.NumericType.Long}) {
+            NumericCodec codec = new NumericCodec(size, ByteOrder.LittleEndian, type, null);
+            BitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+            BitBuffer actual = new DefaultBitBuffer(ByteBuffer.wrap(data));
+            Object values = codec.decodeArray(actual, resolver, 5);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(codec.decode(expected, resolver, null), java.lang.reflect.Array.get(values, i));
+            }
+            assertEquals(expected.getBitPos(), actual.getBitPos());
+        }
+    }
 }
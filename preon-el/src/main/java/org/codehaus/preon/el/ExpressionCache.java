@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.el;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.tree.CommonTree;
+
+/**
+ * A process-wide cache of parsed Limbo expressions, keyed by the text of the expression. Parsing is by far the most
+ * expensive part of turning a Limbo expression into an {@link Expression}, and the same expressions tend to be used
+ * over and over again. The syntax trees kept by this cache are never modified after they have been created, so they
+ * can be shared among threads.
+ * <p/>
+ * The contents of the cache can be written to a stream using {@link #writeTo(OutputStream)}, and read back using
+ * {@link #readFrom(InputStream)}, allowing a subsequent run to skip parsing altogether. To write only the expressions
+ * needed for a particular task, {@link #startRecording() record} the expressions used by it, and pass them to {@link
+ * #writeTo(OutputStream, Collection)}.
+ */
+public final class ExpressionCache {
+
+    /** The first four bytes of the cache's external representation. */
+    private static final int MAGIC = 0x4c494d42;
+
+    /** The version of the external representation. */
+    private static final int VERSION = 1;
+
+    /** The syntax trees parsed so far. */
+    private static final ConcurrentMap<String, CommonTree> trees = new ConcurrentHashMap<String, CommonTree>();
+
+    /** The innermost {@link Recording} in progress in the current thread, if any. */
+    private static final ThreadLocal<Recording> recordings = new ThreadLocal<Recording>();
+
+    private ExpressionCache() {
+    }
+
+    /**
+     * Returns the syntax tree of the Limbo expression passed in, parsing it if it hasn't been parsed before. Syntax
+     * trees of expressions that failed to parse without errors are not cached.
+     *
+     * @param expr The Limbo expression.
+     * @return The syntax tree of the expression.
+     * @throws RecognitionException If the expression cannot be parsed.
+     */
+    static CommonTree parse(String expr) throws RecognitionException {
+        return parse(expr, false);
+    }
+
+    /**
+     * Returns the syntax tree of the Limbo expression passed in, like the trees walked when creating an {@link
+     * Expression}, but fails if the parser had to recover from syntax errors. Allows tools translating Limbo expressions
+     * at compile time to work from the same syntax trees as the expressions evaluated at runtime.
+     *
+     * @param expr The Limbo expression.
+     * @return The syntax tree of the expression.
+     * @throws RecognitionException If the expression cannot be parsed without errors.
+     */
+    public static CommonTree parseStrictly(String expr) throws RecognitionException {
+        return parse(expr, true);
+    }
+
+    private static CommonTree parse(String expr, boolean strict) throws RecognitionException {
+        for (Recording recording = recordings.get(); recording != null; recording = recording.enclosing) {
+            recording.expressions.add(expr);
+        }
+        CommonTree tree = trees.get(expr);
+        if (tree == null) {
+            LimboLexer lexer = new LimboLexer(new ANTLRStringStream(expr));
+            LimboParser parser = new LimboParser(new CommonTokenStream(lexer));
+            tree = (CommonTree) parser.condExpression().getTree();
+            if (lexer.getNumberOfSyntaxErrors() == 0 && parser.getNumberOfSyntaxErrors() == 0) {
+                trees.putIfAbsent(expr, tree);
+            } else if (strict) {
+                throw new RecognitionException();
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the number of expressions in the cache.
+     *
+     * @return The number of expressions in the cache.
+     */
+    public static int size() {
+        return trees.size();
+    }
+
+    /** Removes all expressions from the cache. */
+    public static void clear() {
+        trees.clear();
+    }
+
+    /**
+     * Starts recording the expressions used by the current thread, whether they are taken from the cache or not.
+     * Recordings may be nested; the expressions are recorded by all recordings in progress.
+     *
+     * @return The {@link Recording}, to be {@link Recording#stop() stopped} by the current thread.
+     */
+    public static Recording startRecording() {
+        Recording recording = new Recording(recordings.get());
+        recordings.set(recording);
+        return recording;
+    }
+
+    /**
+     * Writes all syntax trees in the cache to the {@link OutputStream} passed in. The stream is not closed.
+     *
+     * @param out The {@link OutputStream} receiving the cache.
+     * @throws IOException If the cache cannot be written.
+     */
+    public static void writeTo(OutputStream out) throws IOException {
+        writeTo(out, trees.keySet());
+    }
+
+    /**
+     * Writes the syntax trees of the expressions passed in to the {@link OutputStream} passed in, leaving out the
+     * expressions not found in the cache. The stream is not closed.
+     *
+     * @param out         The {@link OutputStream} receiving the syntax trees.
+     * @param expressions The expressions to write, typically obtained from a {@link Recording}.
+     * @throws IOException If the syntax trees cannot be written.
+     */
+    public static void writeTo(OutputStream out, Collection<String> expressions) throws IOException {
+        Map<String, CommonTree> entries = new HashMap<String, CommonTree>();
+        for (String expr : expressions) {
+            CommonTree tree = trees.get(expr);
+            if (tree != null) {
+                entries.put(expr, tree);
+            }
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(getVocabularyHash());
+        data.writeInt(entries.size());
+        for (Map.Entry<String, CommonTree> entry : entries.entrySet()) {
+            data.writeUTF(entry.getKey());
+            write(entry.getValue(), data);
+        }
+        data.flush();
+    }
+
+    /**
+     * Adds the syntax trees written by {@link #writeTo(OutputStream)} to the cache. Nothing will be added if the trees
+     * have been written by a different version of this class, or using a different version of the Limbo grammar. The
+     * stream is not closed.
+     *
+     * @param in The {@link InputStream} providing the cache.
+     * @return <code>true</code> if the syntax trees have been added to the cache, <code>false</code> if the stream
+     *         was written by an incompatible version.
+     * @throws IOException If the cache cannot be read.
+     */
+    public static boolean readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION || data.readInt() != getVocabularyHash()) {
+            return false;
+        }
+        int count = data.readInt();
+        Map<String, CommonTree> entries = new HashMap<String, CommonTree>();
+        for (int i = 0; i < count; i++) {
+            String expr = data.readUTF();
+            entries.put(expr, read(data));
+        }
+        trees.putAll(entries);
+        return true;
+    }
+
+    private static void write(CommonTree tree, DataOutputStream out) throws IOException {
+        out.writeBoolean(tree.isNil());
+        if (!tree.isNil()) {
+            out.writeInt(tree.getType());
+            out.writeUTF(tree.getText());
+        }
+        out.writeInt(tree.getChildCount());
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            write((CommonTree) tree.getChild(i), out);
+        }
+    }
+
+    private static CommonTree read(DataInputStream in) throws IOException {
+        CommonTree tree;
+        if (in.readBoolean()) {
+            tree = new CommonTree();
+        } else {
+            int type = in.readInt();
+            tree = new CommonTree(new CommonToken(type, in.readUTF()));
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            tree.addChild(read(in));
+        }
+        return tree;
+    }
+
+    /** Returns a hash of the token types of the Limbo grammar, since these are persisted as numbers. */
+    private static int getVocabularyHash() {
+        return Arrays.asList(LimboParser.tokenNames).hashCode();
+    }
+
+    /** The expressions used by a thread since it called {@link ExpressionCache#startRecording()}. */
+    public static final class Recording {
+
+        /** The recording in progress when this recording started. */
+        private final Recording enclosing;
+
+        private final Set<String> expressions = new LinkedHashSet<String>();
+
+        private Recording(Recording enclosing) {
+            this.enclosing = enclosing;
+        }
+
+        /**
+         * Stops recording, and returns the expressions used while recording.
+         *
+         * @return The expressions used while recording.
+         */
+        public Set<String> stop() {
+            if (enclosing == null) {
+                recordings.remove();
+            } else {
+                recordings.set(enclosing);
+            }
+            return Collections.unmodifiableSet(expressions);
+        }
+
+    }
+
+}
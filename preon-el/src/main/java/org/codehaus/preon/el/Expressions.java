@@ -30,10 +30,7 @@ import org.codehaus.preon.el.ast.IntegerNode;
 import org.codehaus.preon.el.ast.Node;
 import org.codehaus.preon.el.ast.ArithmeticNode.Operator;
 
-import org.antlr.runtime.ANTLRStringStream;
-import org.antlr.runtime.CommonTokenStream;
 import org.antlr.runtime.RecognitionException;
-import org.antlr.runtime.tree.CommonTree;
 import org.antlr.runtime.tree.CommonTreeNodeStream;
 
 /**
@@ -142,13 +139,7 @@ public class Expressions {
 
     private static <E> LimboWalker buildWalker(ReferenceContext<E> context, String expr)
             throws RecognitionException {
-        ANTLRStringStream in = new ANTLRStringStream(expr);
-        LimboLexer lexer = new LimboLexer(in);
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        LimboParser parser = new LimboParser(tokens);
-        CommonTree tree = (CommonTree) parser.condExpression().getTree();
-        CommonTreeNodeStream nodes = new CommonTreeNodeStream(tree);
-        nodes.setTokenStream(tokens);
+        CommonTreeNodeStream nodes = new CommonTreeNodeStream(ExpressionCache.parse(expr));
         LimboWalker walker = new org.codehaus.preon.el.LimboWalker(nodes, new ImplicitsContext(context));
         return walker;
     }
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.el;
+
+import org.codehaus.preon.el.ctx.VariableContext;
+import org.codehaus.preon.el.ctx.VariableDefinitions;
+import org.codehaus.preon.el.ctx.VariableResolver;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ExpressionCacheTest {
+
+    private VariableResolver resolver;
+
+    private VariableDefinitions defs;
+
+    private VariableContext context;
+
+    @Before
+    public void setUp() {
+        ExpressionCache.clear();
+        resolver = EasyMock.createMock(VariableResolver.class);
+        defs = EasyMock.createMock(VariableDefinitions.class);
+        context = new VariableContext(defs);
+        EasyMock.expect(resolver.get("a")).andReturn(Integer.valueOf(3)).anyTimes();
+        EasyMock.expect(defs.getType("a")).andReturn(Integer.class).anyTimes();
+        EasyMock.replay(resolver, defs);
+    }
+
+    @After
+    public void tearDown() {
+        ExpressionCache.clear();
+    }
+
+    @Test
+    public void shouldParseExpressionsOnlyOnce() {
+        assertEquals(7, Expressions.createInteger(context, "a * 2 + 1").eval(resolver).intValue());
+        assertEquals(7, Expressions.createInteger(context, "a * 2 + 1").eval(resolver).intValue());
+        assertTrue(Expressions.createBoolean(context, "a > 2 && a < 4").eval(resolver));
+        assertEquals(2, ExpressionCache.size());
+    }
+
+    @Test(expected = InvalidExpressionException.class)
+    public void shouldNotCacheInvalidExpressions() {
+        try {
+            Expressions.createInteger(context, "a - * 2");
+        } finally {
+            assertEquals(0, ExpressionCache.size());
+        }
+    }
+
+    @Test
+    public void shouldRestoreSyntaxTrees() throws IOException {
+        Expressions.createInteger(context, "(a + 0x10) / 2 ^ 1");
+        Expressions.createBoolean(context, "a == 3 || a > 5");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExpressionCache.writeTo(out);
+        ExpressionCache.clear();
+        assertTrue(ExpressionCache.readFrom(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(2, ExpressionCache.size());
+        assertEquals(9, Expressions.createInteger(context, "(a + 0x10) / 2 ^ 1").eval(resolver).intValue());
+        assertTrue(Expressions.createBoolean(context, "a == 3 || a > 5").eval(resolver));
+        assertEquals(2, ExpressionCache.size());
+    }
+
+    @Test
+    public void shouldWriteRecordedExpressionsOnly() throws IOException {
+        Expressions.createInteger(context, "a + 1");
+        ExpressionCache.Recording recording = ExpressionCache.startRecording();
+        Expressions.createInteger(context, "a + 1");
+        Expressions.createInteger(context, "a * 3");
+        Set<String> recorded = recording.stop();
+        Expressions.createInteger(context, "a - 1");
+        assertEquals(2, recorded.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExpressionCache.writeTo(out, recorded);
+        ExpressionCache.clear();
+        assertTrue(ExpressionCache.readFrom(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(2, ExpressionCache.size());
+    }
+
+    @Test
+    public void shouldIgnoreIncompatibleInput() throws IOException {
+        byte[] data = new byte[16];
+        assertFalse(ExpressionCache.readFrom(new ByteArrayInputStream(data)));
+        assertEquals(0, ExpressionCache.size());
+    }
+
+}
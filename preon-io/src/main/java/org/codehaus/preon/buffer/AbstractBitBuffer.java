@@ -0,0 +1,502 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An abstract base class for {@link BitBuffer} implementations. It keeps track of the bit pointer and the size of the
+ * buffer, validates every read and implements all of the overloaded read operations in terms of {@link
+ * #getBits(long, int, ByteOrder)}. Implementations need to implement <em>at least</em> {@link #getByte(long)}, {@link
+ * #duplicate()} and the {@link #readAsByteBuffer(int)} operations, and may override {@link #getBits(long, int,
+ * ByteOrder)} if they are able to do a better job than reading the data byte by byte.
+ */
+public abstract class AbstractBitBuffer implements BitBuffer {
+
+    /** The position of the bit pointer. */
+    private long bitPos;
+
+    /** The size of the buffer, in bits. */
+    private final long bitBufBitSize;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param bitBufBitSize The size of the buffer, in bits.
+     * @param bitPos        The initial position of the bit pointer.
+     */
+    protected AbstractBitBuffer(long bitBufBitSize, long bitPos) {
+        this.bitBufBitSize = bitBufBitSize;
+        this.bitPos = bitPos;
+    }
+
+    /**
+     * Returns the byte at the given position in the underlying data.
+     *
+     * @param bytePos The position of the byte, counted in bytes from the start of the buffer.
+     * @return The byte at the given position.
+     */
+    protected abstract byte getByte(long bytePos);
+
+    // JavaDoc inherited
+
+    public void setBitPos(long bitPos) {
+        this.bitPos = bitPos;
+    }
+
+    // JavaDoc inherited
+
+    public long getBitPos() {
+        return bitPos;
+    }
+
+    // JavaDoc inherited
+
+    public long getBitBufBitSize() {
+        return bitBufBitSize;
+    }
+
+    // JavaDoc inherited
+
+    public long getActualBitPos() {
+        return bitPos;
+    }
+
+    // readBits
+
+    // JavaDoc inherited
+
+    public long readBits(int nrBits) {
+        return readBits(bitPos, nrBits, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public long readBits(long bitPos, int nrBits) {
+        return readBits(bitPos, nrBits, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public long readBits(int nrBits, ByteOrder byteOrder) {
+        return readBits(bitPos, nrBits, byteOrder);
+    }
+
+    // JavaDoc inherited
+
+    public long readBits(long bitPos, int nrBits, ByteOrder byteOrder) {
+        if (nrBits <= 8)
+            return readAsByte(bitPos, nrBits, byteOrder);
+        else if (nrBits <= 16)
+            return readAsShort(bitPos, nrBits, byteOrder);
+        else if (nrBits <= 32)
+            return readAsInt(bitPos, nrBits, byteOrder);
+        else if (nrBits <= 64)
+            return readAsLong(bitPos, nrBits, byteOrder);
+        else
+            throw new BitBufferException("Wrong number of bits to read ("
+                    + nrBits + ").");
+    }
+
+    // boolean
+
+    // JavaDoc inherited
+
+    public boolean readAsBoolean() {
+        return readAsBoolean(bitPos, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public boolean readAsBoolean(long bitPos) {
+        return readAsBoolean(bitPos, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public boolean readAsBoolean(ByteOrder byteOrder) {
+        return readAsBoolean(bitPos, byteOrder);
+    }
+
+    // JavaDoc inherited
+
+    public boolean readAsBoolean(long bitPos, ByteOrder byteOrder) {
+        return getResult(bitPos, 1, byteOrder, 1) == 1;
+    }
+
+    // signed byte
+
+    // JavaDoc inherited
+
+    public byte readAsByte(int nrBits) {
+        return readAsByte(bitPos, nrBits, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public byte readAsByte(int nrBits, ByteOrder byteOrder) {
+        return readAsByte(bitPos, nrBits, byteOrder);
+    }
+
+    // JavaDoc inherited
+
+    public byte readAsByte(int nrBits, long bitPos) {
+        return readAsByte(bitPos, nrBits, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public byte readAsByte(long bitPos, int nrBits, ByteOrder byteOrder) {
+        return (byte) getResult(bitPos, nrBits, byteOrder, 8);
+    }
+
+    // signed short
+
+    // JavaDoc inherited
+
+    public short readAsShort(int nrBits) {
+        return readAsShort(bitPos, nrBits, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public short readAsShort(long bitPos, int nrBits) {
+        return readAsShort(bitPos, nrBits, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public short readAsShort(int nrBits, ByteOrder byteOrder) {
+        return readAsShort(bitPos, nrBits, byteOrder);
+    }
+
+    // JavaDoc inherited
+
+    public short readAsShort(long bitPos, int nrBits, ByteOrder byteOrder) {
+        return (short) getResult(bitPos, nrBits, byteOrder, 16);
+    }
+
+    // signed int
+
+    // JavaDoc inherited
+
+    public int readAsInt(int nrBits) {
+        return readAsInt(bitPos, nrBits, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public int readAsInt(long bitPos, int nrBits) {
+        return readAsInt(bitPos, nrBits, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public int readAsInt(int nrBits, ByteOrder byteOrder) {
+        return readAsInt(bitPos, nrBits, byteOrder);
+    }
+
+    // JavaDoc inherited
+
+    public int readAsInt(long bitPos, int nrBits, ByteOrder byteOrder) {
+        return (int) getResult(bitPos, nrBits, byteOrder, 32);
+    }
+
+    // signed long
+
+    // JavaDoc inherited
+
+    public long readAsLong(int nrBits) {
+        return readAsLong(bitPos, nrBits, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public long readAsLong(long bitPos, int nrBits) {
+        return readAsLong(bitPos, nrBits, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    public long readAsLong(int nrBits, ByteOrder byteOrder) {
+        return readAsLong(bitPos, nrBits, byteOrder);
+    }
+
+    // JavaDoc inherited
+
+    public long readAsLong(long bitPos, int nrBits, ByteOrder byteOrder) {
+        return getResult(bitPos, nrBits, byteOrder, 64);
+    }
+
+    // bulk
+
+    // JavaDoc inherited
+
+    public void readAsIntArray(int[] dst, int offset, int count, int nrBits, ByteOrder byteOrder) {
+        if (validateBulkRead(bitPos, dst.length, offset, count, nrBits, 32)) {
+            long pos = bitPos;
+            for (int i = offset, end = offset + count; i < end; i++) {
+                dst[i] = (int) getBits(pos, nrBits, byteOrder);
+                pos += nrBits;
+            }
+            this.bitPos = pos;
+        }
+    }
+
+    // JavaDoc inherited
+
+    public void readAsLongArray(long[] dst, int offset, int count, int nrBits, ByteOrder byteOrder) {
+        if (validateBulkRead(bitPos, dst.length, offset, count, nrBits, 64)) {
+            long pos = bitPos;
+            for (int i = offset, end = offset + count; i < end; i++) {
+                dst[i] = getBits(pos, nrBits, byteOrder);
+                pos += nrBits;
+            }
+            this.bitPos = pos;
+        }
+    }
+
+    // search
+
+    // JavaDoc inherited
+
+    public long find(long pattern, int nrBits, boolean byteAligned) {
+        return find(bitPos, pattern, nrBits, byteAligned);
+    }
+
+    // JavaDoc inherited
+
+    public long find(long bitPos, long pattern, int nrBits, boolean byteAligned) {
+        return new BitPatternScanner() {
+            protected long getBitBufBitSize() {
+                return AbstractBitBuffer.this.getBitBufBitSize();
+            }
+
+            protected long getBits(long bitPos, int nrBits) {
+                return AbstractBitBuffer.this.getBits(bitPos, nrBits, ByteOrder.BigEndian);
+            }
+        }.find(bitPos, pattern, nrBits, byteAligned);
+    }
+
+    /**
+     * Returns <code>false</code>. Implementations capable of returning views from {@link #readAsByteBuffer(int)}
+     * override this method.
+     */
+    public boolean isZeroCopy(int length) {
+        return false;
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer copyAsByteBuffer(int length) throws BitBufferUnderflowException {
+        long bitsToRead = ((long) length) << 3;
+        if (bitPos + bitsToRead > getBitBufBitSize()) {
+            throw new BitBufferUnderflowException(bitPos, bitsToRead);
+        }
+        ByteBuffer result = copyBits(bitPos, length);
+        this.bitPos = bitPos + bitsToRead;
+        return result;
+    }
+
+    // JavaDoc inherited
+
+    public BitBuffer slice(long length) {
+        BitBuffer result = new SlicedBitBuffer(duplicate(), length);
+        setBitPos(getBitPos() + length);
+        return result;
+    }
+
+    /**
+     * Validates the read, reads the bits and moves the bit pointer to the first bit following the bits read.
+     *
+     * @param bitPos        position of the first bit to read in the bit buffer
+     * @param nrBits        number of bits to read
+     * @param byteOrder     order of reading bytes (either Endian.Big or Endian.Little)
+     * @param maxNrBitsRead maximum number of bits allowed to read, based on the method return type
+     * @return the value represented by the given bits
+     */
+    protected long getResult(long bitPos, int nrBits, ByteOrder byteOrder,
+                             int maxNrBitsRead) {
+        validateInputParams(bitPos, nrBits, maxNrBitsRead);
+        long result = getBits(bitPos, nrBits, byteOrder);
+        this.bitPos = bitPos + nrBits;
+        return result;
+    }
+
+    /**
+     * Returns the (unsigned) value represented by the given bits. Implementations may assume that all parameters
+     * have been validated. This implementation reads at most nine bytes using {@link #getByte(long)}.
+     *
+     * @param bitPos    position of the first bit to read in the bit buffer
+     * @param nrBits    number of bits to read (1 up to 64)
+     * @param byteOrder order of reading bytes (either Endian.Big or Endian.Little)
+     * @return the value represented by the given bits
+     */
+    protected long getBits(long bitPos, int nrBits, ByteOrder byteOrder) {
+        long firstBytePos = bitPos >>> 3;
+        int offset = (int) (bitPos & 7);
+        int nrReadBytes = (offset + nrBits + 7) >>> 3;
+        int nrWordBytes = Math.min(nrReadBytes, 8);
+        long word = 0L;
+        if (byteOrder == ByteOrder.BigEndian) {
+            for (int i = 0; i < nrWordBytes; i++) {
+                word = (word << 8) | (0xFF & getByte(firstBytePos + i));
+            }
+            if (nrReadBytes > 8) {
+                // Move the first bit to the most significant position, and fill the gap with the ninth byte
+                word = (word << offset)
+                        | ((0xFF & getByte(firstBytePos + 8)) >>> (8 - offset));
+                return word >>> (64 - nrBits);
+            } else {
+                return (word >>> ((nrReadBytes << 3) - offset - nrBits))
+                        & (-1L >>> (64 - nrBits));
+            }
+        } else {
+            for (int i = 0; i < nrWordBytes; i++) {
+                word |= ((long) (0xFF & getByte(firstBytePos + i))) << (i << 3);
+            }
+            word = word >>> offset;
+            if (nrReadBytes > 8) {
+                word |= ((long) (0xFF & getByte(firstBytePos + 8))) << (64 - offset);
+            }
+            return word & (-1L >>> (64 - nrBits));
+        }
+    }
+
+    /**
+     * Check if all input parameters are correct, otherwise throw BitBufferException
+     *
+     * @param bitPos        position of the first bit to read in the bit buffer
+     * @param nrBits        number of bits to read
+     * @param maxNrBitsRead maximum number of bits allowed to read, based on the method return type
+     */
+    protected void validateInputParams(long bitPos, int nrBits, int maxNrBitsRead) {
+        if (nrBits < 1) {
+            throw new BitBufferException("Number of bits to read (" + nrBits
+                    + ") should greater than zero.");
+        }
+        if (bitPos < 0) {
+            throw new BitBufferException("Bit position (" + bitPos
+                    + ") should be positive.");
+        }
+        if (nrBits > maxNrBitsRead) {
+            throw new BitBufferException("Cannot read " + nrBits
+                    + " bits using " + maxNrBitsRead
+                    + " bit long numberBuf (bitPos=" + bitPos + ").");
+        }
+        if (bitPos + nrBits > bitBufBitSize) {
+            throw new BitBufferUnderflowException(bitPos, nrBits);
+        }
+    }
+
+    /**
+     * Checks if all parameters of a bulk read are correct, otherwise throws an exception. The entire range of
+     * <code>count * nrBits</code> bits is validated at once, so implementations do not need to validate each value
+     * read.
+     *
+     * @param bitPos        position of the first bit to read in the bit buffer
+     * @param length        the length of the array receiving the values
+     * @param offset        the index of the first element to receive a value
+     * @param count         the number of values to read
+     * @param nrBits        number of bits to read for each value
+     * @param maxNrBitsRead maximum number of bits allowed to read, based on the array type
+     * @return <code>false</code> if there is nothing to read at all
+     */
+    protected boolean validateBulkRead(long bitPos, int length, int offset, int count, int nrBits,
+                                       int maxNrBitsRead) {
+        if (offset < 0 || count < 0 || offset > length - count) {
+            throw new IndexOutOfBoundsException("Cannot store " + count + " values at offset " + offset
+                    + " in an array of length " + length + ".");
+        }
+        if (count == 0) {
+            return false;
+        }
+        validateInputParams(bitPos, nrBits, maxNrBitsRead);
+        long bitsToRead = (long) count * nrBits;
+        if (bitPos + bitsToRead > getBitBufBitSize()) {
+            throw new BitBufferUnderflowException(bitPos, bitsToRead);
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the bit pointer is 8-bit aligned and if <code>length</code> bytes are available from the current
+     * position, as required by {@link #readAsByteBuffer(int)}.
+     *
+     * @param length The number of bytes to be read.
+     */
+    protected void validateByteBufferRead(int length) {
+        if ((bitPos % 8) != 0) {
+            throw new BitBufferException(
+                    "8-bit alignment exception. Bit position (" + bitPos
+                            + ") should be 8-bit aligned");
+        }
+        long bitsToRead = ((long) length) << 3;
+        if (bitPos + bitsToRead > bitBufBitSize) {
+            throw new BitBufferUnderflowException(bitPos, bitsToRead);
+        }
+    }
+
+    /**
+     * Copies <code>length</code> bytes, starting at the given byte position, into a newly allocated {@link ByteBuffer}.
+     * Used by implementations that are not able to provide a view on the underlying data.
+     *
+     * @param bytePos The position of the first byte to copy.
+     * @param length  The number of bytes to copy.
+     * @return A {@link ByteBuffer} holding a copy of the data.
+     */
+    protected ByteBuffer copyBytes(long bytePos, int length) {
+        ByteBuffer result = ByteBuffer.allocate(length);
+        for (int i = 0; i < length; i++) {
+            result.put(getByte(bytePos + i));
+        }
+        result.flip();
+        return result;
+    }
+
+    /**
+     * Copies <code>length</code> bytes, starting at the given bit position, which does not need to be 8-bit aligned,
+     * into a newly allocated {@link ByteBuffer}.
+     *
+     * @param bitPos The position of the first bit to copy.
+     * @param length The number of bytes to copy.
+     * @return A {@link ByteBuffer} holding a copy of the data.
+     */
+    protected ByteBuffer copyBits(long bitPos, int length) {
+        ByteBuffer result = ByteBuffer.allocate(length);
+        long pos = bitPos;
+        while (result.remaining() >= 8) {
+            result.putLong(getBits(pos, 64, ByteOrder.BigEndian));
+            pos += 64;
+        }
+        while (result.hasRemaining()) {
+            result.put((byte) getBits(pos, 8, ByteOrder.BigEndian));
+            pos += 8;
+        }
+        result.flip();
+        return result;
+    }
+
+}
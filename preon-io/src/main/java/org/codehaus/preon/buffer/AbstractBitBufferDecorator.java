@@ -24,6 +24,8 @@
  */
 package org.codehaus.preon.buffer;
 
+import java.nio.ByteBuffer;
+
 /**
  * An abstract base class for classes wrapping {@link BitBuffer}s to support additional behavior. Implementations need
  * to implement <em>at least</em> {@link #getDelegate()}.
@@ -201,6 +203,24 @@ public abstract class AbstractBitBufferDecorator implements BitBuffer {
         return getDelegate().readAsLong(bitPos, nrBits, endian);
     }
 
+    /*
+     * (non-Javadoc)
+     * @see org.codehaus.preon.buffer.BitBuffer#readAsIntArray(int[], int, int, int, org.codehaus.preon.buffer.ByteOrder)
+     */
+
+    public void readAsIntArray(int[] dst, int offset, int count, int nrBits, ByteOrder endian) {
+        getDelegate().readAsIntArray(dst, offset, count, nrBits, endian);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.codehaus.preon.buffer.BitBuffer#readAsLongArray(long[], int, int, int, org.codehaus.preon.buffer.ByteOrder)
+     */
+
+    public void readAsLongArray(long[] dst, int offset, int count, int nrBits, ByteOrder endian) {
+        getDelegate().readAsLongArray(dst, offset, count, nrBits, endian);
+    }
+
     /*
      * (non-Javadoc)
      * @see org.codehaus.preon.buffer.BitBuffer#readAsShort(int)
@@ -291,6 +311,42 @@ public abstract class AbstractBitBufferDecorator implements BitBuffer {
         return getDelegate().slice(length);
     }
 
+    /*
+     * (non-Javadoc)
+     * @see org.codehaus.preon.buffer.BitBuffer#find(long, int, boolean)
+     */
+
+    public long find(long pattern, int nrBits, boolean byteAligned) {
+        return getDelegate().find(pattern, nrBits, byteAligned);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.codehaus.preon.buffer.BitBuffer#find(long, long, int, boolean)
+     */
+
+    public long find(long bitPos, long pattern, int nrBits, boolean byteAligned) {
+        return getDelegate().find(bitPos, pattern, nrBits, byteAligned);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.codehaus.preon.buffer.BitBuffer#isZeroCopy(int)
+     */
+
+    public boolean isZeroCopy(int length) {
+        return getDelegate().isZeroCopy(length);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.codehaus.preon.buffer.BitBuffer#copyAsByteBuffer(int)
+     */
+
+    public ByteBuffer copyAsByteBuffer(int length) throws BitBufferUnderflowException {
+        return getDelegate().copyAsByteBuffer(length);
+    }
+
     /*
     * (non-Javadoc)
     * @see org.codehaus.preon.buffer.BitBuffer#duplicate()
@@ -338,6 +338,73 @@ public interface BitBuffer {
      */
     long readAsLong(long bitPos, int nrBits, ByteOrder endian);
 
+    // bulk
+
+    /**
+     * Read <code>count</code> consecutive values of the specified number of bits (max 32) each, starting from the
+     * current bit pointer position in either the little- or big-endian order, and store them in <code>dst</code>,
+     * starting at <code>offset</code>. The values are the same as the ones returned by <code>count</code> subsequent
+     * calls to {@link #readAsInt(int, ByteOrder)}, but the entire range is validated only once. After reading the
+     * pointer will indicate the position of the first bit that has not been read yet.
+     *
+     * @param dst    the array receiving the values read
+     * @param offset the index of the first element in <code>dst</code> to receive a value
+     * @param count  the number of values to read
+     * @param nrBits number of bits to read for each value
+     * @param endian order of reading bytes (either Endian.Big or Endian.Little)
+     * @throws BitBufferUnderflowException If <code>count * nrBits</code> bits are out of reach for this {@link
+     *                                     BitBuffer}.
+     */
+    void readAsIntArray(int[] dst, int offset, int count, int nrBits, ByteOrder endian)
+            throws BitBufferUnderflowException;
+
+    /**
+     * Read <code>count</code> consecutive values of the specified number of bits (max 64) each, starting from the
+     * current bit pointer position in either the little- or big-endian order, and store them in <code>dst</code>,
+     * starting at <code>offset</code>. The values are the same as the ones returned by <code>count</code> subsequent
+     * calls to {@link #readAsLong(int, ByteOrder)}, but the entire range is validated only once. After reading the
+     * pointer will indicate the position of the first bit that has not been read yet.
+     *
+     * @param dst    the array receiving the values read
+     * @param offset the index of the first element in <code>dst</code> to receive a value
+     * @param count  the number of values to read
+     * @param nrBits number of bits to read for each value
+     * @param endian order of reading bytes (either Endian.Big or Endian.Little)
+     * @throws BitBufferUnderflowException If <code>count * nrBits</code> bits are out of reach for this {@link
+     *                                     BitBuffer}.
+     */
+    void readAsLongArray(long[] dst, int offset, int count, int nrBits, ByteOrder endian)
+            throws BitBufferUnderflowException;
+
+    // search
+
+    /**
+     * Returns the position of the first occurrence of a bit pattern at or after the current position, without moving
+     * the bit pointer. Useful for skipping to the next candidate position after losing track of the structure of the
+     * data, such as the sync word of the next frame in a damaged stream.
+     *
+     * @param pattern     the pattern to search for, in its <code>nrBits</code> least significant bits; the most
+     *                    significant of these is expected first, just as when reading big endian data
+     * @param nrBits      number of bits in the pattern (1 up to 64)
+     * @param byteAligned <code>true</code> if only 8-bit aligned positions should be considered
+     * @return the position of the first bit of the first occurrence, or -1 if the pattern does not occur
+     */
+    long find(long pattern, int nrBits, boolean byteAligned);
+
+    /**
+     * Returns the position of the first occurrence of a bit pattern at or after the given position, without moving the
+     * bit pointer.
+     *
+     * @param bitPos      position at which to start searching
+     * @param pattern     the pattern to search for, in its <code>nrBits</code> least significant bits; the most
+     *                    significant of these is expected first, just as when reading big endian data
+     * @param nrBits      number of bits in the pattern (1 up to 64)
+     * @param byteAligned <code>true</code> if only 8-bit aligned positions should be considered
+     * @return the position of the first bit of the first occurrence, or -1 if the pattern does not occur
+     * @see #find(long, int, boolean)
+     */
+    long find(long bitPos, long pattern, int nrBits, boolean byteAligned);
+
     /**
      * Returns a new BitBuffer, starting at {@link #getBitPos()}, with the given <code>length</code>. Moves the current
      * position in this BitBuffer to {@link #getBitPos()} <code> + length</code>. Note that each {@link BitBuffer} is
@@ -359,7 +426,9 @@ public interface BitBuffer {
 
     /**
      * Returns a {@link ByteBuffer} creating a view of the contents of the BitBuffer, representing the data as bytes. It
-     * will move the current position in this {@link BitBuffer} to <code>length * 8</code>.
+     * will move the current position in this {@link BitBuffer} to <code>length * 8</code>. The current position is
+     * required to be 8-bit aligned; use {@link #copyAsByteBuffer(int)} otherwise. Use {@link #isZeroCopy(int)} to find
+     * out if the {@link ByteBuffer} returned will actually share the data underneath this {@link BitBuffer}.
      *
      * @param length The number of <em>bytes</em> to be exposed throught the {@link ByteBuffer}.
      * @return A ByteBuffer providing a byte view on a slice of the data underneath this {@link BitBuffer}.
@@ -368,6 +437,28 @@ public interface BitBuffer {
      */
     ByteBuffer readAsByteBuffer(int length) throws BitBufferUnderflowException;
 
+    /**
+     * Returns whether {@link #readAsByteBuffer(int)}, invoked at the current position, would return a view sharing the
+     * data underneath this {@link BitBuffer}, rather than a copy of that data. This will never be the case if the
+     * current position is not 8-bit aligned.
+     *
+     * @param length The number of <em>bytes</em> to be exposed through the {@link ByteBuffer}.
+     * @return <code>true</code> if reading the bytes would not require copying them.
+     */
+    boolean isZeroCopy(int length);
+
+    /**
+     * Returns a {@link ByteBuffer} holding a copy of the next <code>length</code> bytes, starting at the current
+     * position, which does <em>not</em> need to be 8-bit aligned. It will move the current position in this {@link
+     * BitBuffer} <code>length * 8</code> bits ahead.
+     *
+     * @param length The number of <em>bytes</em> to be copied into the {@link ByteBuffer}.
+     * @return A newly allocated ByteBuffer holding the bytes read.
+     * @throws BitBufferUnderflowException If the number bytes addresses a position out of reach for this {@link
+     *                                     BitBuffer}.
+     */
+    ByteBuffer copyAsByteBuffer(int length) throws BitBufferUnderflowException;
+
     /**
      * Returns the contents of the underlying collection of bytes a {@link java.nio.ByteBuffer}.
      *
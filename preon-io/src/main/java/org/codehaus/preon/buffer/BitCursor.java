@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link BitBuffer} reading from a shared {@link BitSource}. The cursor only holds a reference to the source and the
+ * current position, so creating one per decode operation (or per thread) is cheap, and no data is ever duplicated.
+ * Since the source itself does not hold any position, any number of cursors can read from the same source
+ * concurrently:
+ * <p/>
+ * <pre>
+ * MappedFileBitBuffer file = new MappedFileBitBuffer(new File(...));
+ * // In each thread:
+ * Codecs.decode(codec, new BitCursor(file), null, null);
+ * </pre>
+ * <p/>
+ * Cursors themselves are not threadsafe; use {@link #duplicate()} to hand the current position to another thread.
+ * This replaces {@link ConcurrentBitBuffer}, which creates and holds on to a duplicate for every thread that ever
+ * touches it.
+ */
+public class BitCursor extends AbstractBitBuffer {
+
+    /** The data from which this cursor reads. */
+    private final BitSource source;
+
+    /** The position of the first bit of this cursor, in bits from the start of {@link #source}. */
+    private final long baseBitPos;
+
+    /**
+     * Constructs a new instance, reading from the start of the source passed in.
+     *
+     * @param source The data from which to read.
+     */
+    public BitCursor(BitSource source) {
+        this(source, 0L, source.getBitBufBitSize(), 0L);
+    }
+
+    private BitCursor(BitSource source, long baseBitPos, long bitBufBitSize, long bitPos) {
+        super(bitBufBitSize, bitPos);
+        this.source = source;
+        this.baseBitPos = baseBitPos;
+    }
+
+    /**
+     * Returns the data from which this cursor reads.
+     *
+     * @return The data from which this cursor reads.
+     */
+    public BitSource getSource() {
+        return source;
+    }
+
+    @Override
+    protected long getBits(long bitPos, int nrBits, ByteOrder byteOrder) {
+        return source.getBits(baseBitPos + bitPos, nrBits, byteOrder);
+    }
+
+    // JavaDoc inherited
+
+    @Override
+    protected byte getByte(long bytePos) {
+        return (byte) source.getBits(baseBitPos + (bytePos << 3), 8, ByteOrder.BigEndian);
+    }
+
+    // JavaDoc inherited
+
+    @Override
+    public long getActualBitPos() {
+        return baseBitPos + getBitPos();
+    }
+
+    /** Returns a new cursor, restricted to the next <code>length</code> bits. */
+    @Override
+    public BitBuffer slice(long length) {
+        if (getBitPos() + length > getBitBufBitSize()) {
+            throw new BitBufferUnderflowException(getBitPos(), length);
+        }
+        BitBuffer result = new BitCursor(source, baseBitPos + getBitPos(), length, 0L);
+        setBitPos(getBitPos() + length);
+        return result;
+    }
+
+    // JavaDoc inherited
+
+    public BitBuffer duplicate() {
+        return new BitCursor(source, baseBitPos, getBitBufBitSize(), getBitPos());
+    }
+
+    @Override
+    public boolean isZeroCopy(int length) {
+        return getBitPos() + (((long) length) << 3) <= getBitBufBitSize()
+                && source.isZeroCopy(baseBitPos + getBitPos(), length);
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer readAsByteBuffer(int length) throws BitBufferUnderflowException {
+        long absoluteBitPos = baseBitPos + getBitPos();
+        if ((absoluteBitPos % 8) != 0) {
+            throw new BitBufferException(
+                    "8-bit alignment exception. Bit position (" + getBitPos()
+                            + ") should be 8-bit aligned");
+        }
+        if (getBitPos() + (((long) length) << 3) > getBitBufBitSize()) {
+            throw new BitBufferUnderflowException(getBitPos(), ((long) length) << 3);
+        }
+        ByteBuffer result = source.getByteBuffer(absoluteBitPos, length);
+        setBitPos(getBitPos() + (((long) length) << 3));
+        return result;
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer readAsByteBuffer() {
+        long size = (source.getBitBufBitSize() + 7) >>> 3;
+        if (size > Integer.MAX_VALUE) {
+            throw new BitBufferException("Unable to expose " + size + " bytes through a single ByteBuffer.");
+        }
+        return source.getByteBuffer(0L, (int) size);
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+/**
+ * Searches for bit patterns, as required by {@link BitBuffer#find(long, long, int, boolean)}. Rather than extracting and
+ * comparing a value at every position, the data is read 64 bits at a time, and all positions at which the pattern fits
+ * within a word are matched in parallel: the word is shifted by one bit for every bit of the pattern, and combined into
+ * a mask of positions at which all bits seen so far match. The scan of a word ends as soon as that mask becomes zero,
+ * which for data not resembling the pattern usually happens after a few bits. Subsequent words overlap by
+ * <code>nrBits - 1</code> bits, so the scan never reads further ahead than 64 bits from a candidate position; buffers
+ * releasing data already passed (such as {@link StreamingBitBuffer}) still hold the match once it is found.
+ */
+abstract class BitPatternScanner {
+
+    /** The bits at the start of each byte, in a word read in big endian order. */
+    private static final long BYTE_ALIGNED = 0x8080808080808080L;
+
+    /**
+     * Returns the number of bits available, which may change once data beyond the end has been requested through
+     * {@link #getBits(long, int)}.
+     */
+    protected abstract long getBitBufBitSize();
+
+    /**
+     * Returns the value represented by the given bits, read in big endian order.
+     *
+     * @throws BitBufferUnderflowException If the bits are not available.
+     */
+    protected abstract long getBits(long bitPos, int nrBits);
+
+    /**
+     * Returns the position of the first occurrence of the pattern at or after <code>bitPos</code>, or -1 if it does not
+     * occur.
+     *
+     * @see BitBuffer#find(long, long, int, boolean)
+     */
+    public long find(long bitPos, long pattern, int nrBits, boolean byteAligned) {
+        if (nrBits < 1 || nrBits > 64) {
+            throw new BitBufferException("Number of bits in the pattern (" + nrBits
+                    + ") should be between 1 and 64.");
+        }
+        if (bitPos < 0) {
+            throw new BitBufferException("Bit position (" + bitPos
+                    + ") should be positive.");
+        }
+        // Align the pattern to the most significant bit, to match the words read
+        long expected = pattern << (64 - nrBits);
+        // The number of positions covered by a single word, keeping the position aligned if required
+        int step = byteAligned ? Math.max(8, (65 - nrBits) & ~7) : 65 - nrBits;
+        long mask = (-1L << (64 - step)) & (byteAligned ? BYTE_ALIGNED : -1L);
+        long pos = byteAligned ? (bitPos + 7) & ~7L : bitPos;
+        while (pos <= getBitBufBitSize() - nrBits) {
+            long word = getWord(pos);
+            long candidates = mask;
+            for (int i = 0; i < nrBits && candidates != 0; i++) {
+                // Bit j of the shifted word holds the bit at pos + j + i, counting from the most significant bit
+                long shifted = word << i;
+                candidates &= (expected << i) < 0 ? shifted : ~shifted;
+            }
+            if (candidates != 0) {
+                long match = pos + Long.numberOfLeadingZeros(candidates);
+                // A match running into the padding beyond the end is not a match, and neither is anything after it
+                return match <= getBitBufBitSize() - nrBits ? match : -1;
+            }
+            pos += step;
+        }
+        return -1;
+    }
+
+    /** Returns the 64 bits starting at the given position, padded with zeros beyond the end of the data. */
+    private long getWord(long bitPos) {
+        if (bitPos <= getBitBufBitSize() - 64) {
+            try {
+                return getBits(bitPos, 64);
+            } catch (BitBufferUnderflowException bbue) {
+                // Only happens for streams of which the size was not known yet, but is now
+                if (bitPos <= getBitBufBitSize() - 64) {
+                    throw bbue;
+                }
+            }
+        }
+        if (bitPos >= getBitBufBitSize()) {
+            return 0L;
+        }
+        int available = (int) (getBitBufBitSize() - bitPos);
+        return getBits(bitPos, available) << (64 - available);
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Data that can be read at arbitrary bit positions without maintaining any position of its own. All operations are
+ * absolute and do not modify any state, so a single instance can safely be shared by many threads, each reading
+ * through a {@link BitCursor} of its own.
+ * <p/>
+ * Positions are counted from the start of the source. Operations do not validate them: callers (such as {@link
+ * BitCursor}) are expected to stay within the first {@link #getBitBufBitSize()} bits.
+ *
+ * @see BitCursor
+ */
+public interface BitSource {
+
+    /**
+     * Returns the number of bits available.
+     *
+     * @return The number of bits available.
+     */
+    long getBitBufBitSize();
+
+    /**
+     * Returns the (unsigned) value represented by the given bits.
+     *
+     * @param bitPos    position of the first bit to read
+     * @param nrBits    number of bits to read (1 up to 64)
+     * @param byteOrder order of reading bytes (either Endian.Big or Endian.Little)
+     * @return value represented by specified bits
+     */
+    long getBits(long bitPos, int nrBits, ByteOrder byteOrder);
+
+    /**
+     * Returns whether {@link #getByteBuffer(long, int)} would return a view sharing the data, rather than a copy.
+     *
+     * @param bitPos position of the first bit of the first byte
+     * @param length The number of bytes.
+     * @return <code>true</code> if the bytes can be exposed without copying them.
+     */
+    boolean isZeroCopy(long bitPos, int length);
+
+    /**
+     * Returns a {@link ByteBuffer} holding the <code>length</code> bytes starting at the given position, which does not
+     * need to be 8-bit aligned. This is a view on the data if {@link #isZeroCopy(long, int)} holds, or a copy otherwise.
+     *
+     * @param bitPos position of the first bit of the first byte
+     * @param length The number of bytes.
+     * @return A {@link ByteBuffer} holding the bytes.
+     */
+    ByteBuffer getByteBuffer(long bitPos, int length);
+
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link BitBuffer} reading from a byte array, or a region of a byte array, without requiring it to be wrapped in a
+ * {@link ByteBuffer} and {@link DefaultBitBuffer} first. Regions are tracked using an offset and length, and slices,
+ * duplicates and {@link ByteBuffer ByteBuffers} obtained through {@link #readAsByteBuffer(int)} are views on the same
+ * array. The array is only read, so a buffer can also be shared as a {@link BitSource} by {@link BitCursor
+ * BitCursors} in multiple threads.
+ */
+public class ByteArrayBitBuffer extends AbstractBitBuffer implements BitSource {
+
+    /** The array holding the data. */
+    private final byte[] data;
+
+    /**
+     * A big endian {@link ByteBuffer} wrapping {@link #data}, only used for absolute word loads, which the JVM turns into
+     * a single memory access.
+     */
+    private final ByteBuffer words;
+
+    /** The position of the first bit of this buffer, in bits from the start of {@link #data}. */
+    private final long baseBitPos;
+
+    /** The position of the byte following the last byte in {@link #data} that is part of this buffer. */
+    private final int end;
+
+    /**
+     * Constructs a new instance, reading from the entire array.
+     *
+     * @param data The array holding the data.
+     */
+    public ByteArrayBitBuffer(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Constructs a new instance, reading <code>length</code> bytes starting at <code>offset</code>.
+     *
+     * @param data   The array holding the data.
+     * @param offset The position of the first byte in the array.
+     * @param length The number of bytes.
+     */
+    public ByteArrayBitBuffer(byte[] data, int offset, int length) {
+        this(data, ByteBuffer.wrap(data), ((long) offset) << 3, ((long) length) << 3, 0L);
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private ByteArrayBitBuffer(byte[] data, ByteBuffer words, long baseBitPos, long bitBufBitSize, long bitPos) {
+        super(bitBufBitSize, bitPos);
+        this.data = data;
+        this.words = words;
+        this.baseBitPos = baseBitPos;
+        this.end = (int) ((baseBitPos + bitBufBitSize + 7) >>> 3);
+    }
+
+    /**
+     * Reads the (at most) 64 bits starting at the first byte directly from the array, and shifts and masks the bits
+     * requested out of it.
+     */
+    @Override
+    public long getBits(long bitPos, int nrBits, ByteOrder byteOrder) {
+        long absoluteBitPos = baseBitPos + bitPos;
+        int firstBytePos = (int) (absoluteBitPos >>> 3);
+        int offset = (int) (absoluteBitPos & 7);
+        long word = getBigEndianWord(firstBytePos);
+        long result;
+        if (byteOrder == ByteOrder.BigEndian) {
+            result = word << offset;
+            if (offset + nrBits > 64) {
+                result |= (0xFF & data[firstBytePos + 8]) >>> (8 - offset);
+            }
+            return result >>> (64 - nrBits);
+        } else {
+            result = Long.reverseBytes(word) >>> offset;
+            if (offset + nrBits > 64) {
+                result |= (0xFFL & data[firstBytePos + 8]) << (64 - offset);
+            }
+            return result & (-1L >>> (64 - nrBits));
+        }
+    }
+
+    /**
+     * Returns the 64 bits starting at the given position, the first bit at the most significant position, padded with
+     * zeros beyond the end of this buffer.
+     */
+    private long getBigEndianWord(int bytePos) {
+        if (bytePos + 8 <= end) {
+            return words.getLong(bytePos);
+        } else {
+            long word = 0L;
+            for (int i = 0; bytePos + i < end; i++) {
+                word |= (0xFFL & data[bytePos + i]) << (56 - (i << 3));
+            }
+            return word;
+        }
+    }
+
+    // JavaDoc inherited
+
+    @Override
+    protected byte getByte(long bytePos) {
+        if ((baseBitPos & 7) != 0) {
+            // The bytes of an unaligned slice straddle the bytes of the array
+            return (byte) getBits(bytePos << 3, 8, ByteOrder.BigEndian);
+        }
+        return data[(int) ((baseBitPos >>> 3) + bytePos)];
+    }
+
+    // JavaDoc inherited
+
+    @Override
+    public long getActualBitPos() {
+        return baseBitPos + getBitPos();
+    }
+
+    /** Returns a view on the next <code>length</code> bits, without copying any data. */
+    @Override
+    public BitBuffer slice(long length) {
+        if (getBitPos() + length > getBitBufBitSize()) {
+            throw new BitBufferUnderflowException(getBitPos(), length);
+        }
+        BitBuffer result = new ByteArrayBitBuffer(data, words, baseBitPos + getBitPos(), length, 0L);
+        setBitPos(getBitPos() + length);
+        return result;
+    }
+
+    // JavaDoc inherited
+
+    public BitBuffer duplicate() {
+        return new ByteArrayBitBuffer(data, words, baseBitPos, getBitBufBitSize(), getBitPos());
+    }
+
+    @Override
+    public boolean isZeroCopy(int length) {
+        return getBitPos() + (((long) length) << 3) <= getBitBufBitSize() && isZeroCopy(getBitPos(), length);
+    }
+
+    // JavaDoc inherited
+
+    public boolean isZeroCopy(long bitPos, int length) {
+        return ((baseBitPos + bitPos) % 8) == 0;
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer getByteBuffer(long bitPos, int length) {
+        if (isZeroCopy(bitPos, length)) {
+            return ByteBuffer.wrap(data, (int) ((baseBitPos + bitPos) >>> 3), length).slice();
+        } else {
+            return copyBits(bitPos, length);
+        }
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer readAsByteBuffer(int length) throws BitBufferUnderflowException {
+        if (((baseBitPos + getBitPos()) % 8) != 0) {
+            throw new BitBufferException(
+                    "8-bit alignment exception. Bit position (" + getBitPos()
+                            + ") should be 8-bit aligned");
+        }
+        if (getBitPos() + (((long) length) << 3) > getBitBufBitSize()) {
+            throw new BitBufferUnderflowException(getBitPos(), ((long) length) << 3);
+        }
+        ByteBuffer result = getByteBuffer(getBitPos(), length);
+        setBitPos(getBitPos() + (((long) length) << 3));
+        return result;
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer readAsByteBuffer() {
+        int offset = (int) (baseBitPos >>> 3);
+        return ByteBuffer.wrap(data, offset, end - offset).slice();
+    }
+
+}
@@ -0,0 +1,274 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link BitBuffer} presenting a sequence of {@link ByteBuffer ByteBuffers} (fragments) as a single contiguous
+ * range of bits, so data arriving in pieces (such as network packets or split capture files) can be decoded without
+ * reassembling it first. Values may straddle fragments. The fragment holding a byte is found by a binary search over
+ * the offsets of the fragments; since reads tend to be sequential, each view remembers the fragment it read from last,
+ * avoiding the search altogether in the common case.
+ * <p/>
+ * The data between the position and limit of each {@link ByteBuffer} passed in is used; the buffers themselves are not
+ * modified, but their contents should not change while being decoded. Slices, duplicates and {@link ByteBuffer
+ * ByteBuffers} obtained through {@link #readAsByteBuffer(int)} are views on the same fragments, unless the bytes
+ * requested span multiple fragments, in which case they are copied. The fragments are only read, so a buffer can also
+ * be shared as a {@link BitSource} by {@link BitCursor BitCursors} in multiple threads.
+ */
+public class CompositeBitBuffer extends AbstractBitBuffer implements BitSource {
+
+    /** The fragments, shared by all views. */
+    private final Fragments fragments;
+
+    /** The position of the first bit of this view, in bits from the start of the first fragment. */
+    private final long baseBitPos;
+
+    /**
+     * The index of the fragment read from last. Only used as a hint; a stale value written by another thread merely
+     * results in a binary search.
+     */
+    private int lastFragment;
+
+    /**
+     * Constructs a new instance, reading from the fragments passed in, in the given order.
+     *
+     * @param fragments The fragments holding the data.
+     */
+    public CompositeBitBuffer(ByteBuffer... fragments) {
+        this(Arrays.asList(fragments));
+    }
+
+    /**
+     * Constructs a new instance, reading from the fragments passed in, in the given order.
+     *
+     * @param fragments The fragments holding the data.
+     */
+    public CompositeBitBuffer(List<ByteBuffer> fragments) {
+        this(new Fragments(fragments), 0L);
+    }
+
+    private CompositeBitBuffer(Fragments fragments, long baseBitPos) {
+        this(fragments, baseBitPos, (fragments.size << 3) - baseBitPos, 0L);
+    }
+
+    private CompositeBitBuffer(Fragments fragments, long baseBitPos, long bitBufBitSize, long bitPos) {
+        super(bitBufBitSize, bitPos);
+        this.fragments = fragments;
+        this.baseBitPos = baseBitPos;
+    }
+
+    /**
+     * Returns the number of (non-empty) fragments.
+     *
+     * @return The number of fragments.
+     */
+    public int getFragmentCount() {
+        return fragments.buffers.length;
+    }
+
+    @Override
+    public long getBits(long bitPos, int nrBits, ByteOrder byteOrder) {
+        long absoluteBitPos = baseBitPos + bitPos;
+        long firstBytePos = absoluteBitPos >>> 3;
+        int offset = (int) (absoluteBitPos & 7);
+        int fragment = getFragment(firstBytePos);
+        ByteBuffer buffer = fragments.buffers[fragment];
+        int index = (int) (firstBytePos - fragments.offsets[fragment]);
+        if (index + 9 > buffer.limit()) {
+            // Close to the end of the fragment, possibly straddling the next one
+            return super.getBits(absoluteBitPos, nrBits, byteOrder);
+        }
+        long word = buffer.getLong(index);
+        long result;
+        if (byteOrder == ByteOrder.BigEndian) {
+            result = word << offset;
+            if (offset + nrBits > 64) {
+                result |= (0xFF & buffer.get(index + 8)) >>> (8 - offset);
+            }
+            return result >>> (64 - nrBits);
+        } else {
+            result = Long.reverseBytes(word) >>> offset;
+            if (offset + nrBits > 64) {
+                result |= (0xFFL & buffer.get(index + 8)) << (64 - offset);
+            }
+            return result & (-1L >>> (64 - nrBits));
+        }
+    }
+
+    /** Returns the byte at the given position, counted from the start of the first fragment, rather than this view. */
+    @Override
+    protected byte getByte(long bytePos) {
+        int fragment = getFragment(bytePos);
+        return fragments.buffers[fragment].get((int) (bytePos - fragments.offsets[fragment]));
+    }
+
+    // JavaDoc inherited
+
+    @Override
+    public long getActualBitPos() {
+        return baseBitPos + getBitPos();
+    }
+
+    /** Returns a view on the next <code>length</code> bits, without copying any data. */
+    @Override
+    public BitBuffer slice(long length) {
+        if (getBitPos() + length > getBitBufBitSize()) {
+            throw new BitBufferUnderflowException(getBitPos(), length);
+        }
+        BitBuffer result = new CompositeBitBuffer(fragments, baseBitPos + getBitPos(), length, 0L);
+        setBitPos(getBitPos() + length);
+        return result;
+    }
+
+    // JavaDoc inherited
+
+    public BitBuffer duplicate() {
+        return new CompositeBitBuffer(fragments, baseBitPos, getBitBufBitSize(), getBitPos());
+    }
+
+    /**
+     * Returns <code>true</code> if the bytes are all found in a single fragment.
+     */
+    @Override
+    public boolean isZeroCopy(int length) {
+        return getBitPos() + (((long) length) << 3) <= getBitBufBitSize() && isZeroCopy(getBitPos(), length);
+    }
+
+    /**
+     * Returns <code>true</code> if the position is 8-bit aligned and the bytes are all found in a single fragment.
+     */
+    public boolean isZeroCopy(long bitPos, int length) {
+        long absoluteBitPos = baseBitPos + bitPos;
+        if ((absoluteBitPos % 8) != 0) {
+            return false;
+        } else if (length == 0) {
+            return true;
+        }
+        long bytePos = absoluteBitPos >>> 3;
+        int fragment = getFragment(bytePos);
+        return bytePos + length <= fragments.offsets[fragment + 1];
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer getByteBuffer(long bitPos, int length) {
+        if (isZeroCopy(bitPos, length)) {
+            if (length == 0) {
+                return ByteBuffer.allocate(0);
+            }
+            long bytePos = (baseBitPos + bitPos) >>> 3;
+            int fragment = getFragment(bytePos);
+            int index = (int) (bytePos - fragments.offsets[fragment]);
+            ByteBuffer result = fragments.buffers[fragment].duplicate();
+            result.position(index).limit(index + length);
+            return result.slice();
+        } else {
+            return copyBits(bitPos, length);
+        }
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer readAsByteBuffer(int length) throws BitBufferUnderflowException {
+        long absoluteBitPos = baseBitPos + getBitPos();
+        if ((absoluteBitPos % 8) != 0) {
+            throw new BitBufferException(
+                    "8-bit alignment exception. Bit position (" + getBitPos()
+                            + ") should be 8-bit aligned");
+        }
+        if (getBitPos() + (((long) length) << 3) > getBitBufBitSize()) {
+            throw new BitBufferUnderflowException(getBitPos(), ((long) length) << 3);
+        }
+        ByteBuffer result = getByteBuffer(getBitPos(), length);
+        setBitPos(getBitPos() + (((long) length) << 3));
+        return result;
+    }
+
+    /**
+     * Returns the entire contents of this buffer; a view if it is found in a single fragment, or a copy otherwise.
+     */
+    public ByteBuffer readAsByteBuffer() {
+        long size = getBitBufBitSize() >>> 3;
+        if (size > Integer.MAX_VALUE) {
+            throw new BitBufferException("Unable to expose the contents as a single ByteBuffer.");
+        }
+        return getByteBuffer(0L, (int) size);
+    }
+
+    /**
+     * Returns the index of the fragment holding the given byte, which is expected to be within the fragments.
+     */
+    private int getFragment(long bytePos) {
+        long[] offsets = fragments.offsets;
+        int fragment = lastFragment;
+        if (bytePos < offsets[fragment] || bytePos >= offsets[fragment + 1]) {
+            fragment = Arrays.binarySearch(offsets, 0, fragments.buffers.length, bytePos);
+            if (fragment < 0) {
+                // Not the first byte of a fragment; take the fragment preceding the insertion point
+                fragment = -fragment - 2;
+            }
+            lastFragment = fragment;
+        }
+        return fragment;
+    }
+
+    /** The fragments and the offsets at which they start, counted from the start of the first fragment. */
+    private static class Fragments {
+
+        /** The non-empty fragments, all starting at position zero, and all big endian. */
+        private final ByteBuffer[] buffers;
+
+        /**
+         * The offset of each fragment, in bytes, followed by the total size, so fragment <code>i</code> covers the
+         * bytes from <code>offsets[i]</code> up to <code>offsets[i + 1]</code>.
+         */
+        private final long[] offsets;
+
+        /** The total number of bytes. */
+        private final long size;
+
+        private Fragments(List<ByteBuffer> fragments) {
+            List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(fragments.size());
+            for (ByteBuffer fragment : fragments) {
+                if (fragment.hasRemaining()) {
+                    buffers.add(fragment.slice().order(java.nio.ByteOrder.BIG_ENDIAN));
+                }
+            }
+            this.buffers = buffers.toArray(new ByteBuffer[buffers.size()]);
+            this.offsets = new long[this.buffers.length + 1];
+            for (int i = 0; i < this.buffers.length; i++) {
+                offsets[i + 1] = offsets[i] + this.buffers[i].limit();
+            }
+            this.size = offsets[this.buffers.length];
+        }
+
+    }
+
+}
@@ -30,7 +30,11 @@ import java.nio.ByteBuffer;
  * A threadsafe {@link BitBuffer}. The threadsafe implementation is wrapped around another {@link BitBuffer}.
  *
  * @author Wilfred Springer
+ * @deprecated Every thread touching this buffer gets a duplicate of its own, which is kept for as long as the thread
+ *             lives, and every read requires a lookup of that duplicate. Share a {@link BitSource} instead, and read
+ *             from it using a {@link BitCursor} per thread.
  */
+@Deprecated
 public class ConcurrentBitBuffer extends AbstractBitBufferDecorator {
 
     /** The current {@link BitBuffer}, indexed by thread. */
@@ -71,7 +75,8 @@ public class ConcurrentBitBuffer extends AbstractBitBufferDecorator {
 
     @Override
     public BitBuffer slice(long length) {
-        return new SlicedBitBuffer(duplicate(), length);
+        // Slicing the thread-bound BitBuffer shares its data and moves its position
+        return new ConcurrentBitBuffer(getDelegate().slice(length));
     }
 
     // JavaDoc inherited
@@ -33,20 +33,17 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 /**
- * An implementation of {@link BitBuffer} wrapping a {@link ByteBuffer}.
+ * An implementation of {@link BitBuffer} wrapping a {@link ByteBuffer}. Since it only uses absolute operations on the
+ * {@link ByteBuffer}, it can also be shared as a {@link BitSource} by {@link BitCursor BitCursors} in multiple threads.
  *
  * @author Bartosz Wieczorek
  * @since Feb 18, 2007
  */
-public class DefaultBitBuffer implements BitBuffer {
+public class DefaultBitBuffer extends AbstractBitBuffer implements BitSource {
 
     static Log log = LogFactory.getLog(DefaultBitBuffer.class);
 
-    private ByteBuffer byteBuffer;
-
-    private long bitPos;
-
-    private long bitBufBitSize;
+    private final ByteBuffer byteBuffer;
 
     /**
      * Constructs a new instance.
@@ -67,13 +64,25 @@ public class DefaultBitBuffer implements BitBuffer {
      */
     private DefaultBitBuffer(ByteBuffer inputByteBuffer, long bitBufBitSize,
                              long bitPos) {
+        super(bitBufBitSize, bitPos);
         this.byteBuffer = inputByteBuffer;
-        this.bitBufBitSize = bitBufBitSize;
-        this.bitPos = bitPos;
     }
 
-    /** Read byte buffer containing binary stream and set the bit pointer position to 0. */
+    /**
+     * Read byte buffer containing binary stream and set the bit pointer position to 0. Note that a single {@link
+     * ByteBuffer} is not able to address more than 2 GB; use {@link MappedFileBitBuffer} for larger files.
+     */
     public DefaultBitBuffer(String fileName) {
+        this(map(fileName));
+    }
+
+    /**
+     * Maps the file with the given name into memory.
+     *
+     * @param fileName The name of the file.
+     * @return The contents of the file, or an empty buffer if the file could not be mapped.
+     */
+    private static ByteBuffer map(String fileName) {
 
         File file = new File(fileName);
 
@@ -93,444 +102,131 @@ public class DefaultBitBuffer implements BitBuffer {
             // Close the org.codehaus.preon.channel.channel and the stream
             fc.close();
 
-            this.byteBuffer = inputByteBuffer;
-            bitBufBitSize = ((long) (inputByteBuffer.capacity())) << 3;
-            bitPos = 0;
+            return inputByteBuffer;
 
         } catch (Exception e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
+            return ByteBuffer.allocate(0);
         }
     }
 
-    // JavaDoc inherited
-
-    public void setBitPos(long bitPos) {
-        this.bitPos = bitPos;
-    }
-
-    // JavaDoc inherited
-
-    public long getBitPos() {
-        return this.bitPos;
-    }
-
-    // JavaDoc inherited
-
-    public long getBitBufBitSize() {
-        return bitBufBitSize;
-    }
-
-    // readBits
-
-    // JavaDoc inherited
-
-    public long readBits(int nrBits) {
-        return readAsLong(nrBits);
-    }
-
-    // JavaDoc inherited
-
-    public long readBits(long bitPos, int nrBits) {
-        return readAsLong(bitPos, nrBits);
-    }
-
-    // JavaDoc inherited
-
-    public long readBits(int nrBits, ByteOrder byteOrder) {
-        return readAsLong(nrBits, byteOrder);
-    }
-
-    // JavaDoc inherited
-
-    public long readBits(long bitPos, int nrBits, ByteOrder byteOrder) {
-
-        if (nrBits <= 8)
-            return readAsByte(bitPos, nrBits, byteOrder);
-        else if (nrBits <= 16)
-            return readAsShort(bitPos, nrBits, byteOrder);
-        else if (nrBits <= 32)
-            return readAsInt(bitPos, nrBits, byteOrder);
-        else if (nrBits <= 64)
-            return readAsLong(bitPos, nrBits, byteOrder);
-        else
-            throw new BitBufferException("Wrong number of bits to read ("
-                    + nrBits + ").");
-    }
-
-    // boolean
-
-    // JavaDoc inherited
-
-    public boolean readAsBoolean() {
-        return readAsBoolean(bitPos, ByteOrder.BigEndian);
-    }
-
-    // JavaDoc inherited
-
-    public boolean readAsBoolean(long bitPos) {
-        return readAsBoolean(bitPos, ByteOrder.BigEndian);
-    }
-
-    // JavaDoc inherited
-
-    public boolean readAsBoolean(ByteOrder byteOrder) {
-        return readAsBoolean(bitPos, byteOrder);
-    }
-
-    // JavaDoc inherited
-
-    public boolean readAsBoolean(long bitPos, ByteOrder byteOrder) {
-        return getResultAsInt(bitPos, 1, byteOrder, 1) == 1;
-    }
-
-    // signed byte
-
-    // JavaDoc inherited
-
-    public byte readAsByte(int nrBits) {
-        return readAsByte(bitPos, nrBits, ByteOrder.BigEndian);
-    }
-
-    // JavaDoc inherited
-
-    public byte readAsByte(int nrBits, ByteOrder byteOrder) {
-        return readAsByte(bitPos, nrBits, byteOrder);
-    }
-
-    // JavaDoc inherited
-
-    public byte readAsByte(int nrBits, long bitPos) {
-        return readAsByte(bitPos, nrBits, ByteOrder.BigEndian);
-    }
-
-    // JavaDoc inherited
-
-    public byte readAsByte(long bitPos, int nrBits, ByteOrder byteOrder) {
-        return (byte) getResultAsInt(bitPos, nrBits, byteOrder, 8);
-    }
-
-    // signed short
-    // JavaDoc inherited
-
-    public short readAsShort(int nrBits) {
-        return readAsShort(bitPos, nrBits, ByteOrder.BigEndian);
-    }
-
-    // JavaDoc inherited
-
-    public short readAsShort(long bitPos, int nrBits) {
-        return readAsShort(bitPos, nrBits, ByteOrder.BigEndian);
-    }
-
-    // JavaDoc inherited
-
-    public short readAsShort(int nrBits, ByteOrder byteOrder) {
-        return readAsShort(bitPos, nrBits, byteOrder);
-    }
-
-    // JavaDoc inherited
-
-    public short readAsShort(long bitPos, int nrBits, ByteOrder byteOrder) {
-        return (short) getResultAsInt(bitPos, nrBits, byteOrder, 16);
-    }
-
-    // signed int
-
-    // JavaDoc inherited
-
-    public int readAsInt(int nrBits) {
-        return readAsInt(bitPos, nrBits, ByteOrder.BigEndian);
-    }
-
-    // JavaDoc inherited
-
-    public int readAsInt(long bitPos, int nrBits) {
-        return readAsInt(bitPos, nrBits, ByteOrder.BigEndian);
-    }
-
-    // JavaDoc inherited
-
-    public int readAsInt(int nrBits, ByteOrder byteOrder) {
-        return readAsInt(bitPos, nrBits, byteOrder);
-    }
-
-    // JavaDoc inherited
-
-    public int readAsInt(long bitPos, int nrBits, ByteOrder byteOrder) {
-        if (getNrNecessaryBytes(bitPos, nrBits) > 4)
-            return (int) getResultAsLong(bitPos, nrBits, byteOrder, 32);
-        else
-            return getResultAsInt(bitPos, nrBits, byteOrder, 32);
-    }
+    // bulk
 
-    // signed long
-
-    // JavaDoc inherited
-
-    public long readAsLong(int nrBits) {
-        return readAsLong(bitPos, nrBits, ByteOrder.BigEndian);
-    }
-
-    // JavaDoc inherited
-
-    public long readAsLong(long bitPos, int nrBits) {
-        return readAsLong(bitPos, nrBits, ByteOrder.BigEndian);
-    }
-
-    // JavaDoc inherited
-
-    public long readAsLong(int nrBits, ByteOrder byteOrder) {
-        return readAsLong(bitPos, nrBits, byteOrder);
+    /** Copies byte aligned, full width values in one go; reads all other values one by one. */
+    @Override
+    public void readAsIntArray(int[] dst, int offset, int count, int nrBits, ByteOrder byteOrder) {
+        long pos = getBitPos();
+        if (nrBits == 32 && (pos & 7) == 0 && validateBulkRead(pos, dst.length, offset, count, nrBits, 32)
+                && (pos >>> 3) + ((long) count << 2) <= byteBuffer.limit()) {
+            getView((int) (pos >>> 3), byteOrder).asIntBuffer().get(dst, offset, count);
+            setBitPos(pos + ((long) count << 5));
+        } else {
+            super.readAsIntArray(dst, offset, count, nrBits, byteOrder);
+        }
     }
 
-    // JavaDoc inherited
-
-    public long readAsLong(long bitPos, int nrBits, ByteOrder byteOrder) {
-        return getResultAsLong(bitPos, nrBits, byteOrder, 64);
+    /** Copies byte aligned, full width values in one go; reads all other values one by one. */
+    @Override
+    public void readAsLongArray(long[] dst, int offset, int count, int nrBits, ByteOrder byteOrder) {
+        long pos = getBitPos();
+        if (nrBits == 64 && (pos & 7) == 0 && validateBulkRead(pos, dst.length, offset, count, nrBits, 64)
+                && (pos >>> 3) + ((long) count << 3) <= byteBuffer.limit()) {
+            getView((int) (pos >>> 3), byteOrder).asLongBuffer().get(dst, offset, count);
+            setBitPos(pos + ((long) count << 6));
+        } else {
+            super.readAsLongArray(dst, offset, count, nrBits, byteOrder);
+        }
     }
 
     // private methods
 
     /**
-     * Return the minimum number of bytes that are necessary to be read in order to read specified bits
+     * Returns a view on the underlying {@link ByteBuffer}, starting at the given byte position, reading multi-byte
+     * values in the given order.
      *
-     * @param bitPos position of the first bit to read in the bit buffer
-     * @param nrBits number of bits to read
-     * @return number of bytes to read
+     * @param bytePos   position of the first byte
+     * @param byteOrder order of reading bytes (either Endian.Big or Endian.Little)
+     * @return a view on the underlying data
      */
-    private static int getNrNecessaryBytes(long bitPos, int nrBits) {
-        return (int) (((bitPos % 8) + nrBits + 7) / 8);
+    private ByteBuffer getView(int bytePos, ByteOrder byteOrder) {
+        ByteBuffer view = byteBuffer.duplicate();
+        view.position(bytePos);
+        view.order(byteOrder == ByteOrder.BigEndian ? java.nio.ByteOrder.BIG_ENDIAN : java.nio.ByteOrder.LITTLE_ENDIAN);
+        return view;
     }
 
-    /**
-     * This method shifts to the right the integer buffer containing the specified bits, so that the last specified bit is
-     * the last bit in the buffer.
-     *
-     * @param numberBuf integer buffer containing specified bits
-     * @param bitPos    position of the first specified bit
-     * @param nrBits    number of bits to read
-     * @return shifted integer buffer
-     */
-    private static int getRightShiftedNumberBufAsInt(int numberBuf,
-                                                     long bitPos, int nrBits, ByteOrder byteOrder) throws BitBufferException {
-
-        // number of bits integer buffer needs to be shifted to the right in
-        // order to reach the last bit in last byte
-        long shiftBits;
-        if (byteOrder == ByteOrder.BigEndian)
-            shiftBits = 7 - ((nrBits + bitPos + 7) % 8);
-        else
-            shiftBits = bitPos % 8;
-
-        return numberBuf >> shiftBits;
-    }
+    // JavaDoc inherited
 
-    /**
-     * This method shifts to the right the long buffer containing the specified bits, so that the last specified bit is the
-     * last bit in the buffer.
-     *
-     * @param numberBuf long buffer containing specified bits
-     * @param bitPos    position of the first specified bit
-     * @param nrBits    number of bits to read
-     * @return shifted integer buffer
-     */
-    private static long getRightShiftedNumberBufAsLong(long numberBuf,
-                                                       long bitPos, int nrBits, ByteOrder byteOrder) throws BitBufferException {
-
-        // number of bits integer buffer needs to be shifted to the right in
-        // order to reach the last bit in last byte
-        long shiftBits;
-        if (byteOrder == ByteOrder.BigEndian)
-            shiftBits = 7 - ((nrBits + bitPos + 7) % 8);
-        else
-            shiftBits = bitPos % 8;
-
-        return numberBuf >> shiftBits;
+    @Override
+    protected byte getByte(long bytePos) {
+        return byteBuffer.get((int) bytePos);
     }
 
-    /**
-     * Return a value of integer type representing the buffer storing specified bits
-     *
-     * @param byteOrder       Endian.Little of Endian.Big order of storing bytes
-     * @param nrReadBytes  number of bytes that are necessary to be read in order to read specific bits
-     * @param firstBytePos position of the first byte that is necessary to be read
-     * @return value of all read bytes, containing specified bits
-     */
-    private int getNumberBufAsInt(ByteOrder byteOrder, int nrReadBytes,
-                                  int firstBytePos) {
-
-        int result = 0;
-        int bytePortion = 0;
-        for (int i = 0; i < nrReadBytes; i++) {
-            bytePortion = 0xFF & (byteBuffer.get(firstBytePos++));
-
-            if (byteOrder == ByteOrder.LittleEndian)
-                // reshift bytes
-                result = result | bytePortion << (i << 3);
-            else
-                result = bytePortion << ((nrReadBytes - i - 1) << 3) | result;
-        }
+    // JavaDoc inherited
 
-        return result;
+    @Override
+    public long getBits(long bitPos, int nrBits, ByteOrder byteOrder) {
+        return getBits(byteBuffer, bitPos, nrBits, byteOrder);
     }
 
     /**
-     * Return a value of long type representing the buffer storing specified bits.
+     * Returns the value represented by the given bits of a {@link ByteBuffer}, without validating the read. Rather
+     * than assembling the value byte by byte, this loads the (at most) 64 bits starting at the first byte at once, and
+     * shifts and masks the bits requested out of it. Only if the bits requested span nine bytes, a single additional
+     * byte is read.
      *
-     * @param byteOrder       Endian.Little of Endian.Big order of storing bytes
-     * @param nrReadBytes  number of bytes that are necessary to be read in order to read specific bits
-     * @param firstBytePos position of the first byte that is necessary to be read
-     * @return value of all read bytes, containing specified bits
+     * @param byteBuffer the buffer holding the bits
+     * @param bitPos     position of the first bit to read in the byte buffer
+     * @param nrBits     number of bits to read
+     * @param byteOrder  order of reading bytes (either Endian.Big or Endian.Little)
+     * @return the long value represented by the given bits
      */
-    private long getNumberBufAsLong(ByteOrder byteOrder, int nrReadBytes,
-                                    int firstBytePos) {
-
-        long result = 0L;
-        long bytePortion = 0L;
-        for (int i = 0; i < nrReadBytes; i++) {
-            bytePortion = 0xFF & (byteBuffer.get(firstBytePos++));
-
-            if (byteOrder == ByteOrder.LittleEndian)
-                // reshift bytes
-                result = result | bytePortion << (i << 3);
-            else
-                result = bytePortion << ((nrReadBytes - i - 1) << 3) | result;
+    static long getBits(ByteBuffer byteBuffer, long bitPos, int nrBits, ByteOrder byteOrder) {
+        int firstBytePos = (int) (bitPos >>> 3);
+        int offset = (int) (bitPos & 7);
+        long word = getBigEndianWord(byteBuffer, firstBytePos);
+        long result;
+
+        if (byteOrder == ByteOrder.BigEndian) {
+            // move the first bit requested to the most significant position
+            result = word << offset;
+            if (offset + nrBits > 64) {
+                result |= (0xFF & byteBuffer.get(firstBytePos + 8)) >>> (8 - offset);
+            }
+            result = result >>> (64 - nrBits);
+        } else {
+            // in little endian order, the first byte holds the least significant bits
+            result = Long.reverseBytes(word) >>> offset;
+            if (offset + nrBits > 64) {
+                result |= (0xFFL & byteBuffer.get(firstBytePos + 8)) << (64 - offset);
+            }
+            result = result & (-1L >>> (64 - nrBits));
         }
-
         return result;
     }
 
     /**
-     * Check if all input parameters are correct, otherwise throw BitBufferException
+     * Returns the 64 bits starting at the given byte position, the first bit at the most significant position. Uses a
+     * single word load if at least 8 bytes are available, and pads the result with zeros at the end of the buffer.
      *
-     * @param bitPos        position of the first bit to read in the bit buffer
-     * @param nrBits        number of bits to read
-     * @param maxNrBitsRead maximum number of bits allowed to read, based on the method return type
+     * @param byteBuffer the buffer holding the bits
+     * @param bytePos    position of the first byte
+     * @return the big endian word starting at the given byte position
      */
-    private void validateInputParams(long bitPos, int nrBits, int maxNrBitsRead) {
-
-        if (nrBits < 1) {
-            throw new BitBufferException("Number of bits to read (" + nrBits
-                    + ") should greater than zero.");
+    private static long getBigEndianWord(ByteBuffer byteBuffer, int bytePos) {
+        int available = byteBuffer.limit() - bytePos;
+        if (available >= 8) {
+            long word = byteBuffer.getLong(bytePos);
+            // the ByteBuffer might have been configured to use little endian order
+            return byteBuffer.order() == java.nio.ByteOrder.BIG_ENDIAN ? word : Long.reverseBytes(word);
+        } else {
+            long word = 0L;
+            for (int i = 0; i < available; i++) {
+                word |= (0xFFL & byteBuffer.get(bytePos + i)) << (56 - (i << 3));
+            }
+            return word;
         }
-
-        if (bitPos < 0)
-            throw new BitBufferException("Bit position (" + bitPos
-                    + ") should be positive.");
-
-        if (maxNrBitsRead != 1 && maxNrBitsRead != 8 && maxNrBitsRead != 16
-                && maxNrBitsRead != 32 && maxNrBitsRead != 64)
-            throw new BitBufferException("Max number of bits to read ("
-                    + maxNrBitsRead + ") should be either 1, 8, 16, 32 or 64.");
-
-        if (nrBits > maxNrBitsRead)
-            throw new BitBufferException("Cannot read " + nrBits
-                    + " bits using " + maxNrBitsRead
-                    + " bit long numberBuf (bitPos=" + bitPos + ").");
-
-        if (bitPos + nrBits > bitBufBitSize)
-            throw new BitBufferUnderflowException(bitPos, nrBits);
-
-        // if (nrBits <= maxNrBitsRead / 2 && log.isWarnEnabled())
-        // log.warn("It is not recommended to read " + nrBits + " using "
-        // + maxNrBitsRead + " bit long numberBuf (bitPos=" + bitPos
-        // + ").");
-
-    }
-
-    /**
-     * Return an integral mask with a given number of 1's at least significant bit positions.
-     *
-     * @param nrBits number of bits to read
-     * @return integer value of the mask
-     */
-    private static int getMaskAsInt(int nrBits) {
-        return 0xFFFFFFFF >>> (32 - nrBits);
-    }
-
-    /**
-     * Return an integral mask with a given number of 1's at least significant bit positions.
-     *
-     * @param nrBits number of bits to read
-     * @return long value of the mask
-     */
-    private static long getMaskAsLong(int nrBits) {
-        return 0xFFFFFFFFFFFFFFFFL >>> (64 - nrBits);
-    }
-
-    /**
-     * Calculates the value represented by the given bits.
-     *
-     * @param bitPos        position of the first bit to read in the bit buffer
-     * @param nrBits        number of bits to read
-     * @param byteOrder        order of reading bytes (either Endian.Big or Endian.Little)
-     * @param maxNrBitsRead maximum number of bits allowed to read, based on the method return type
-     * @return the integer value represented by the given bits
-     */
-    private int getResultAsInt(long bitPos, int nrBits, ByteOrder byteOrder,
-                               int maxNrBitsRead) {
-
-        // check if input params are correct otherwise throw BitBufferException
-        validateInputParams(bitPos, nrBits, maxNrBitsRead);
-
-        // min number of bytes covering specified bits
-        int nrReadBytes = getNrNecessaryBytes(bitPos, nrBits);
-
-        // buffer containing specified bits
-        int numberBuf = getNumberBufAsInt(byteOrder, nrReadBytes,
-                (int) (bitPos >> 3));
-
-        // mask leaving only specified bits
-        int mask = getMaskAsInt(nrBits);
-
-        // apply the mask for to the right shifted number buffer with the
-        // specific bits to the most right
-        int result = mask
-                & getRightShiftedNumberBufAsInt(numberBuf, bitPos, nrBits,
-                byteOrder);
-
-        // increase bit pointer position by the number of read bits
-        this.bitPos = bitPos + nrBits;
-
-        return result;
-    }
-
-    /**
-     * Calculates the value represented by the given bits.
-     *
-     * @param bitPos        position of the first bit to read in the bit buffer
-     * @param nrBits        number of bits to read
-     * @param byteOrder        order of reading bytes (either Endian.Big or Endian.Little)
-     * @param maxNrBitsRead maximum number of bits allowed to read, based on the method return type
-     * @return the long value represented by the given bits
-     */
-    private long getResultAsLong(long bitPos, int nrBits, ByteOrder byteOrder,
-                                 int maxNrBitsRead) {
-
-        // check if input params are correct otherwise throw BitBufferException
-        validateInputParams(bitPos, nrBits, maxNrBitsRead);
-
-        // min number of bytes covering specified bits
-        int nrReadBytes = getNrNecessaryBytes(bitPos, nrBits);
-
-        // buffer containing specified bits
-        long numberBuf = getNumberBufAsLong(byteOrder, nrReadBytes,
-                (int) (bitPos >> 3));
-
-        // mask leaving only specified bits
-        long mask = getMaskAsLong(nrBits);
-
-        // apply the mask for to the right shifted number buffer with the
-        // specific bits to the most right
-        long result = mask
-                & getRightShiftedNumberBufAsLong(numberBuf, bitPos, nrBits,
-                byteOrder);
-
-        // increase bit pointer position by the number of read bits
-        this.bitPos = bitPos + nrBits;
-
-        return result;
     }
 
     /**
@@ -544,45 +240,40 @@ public class DefaultBitBuffer implements BitBuffer {
 
     // JavaDoc inherited
 
-    public BitBuffer slice(long length) {
-        BitBuffer result = new SlicedBitBuffer(duplicate(), length);
-        setBitPos(getBitPos() + length);
-        return result;
-    }
-
-    // JavaDoc inherited
-
     public BitBuffer duplicate() {
-        return new DefaultBitBuffer(byteBuffer.duplicate(), bitBufBitSize,
-                bitPos);
+        return new DefaultBitBuffer(byteBuffer.duplicate(), getBitBufBitSize(),
+                getBitPos());
     }
 
+    /**
+     * Returns a view on the next <code>length</code> bytes. The view is created from a {@link ByteBuffer#duplicate()}
+     * of the underlying buffer, so concurrent readers of this instance as a {@link BitSource} are not affected.
+     */
     public ByteBuffer readAsByteBuffer(int length)
             throws BitBufferUnderflowException {
+        validateByteBufferRead(length);
+        ByteBuffer result = getByteBuffer(getBitPos(), length);
+        setBitPos(getBitPos() + (((long) length) << 3));
+        return result;
+    }
 
-        if ((this.bitPos % 8) != 0) {
-            throw new BitBufferException(
-                    "8-bit alignment exception. Bit position (" + bitPos
-                            + ") should be 8-bit aligned");
-        }
+    @Override
+    public boolean isZeroCopy(int length) {
+        return getBitPos() + (((long) length) << 3) <= getBitBufBitSize() && isZeroCopy(getBitPos(), length);
+    }
 
-        int bitsToRead = length << 3; // == (length * 8)
+    public boolean isZeroCopy(long bitPos, int length) {
+        return (bitPos % 8) == 0 && (bitPos >>> 3) + length <= byteBuffer.limit();
+    }
 
-        if (getBitPos() + bitsToRead > getBitBufBitSize()) {
-            throw new BitBufferUnderflowException(getBitPos(), bitsToRead);
+    public ByteBuffer getByteBuffer(long bitPos, int length) {
+        if (isZeroCopy(bitPos, length)) {
+            ByteBuffer result = byteBuffer.duplicate();
+            result.position((int) (bitPos >>> 3)).limit((int) (bitPos >>> 3) + length);
+            return result.slice();
+        } else {
+            return copyBits(bitPos, length);
         }
-
-        int sliceStartPosition = (int) (this.bitPos >>> 3);// == (bitPos / 8)
-
-        ByteBuffer slicedByteBuffer = this.slice(byteBuffer,
-                sliceStartPosition, length);
-
-        // ByteBuffer byteBuffer = ByteBuffer.wrap(this.byteBuffer.array(),
-        // (int) (this.bitPos >>> 3), length);
-
-        this.bitPos = bitPos + bitsToRead;
-
-        return slicedByteBuffer;
     }
 
     public ByteBuffer readAsByteBuffer() {
@@ -591,35 +282,4 @@ public class DefaultBitBuffer implements BitBuffer {
         return buffer;
     }
 
-    /**
-     * Work around that allows creation of a sub-view of a larger byte buffer.
-     * <p/>
-     * http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=5071718
-     *
-     * @param byteBuffer    - Original {@link ByteBuffer} to be sliced
-     * @param slicePosition - Start position of the slice (e.g. sub-view) in the byte buffer
-     * @param length        - Length of the slice (e.g. sub-view) in bytes, measured from the positions
-     * @return Returns the sliced {@link ByteBuffer}. Original buffer is left in its original state;
-     */
-    private ByteBuffer slice(ByteBuffer byteBuffer, int slicePosition,
-                             int length) {
-
-        int currentBufferPosition = this.byteBuffer.position();
-        int currentBufferLimit = this.byteBuffer.limit();
-
-        this.byteBuffer.position(slicePosition).limit(slicePosition + length);
-
-        ByteBuffer slicedByteBuffer = this.byteBuffer.slice();
-
-		// Revert the buffer in its original state
-		this.byteBuffer.position(currentBufferPosition).limit(
-				currentBufferLimit);
-
-		return slicedByteBuffer;
-	}
-
-    public long getActualBitPos() {
-        return bitPos;
-    }
-
 }
@@ -0,0 +1,870 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link BitBuffer} decompressing GZIP, ZLIB or raw DEFLATE data from a {@link FileChannel} on the fly, so compressed
+ * files can be decoded without inflating them first. Decompressed data is kept in a bounded window, like {@link
+ * StreamingBitBuffer} does.
+ * <p/>
+ * Moving backwards past the window does not require decompressing everything from the start of the file again. While
+ * decompressing, the buffer records a checkpoint at the first DEFLATE block boundary after every
+ * <code>checkpointInterval</code> bytes of output. A checkpoint holds the position in the compressed file and the last
+ * 32 kB of decompressed data preceding it; that is all that is required to resume decompression from there. Moving the
+ * bit pointer backwards, or forward beyond data decompressed before, restarts decompression from the closest
+ * checkpoint preceding the position. With the default settings, checkpoints take up about 3% of the size of the
+ * decompressed data.
+ * <p/>
+ * Since the size of the decompressed data is not known in advance, {@link #getBitBufBitSize()} will return {@link
+ * Long#MAX_VALUE} until the end of the compressed data has been reached. Use {@link #hasRemaining()} to find out if
+ * there is more data. Duplicates and slices share the window and the checkpoints with the buffer they have been created
+ * from. Instances are not thread-safe.
+ */
+public class InflatingBitBuffer extends AbstractBitBuffer implements Closeable {
+
+    /** The formats of compressed data supported. */
+    public enum Format {
+
+        /** GZIP (RFC 1952) data, possibly consisting of multiple members. */
+        GZIP,
+
+        /** ZLIB (RFC 1950) data. */
+        ZLIB,
+
+        /** Raw DEFLATE (RFC 1951) data. */
+        DEFLATE
+
+    }
+
+    /** The default size of the window, in bytes. */
+    public static final int DEFAULT_WINDOW_SIZE = 256 * 1024;
+
+    /** The default minimal number of decompressed bytes between two checkpoints. */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1024 * 1024;
+
+    /** The decompressor, shared by all duplicates. */
+    private final Decompressor decompressor;
+
+    /**
+     * Constructs a new instance, reading compressed data from the channel passed in. The format is derived from the
+     * first bytes of the channel.
+     *
+     * @param channel The channel providing the compressed data.
+     * @throws IOException If the first bytes cannot be read.
+     */
+    public InflatingBitBuffer(FileChannel channel) throws IOException {
+        this(channel, detectFormat(channel));
+    }
+
+    /**
+     * Constructs a new instance, reading compressed data in the given format from the channel passed in.
+     *
+     * @param channel The channel providing the compressed data.
+     * @param format  The format of the compressed data.
+     */
+    public InflatingBitBuffer(FileChannel channel, Format format) {
+        this(channel, format, DEFAULT_WINDOW_SIZE, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Constructs a new instance, reading compressed data in the given format from the channel passed in.
+     *
+     * @param channel            The channel providing the compressed data.
+     * @param format             The format of the compressed data.
+     * @param windowSize         The size of the window, in bytes. Needs to be at least 64 kB.
+     * @param checkpointInterval The minimal number of decompressed bytes between two checkpoints.
+     */
+    public InflatingBitBuffer(FileChannel channel, Format format, int windowSize, int checkpointInterval) {
+        this(new Decompressor(channel, format, windowSize, checkpointInterval), 0L);
+    }
+
+    private InflatingBitBuffer(Decompressor decompressor, long bitPos) {
+        super(Long.MAX_VALUE, bitPos);
+        this.decompressor = decompressor;
+    }
+
+    /**
+     * Returns the size of the decompressed data in bits if the end of the compressed data has been reached, or {@link
+     * Long#MAX_VALUE} otherwise.
+     */
+    @Override
+    public long getBitBufBitSize() {
+        return decompressor.size >= 0 ? decompressor.size << 3 : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns whether there is at least one more bit available from the current position, decompressing data if
+     * required.
+     *
+     * @return <code>true</code> if at least one more bit can be read.
+     */
+    public boolean hasRemaining() {
+        return decompressor.fill(getBitPos() >>> 3, 1);
+    }
+
+    /** Returns the number of checkpoints recorded so far. */
+    public int getCheckpoints() {
+        return decompressor.checkpoints.size();
+    }
+
+    /** Returns the number of times decompression has been resumed from a checkpoint. */
+    public int getRestarts() {
+        return decompressor.restarts;
+    }
+
+    @Override
+    protected long getBits(long bitPos, int nrBits, ByteOrder byteOrder) {
+        long bytePos = bitPos >>> 3;
+        int nrReadBytes = (int) (((bitPos & 7) + nrBits + 7) >>> 3);
+        if (!decompressor.fill(bytePos, nrReadBytes)) {
+            throw new BitBufferUnderflowException(bitPos, nrBits);
+        }
+        return super.getBits(bitPos, nrBits, byteOrder);
+    }
+
+    @Override
+    protected byte getByte(long bytePos) {
+        return decompressor.data[(int) (bytePos - decompressor.start)];
+    }
+
+    // JavaDoc inherited
+
+    public BitBuffer duplicate() {
+        return new InflatingBitBuffer(decompressor, getBitPos());
+    }
+
+    /**
+     * Returns a {@link ByteBuffer} holding the next <code>length</code> bytes. Since the window will be overwritten
+     * once it moves, the bytes are copied.
+     */
+    public ByteBuffer readAsByteBuffer(int length) throws BitBufferUnderflowException {
+        if ((getBitPos() % 8) != 0) {
+            throw new BitBufferException(
+                    "8-bit alignment exception. Bit position (" + getBitPos()
+                            + ") should be 8-bit aligned");
+        }
+        ByteBuffer result = ByteBuffer.allocate(length);
+        long bytePos = getBitPos() >>> 3;
+        while (result.hasRemaining()) {
+            int chunk = Math.min(result.remaining(), decompressor.maxChunk);
+            if (!decompressor.fill(bytePos, chunk)) {
+                throw new BitBufferUnderflowException(getBitPos(), ((long) length) << 3);
+            }
+            result.put(decompressor.data, (int) (bytePos - decompressor.start), chunk);
+            bytePos += chunk;
+        }
+        result.flip();
+        setBitPos(getBitPos() + (((long) length) << 3));
+        return result;
+    }
+
+    /**
+     * Not supported, since the decompressed data cannot be exposed as a whole.
+     *
+     * @throws BitBufferException Always.
+     */
+    public ByteBuffer readAsByteBuffer() {
+        throw new BitBufferException("Decompressed data cannot be exposed as a single ByteBuffer.");
+    }
+
+    /**
+     * Closes the underlying channel.
+     *
+     * @throws IOException If the channel fails to close.
+     */
+    public void close() throws IOException {
+        decompressor.channel.close();
+    }
+
+    /**
+     * Determines the format of the compressed data from its first two bytes: the GZIP magic number, or a valid ZLIB
+     * header. Anything else is assumed to be raw DEFLATE data.
+     *
+     * @param channel The channel providing the compressed data.
+     * @return The format of the compressed data.
+     * @throws IOException If the first bytes cannot be read.
+     */
+    public static Format detectFormat(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(2);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+        }
+        if (header.hasRemaining()) {
+            return Format.DEFLATE;
+        }
+        int first = header.get(0) & 0xff;
+        int second = header.get(1) & 0xff;
+        if (first == 0x1f && second == 0x8b) {
+            return Format.GZIP;
+        } else if ((first & 0x0f) == 8 && (first >>> 4) < 8 && ((first << 8) | second) % 31 == 0) {
+            return Format.ZLIB;
+        } else {
+            return Format.DEFLATE;
+        }
+    }
+
+    /** The state of the decompressor, in terms of the part of the compressed data expected next. */
+    private enum State {
+        STREAM_HEADER, BLOCK_HEADER, STORED, HUFFMAN, TRAILER, DONE
+    }
+
+    /** The information required to resume decompression at a block boundary. */
+    private static class Checkpoint {
+
+        /** The position in the decompressed data. */
+        private final long outPos;
+
+        /** The position in the compressed data, in bits. */
+        private final long inBitPos;
+
+        /** The decompressed data preceding {@link #outPos}, at most 32 kB. */
+        private final byte[] history;
+
+        private final State state;
+
+        private final long memberStart;
+
+        private final int crc;
+
+        private final int adlerA;
+
+        private final int adlerB;
+
+        private Checkpoint(long outPos, long inBitPos, byte[] history, State state, long memberStart,
+                           int crc, int adlerA, int adlerB) {
+            this.outPos = outPos;
+            this.inBitPos = inBitPos;
+            this.history = history;
+            this.state = state;
+            this.memberStart = memberStart;
+            this.crc = crc;
+            this.adlerA = adlerA;
+            this.adlerB = adlerB;
+        }
+
+    }
+
+    /**
+     * A canonical Huffman code, decoded through a single table indexed by the next (bit-reversed) bits of input. Each
+     * entry holds the symbol in the upper bits, and the length of its code in the lower four bits; a length of zero
+     * marks an invalid code.
+     */
+    private static class Huffman {
+
+        private final int[] table;
+
+        private final int bits;
+
+        private Huffman(byte[] lengths, int offset, int count) {
+            int[] counts = new int[16];
+            int max = 0;
+            for (int i = 0; i < count; i++) {
+                counts[lengths[offset + i]]++;
+                max = Math.max(max, lengths[offset + i]);
+            }
+            int left = 1;
+            for (int len = 1; len < 16; len++) {
+                left = (left << 1) - counts[len];
+                if (left < 0) {
+                    throw new BitBufferException("Corrupt compressed data: over-subscribed Huffman code.");
+                }
+            }
+            int[] next = new int[16];
+            int code = 0;
+            counts[0] = 0;
+            for (int len = 1; len < 16; len++) {
+                code = (code + counts[len - 1]) << 1;
+                next[len] = code;
+            }
+            bits = Math.max(max, 1);
+            table = new int[1 << bits];
+            for (int symbol = 0; symbol < count; symbol++) {
+                int len = lengths[offset + symbol];
+                if (len > 0) {
+                    int reversed = Integer.reverse(next[len]++) >>> (32 - len);
+                    for (int i = reversed; i < table.length; i += 1 << len) {
+                        table[i] = (symbol << 4) | len;
+                    }
+                }
+            }
+        }
+
+    }
+
+    /** The window onto the decompressed data, holding <code>length</code> bytes, starting at byte <code>start</code>. */
+    private static class Decompressor {
+
+        /** The amount of history a back reference may refer to. */
+        private static final int HISTORY = 32 * 1024;
+
+        /** The maximum number of bytes produced by a single back reference. */
+        private static final int MAX_MATCH = 258;
+
+        private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+        private static final int[] LENGTH_BASE = {
+                3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+                35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258};
+
+        private static final int[] LENGTH_EXTRA = {
+                0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+                3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0};
+
+        private static final int[] DISTANCE_BASE = {
+                1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
+                257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+
+        private static final int[] DISTANCE_EXTRA = {
+                0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+                7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13};
+
+        /** The order in which the code lengths of the code length alphabet are stored. */
+        private static final int[] CODE_LENGTH_ORDER = {
+                16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+        private static final Huffman FIXED_LITERALS;
+
+        private static final Huffman FIXED_DISTANCES;
+
+        private static final int[] CRC_TABLE = new int[256];
+
+        static {
+            byte[] lengths = new byte[288];
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = (byte) (i < 144 ? 8 : i < 256 ? 9 : i < 280 ? 7 : 8);
+            }
+            FIXED_LITERALS = new Huffman(lengths, 0, 288);
+            lengths = new byte[30];
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = 5;
+            }
+            FIXED_DISTANCES = new Huffman(lengths, 0, 30);
+            for (int i = 0; i < 256; i++) {
+                int crc = i;
+                for (int j = 0; j < 8; j++) {
+                    crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xedb88320 : crc >>> 1;
+                }
+                CRC_TABLE[i] = crc;
+            }
+        }
+
+        private final FileChannel channel;
+
+        private final Format format;
+
+        private final int checkpointInterval;
+
+        private final byte[] data;
+
+        /** The maximum number of bytes that can be requested from {@link #fill(long, int)} at once. */
+        private final int maxChunk;
+
+        /** The position of the first byte in {@link #data}, counted from the start of the decompressed data. */
+        private long start;
+
+        /** The number of valid bytes in {@link #data}. */
+        private int length;
+
+        /** The size of the decompressed data in bytes, or -1 if the end has not been reached yet. */
+        private long size = -1;
+
+        private final List<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+
+        private int restarts;
+
+        private State state = State.STREAM_HEADER;
+
+        /** Whether the current block is the last block of the DEFLATE stream. */
+        private boolean lastBlock;
+
+        /** The number of bytes remaining in the current stored block. */
+        private int storedRemaining;
+
+        private Huffman literals;
+
+        private Huffman distances;
+
+        /** The position in the decompressed data at which the current GZIP member starts. */
+        private long memberStart;
+
+        private int crc = 0xffffffff;
+
+        private int adlerA = 1;
+
+        private int adlerB;
+
+        /** Compressed data read from the channel, not yet moved to {@link #bitBuffer}. */
+        private final ByteBuffer input = ByteBuffer.allocate(INPUT_BUFFER_SIZE);
+
+        /** The position in the channel of the byte following the data in {@link #input}. */
+        private long inputPos;
+
+        /** Compressed bits not consumed yet, the first one in the least significant bit. */
+        private long bitBuffer;
+
+        private int bitCount;
+
+        private Decompressor(FileChannel channel, Format format, int windowSize, int checkpointInterval) {
+            if (windowSize < 2 * HISTORY) {
+                throw new IllegalArgumentException("Window size (" + windowSize + ") should be at least "
+                        + (2 * HISTORY) + " bytes.");
+            }
+            this.channel = channel;
+            this.format = format;
+            this.checkpointInterval = checkpointInterval;
+            this.data = new byte[windowSize];
+            this.maxChunk = windowSize - HISTORY - MAX_MATCH;
+            input.flip();
+            checkpoints.add(new Checkpoint(0L, 0L, new byte[0], State.STREAM_HEADER, 0L, crc, adlerA, adlerB));
+        }
+
+        /**
+         * Makes sure <code>count</code> bytes starting at <code>bytePos</code> are inside the window, restarting from
+         * a checkpoint if that gets there sooner than decompressing from the current position. <code>count</code>
+         * should not exceed {@link #maxChunk}.
+         *
+         * @return <code>false</code> if the end of the data is reached before the bytes requested are available.
+         */
+        private boolean fill(long bytePos, int count) {
+            long target = bytePos + count;
+            if (target <= start + length && bytePos >= start) {
+                return true;
+            }
+            Checkpoint checkpoint = getCheckpoint(bytePos);
+            if (bytePos < start || checkpoint.outPos > start + length) {
+                restart(checkpoint);
+            }
+            while (start + length < target) {
+                if (state == State.DONE) {
+                    return false;
+                }
+                if (length + MAX_MATCH > data.length) {
+                    release(bytePos);
+                }
+                int from = length;
+                step(target);
+                updateChecksum(from, length);
+            }
+            return true;
+        }
+
+        /** Returns the last checkpoint preceding or at <code>bytePos</code>. */
+        private Checkpoint getCheckpoint(long bytePos) {
+            int low = 0;
+            int high = checkpoints.size() - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (checkpoints.get(mid).outPos <= bytePos) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return checkpoints.get(low);
+        }
+
+        private void restart(Checkpoint checkpoint) {
+            System.arraycopy(checkpoint.history, 0, data, 0, checkpoint.history.length);
+            start = checkpoint.outPos - checkpoint.history.length;
+            length = checkpoint.history.length;
+            state = checkpoint.state;
+            memberStart = checkpoint.memberStart;
+            crc = checkpoint.crc;
+            adlerA = checkpoint.adlerA;
+            adlerB = checkpoint.adlerB;
+            inputPos = checkpoint.inBitPos >>> 3;
+            input.clear();
+            input.flip();
+            bitBuffer = 0;
+            bitCount = 0;
+            getBits((int) (checkpoint.inBitPos & 7));
+            restarts++;
+        }
+
+        /**
+         * Releases data preceding <code>bytePos</code> to make room for more, retaining the history required to
+         * resolve back references.
+         */
+        private void release(long bytePos) {
+            long keep = Math.max(start, Math.min(bytePos, start + length - HISTORY));
+            int released = (int) (keep - start);
+            System.arraycopy(data, released, data, 0, length - released);
+            start = keep;
+            length -= released;
+        }
+
+        /** Processes the next part of the compressed data, decompressing no further than required to reach target. */
+        private void step(long target) {
+            switch (state) {
+                case STREAM_HEADER:
+                    readStreamHeader();
+                    break;
+                case BLOCK_HEADER:
+                    if (start + length - checkpoints.get(checkpoints.size() - 1).outPos >= checkpointInterval) {
+                        int history = Math.min(length, HISTORY);
+                        byte[] copy = new byte[history];
+                        System.arraycopy(data, length - history, copy, 0, history);
+                        checkpoints.add(new Checkpoint(start + length, getInputBitPos(), copy, state, memberStart,
+                                crc, adlerA, adlerB));
+                    }
+                    readBlockHeader();
+                    break;
+                case STORED:
+                    copyStored();
+                    break;
+                case HUFFMAN:
+                    inflate(target);
+                    break;
+                case TRAILER:
+                    readTrailer();
+                    break;
+            }
+        }
+
+        private void readStreamHeader() {
+            memberStart = start + length;
+            switch (format) {
+                case GZIP:
+                    if (getInputBitPos() > 0 && !(available(2) && (bitBuffer & 0xffff) == 0x8b1f)) {
+                        // Anything following the last member is ignored
+                        finish();
+                        return;
+                    }
+                    if (getBits(16) != 0x8b1f) {
+                        throw new BitBufferException("Compressed data not in GZIP format.");
+                    }
+                    if (getBits(8) != 8) {
+                        throw new BitBufferException("Unsupported compression method in GZIP header.");
+                    }
+                    int flags = getBits(8);
+                    getBits(16); // Modification time
+                    getBits(16);
+                    getBits(16); // Extra flags and operating system
+                    if ((flags & 4) != 0) {
+                        for (int remaining = getBits(16); remaining > 0; remaining--) {
+                            getBits(8);
+                        }
+                    }
+                    if ((flags & 8) != 0) {
+                        while (getBits(8) != 0) {
+                        }
+                    }
+                    if ((flags & 16) != 0) {
+                        while (getBits(8) != 0) {
+                        }
+                    }
+                    if ((flags & 2) != 0) {
+                        getBits(16);
+                    }
+                    crc = 0xffffffff;
+                    break;
+                case ZLIB:
+                    int header = (getBits(8) << 8) | getBits(8);
+                    if ((header & 0x0f00) != 0x0800 || header % 31 != 0) {
+                        throw new BitBufferException("Compressed data not in ZLIB format.");
+                    }
+                    if ((header & 0x20) != 0) {
+                        throw new BitBufferException("ZLIB data requiring a preset dictionary is not supported.");
+                    }
+                    adlerA = 1;
+                    adlerB = 0;
+                    break;
+            }
+            state = State.BLOCK_HEADER;
+        }
+
+        private void readBlockHeader() {
+            lastBlock = getBits(1) == 1;
+            switch (getBits(2)) {
+                case 0:
+                    alignToByte();
+                    int len = getBits(16);
+                    if (len != (~getBits(16) & 0xffff)) {
+                        throw new BitBufferException("Corrupt compressed data: invalid stored block length.");
+                    }
+                    storedRemaining = len;
+                    state = State.STORED;
+                    break;
+                case 1:
+                    literals = FIXED_LITERALS;
+                    distances = FIXED_DISTANCES;
+                    state = State.HUFFMAN;
+                    break;
+                case 2:
+                    readDynamicCodes();
+                    state = State.HUFFMAN;
+                    break;
+                default:
+                    throw new BitBufferException("Corrupt compressed data: invalid block type.");
+            }
+        }
+
+        private void readDynamicCodes() {
+            int nrLiterals = getBits(5) + 257;
+            int nrDistances = getBits(5) + 1;
+            int nrCodeLengths = getBits(4) + 4;
+            if (nrLiterals > 286 || nrDistances > 30) {
+                throw new BitBufferException("Corrupt compressed data: too many Huffman codes.");
+            }
+            byte[] lengths = new byte[19];
+            for (int i = 0; i < nrCodeLengths; i++) {
+                lengths[CODE_LENGTH_ORDER[i]] = (byte) getBits(3);
+            }
+            Huffman codeLengths = new Huffman(lengths, 0, 19);
+            lengths = new byte[nrLiterals + nrDistances];
+            int i = 0;
+            while (i < lengths.length) {
+                int symbol = decode(codeLengths);
+                if (symbol < 16) {
+                    lengths[i++] = (byte) symbol;
+                } else {
+                    byte len = 0;
+                    int repeat;
+                    if (symbol == 16) {
+                        if (i == 0) {
+                            throw new BitBufferException("Corrupt compressed data: no code length to repeat.");
+                        }
+                        len = lengths[i - 1];
+                        repeat = 3 + getBits(2);
+                    } else if (symbol == 17) {
+                        repeat = 3 + getBits(3);
+                    } else {
+                        repeat = 11 + getBits(7);
+                    }
+                    if (i + repeat > lengths.length) {
+                        throw new BitBufferException("Corrupt compressed data: too many code lengths.");
+                    }
+                    while (repeat-- > 0) {
+                        lengths[i++] = len;
+                    }
+                }
+            }
+            if (lengths[256] == 0) {
+                throw new BitBufferException("Corrupt compressed data: missing end-of-block code.");
+            }
+            literals = new Huffman(lengths, 0, nrLiterals);
+            distances = new Huffman(lengths, nrLiterals, nrDistances);
+        }
+
+        private void copyStored() {
+            int count = Math.min(storedRemaining, data.length - length);
+            storedRemaining -= count;
+            while (count > 0 && bitCount > 0) {
+                data[length++] = (byte) getBits(8);
+                count--;
+            }
+            while (count > 0) {
+                if (!load()) {
+                    throw new BitBufferException("Unexpected end of compressed data.");
+                }
+                int chunk = Math.min(count, input.remaining());
+                input.get(data, length, chunk);
+                length += chunk;
+                count -= chunk;
+            }
+            if (storedRemaining == 0) {
+                endBlock();
+            }
+        }
+
+        private void inflate(long target) {
+            int limit = data.length - MAX_MATCH;
+            while (length <= limit && start + length < target) {
+                int symbol = decode(literals);
+                if (symbol < 256) {
+                    data[length++] = (byte) symbol;
+                } else if (symbol == 256) {
+                    endBlock();
+                    return;
+                } else {
+                    symbol -= 257;
+                    if (symbol >= LENGTH_BASE.length) {
+                        throw new BitBufferException("Corrupt compressed data: invalid length code.");
+                    }
+                    int len = LENGTH_BASE[symbol] + getBits(LENGTH_EXTRA[symbol]);
+                    symbol = decode(distances);
+                    if (symbol >= DISTANCE_BASE.length) {
+                        throw new BitBufferException("Corrupt compressed data: invalid distance code.");
+                    }
+                    int distance = DISTANCE_BASE[symbol] + getBits(DISTANCE_EXTRA[symbol]);
+                    if (distance > length) {
+                        throw new BitBufferException("Corrupt compressed data: distance too far back.");
+                    }
+                    int from = length - distance;
+                    if (distance >= len) {
+                        System.arraycopy(data, from, data, length, len);
+                    } else {
+                        for (int i = 0; i < len; i++) {
+                            data[length + i] = data[from + i];
+                        }
+                    }
+                    length += len;
+                }
+            }
+        }
+
+        private void endBlock() {
+            if (!lastBlock) {
+                state = State.BLOCK_HEADER;
+            } else if (format == Format.DEFLATE) {
+                finish();
+            } else {
+                state = State.TRAILER;
+            }
+        }
+
+        private void readTrailer() {
+            alignToByte();
+            if (format == Format.GZIP) {
+                int expectedCrc = getBits(16) | (getBits(16) << 16);
+                int expectedSize = getBits(16) | (getBits(16) << 16);
+                if (expectedCrc != ~crc || expectedSize != (int) (start + length - memberStart)) {
+                    throw new BitBufferException("Corrupt compressed data: GZIP checksum mismatch.");
+                }
+                state = State.STREAM_HEADER;
+            } else {
+                int expected = 0;
+                for (int i = 0; i < 4; i++) {
+                    expected = (expected << 8) | getBits(8);
+                }
+                if (expected != ((adlerB << 16) | adlerA)) {
+                    throw new BitBufferException("Corrupt compressed data: ZLIB checksum mismatch.");
+                }
+                finish();
+            }
+        }
+
+        private void finish() {
+            state = State.DONE;
+            size = start + length;
+        }
+
+        private void updateChecksum(int from, int to) {
+            if (format == Format.GZIP) {
+                int c = crc;
+                for (int i = from; i < to; i++) {
+                    c = CRC_TABLE[(c ^ data[i]) & 0xff] ^ (c >>> 8);
+                }
+                crc = c;
+            } else if (format == Format.ZLIB) {
+                long a = adlerA;
+                long b = adlerB;
+                int i = from;
+                while (i < to) {
+                    // 5552 is the largest number of bytes for which b cannot overflow before taking the modulus
+                    for (int end = Math.min(to, i + 5552); i < end; i++) {
+                        a += data[i] & 0xff;
+                        b += a;
+                    }
+                    a %= 65521;
+                    b %= 65521;
+                }
+                adlerA = (int) a;
+                adlerB = (int) b;
+            }
+        }
+
+        /** Returns the position of the next bit to be consumed in the compressed data. */
+        private long getInputBitPos() {
+            return ((inputPos - input.remaining()) << 3) - bitCount;
+        }
+
+        /**
+         * Makes sure {@link #input} holds data, reading from the channel if required.
+         *
+         * @return <code>false</code> if the end of the channel has been reached.
+         */
+        private boolean load() {
+            if (!input.hasRemaining()) {
+                try {
+                    input.clear();
+                    int read = channel.read(input, inputPos);
+                    input.flip();
+                    if (read <= 0) {
+                        return false;
+                    }
+                    inputPos += read;
+                } catch (IOException ioe) {
+                    throw new BitBufferException("Failed to read from the underlying channel.", ioe);
+                }
+            }
+            return true;
+        }
+
+        /** Moves up to <code>nrBytes</code> bytes into {@link #bitBuffer}, returning whether that succeeded. */
+        private boolean available(int nrBytes) {
+            while (bitCount < nrBytes << 3 && load()) {
+                bitBuffer |= (long) (input.get() & 0xff) << bitCount;
+                bitCount += 8;
+            }
+            return bitCount >= nrBytes << 3;
+        }
+
+        /** Consumes the next <code>nrBits</code> (at most 31) bits, the first one ending up in the lowest bit. */
+        private int getBits(int nrBits) {
+            if (nrBits == 0) {
+                return 0;
+            }
+            if (bitCount < nrBits && !available((nrBits + 7) >>> 3)) {
+                throw new BitBufferException("Unexpected end of compressed data.");
+            }
+            int result = (int) (bitBuffer & ((1L << nrBits) - 1));
+            bitBuffer >>>= nrBits;
+            bitCount -= nrBits;
+            return result;
+        }
+
+        private void alignToByte() {
+            int skip = bitCount & 7;
+            bitBuffer >>>= skip;
+            bitCount -= skip;
+        }
+
+        private int decode(Huffman huffman) {
+            if (bitCount < huffman.bits) {
+                // Near the end of the data, fewer bits may be left than the longest code
+                available((huffman.bits + 7) >>> 3);
+            }
+            int entry = huffman.table[(int) bitBuffer & (huffman.table.length - 1)];
+            int len = entry & 15;
+            if (len == 0) {
+                throw new BitBufferException("Corrupt compressed data: invalid Huffman code.");
+            } else if (len > bitCount) {
+                throw new BitBufferException("Unexpected end of compressed data.");
+            }
+            bitBuffer >>>= len;
+            bitCount -= len;
+            return entry >>> 4;
+        }
+
+    }
+
+}
@@ -0,0 +1,555 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link BitBuffer} decorator keeping track of the way data is read from the buffer it wraps: the number of reads by
+ * width, aligned and unaligned reads, reads moving backwards, the number of bytes touched and the number of bits
+ * skipped. Wrap the buffer passed to a {@link org.codehaus.preon.Codec} to find out which parts of a schema cause
+ * unaligned reads or re-reads, or which kind of buffer suits the access pattern best. A read is considered to move
+ * backwards if it starts before the end of the previous read, and to skip data if it starts beyond it.
+ * <p/>
+ * The statistics are shared by the buffer and all of its slices and duplicates, and can be obtained at any time through
+ * {@link #getStatistics()}. The buffer being wrapped is not affected in any way, so there is no cost at all when not
+ * using this decorator. The counters are not updated atomically; use a separate instance per thread.
+ */
+public class InstrumentedBitBuffer extends AbstractBitBufferDecorator {
+
+    private final BitBuffer delegate;
+
+    /** The counters, shared by all slices and duplicates. */
+    private final Counters counters;
+
+    /** The position of the bit following the last bit read through this instance. */
+    private long lastEnd;
+
+    /**
+     * Constructs a new instance, keeping track of reads from the {@link BitBuffer} passed in.
+     *
+     * @param delegate The {@link BitBuffer} to read from.
+     */
+    public InstrumentedBitBuffer(BitBuffer delegate) {
+        this(delegate, new Counters());
+    }
+
+    private InstrumentedBitBuffer(BitBuffer delegate, Counters counters) {
+        this.delegate = delegate;
+        this.counters = counters;
+        this.lastEnd = delegate.getBitPos();
+    }
+
+    @Override
+    public BitBuffer getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns a snapshot of the statistics gathered so far, by this buffer and all of its slices and duplicates.
+     *
+     * @return A snapshot of the statistics, not affected by any subsequent reads.
+     */
+    public Statistics getStatistics() {
+        return new Statistics(counters);
+    }
+
+    /** Resets all statistics, for this buffer and all of its slices and duplicates. */
+    public void reset() {
+        counters.reset();
+    }
+
+    @Override
+    public boolean readAsBoolean() {
+        long bitPos = getBitPos();
+        boolean result = delegate.readAsBoolean();
+        record(bitPos, 1, 1);
+        return result;
+    }
+
+    @Override
+    public boolean readAsBoolean(long bitPos) {
+        boolean result = delegate.readAsBoolean(bitPos);
+        record(bitPos, 1, 1);
+        return result;
+    }
+
+    @Override
+    public boolean readAsBoolean(ByteOrder endian) {
+        long bitPos = getBitPos();
+        boolean result = delegate.readAsBoolean(endian);
+        record(bitPos, 1, 1);
+        return result;
+    }
+
+    @Override
+    public boolean readAsBoolean(long bitPos, ByteOrder endian) {
+        boolean result = delegate.readAsBoolean(bitPos, endian);
+        record(bitPos, 1, 1);
+        return result;
+    }
+
+    @Override
+    public byte readAsByte(int nrBits) {
+        long bitPos = getBitPos();
+        byte result = delegate.readAsByte(nrBits);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public byte readAsByte(int nrBits, ByteOrder endian) {
+        long bitPos = getBitPos();
+        byte result = delegate.readAsByte(nrBits, endian);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public byte readAsByte(int nrBits, long bitPos) {
+        byte result = delegate.readAsByte(nrBits, bitPos);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public byte readAsByte(long bitPos, int nrBits, ByteOrder endian) {
+        byte result = delegate.readAsByte(bitPos, nrBits, endian);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public short readAsShort(int nrBits) {
+        long bitPos = getBitPos();
+        short result = delegate.readAsShort(nrBits);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public short readAsShort(long bitPos, int nrBits) {
+        short result = delegate.readAsShort(bitPos, nrBits);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public short readAsShort(int nrBits, ByteOrder endian) {
+        long bitPos = getBitPos();
+        short result = delegate.readAsShort(nrBits, endian);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public short readAsShort(long bitPos, int nrBits, ByteOrder endian) {
+        short result = delegate.readAsShort(bitPos, nrBits, endian);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public int readAsInt(int nrBits) {
+        long bitPos = getBitPos();
+        int result = delegate.readAsInt(nrBits);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public int readAsInt(long bitPos, int nrBits) {
+        int result = delegate.readAsInt(bitPos, nrBits);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public int readAsInt(int nrBits, ByteOrder endian) {
+        long bitPos = getBitPos();
+        int result = delegate.readAsInt(nrBits, endian);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public int readAsInt(long bitPos, int nrBits, ByteOrder endian) {
+        int result = delegate.readAsInt(bitPos, nrBits, endian);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public long readAsLong(int nrBits) {
+        long bitPos = getBitPos();
+        long result = delegate.readAsLong(nrBits);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public long readAsLong(long bitPos, int nrBits) {
+        long result = delegate.readAsLong(bitPos, nrBits);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public long readAsLong(int nrBits, ByteOrder endian) {
+        long bitPos = getBitPos();
+        long result = delegate.readAsLong(nrBits, endian);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public long readAsLong(long bitPos, int nrBits, ByteOrder endian) {
+        long result = delegate.readAsLong(bitPos, nrBits, endian);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public long readBits(int nrBits) {
+        long bitPos = getBitPos();
+        long result = delegate.readBits(nrBits);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public long readBits(long bitPos, int nrBits) {
+        long result = delegate.readBits(bitPos, nrBits);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public long readBits(int nrBits, ByteOrder endian) {
+        long bitPos = getBitPos();
+        long result = delegate.readBits(nrBits, endian);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public long readBits(long bitPos, int nrBits, ByteOrder endian) {
+        long result = delegate.readBits(bitPos, nrBits, endian);
+        record(bitPos, nrBits, 1);
+        return result;
+    }
+
+    @Override
+    public void readAsIntArray(int[] dst, int offset, int count, int nrBits, ByteOrder endian) {
+        long bitPos = getBitPos();
+        delegate.readAsIntArray(dst, offset, count, nrBits, endian);
+        if (count > 0) {
+            record(bitPos, nrBits, count);
+        }
+    }
+
+    @Override
+    public void readAsLongArray(long[] dst, int offset, int count, int nrBits, ByteOrder endian) {
+        long bitPos = getBitPos();
+        delegate.readAsLongArray(dst, offset, count, nrBits, endian);
+        if (count > 0) {
+            record(bitPos, nrBits, count);
+        }
+    }
+
+    @Override
+    public ByteBuffer readAsByteBuffer(int length) {
+        long bitPos = getBitPos();
+        ByteBuffer result = delegate.readAsByteBuffer(length);
+        recordBytes(bitPos, length);
+        return result;
+    }
+
+    @Override
+    public ByteBuffer copyAsByteBuffer(int length) {
+        long bitPos = getBitPos();
+        ByteBuffer result = delegate.copyAsByteBuffer(length);
+        recordBytes(bitPos, length);
+        return result;
+    }
+
+    /** Returns the entire contents of the buffer wrapped, which is not counted as a read. */
+    public ByteBuffer readAsByteBuffer() {
+        return delegate.readAsByteBuffer();
+    }
+
+    public long getActualBitPos() {
+        return delegate.getActualBitPos();
+    }
+
+    /**
+     * Returns a slice sharing the statistics of this buffer. The slice continues where the last read from this buffer
+     * ended, and this buffer continues after the slice, so reading the slice does not count as moving backwards or
+     * skipping data.
+     */
+    @Override
+    public BitBuffer slice(long length) {
+        long bitPos = getBitPos();
+        InstrumentedBitBuffer result = new InstrumentedBitBuffer(delegate.slice(length), counters);
+        result.lastEnd = lastEnd - bitPos;
+        lastEnd = bitPos + length;
+        return result;
+    }
+
+    /** Returns a duplicate sharing the statistics of this buffer. */
+    @Override
+    public BitBuffer duplicate() {
+        InstrumentedBitBuffer result = new InstrumentedBitBuffer(delegate.duplicate(), counters);
+        result.lastEnd = lastEnd;
+        return result;
+    }
+
+    /** Records <code>count</code> consecutive reads of <code>nrBits</code> bits, starting at <code>bitPos</code>. */
+    private void record(long bitPos, int nrBits, int count) {
+        long length = (long) nrBits * count;
+        int bitOffset = getBitOffset(bitPos);
+        counters.reads[nrBits] += count;
+        if (bitOffset == 0 && (nrBits & 7) == 0) {
+            counters.alignedReads += count;
+        } else {
+            counters.unalignedReads += count;
+        }
+        counters.bitsRead += length;
+        counters.bytesTouched += (bitOffset + length + 7) >>> 3;
+        recordMove(bitPos, length);
+    }
+
+    private void recordBytes(long bitPos, int length) {
+        counters.byteBufferReads++;
+        counters.bitsRead += ((long) length) << 3;
+        counters.bytesTouched += (getBitOffset(bitPos) + (((long) length) << 3) + 7) >>> 3;
+        recordMove(bitPos, ((long) length) << 3);
+    }
+
+    /**
+     * Returns the offset within its byte of the bit at <code>bitPos</code>, in the data underlying the buffer rather
+     * than relative to the start of a slice.
+     */
+    private int getBitOffset(long bitPos) {
+        return (int) ((bitPos + delegate.getActualBitPos() - delegate.getBitPos()) & 7);
+    }
+
+    private void recordMove(long bitPos, long length) {
+        if (bitPos < lastEnd) {
+            counters.backwardSeeks++;
+        } else {
+            counters.bitsSkipped += bitPos - lastEnd;
+        }
+        lastEnd = bitPos + length;
+    }
+
+    /** The counters shared by a buffer and all of its slices and duplicates. */
+    private static class Counters {
+
+        /** The number of reads, indexed by the number of bits read. */
+        private final long[] reads = new long[65];
+
+        private long alignedReads;
+
+        private long unalignedReads;
+
+        private long byteBufferReads;
+
+        private long backwardSeeks;
+
+        private long bitsRead;
+
+        private long bytesTouched;
+
+        private long bitsSkipped;
+
+        private void reset() {
+            for (int i = 0; i < reads.length; i++) {
+                reads[i] = 0;
+            }
+            alignedReads = 0;
+            unalignedReads = 0;
+            byteBufferReads = 0;
+            backwardSeeks = 0;
+            bitsRead = 0;
+            bytesTouched = 0;
+            bitsSkipped = 0;
+        }
+
+    }
+
+    /** A snapshot of the statistics gathered by an {@link InstrumentedBitBuffer}. */
+    public static class Statistics {
+
+        private final long[] reads;
+
+        private final long alignedReads;
+
+        private final long unalignedReads;
+
+        private final long byteBufferReads;
+
+        private final long backwardSeeks;
+
+        private final long bitsRead;
+
+        private final long bytesTouched;
+
+        private final long bitsSkipped;
+
+        private Statistics(Counters counters) {
+            this.reads = counters.reads.clone();
+            this.alignedReads = counters.alignedReads;
+            this.unalignedReads = counters.unalignedReads;
+            this.byteBufferReads = counters.byteBufferReads;
+            this.backwardSeeks = counters.backwardSeeks;
+            this.bitsRead = counters.bitsRead;
+            this.bytesTouched = counters.bytesTouched;
+            this.bitsSkipped = counters.bitsSkipped;
+        }
+
+        /**
+         * Returns the number of values read, not counting {@link ByteBuffer ByteBuffers}.
+         *
+         * @return The number of values read.
+         */
+        public long getReads() {
+            return alignedReads + unalignedReads;
+        }
+
+        /**
+         * Returns the number of values read of the given width.
+         *
+         * @param nrBits The number of bits (1 up to 64).
+         * @return The number of values read of <code>nrBits</code> bits.
+         */
+        public long getReads(int nrBits) {
+            return reads[nrBits];
+        }
+
+        /**
+         * Returns the number of values read starting at an 8-bit aligned position and consisting of whole bytes.
+         *
+         * @return The number of aligned values read.
+         */
+        public long getAlignedReads() {
+            return alignedReads;
+        }
+
+        /**
+         * Returns the number of values read starting at a position that is not 8-bit aligned, or not consisting of
+         * whole bytes.
+         *
+         * @return The number of unaligned values read.
+         */
+        public long getUnalignedReads() {
+            return unalignedReads;
+        }
+
+        /**
+         * Returns the number of {@link ByteBuffer ByteBuffers} read, through {@link BitBuffer#readAsByteBuffer(int)}
+         * or {@link BitBuffer#copyAsByteBuffer(int)}.
+         *
+         * @return The number of {@link ByteBuffer ByteBuffers} read.
+         */
+        public long getByteBufferReads() {
+            return byteBufferReads;
+        }
+
+        /**
+         * Returns the number of reads starting before the end of the previous read.
+         *
+         * @return The number of reads moving backwards.
+         */
+        public long getBackwardSeeks() {
+            return backwardSeeks;
+        }
+
+        /**
+         * Returns the total number of bits read.
+         *
+         * @return The number of bits read.
+         */
+        public long getBitsRead() {
+            return bitsRead;
+        }
+
+        /**
+         * Returns the total number of bytes covered by the reads. Bytes read more than once are counted each time.
+         *
+         * @return The number of bytes touched.
+         */
+        public long getBytesTouched() {
+            return bytesTouched;
+        }
+
+        /**
+         * Returns the number of bits passed over without reading them, by reads starting beyond the end of the
+         * previous read.
+         *
+         * @return The number of bits skipped.
+         */
+        public long getBitsSkipped() {
+            return bitsSkipped;
+        }
+
+        /**
+         * Returns the number of whole bytes passed over without reading them.
+         *
+         * @return The number of bits skipped, divided by eight.
+         */
+        public long getBytesSkipped() {
+            return bitsSkipped >>> 3;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("reads: ").append(getReads());
+            builder.append(" (aligned: ").append(alignedReads);
+            builder.append(", unaligned: ").append(unalignedReads).append(')');
+            builder.append(", by width: {");
+            boolean first = true;
+            for (int i = 1; i < reads.length; i++) {
+                if (reads[i] > 0) {
+                    if (!first) {
+                        builder.append(", ");
+                    }
+                    builder.append(i).append('=').append(reads[i]);
+                    first = false;
+                }
+            }
+            builder.append('}');
+            builder.append(", byte buffers: ").append(byteBufferReads);
+            builder.append(", backward seeks: ").append(backwardSeeks);
+            builder.append(", bits read: ").append(bitsRead);
+            builder.append(", bytes touched: ").append(bytesTouched);
+            builder.append(", bytes skipped: ").append(getBytesSkipped());
+            return builder.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,355 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link BitBuffer} mapping a file into memory as a chain of fixed-size segments, each of them a separate {@link
+ * java.nio.MappedByteBuffer}. As opposed to {@link DefaultBitBuffer}, which is backed by a single {@link ByteBuffer}
+ * and therefore cannot address more than 2 GB, all positions are 64-bit. Reads straddling the boundary between two
+ * segments are supported transparently. Since pages are only faulted in when touched, the data is never copied onto
+ * the heap. A single instance can be shared as a {@link BitSource}, decoding the file concurrently using a {@link
+ * BitCursor} per thread.
+ * <p/>
+ * Segments are mapped when first touched, and only a bounded number of them is referenced by the buffer. Once that
+ * number is exceeded, the segment mapped the longest ago is dropped. It is not unmapped explicitly, since other
+ * threads (or views obtained through {@link #readAsByteBuffer(int)}) may still be reading from it; the mapping is
+ * released by the garbage collector once it is no longer referenced. The bound therefore limits the segments kept
+ * alive by the buffer, not the virtual memory in use at any point in time: dropped segments keep occupying address
+ * space until they have been collected. Since segments may be mapped at any time, the file needs to remain open until
+ * the instance (and all of its duplicates) are no longer used.
+ */
+public class MappedFileBitBuffer extends AbstractBitBuffer implements BitSource, Closeable {
+
+    /** The default size of a segment, in bytes: 256 MB. */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 28;
+
+    /** The default number of segments referenced by the buffer at the same time. */
+    public static final int DEFAULT_MAX_MAPPED_SEGMENTS = 8;
+
+    /** The segments, shared with all duplicates. */
+    private final Segments segments;
+
+    /** The base two logarithm of the segment size. */
+    private final int segmentShift;
+
+    /** The mask to apply to a byte position to obtain the position inside a segment. */
+    private final long segmentMask;
+
+    /**
+     * Constructs a new instance, mapping the file passed in, using the {@link #DEFAULT_SEGMENT_SIZE}.
+     *
+     * @param file The file to map.
+     * @throws IOException If the file cannot be opened.
+     */
+    public MappedFileBitBuffer(File file) throws IOException {
+        this(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructs a new instance, mapping the file passed in.
+     *
+     * @param file        The file to map.
+     * @param segmentSize The size of each segment in bytes; needs to be a power of two.
+     * @throws IOException If the file cannot be opened.
+     */
+    public MappedFileBitBuffer(File file, int segmentSize) throws IOException {
+        this(file, segmentSize, DEFAULT_MAX_MAPPED_SEGMENTS);
+    }
+
+    /**
+     * Constructs a new instance, mapping the file passed in.
+     *
+     * @param file              The file to map.
+     * @param segmentSize       The size of each segment in bytes; needs to be a power of two.
+     * @param maxMappedSegments The maximum number of segments referenced by the buffer at the same time.
+     * @throws IOException If the file cannot be opened.
+     */
+    public MappedFileBitBuffer(File file, int segmentSize, int maxMappedSegments) throws IOException {
+        this(open(file, segmentSize, maxMappedSegments));
+    }
+
+    /**
+     * Constructs a new instance, mapping the file accessible through the {@link FileChannel} passed in. The channel
+     * needs to remain open for as long as the instance is used; {@link #close()} closes it.
+     *
+     * @param channel     The channel providing access to the file.
+     * @param segmentSize The size of each segment in bytes; needs to be a power of two.
+     * @throws IOException If the size of the file cannot be determined.
+     */
+    public MappedFileBitBuffer(FileChannel channel, int segmentSize) throws IOException {
+        this(channel, segmentSize, DEFAULT_MAX_MAPPED_SEGMENTS);
+    }
+
+    /**
+     * Constructs a new instance, mapping the file accessible through the {@link FileChannel} passed in. The channel
+     * needs to remain open for as long as the instance is used; {@link #close()} closes it.
+     *
+     * @param channel           The channel providing access to the file.
+     * @param segmentSize       The size of each segment in bytes; needs to be a power of two.
+     * @param maxMappedSegments The maximum number of segments referenced by the buffer at the same time.
+     * @throws IOException If the size of the file cannot be determined.
+     */
+    public MappedFileBitBuffer(FileChannel channel, int segmentSize, int maxMappedSegments) throws IOException {
+        this(new Segments(channel, segmentSize, maxMappedSegments));
+    }
+
+    private MappedFileBitBuffer(Segments segments) {
+        this(segments, segments.size << 3, 0L);
+    }
+
+    private MappedFileBitBuffer(Segments segments, long bitBufBitSize, long bitPos) {
+        super(bitBufBitSize, bitPos);
+        this.segments = segments;
+        this.segmentShift = segments.shift;
+        this.segmentMask = (1L << segmentShift) - 1;
+    }
+
+    /**
+     * Returns the number of segments in which the file is divided.
+     *
+     * @return The number of segments.
+     */
+    public int getNrSegments() {
+        return segments.nrSegments;
+    }
+
+    /**
+     * Returns the number of segments currently mapped.
+     *
+     * @return The number of segments currently mapped.
+     */
+    int getNrMappedSegments() {
+        return segments.getNrMapped();
+    }
+
+    /**
+     * Reads the bits using a single word load if they are all found in a single segment, and byte by byte if they
+     * straddle the boundary between two segments.
+     */
+    @Override
+    public long getBits(long bitPos, int nrBits, ByteOrder byteOrder) {
+        long firstBytePos = bitPos >>> 3;
+        int offset = (int) (firstBytePos & segmentMask);
+        ByteBuffer segment = segments.get((int) (firstBytePos >>> segmentShift));
+        int bitOffset = (int) (bitPos & 7);
+        if (offset + ((bitOffset + nrBits + 7) >>> 3) <= segment.limit()) {
+            return DefaultBitBuffer.getBits(segment, (((long) offset) << 3) + bitOffset, nrBits, byteOrder);
+        } else {
+            return super.getBits(bitPos, nrBits, byteOrder);
+        }
+    }
+
+    @Override
+    protected byte getByte(long bytePos) {
+        return segments.get((int) (bytePos >>> segmentShift)).get((int) (bytePos & segmentMask));
+    }
+
+    // JavaDoc inherited
+
+    public BitBuffer duplicate() {
+        // The segments are only accessed using absolute operations, so there is no need to duplicate those.
+        return new MappedFileBitBuffer(segments, getBitBufBitSize(), getBitPos());
+    }
+
+    /**
+     * Returns <code>true</code> if the bytes are all found in a single segment.
+     */
+    @Override
+    public boolean isZeroCopy(int length) {
+        return getBitPos() + (((long) length) << 3) <= getBitBufBitSize() && isZeroCopy(getBitPos(), length);
+    }
+
+    /**
+     * Returns <code>true</code> if the position is 8-bit aligned and the bytes are all found in a single segment.
+     */
+    public boolean isZeroCopy(long bitPos, int length) {
+        long bytePos = bitPos >>> 3;
+        return (bitPos % 8) == 0
+                && (bytePos & segmentMask) + length <= segments.getSize((int) (bytePos >>> segmentShift));
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer getByteBuffer(long bitPos, int length) {
+        if (isZeroCopy(bitPos, length)) {
+            long bytePos = bitPos >>> 3;
+            int offset = (int) (bytePos & segmentMask);
+            ByteBuffer result = segments.get((int) (bytePos >>> segmentShift)).duplicate();
+            result.position(offset).limit(offset + length);
+            return result.slice();
+        } else {
+            return copyBits(bitPos, length);
+        }
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer readAsByteBuffer(int length) throws BitBufferUnderflowException {
+        validateByteBufferRead(length);
+        ByteBuffer result = getByteBuffer(getBitPos(), length);
+        setBitPos(getBitPos() + (((long) length) << 3));
+        return result;
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer readAsByteBuffer() {
+        if (segments.nrSegments <= 1) {
+            ByteBuffer buffer = segments.get(0).duplicate();
+            buffer.rewind();
+            return buffer;
+        } else {
+            long size = getBitBufBitSize() >>> 3;
+            if (size > Integer.MAX_VALUE) {
+                throw new BitBufferException("Unable to expose " + size + " bytes through a single ByteBuffer.");
+            } else {
+                return copyBytes(0, (int) size);
+            }
+        }
+    }
+
+    /**
+     * Closes the file, and drops all segments. Since the file is shared, this affects all duplicates as well.
+     */
+    public void close() throws IOException {
+        segments.close();
+    }
+
+    /** Opens the file, closing it again if the parameters passed in turn out to be invalid. */
+    private static Segments open(File file, int segmentSize, int maxMappedSegments) throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+        boolean opened = false;
+        try {
+            Segments segments = new Segments(channel, segmentSize, maxMappedSegments);
+            opened = true;
+            return segments;
+        } finally {
+            if (!opened) {
+                channel.close();
+            }
+        }
+    }
+
+    /** The segments of a file, mapped on demand. */
+    private static final class Segments {
+
+        /** The channel from which segments are mapped. */
+        private final FileChannel channel;
+
+        /** The size of the file, in bytes. */
+        private final long size;
+
+        /** The base two logarithm of the segment size. */
+        private final int shift;
+
+        /** The number of segments in which the file is divided. */
+        private final int nrSegments;
+
+        /** The maximum number of segments referenced at the same time. */
+        private final int maxMapped;
+
+        /** The segments currently mapped, or <code>null</code> for the ones that are not. */
+        private final AtomicReferenceArray<ByteBuffer> mapped;
+
+        /** The indices of the segments currently mapped, in the order in which they got mapped. */
+        private final LinkedList<Integer> order = new LinkedList<Integer>();
+
+        Segments(FileChannel channel, int segmentSize, int maxMapped) throws IOException {
+            if (segmentSize <= 0 || Integer.bitCount(segmentSize) != 1) {
+                throw new IllegalArgumentException("Segment size (" + segmentSize + ") should be a power of two.");
+            }
+            if (maxMapped < 1) {
+                throw new IllegalArgumentException("At least one segment (" + maxMapped + ") should be mapped.");
+            }
+            this.channel = channel;
+            this.size = channel.size();
+            this.shift = Integer.numberOfTrailingZeros(segmentSize);
+            this.nrSegments = (int) ((size + segmentSize - 1) >>> shift);
+            this.maxMapped = maxMapped;
+            this.mapped = new AtomicReferenceArray<ByteBuffer>(Math.max(nrSegments, 1));
+        }
+
+        /**
+         * Returns the segment with the given index, mapping it if required.
+         *
+         * @param index The index of the segment.
+         * @return The segment.
+         */
+        ByteBuffer get(int index) {
+            ByteBuffer segment = mapped.get(index);
+            return segment != null ? segment : map(index);
+        }
+
+        /**
+         * Returns the size of the segment with the given index, without mapping it.
+         *
+         * @param index The index of the segment.
+         * @return The size of the segment, in bytes.
+         */
+        long getSize(int index) {
+            return Math.max(0L, Math.min(1L << shift, size - (((long) index) << shift)));
+        }
+
+        synchronized int getNrMapped() {
+            return order.size();
+        }
+
+        private synchronized ByteBuffer map(int index) {
+            ByteBuffer segment = mapped.get(index);
+            if (segment == null) {
+                try {
+                    segment = channel.map(FileChannel.MapMode.READ_ONLY, ((long) index) << shift, getSize(index));
+                } catch (IOException ioe) {
+                    throw new BitBufferException("Failed to map segment " + index + " of the file.", ioe);
+                }
+                if (order.size() >= maxMapped) {
+                    mapped.set(order.removeFirst(), null);
+                }
+                order.addLast(index);
+                mapped.set(index, segment);
+            }
+            return segment;
+        }
+
+        synchronized void close() throws IOException {
+            for (Integer index : order) {
+                mapped.set(index, null);
+            }
+            order.clear();
+            channel.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,410 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link BitBuffer} reading from off-heap memory, addressed using 64-bit positions. The memory is either mapped from
+ * a file or allocated as direct memory, in chunks of at most {@link #CHUNK_SIZE} bytes. Slices and duplicates are
+ * cheap views sharing the same memory.
+ * <p/>
+ * As opposed to relying on the garbage collector to eventually unmap or free the memory, the memory is released
+ * deterministically by {@link #close() closing} the buffer (or any of its views). Once released, any attempt to read
+ * from the buffer or its views will result in a {@link BitBufferException}. {@link ByteBuffer ByteBuffers} obtained
+ * through {@link #readAsByteBuffer(int)} may share memory as well. Since there is no telling when those are no longer
+ * used, chunks of memory that have been exposed that way are not freed when the buffer is closed, but left to the
+ * garbage collector instead. Closing the buffer while other threads are reading from it is safe: the memory is only
+ * freed once the reads in progress have completed, and subsequent reads fail.
+ */
+public class OffHeapBitBuffer extends AbstractBitBuffer implements BitSource, Closeable {
+
+    /** The base two logarithm of {@link #CHUNK_SIZE}. */
+    private static final int CHUNK_SHIFT = 30;
+
+    /** The maximum size of an individual chunk of memory: 1 GB. */
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final Log log = LogFactory.getLog(OffHeapBitBuffer.class);
+
+    /** The memory, shared by all views. */
+    private final Memory memory;
+
+    /** The position of the first bit of this view, in bits from the start of {@link #memory}. */
+    private final long baseBitPos;
+
+    private OffHeapBitBuffer(Memory memory, long baseBitPos, long bitBufBitSize, long bitPos) {
+        super(bitBufBitSize, bitPos);
+        this.memory = memory;
+        this.baseBitPos = baseBitPos;
+    }
+
+    /**
+     * Maps the entire file passed in.
+     *
+     * @param file The file to map.
+     * @return A {@link OffHeapBitBuffer} providing access to the contents of the file.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    public static OffHeapBitBuffer map(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            return map(channel, 0, channel.size());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Maps a region of the file accessible through the {@link FileChannel} passed in. The channel may be closed once
+     * the mapping has been created.
+     *
+     * @param channel  The channel providing access to the file.
+     * @param position The position of the region, in bytes.
+     * @param size     The size of the region, in bytes.
+     * @return A {@link OffHeapBitBuffer} providing access to the region.
+     * @throws IOException If the region cannot be mapped.
+     */
+    public static OffHeapBitBuffer map(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer[] chunks = new ByteBuffer[getNrChunks(size)];
+        for (int i = 0; i < chunks.length; i++) {
+            long offset = ((long) i) * CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + offset,
+                    Math.min(CHUNK_SIZE, size - offset));
+        }
+        return new OffHeapBitBuffer(new Memory(chunks), 0L, size << 3, 0L);
+    }
+
+    /**
+     * Allocates <code>size</code> bytes of direct memory, and fills it with data read from the channel passed in.
+     *
+     * @param source The channel providing the data.
+     * @param size   The number of bytes to allocate and read.
+     * @return A {@link OffHeapBitBuffer} providing access to the data read.
+     * @throws IOException If the channel fails to provide <code>size</code> bytes.
+     */
+    public static OffHeapBitBuffer allocate(ReadableByteChannel source, long size) throws IOException {
+        ByteBuffer[] chunks = new ByteBuffer[getNrChunks(size)];
+        Memory memory = new Memory(chunks);
+        try {
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = ByteBuffer.allocateDirect((int) Math.min(CHUNK_SIZE, size - ((long) i) * CHUNK_SIZE));
+                while (chunks[i].hasRemaining()) {
+                    if (source.read(chunks[i]) < 0) {
+                        throw new IOException("Unexpected end of data after "
+                                + (((long) i) * CHUNK_SIZE + chunks[i].position()) + " bytes.");
+                    }
+                }
+                chunks[i].clear();
+            }
+        } catch (IOException ioe) {
+            memory.release();
+            throw ioe;
+        }
+        return new OffHeapBitBuffer(memory, 0L, size << 3, 0L);
+    }
+
+    /**
+     * Returns whether the memory backing this buffer has been released.
+     *
+     * @return <code>true</code> if the buffer has been closed.
+     */
+    public boolean isReleased() {
+        return memory.released;
+    }
+
+    /**
+     * Releases the memory shared by this buffer and all of its views, waiting for reads in progress in other threads
+     * to complete. Closing a buffer more than once has no effect.
+     */
+    public void close() {
+        memory.release();
+    }
+
+    /**
+     * Reads the bits using a single word load if they are all found in a single chunk, and byte by byte if they
+     * straddle the boundary between two chunks.
+     */
+    @Override
+    public long getBits(long bitPos, int nrBits, ByteOrder byteOrder) {
+        memory.acquire();
+        try {
+            long absoluteBitPos = baseBitPos + bitPos;
+            long bytePos = absoluteBitPos >>> 3;
+            ByteBuffer chunk = memory.chunks[(int) (bytePos >>> CHUNK_SHIFT)];
+            int offset = (int) (bytePos & (CHUNK_SIZE - 1));
+            int bitOffset = (int) (absoluteBitPos & 7);
+            if (offset + ((bitOffset + nrBits + 7) >>> 3) <= chunk.limit()) {
+                return DefaultBitBuffer.getBits(chunk, (((long) offset) << 3) + bitOffset, nrBits, byteOrder);
+            } else {
+                return super.getBits(absoluteBitPos, nrBits, byteOrder);
+            }
+        } finally {
+            memory.done();
+        }
+    }
+
+    /** Returns the byte at the given position, counted from the start of the memory, rather than this view. */
+    @Override
+    protected byte getByte(long bytePos) {
+        memory.acquire();
+        try {
+            return memory.get(bytePos);
+        } finally {
+            memory.done();
+        }
+    }
+
+    // JavaDoc inherited
+
+    @Override
+    public long getActualBitPos() {
+        return baseBitPos + getBitPos();
+    }
+
+    /** Returns a view on the next <code>length</code> bits, without copying any data. */
+    @Override
+    public BitBuffer slice(long length) {
+        if (getBitPos() + length > getBitBufBitSize()) {
+            throw new BitBufferUnderflowException(getBitPos(), length);
+        }
+        BitBuffer result = new OffHeapBitBuffer(memory, baseBitPos + getBitPos(), length, 0L);
+        setBitPos(getBitPos() + length);
+        return result;
+    }
+
+    // JavaDoc inherited
+
+    public BitBuffer duplicate() {
+        return new OffHeapBitBuffer(memory, baseBitPos, getBitBufBitSize(), getBitPos());
+    }
+
+    /**
+     * Returns <code>true</code> if the bytes are all found in a single chunk.
+     */
+    @Override
+    public boolean isZeroCopy(int length) {
+        return getBitPos() + (((long) length) << 3) <= getBitBufBitSize() && isZeroCopy(getBitPos(), length);
+    }
+
+    /**
+     * Returns <code>true</code> if the position is 8-bit aligned and the bytes are all found in a single chunk.
+     */
+    public boolean isZeroCopy(long bitPos, int length) {
+        long absoluteBitPos = baseBitPos + bitPos;
+        return (absoluteBitPos % 8) == 0 && memory.isContiguous(absoluteBitPos >>> 3, length);
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer getByteBuffer(long bitPos, int length) {
+        long absoluteBitPos = baseBitPos + bitPos;
+        if ((absoluteBitPos % 8) == 0) {
+            return memory.view(absoluteBitPos >>> 3, length);
+        } else {
+            return copyBits(bitPos, length);
+        }
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer readAsByteBuffer(int length) throws BitBufferUnderflowException {
+        long absoluteBitPos = baseBitPos + getBitPos();
+        if ((absoluteBitPos % 8) != 0) {
+            throw new BitBufferException(
+                    "8-bit alignment exception. Bit position (" + getBitPos()
+                            + ") should be 8-bit aligned");
+        }
+        if (getBitPos() + (((long) length) << 3) > getBitBufBitSize()) {
+            throw new BitBufferUnderflowException(getBitPos(), ((long) length) << 3);
+        }
+        ByteBuffer result = getByteBuffer(getBitPos(), length);
+        setBitPos(getBitPos() + (((long) length) << 3));
+        return result;
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer readAsByteBuffer() {
+        long size = getBitBufBitSize() >>> 3;
+        if ((baseBitPos % 8) != 0 || size > Integer.MAX_VALUE) {
+            throw new BitBufferException("Unable to expose the contents as a single ByteBuffer.");
+        }
+        return memory.view(baseBitPos >>> 3, (int) size);
+    }
+
+    private static int getNrChunks(long size) {
+        return (int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    /** The memory, as a sequence of chunks of {@link #CHUNK_SIZE} bytes, the last one possibly smaller. */
+    private static class Memory {
+
+        private final ByteBuffer[] chunks;
+
+        /** Whether a view on a chunk has been handed out, in which case the chunk cannot be freed explicitly. */
+        private final boolean[] shared;
+
+        private volatile boolean released;
+
+        /** The number of reads in progress; the memory is not freed before these have completed. */
+        private final AtomicInteger readers = new AtomicInteger();
+
+        private Memory(ByteBuffer[] chunks) {
+            this.chunks = chunks;
+            this.shared = new boolean[chunks.length];
+        }
+
+        /**
+         * Registers a read in progress, failing if the memory has been released. Every successful call needs to be
+         * followed by a call to {@link #done()}.
+         */
+        private void acquire() {
+            readers.incrementAndGet();
+            if (released) {
+                readers.decrementAndGet();
+                throw new BitBufferException("Memory has already been released.");
+            }
+        }
+
+        /** Marks the end of a read registered using {@link #acquire()}. */
+        private void done() {
+            readers.decrementAndGet();
+        }
+
+        private byte get(long bytePos) {
+            return chunks[(int) (bytePos >>> CHUNK_SHIFT)].get((int) (bytePos & (CHUNK_SIZE - 1)));
+        }
+
+        /** Returns whether the bytes are all in a single chunk. */
+        private boolean isContiguous(long bytePos, int length) {
+            acquire();
+            try {
+                return (bytePos & (CHUNK_SIZE - 1)) + length <= chunks[(int) (bytePos >>> CHUNK_SHIFT)].capacity();
+            } finally {
+                done();
+            }
+        }
+
+        /** Returns a view on the bytes if they are in a single chunk, or a copy otherwise. */
+        private ByteBuffer view(long bytePos, int length) {
+            int chunk = (int) (bytePos >>> CHUNK_SHIFT);
+            int offset = (int) (bytePos & (CHUNK_SIZE - 1));
+            if (isContiguous(bytePos, length)) {
+                synchronized (this) {
+                    acquire();
+                    try {
+                        shared[chunk] = true;
+                        ByteBuffer result = chunks[chunk].duplicate();
+                        result.position(offset).limit(offset + length);
+                        return result.slice();
+                    } finally {
+                        done();
+                    }
+                }
+            } else {
+                acquire();
+                try {
+                    ByteBuffer result = ByteBuffer.allocate(length);
+                    for (int i = 0; i < length; i++) {
+                        result.put(get(bytePos + i));
+                    }
+                    result.flip();
+                    return result;
+                } finally {
+                    done();
+                }
+            }
+        }
+
+        /** Releases the memory, once all reads in progress have completed. */
+        private synchronized void release() {
+            if (!released) {
+                released = true;
+                // Reads starting from now on fail; wait for the ones that started before
+                while (readers.get() > 0) {
+                    Thread.yield();
+                }
+                for (int i = 0; i < chunks.length; i++) {
+                    if (chunks[i] != null) {
+                        if (!shared[i]) {
+                            free(chunks[i]);
+                        }
+                        // Views still sharing the chunk keep it from being collected
+                        chunks[i] = null;
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Unmaps or frees a direct {@link ByteBuffer} right away, rather than waiting for the garbage collector. If the
+     * platform does not permit doing that, releasing the memory will be left to the garbage collector. The buffer
+     * (and any buffer derived from it) must no longer be accessed afterwards.
+     *
+     * @param buffer The buffer to release.
+     */
+    public static void free(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        try {
+            try {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException nsme) {
+                // Java 8 and earlier
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to release direct memory; leaving it to the garbage collector.", e);
+        }
+    }
+
+}
@@ -0,0 +1,369 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link BitBuffer} reading a file through a {@link FileChannel} in large blocks, while a background thread reads the
+ * next blocks ahead of time. As long as decoding proceeds more or less sequentially, reading from disk overlaps with
+ * decoding, rather than stalling the decoding thread every time it touches data that is not in memory yet (as happens
+ * with memory mapped files).
+ * <p/>
+ * The blocks following the block holding the current position are prefetched up to the configured depth. Only the
+ * blocks within that range, and the block preceding the current one, are retained. Reading data outside of that range
+ * is supported, but requires the data to be read again, synchronously. Duplicates and slices share the same blocks;
+ * decoding at widely different positions using several duplicates at once will therefore be less efficient.
+ * <p/>
+ * The time spent waiting for data is recorded, to allow the block size and depth to be tuned.
+ * <p/>
+ * Every instance starts a thread of its own for reading ahead, shared with its duplicates and slices. That thread is
+ * only stopped by {@link #close()}, so instances need to be closed once they are no longer used.
+ */
+public class ReadAheadBitBuffer extends AbstractBitBuffer implements Closeable {
+
+    /** The default size of a block, in bytes: 1 MB. */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    /** The default number of blocks read ahead of the current block. */
+    public static final int DEFAULT_DEPTH = 4;
+
+    /** The blocks, shared by all duplicates. */
+    private final Blocks blocks;
+
+    /** The index of the block held by {@link #current}, or -1 if there is none. */
+    private long currentIndex = -1;
+
+    /** The most recently used block. */
+    private ByteBuffer current;
+
+    /**
+     * Constructs a new instance, reading the file accessible through the channel passed in, using the {@link
+     * #DEFAULT_BLOCK_SIZE} and {@link #DEFAULT_DEPTH}.
+     *
+     * @param channel The channel providing access to the file.
+     * @throws IOException If the size of the file cannot be determined.
+     */
+    public ReadAheadBitBuffer(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_BLOCK_SIZE, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Constructs a new instance, reading the file accessible through the channel passed in.
+     *
+     * @param channel   The channel providing access to the file.
+     * @param blockSize The size of a block, in bytes. Needs to be a power of two, and at least 16.
+     * @param depth     The number of blocks to read ahead of the block holding the current position.
+     * @throws IOException If the size of the file cannot be determined.
+     */
+    public ReadAheadBitBuffer(FileChannel channel, int blockSize, int depth) throws IOException {
+        this(new Blocks(channel, blockSize, depth), 0L);
+    }
+
+    private ReadAheadBitBuffer(Blocks blocks, long bitPos) {
+        super(blocks.size << 3, bitPos);
+        this.blocks = blocks;
+    }
+
+    /**
+     * Returns the total time the decoding thread(s) spent waiting for blocks to be read.
+     *
+     * @return The time spent waiting, in nanoseconds.
+     */
+    public long getStallTime() {
+        return blocks.stallTime.get();
+    }
+
+    /**
+     * Returns the number of times a block was not available when it was needed.
+     *
+     * @return The number of times a block was not available when it was needed.
+     */
+    public long getStalls() {
+        return blocks.stalls.get();
+    }
+
+    /**
+     * Returns the number of blocks read from the file, including blocks read more than once.
+     *
+     * @return The number of blocks read.
+     */
+    public long getBlocksRead() {
+        return blocks.blocksRead.get();
+    }
+
+    /**
+     * Reads the (at most) 64 bits starting at the first byte at once if they are all in the same block, and shifts and
+     * masks the bits requested out of it.
+     */
+    @Override
+    protected long getBits(long bitPos, int nrBits, ByteOrder byteOrder) {
+        long firstBytePos = bitPos >>> 3;
+        int offset = (int) (bitPos & 7);
+        ByteBuffer block = getBlock(firstBytePos >>> blocks.blockShift);
+        int index = (int) (firstBytePos & blocks.blockMask);
+        if (index + 9 > block.limit()) {
+            return super.getBits(bitPos, nrBits, byteOrder);
+        }
+        long word = block.getLong(index);
+        long result;
+        if (byteOrder == ByteOrder.BigEndian) {
+            result = word << offset;
+            if (offset + nrBits > 64) {
+                result |= (0xFF & block.get(index + 8)) >>> (8 - offset);
+            }
+            return result >>> (64 - nrBits);
+        } else {
+            result = Long.reverseBytes(word) >>> offset;
+            if (offset + nrBits > 64) {
+                result |= (0xFFL & block.get(index + 8)) << (64 - offset);
+            }
+            return result & (-1L >>> (64 - nrBits));
+        }
+    }
+
+    @Override
+    protected byte getByte(long bytePos) {
+        return getBlock(bytePos >>> blocks.blockShift).get((int) (bytePos & blocks.blockMask));
+    }
+
+    /** Returns the block with the given index, remembering it for subsequent reads. */
+    private ByteBuffer getBlock(long index) {
+        if (index != currentIndex) {
+            current = blocks.get(index);
+            currentIndex = index;
+        }
+        return current;
+    }
+
+    // JavaDoc inherited
+
+    public BitBuffer duplicate() {
+        return new ReadAheadBitBuffer(blocks, getBitPos());
+    }
+
+    /**
+     * Returns <code>true</code> if the position is 8-bit aligned and the bytes are all found in a single block.
+     */
+    @Override
+    public boolean isZeroCopy(int length) {
+        long bytePos = getBitPos() >>> 3;
+        return (getBitPos() % 8) == 0 && getBitPos() + (((long) length) << 3) <= getBitBufBitSize()
+                && (bytePos & blocks.blockMask) + length <= blocks.blockMask + 1;
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer readAsByteBuffer(int length) throws BitBufferUnderflowException {
+        validateByteBufferRead(length);
+        ByteBuffer result;
+        if (isZeroCopy(length)) {
+            long bytePos = getBitPos() >>> 3;
+            int offset = (int) (bytePos & blocks.blockMask);
+            result = getBlock(bytePos >>> blocks.blockShift).duplicate();
+            result.position(offset).limit(offset + length);
+            result = result.slice();
+        } else {
+            result = copyBytes(getBitPos() >>> 3, length);
+        }
+        setBitPos(getBitPos() + (((long) length) << 3));
+        return result;
+    }
+
+    // JavaDoc inherited
+
+    public ByteBuffer readAsByteBuffer() {
+        if (blocks.size > Integer.MAX_VALUE) {
+            throw new BitBufferException("Unable to expose " + blocks.size + " bytes through a single ByteBuffer.");
+        }
+        return copyBytes(0, (int) blocks.size);
+    }
+
+    /**
+     * Stops reading ahead, and closes the underlying channel. Needs to be called once the buffer and its duplicates are
+     * no longer used, since the thread reading ahead is not stopped otherwise.
+     *
+     * @throws IOException If the channel fails to close.
+     */
+    public void close() throws IOException {
+        blocks.prefetcher.shutdownNow();
+        blocks.channel.close();
+    }
+
+    /** The blocks read from the file, and the background thread reading them. */
+    private static class Blocks {
+
+        private final FileChannel channel;
+
+        /** The size of the file, in bytes. */
+        private final long size;
+
+        /** The base two logarithm of the block size. */
+        private final int blockShift;
+
+        private final long blockMask;
+
+        private final int depth;
+
+        private final ExecutorService prefetcher;
+
+        /** The blocks retained, either read already, or still being read. Guarded by <code>this</code>. */
+        private final Map<Long, Future<ByteBuffer>> retained = new HashMap<Long, Future<ByteBuffer>>();
+
+        private final AtomicLong stallTime = new AtomicLong();
+
+        private final AtomicLong stalls = new AtomicLong();
+
+        private final AtomicLong blocksRead = new AtomicLong();
+
+        private Blocks(FileChannel channel, int blockSize, int depth) throws IOException {
+            if (blockSize < 16 || Integer.bitCount(blockSize) != 1) {
+                throw new IllegalArgumentException("Block size (" + blockSize
+                        + ") should be a power of two, and at least 16 bytes.");
+            }
+            if (depth < 0) {
+                throw new IllegalArgumentException("Depth (" + depth + ") should not be negative.");
+            }
+            this.channel = channel;
+            this.size = channel.size();
+            this.blockShift = Integer.numberOfTrailingZeros(blockSize);
+            this.blockMask = blockSize - 1;
+            this.depth = depth;
+            this.prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ReadAheadBitBuffer prefetcher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        /**
+         * Returns the block with the given index, waiting for it to be read if required, and schedules the blocks
+         * following it to be read ahead.
+         */
+        private ByteBuffer get(long index) {
+            while (true) {
+                FutureTask<ByteBuffer> missing = null;
+                Future<ByteBuffer> result;
+                synchronized (this) {
+                    Iterator<Map.Entry<Long, Future<ByteBuffer>>> iterator = retained.entrySet().iterator();
+                    while (iterator.hasNext()) {
+                        Map.Entry<Long, Future<ByteBuffer>> entry = iterator.next();
+                        if (entry.getKey() < index - 1 || entry.getKey() > index + depth) {
+                            entry.getValue().cancel(false);
+                            iterator.remove();
+                        }
+                    }
+                    result = retained.get(index);
+                    if (result == null) {
+                        missing = new FutureTask<ByteBuffer>(new Reader(index));
+                        retained.put(index, missing);
+                        result = missing;
+                    }
+                    for (long next = index + 1; next <= index + depth && next << blockShift < size; next++) {
+                        if (!retained.containsKey(next) && !prefetcher.isShutdown()) {
+                            try {
+                                retained.put(next, prefetcher.submit(new Reader(next)));
+                            } catch (RejectedExecutionException ree) {
+                                // Closed concurrently; blocks will be read by the caller when needed
+                                break;
+                            }
+                        }
+                    }
+                }
+                boolean stalled = missing != null || !result.isDone();
+                long start = System.nanoTime();
+                try {
+                    if (missing != null) {
+                        // Nobody is reading this block yet, so read it in the current thread
+                        missing.run();
+                    }
+                    return wait(result);
+                } catch (CancellationException ce) {
+                    // A duplicate reading elsewhere dropped the block before it was read; read it again
+                } finally {
+                    if (stalled) {
+                        stalls.incrementAndGet();
+                        stallTime.addAndGet(System.nanoTime() - start);
+                    }
+                }
+            }
+        }
+
+        private ByteBuffer wait(Future<ByteBuffer> block) {
+            try {
+                return block.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new BitBufferException("Interrupted while waiting for data.", ie);
+            } catch (ExecutionException ee) {
+                throw new BitBufferException("Failed to read from the underlying channel.", ee.getCause());
+            }
+        }
+
+        /** Reads a single block. */
+        private class Reader implements Callable<ByteBuffer> {
+
+            private final long index;
+
+            private Reader(long index) {
+                this.index = index;
+            }
+
+            public ByteBuffer call() throws IOException {
+                long position = index << blockShift;
+                ByteBuffer block = ByteBuffer.allocate((int) Math.min(blockMask + 1, size - position));
+                while (block.hasRemaining()) {
+                    if (channel.read(block, position + block.position()) < 0) {
+                        throw new IOException("Unexpected end of file at byte " + (position + block.position()) + ".");
+                    }
+                }
+                block.clear();
+                blocksRead.incrementAndGet();
+                return block;
+            }
+
+        }
+
+    }
+
+}
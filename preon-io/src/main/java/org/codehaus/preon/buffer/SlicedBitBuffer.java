@@ -85,7 +85,7 @@ public class SlicedBitBuffer implements BitBuffer {
      *
      * @param nrBits The number of bits to read.
      */
-    private void assureValidRead(int nrBits) {
+    private void assureValidRead(long nrBits) {
         assureValidRead(delegate.getBitPos(), nrBits);
     }
 
@@ -95,7 +95,7 @@ public class SlicedBitBuffer implements BitBuffer {
      * @param bitPos
      * @param nrBits
      */
-    private void assureValidRead(long bitPos, int nrBits) {
+    private void assureValidRead(long bitPos, long nrBits) {
         if (bitPos > endPos - nrBits) {
             throw new BitBufferUnderflowException(delegate.getBitPos() - startPos, nrBits);
         }
@@ -201,6 +201,16 @@ public class SlicedBitBuffer implements BitBuffer {
         return delegate.readAsShort(bitPos + startPos, nrBits, endian);
     }
 
+    public void readAsIntArray(int[] dst, int offset, int count, int nrBits, ByteOrder endian) {
+        assureValidRead((long) count * nrBits);
+        delegate.readAsIntArray(dst, offset, count, nrBits, endian);
+    }
+
+    public void readAsLongArray(long[] dst, int offset, int count, int nrBits, ByteOrder endian) {
+        assureValidRead((long) count * nrBits);
+        delegate.readAsLongArray(dst, offset, count, nrBits, endian);
+    }
+
     public long readBits(int nrBits) {
         assureValidRead(nrBits);
         return delegate.readBits(nrBits);
@@ -233,6 +243,7 @@ public class SlicedBitBuffer implements BitBuffer {
     // JavaDoc inherited
 
     public BitBuffer slice(long length) {
+        assureValidRead(length);
         return delegate.slice(length);
     }
 
@@ -250,6 +261,35 @@ public class SlicedBitBuffer implements BitBuffer {
         }
     }
 
+    public long find(long pattern, int nrBits, boolean byteAligned) {
+        return find(getBitPos(), pattern, nrBits, byteAligned);
+    }
+
+    /**
+     * Searches the slice only, reading from a duplicate of the delegate, so the bit pointer does not move.
+     */
+    public long find(long bitPos, long pattern, int nrBits, boolean byteAligned) {
+        final BitBuffer reader = delegate.duplicate();
+        return new BitPatternScanner() {
+            protected long getBitBufBitSize() {
+                return endPos - startPos;
+            }
+
+            protected long getBits(long bitPos, int nrBits) {
+                return reader.readAsLong(startPos + bitPos, nrBits, ByteOrder.BigEndian);
+            }
+        }.find(bitPos, pattern, nrBits, byteAligned);
+    }
+
+    public boolean isZeroCopy(int length) {
+        return delegate.getBitPos() + (((long) length) << 3) <= endPos && delegate.isZeroCopy(length);
+    }
+
+    public ByteBuffer copyAsByteBuffer(int length) throws BitBufferUnderflowException {
+        assureValidRead(((long) length) << 3);
+        return delegate.copyAsByteBuffer(length);
+    }
+
     public ByteBuffer readAsByteBuffer() {
         return delegate.readAsByteBuffer();
     }
@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+/**
+ * A {@link BitBuffer} pulling its data from a {@link ReadableByteChannel} or {@link InputStream} into a bounded window,
+ * allowing long-running streams to be decoded in constant memory. The window is refilled on demand. Whenever it needs
+ * to move, all data preceding the byte being read is released. As a consequence, moving the bit pointer forward (within
+ * or past the window) is always supported, but reading data that has already been released will result in a {@link
+ * BitBufferException}.
+ * <p/>
+ * Since the size of a stream is not known in advance, {@link #getBitBufBitSize()} will return {@link Long#MAX_VALUE}
+ * until the end of the stream has been reached. Use {@link #hasRemaining()} to find out if there is more data.
+ * Duplicates and slices share the window with the buffer they have been created from. The window is not aware of
+ * the position of each of them: reading ahead through one of them releases the data preceding it for all of them, and
+ * reading that data through any of the others afterwards results in a {@link BitBufferException}. Duplicates and
+ * slices can therefore only be used to look ahead, or to read data that is no further behind than the size of the
+ * window.
+ * <p/>
+ * The channel needs to be in blocking mode. Non-blocking {@link SelectableChannel SelectableChannels} are rejected,
+ * and a {@link BitBufferException} is thrown if any other channel repeatedly fails to return any data.
+ */
+public class StreamingBitBuffer extends AbstractBitBuffer implements Closeable {
+
+    /** The default size of the window, in bytes. */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+    /** The number of subsequent reads returning no data at all after which reading from the channel is abandoned. */
+    private static final int MAX_EMPTY_READS = 16;
+
+    /** The window onto the stream, shared by all duplicates. */
+    private final Window window;
+
+    /**
+     * Constructs a new instance, reading from the channel passed in, using the {@link #DEFAULT_WINDOW_SIZE}.
+     *
+     * @param channel The channel providing the data, in blocking mode.
+     */
+    public StreamingBitBuffer(ReadableByteChannel channel) {
+        this(channel, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Constructs a new instance, reading from the channel passed in.
+     *
+     * @param channel    The channel providing the data, in blocking mode.
+     * @param windowSize The size of the window, in bytes. Needs to be at least 16.
+     */
+    public StreamingBitBuffer(ReadableByteChannel channel, int windowSize) {
+        this(new Window(channel, windowSize), 0L);
+    }
+
+    /**
+     * Constructs a new instance, reading from the {@link InputStream} passed in, using the {@link
+     * #DEFAULT_WINDOW_SIZE}.
+     *
+     * @param in The {@link InputStream} providing the data.
+     */
+    public StreamingBitBuffer(InputStream in) {
+        this(Channels.newChannel(in), DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Constructs a new instance, reading from the {@link InputStream} passed in.
+     *
+     * @param in         The {@link InputStream} providing the data.
+     * @param windowSize The size of the window, in bytes. Needs to be at least 16.
+     */
+    public StreamingBitBuffer(InputStream in, int windowSize) {
+        this(Channels.newChannel(in), windowSize);
+    }
+
+    private StreamingBitBuffer(Window window, long bitPos) {
+        super(Long.MAX_VALUE, bitPos);
+        this.window = window;
+    }
+
+    /**
+     * Returns the size of the stream in bits if the end of the stream has been reached, or {@link Long#MAX_VALUE}
+     * otherwise.
+     */
+    @Override
+    public long getBitBufBitSize() {
+        return window.eof ? (window.start + window.length) << 3 : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns whether there is at least one more bit available from the current position, reading from the underlying
+     * stream if required.
+     *
+     * @return <code>true</code> if at least one more bit can be read.
+     */
+    public boolean hasRemaining() {
+        return window.fill(getBitPos() >>> 3, 1);
+    }
+
+    @Override
+    protected long getBits(long bitPos, int nrBits, ByteOrder byteOrder) {
+        long bytePos = bitPos >>> 3;
+        int nrReadBytes = (int) (((bitPos & 7) + nrBits + 7) >>> 3);
+        if (!window.fill(bytePos, nrReadBytes)) {
+            throw new BitBufferUnderflowException(bitPos, nrBits);
+        }
+        return super.getBits(bitPos, nrBits, byteOrder);
+    }
+
+    @Override
+    protected byte getByte(long bytePos) {
+        return window.data[(int) (bytePos - window.start)];
+    }
+
+    /**
+     * Returns a new instance sharing the window with this instance. Reading ahead through either of them releases
+     * the data preceding it for both.
+     */
+    public BitBuffer duplicate() {
+        return new StreamingBitBuffer(window, getBitPos());
+    }
+
+    /**
+     * Returns a {@link ByteBuffer} holding the next <code>length</code> bytes. Since the window will be overwritten
+     * once it moves, the bytes are copied.
+     */
+    public ByteBuffer readAsByteBuffer(int length) throws BitBufferUnderflowException {
+        if ((getBitPos() % 8) != 0) {
+            throw new BitBufferException(
+                    "8-bit alignment exception. Bit position (" + getBitPos()
+                            + ") should be 8-bit aligned");
+        }
+        ByteBuffer result = ByteBuffer.allocate(length);
+        long bytePos = getBitPos() >>> 3;
+        while (result.hasRemaining()) {
+            int chunk = Math.min(result.remaining(), window.data.length);
+            if (!window.fill(bytePos, chunk)) {
+                throw new BitBufferUnderflowException(getBitPos(), ((long) length) << 3);
+            }
+            result.put(window.data, (int) (bytePos - window.start), chunk);
+            bytePos += chunk;
+        }
+        result.flip();
+        setBitPos(getBitPos() + (((long) length) << 3));
+        return result;
+    }
+
+    /**
+     * Not supported, since the contents of a stream cannot be exposed as a whole.
+     *
+     * @throws BitBufferException Always.
+     */
+    public ByteBuffer readAsByteBuffer() {
+        throw new BitBufferException("The contents of a stream cannot be exposed as a single ByteBuffer.");
+    }
+
+    /**
+     * Closes the underlying channel.
+     *
+     * @throws IOException If the channel fails to close.
+     */
+    public void close() throws IOException {
+        window.channel.close();
+    }
+
+    /** The window onto the stream, holding <code>length</code> bytes, starting at byte <code>start</code>. */
+    private static class Window {
+
+        private final ReadableByteChannel channel;
+
+        private final byte[] data;
+
+        /** The position of the first byte in {@link #data}, counted from the start of the stream. */
+        private long start;
+
+        /** The number of valid bytes in {@link #data}. */
+        private int length;
+
+        /** Whether the end of the stream has been reached. */
+        private boolean eof;
+
+        private Window(ReadableByteChannel channel, int size) {
+            if (size < 16) {
+                throw new IllegalArgumentException("Window size (" + size + ") should be at least 16 bytes.");
+            }
+            if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+                throw new IllegalArgumentException("Channel should be in blocking mode.");
+            }
+            this.channel = channel;
+            this.data = new byte[size];
+        }
+
+        /**
+         * Makes sure <code>count</code> bytes starting at <code>bytePos</code> are inside the window. Releases all data
+         * preceding <code>bytePos</code> if the window needs to move, and skips data if the position is beyond the
+         * window.
+         *
+         * @return <code>false</code> if the end of the stream is reached before the bytes requested are available.
+         */
+        private boolean fill(long bytePos, int count) {
+            if (bytePos < start) {
+                throw new BitBufferException("Data at byte position " + bytePos
+                        + " has already been released; the window starts at " + start + ".");
+            }
+            if (bytePos + count <= start + length) {
+                return true;
+            }
+            try {
+                // Release everything before bytePos, possibly skipping data not even read yet
+                long end = start + length;
+                if (bytePos < end) {
+                    int retained = (int) (end - bytePos);
+                    System.arraycopy(data, length - retained, data, 0, retained);
+                    length = retained;
+                    start = bytePos;
+                } else {
+                    start = end;
+                    length = 0;
+                    while (start < bytePos && !eof) {
+                        int read = read((int) Math.min(data.length, bytePos - start));
+                        start += read;
+                        length = 0;
+                    }
+                    if (start < bytePos) {
+                        return false;
+                    }
+                }
+                while (length < count && !eof) {
+                    length += read(data.length - length);
+                }
+                return length >= count;
+            } catch (IOException ioe) {
+                throw new BitBufferException("Failed to read from the underlying channel.", ioe);
+            }
+        }
+
+        /**
+         * Reads at most <code>max</code> bytes into the window, following the {@link #length} bytes present. Retries
+         * reads returning no data at all a limited number of times, rather than spinning forever.
+         */
+        private int read(int max) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(data, length, max);
+            for (int attempt = 0; attempt < MAX_EMPTY_READS; attempt++) {
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    eof = true;
+                    return 0;
+                } else if (read > 0) {
+                    return read;
+                }
+            }
+            throw new IOException("No data returned after " + MAX_EMPTY_READS + " attempts.");
+        }
+
+    }
+
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.channel;
+
+import org.codehaus.preon.buffer.ByteOrder;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An abstract base class for {@link BitChannel BitChannels} collecting bits in a 64-bit accumulator, and writing them
+ * to a {@link ByteBuffer} a word at a time, so values of any size take a constant number of operations, rather than one
+ * per byte. Byte arrays and {@link ByteBuffer ByteBuffers} written at a byte boundary are handed to {@link
+ * #writeAligned(ByteBuffer)} as a whole. Implementations decide where the data goes, by implementing {@link
+ * #getBuffer(int)} and {@link #writeAligned(ByteBuffer)}.
+ * <p/>
+ * Up to 63 bits may be held by the accumulator at any time. Implementations move them out using {@link
+ * #flushAccumulator(ByteBuffer)} and {@link #padAccumulator(ByteBuffer)}.
+ */
+@NotThreadSafe
+public abstract class AccumulatingBitChannel implements BitChannel {
+
+    /** The bits not written to a buffer yet, in the lowest {@link #accumulated} bits. */
+    private long accumulator;
+
+    /** The number of bits in the {@link #accumulator}, from 0 up to 63. */
+    private int accumulated;
+
+    public void write(boolean value) throws IOException {
+        writeBits(value ? 1L : 0L, 1);
+    }
+
+    public void write(@Nonnegative int nrbits, byte value) throws IOException {
+        assert nrbits > 0;
+        assert nrbits <= 8;
+        writeBits(value & ((1L << nrbits) - 1), nrbits);
+    }
+
+    public void write(@Nonnegative int nrbits, int value, ByteOrder byteOrder) throws IOException {
+        assert nrbits > 0;
+        assert nrbits <= 32;
+        write(nrbits, value & (-1L >>> (64 - nrbits)), byteOrder);
+    }
+
+    public void write(@Nonnegative int nrbits, long value, ByteOrder byteOrder) throws IOException {
+        assert nrbits > 0;
+        assert nrbits <= 64;
+        writeBits(toBits(nrbits, value, byteOrder), nrbits);
+    }
+
+    public void write(@Nonnegative int nrbits, short value, ByteOrder byteOrder) throws IOException {
+        assert nrbits > 0;
+        assert nrbits <= 16;
+        write(nrbits, value & (-1L >>> (64 - nrbits)), byteOrder);
+    }
+
+    public void write(@Nonnull byte[] src, int offset, int length) throws IOException {
+        write(ByteBuffer.wrap(src, offset, length));
+    }
+
+    public long write(@Nonnull ByteBuffer src) throws IOException {
+        int length = src.remaining();
+        if ((accumulated & 7) == 0) {
+            flushAccumulator(getBuffer(accumulated >>> 3));
+            writeAligned(src);
+        } else {
+            // Shift the data through the accumulator, a word at a time
+            boolean bigEndian = src.order() == java.nio.ByteOrder.BIG_ENDIAN;
+            while (src.remaining() >= 8) {
+                long word = src.getLong();
+                writeBits(bigEndian ? word : Long.reverseBytes(word), 64);
+            }
+            while (src.hasRemaining()) {
+                writeBits(src.get() & 0xffL, 8);
+            }
+        }
+        return ((long) length) << 3;
+    }
+
+    public
+    @Nonnegative
+    int getRelativeBitPos() {
+        return accumulated & 7;
+    }
+
+    /**
+     * Returns a buffer with room for at least <code>length</code> bytes, to which data held by the accumulator will be
+     * written. <code>length</code> never exceeds 8.
+     *
+     * @param length The number of bytes about to be written.
+     * @return The buffer to write to.
+     * @throws IOException If making room requires writing data, and that fails.
+     */
+    protected abstract ByteBuffer getBuffer(int length) throws IOException;
+
+    /**
+     * Writes the remaining bytes of <code>src</code>, starting at a byte boundary, moving its position to its limit.
+     * All data held by the accumulator has been written before this method is called.
+     *
+     * @param src The data to write.
+     * @throws IOException If writing the data fails.
+     */
+    protected abstract void writeAligned(ByteBuffer src) throws IOException;
+
+    /** Returns the number of bits held by the accumulator, from 0 up to 63. */
+    protected int getPendingBits() {
+        return accumulated;
+    }
+
+    /**
+     * Writes all whole bytes held by the accumulator to the buffer passed in, which needs to have room for {@link
+     * #getPendingBits()}<code> / 8</code> bytes. Up to seven bits may remain in the accumulator.
+     */
+    protected void flushAccumulator(ByteBuffer target) {
+        int bytes = accumulated >>> 3;
+        for (int i = 1; i <= bytes; i++) {
+            target.put((byte) (accumulator >>> (accumulated - (i << 3))));
+        }
+        accumulated &= 7;
+    }
+
+    /**
+     * Writes all bits held by the accumulator to the buffer passed in, padding the last byte with zero bits if required.
+     * The buffer needs to have room for {@link #getPendingBits()}<code> / 8</code> bytes, plus one more if the number
+     * of bits is not a multiple of 8.
+     */
+    protected void padAccumulator(ByteBuffer target) {
+        flushAccumulator(target);
+        if (accumulated > 0) {
+            target.put(getPartialByte());
+            accumulated = 0;
+        }
+    }
+
+    /**
+     * Replaces <code>nrbits</code> bits held by the accumulator, starting <code>offset</code> bits after the first bit
+     * it holds, by the lowest <code>nrbits</code> bits of <code>bits</code>.
+     */
+    protected void patchAccumulator(int offset, int nrbits, long bits) {
+        assert offset + nrbits <= accumulated;
+        int shift = accumulated - offset - nrbits;
+        long mask = (-1L >>> (64 - nrbits)) << shift;
+        accumulator = (accumulator & ~mask) | ((bits << shift) & mask);
+    }
+
+    /**
+     * Returns the lowest <code>nrbits</code> bits of <code>value</code>, in the order in which they are written, based
+     * on the {@link ByteOrder} passed in, in case the number of bits exceeds 8.
+     */
+    protected static long toBits(int nrbits, long value, ByteOrder byteOrder) {
+        value &= -1L >>> (64 - nrbits);
+        if (byteOrder == ByteOrder.LittleEndian && nrbits > 8) {
+            // The least significant bytes go first, followed by the remaining bits, as OutputStreamBitChannel does
+            int bytes = nrbits >>> 3;
+            int remainder = nrbits & 7;
+            long reordered = Long.reverseBytes(value) >>> (64 - (bytes << 3));
+            if (remainder != 0) {
+                reordered = (reordered << remainder) | (value >>> (bytes << 3));
+            }
+            value = reordered;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the bits left in the accumulator after {@link #flushAccumulator(ByteBuffer) flushing} it, padded with
+     * zero bits, without consuming them.
+     */
+    protected byte getPartialByte() {
+        return (byte) (accumulator << (8 - accumulated));
+    }
+
+    /** Appends the <code>nrbits</code> lowest bits of <code>value</code>; all other bits are expected to be zero. */
+    private void writeBits(long value, int nrbits) throws IOException {
+        int free = 64 - accumulated;
+        if (nrbits < free) {
+            accumulator = (accumulator << nrbits) | value;
+            accumulated += nrbits;
+        } else {
+            // Complete a word, and keep the bits that did not fit; bits above those are shifted out eventually
+            int left = nrbits - free;
+            long word = accumulated == 0 ? value : (accumulator << free) | (value >>> left);
+            ByteBuffer target = getBuffer(8);
+            target.putLong(target.order() == java.nio.ByteOrder.BIG_ENDIAN ? word : Long.reverseBytes(word));
+            accumulator = value;
+            accumulated = left;
+        }
+    }
+
+}
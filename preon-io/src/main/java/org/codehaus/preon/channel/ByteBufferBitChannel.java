@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.channel;
+
+import org.codehaus.preon.buffer.ByteOrder;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link BitChannel} writing to a {@link ByteBuffer}: either a buffer growing on demand, or a buffer passed in by the
+ * caller. Bits are collected in a 64-bit accumulator, and written to the buffer a word at a time, so values of any size
+ * take a constant number of operations, rather than one per byte. Byte arrays and {@link ByteBuffer ByteBuffers} written
+ * at a byte boundary are copied in bulk.
+ * <p/>
+ * Until the channel is {@link #flush() flushed} or {@link #close() closed}, up to 63 bits may still be held by the
+ * accumulator. Closing the channel pads the last byte with zero bits, if required. Bits written before can be
+ * overwritten using {@link #patch(long, int, long, ByteOrder)}, even if they are still held by the accumulator.
+ */
+@NotThreadSafe
+public class ByteBufferBitChannel extends AccumulatingBitChannel implements SeekableBitChannel, Closeable {
+
+    /** The initial capacity of a buffer growing on demand. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /** The buffer receiving the data. */
+    private ByteBuffer buffer;
+
+    /** Whether {@link #buffer} can be replaced by a larger one once full. */
+    private final boolean growable;
+
+    /** The position of {@link #buffer} at the time the channel was created. */
+    private final int start;
+
+    /** Constructs a new instance, writing to a buffer growing on demand. */
+    public ByteBufferBitChannel() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new instance, writing to a buffer growing on demand.
+     *
+     * @param initialCapacity The initial capacity of the buffer, in bytes.
+     */
+    public ByteBufferBitChannel(@Nonnegative int initialCapacity) {
+        this(ByteBuffer.allocate(Math.max(initialCapacity, 8)), true);
+    }
+
+    /**
+     * Constructs a new instance, writing to the buffer passed in, starting at its position. The position is advanced as
+     * data gets written. Writing beyond the limit of the buffer results in a {@link BitChannelException}.
+     *
+     * @param buffer The buffer receiving the data.
+     */
+    public ByteBufferBitChannel(@Nonnull ByteBuffer buffer) {
+        this(buffer, false);
+    }
+
+    private ByteBufferBitChannel(ByteBuffer buffer, boolean growable) {
+        this.buffer = buffer;
+        this.growable = growable;
+        this.start = buffer.position();
+    }
+
+    /**
+     * Returns the number of bits written to this channel so far.
+     *
+     * @return The number of bits written.
+     */
+    public long getBitPos() {
+        return (((long) (buffer.position() - start)) << 3) + getPendingBits();
+    }
+
+    public long reserve(int nrbits) throws IOException {
+        long result = getBitPos();
+        write(nrbits, 0L, ByteOrder.BigEndian);
+        return result;
+    }
+
+    public void patch(long bitPos, int nrbits, long value, ByteOrder byteOrder) {
+        assert nrbits > 0;
+        assert nrbits <= 64;
+        if (bitPos < 0 || bitPos + nrbits > getBitPos()) {
+            throw new BitChannelException("Attempt to patch bits not written yet.");
+        }
+        long bits = toBits(nrbits, value, byteOrder);
+        long end = bitPos + nrbits;
+        long flushed = ((long) (buffer.position() - start)) << 3;
+        if (end > flushed) {
+            // The last bits are still held by the accumulator
+            long from = Math.max(bitPos, flushed);
+            int count = (int) (end - from);
+            patchAccumulator((int) (from - flushed), count, bits);
+            bits = count == 64 ? 0 : bits >>> count;
+            nrbits -= count;
+            end = from;
+        }
+        while (nrbits > 0) {
+            // Patch the bytes in the buffer, starting with the last one
+            int index = start + (int) ((end - 1) >>> 3);
+            int used = (int) ((end - 1) & 7) + 1;
+            int count = Math.min(nrbits, used);
+            int mask = ((1 << count) - 1) << (8 - used);
+            buffer.put(index, (byte) ((buffer.get(index) & ~mask) | (((int) bits << (8 - used)) & mask)));
+            bits >>>= count;
+            nrbits -= count;
+            end -= count;
+        }
+    }
+
+    /**
+     * Writes all whole bytes held by the accumulator to the buffer. Up to seven bits may remain in the accumulator.
+     *
+     * @throws BitChannelException If the buffer passed in by the caller is full.
+     */
+    public void flush() {
+        flushAccumulator(getBuffer(getPendingBits() >>> 3));
+    }
+
+    /**
+     * Returns the data written so far, as a read-only {@link ByteBuffer} sharing the data of the buffer written to. A
+     * last byte that is only partially written is included, padded with zero bits. The channel can still be written to
+     * afterwards.
+     *
+     * @return The data written so far.
+     */
+    public ByteBuffer getByteBuffer() {
+        flush();
+        int end = buffer.position();
+        if (getPendingBits() > 0) {
+            // Store the bits left without consuming them, so they can still be completed
+            ensureCapacity(1);
+            buffer.put(end++, getPartialByte());
+        }
+        ByteBuffer result = buffer.duplicate();
+        result.limit(end);
+        result.position(start);
+        return result.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes all bits left in the accumulator to the buffer, padding the last byte with zero bits, if required.
+     *
+     * @throws BitChannelException If the buffer passed in by the caller is full.
+     */
+    public void close() {
+        padAccumulator(getBuffer((getPendingBits() + 7) >>> 3));
+    }
+
+    @Override
+    protected ByteBuffer getBuffer(int length) {
+        ensureCapacity(length);
+        return buffer;
+    }
+
+    @Override
+    protected void writeAligned(ByteBuffer src) {
+        ensureCapacity(src.remaining());
+        buffer.put(src);
+    }
+
+    /**
+     * Makes sure the buffer has room for at least <code>length</code> more bytes, replacing it by a larger one if
+     * allowed.
+     */
+    private void ensureCapacity(int length) {
+        if (buffer.remaining() < length) {
+            if (!growable) {
+                throw new BitChannelException("Attempt to write beyond the limit of the buffer.");
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() << 1, buffer.position() + length));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.channel;
+
+import org.codehaus.preon.buffer.ByteOrder;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link BitChannel} discarding all data written to it, merely counting the number of bits. Useful for finding out
+ * how many bits encoding a value takes, before allocating room for it. Reserving and patching bits is supported as
+ * well, so encoders relying on {@link SeekableBitChannel} take the same path as they would when writing for real.
+ */
+public class CountingBitChannel implements SeekableBitChannel {
+
+    /** The number of bits written so far. */
+    private long bitPos;
+
+    public void write(boolean value) {
+        bitPos++;
+    }
+
+    public void write(@Nonnegative int nrbits, byte value) {
+        bitPos += nrbits;
+    }
+
+    public void write(@Nonnegative int nrbits, int value, ByteOrder byteOrder) {
+        bitPos += nrbits;
+    }
+
+    public void write(@Nonnegative int nrbits, long value, ByteOrder byteOrder) {
+        bitPos += nrbits;
+    }
+
+    public void write(@Nonnegative int nrbits, short value, ByteOrder byteOrder) {
+        bitPos += nrbits;
+    }
+
+    public void write(@Nonnull byte[] src, int offset, int length) {
+        bitPos += ((long) length) << 3;
+    }
+
+    public long write(@Nonnull ByteBuffer buffer) {
+        long result = ((long) buffer.remaining()) << 3;
+        buffer.position(buffer.limit());
+        bitPos += result;
+        return result;
+    }
+
+    public
+    @Nonnegative
+    int getRelativeBitPos() {
+        return (int) (bitPos & 7);
+    }
+
+    public long getBitPos() {
+        return bitPos;
+    }
+
+    public long reserve(int nrbits) {
+        long result = bitPos;
+        bitPos += nrbits;
+        return result;
+    }
+
+    public void patch(long bitPos, int nrbits, long value, ByteOrder byteOrder) {
+        if (bitPos < 0 || bitPos + nrbits > this.bitPos) {
+            throw new BitChannelException("Attempt to patch bits not written yet.");
+        }
+    }
+
+    public void close() {
+    }
+
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.channel;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A {@link BitChannel} writing to a {@link GatheringByteChannel}, such as a {@link FileChannel}. Data is staged in a
+ * pool of direct buffers; once all of them are full, they are handed to the channel in a single {@link
+ * GatheringByteChannel#write(ByteBuffer[], int, int) gathering write}, and reused afterwards. {@link ByteBuffer
+ * ByteBuffers} of at least {@link #getPassThroughThreshold()} bytes, written at a byte boundary, are not copied into the
+ * staging buffers, but passed on to the channel as they are, in the same gathering write as the data staged before.
+ * <p/>
+ * Bits are collected in a 64-bit accumulator, as {@link ByteBufferBitChannel} does. Until the channel is {@link #flush()
+ * flushed} or {@link #close() closed}, data may still be held by the accumulator or the staging buffers. Closing the
+ * channel pads the last byte with zero bits, if required, and closes the underlying channel.
+ */
+@NotThreadSafe
+public class GatheringBitChannel extends AccumulatingBitChannel implements Closeable {
+
+    /** The default size of a staging buffer, in bytes. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /** The default number of staging buffers. */
+    public static final int DEFAULT_BUFFER_COUNT = 16;
+
+    /** The channel receiving the data. */
+    private final GatheringByteChannel channel;
+
+    /** The size of a staging buffer, in bytes. */
+    private final int bufferSize;
+
+    /** The number of staging buffers that may be allocated. */
+    private final int bufferCount;
+
+    /** The staging buffers allocated, ready to be reused. */
+    private final LinkedList<ByteBuffer> pool = new LinkedList<ByteBuffer>();
+
+    /** The number of staging buffers allocated so far. */
+    private int allocated;
+
+    /** The data to be passed to the channel in the next gathering write, in order. */
+    private final List<ByteBuffer> pending = new ArrayList<ByteBuffer>();
+
+    /** The staging buffers in {@link #pending}, to be returned to the {@link #pool} once written. */
+    private final List<ByteBuffer> staged = new ArrayList<ByteBuffer>();
+
+    /** The staging buffer currently written to. */
+    private ByteBuffer current;
+
+    /** The number of bytes written to the channel or added to {@link #pending}. */
+    private long committed;
+
+    /**
+     * Constructs a new instance, writing to the channel passed in, using {@link #DEFAULT_BUFFER_COUNT} staging buffers
+     * of {@link #DEFAULT_BUFFER_SIZE} bytes.
+     *
+     * @param channel The channel receiving the data.
+     */
+    public GatheringBitChannel(@Nonnull GatheringByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+    }
+
+    /**
+     * Constructs a new instance, writing to the channel passed in.
+     *
+     * @param channel     The channel receiving the data.
+     * @param bufferSize  The size of a staging buffer, in bytes. Needs to be at least 16.
+     * @param bufferCount The number of staging buffers. Needs to be at least 1.
+     */
+    public GatheringBitChannel(@Nonnull GatheringByteChannel channel, int bufferSize, int bufferCount) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Buffer size (" + bufferSize + ") should be at least 16 bytes.");
+        }
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("Buffer count (" + bufferCount + ") should be at least 1.");
+        }
+        this.channel = channel;
+        this.bufferSize = bufferSize;
+        this.bufferCount = bufferCount;
+        this.current = allocate();
+    }
+
+    /**
+     * Returns the minimal number of bytes a {@link ByteBuffer} written at a byte boundary needs to have to be passed on
+     * to the channel without copying. Smaller buffers are copied into the staging buffers.
+     *
+     * @return The pass-through threshold, in bytes.
+     */
+    public int getPassThroughThreshold() {
+        return bufferSize >>> 2;
+    }
+
+    /**
+     * Returns the number of bits written to this channel so far.
+     *
+     * @return The number of bits written.
+     */
+    public long getBitPos() {
+        return ((committed + current.position()) << 3) + getPendingBits();
+    }
+
+    /**
+     * Writes all whole bytes written so far to the underlying channel. Up to seven bits may remain in the accumulator.
+     *
+     * @throws IOException If the underlying channel fails to accept the data.
+     */
+    public void flush() throws IOException {
+        flushAccumulator(getBuffer(getPendingBits() >>> 3));
+        stage();
+        writePending();
+    }
+
+    /**
+     * Writes all data left to the underlying channel, padding the last byte with zero bits, if required, and closes the
+     * channel.
+     *
+     * @throws IOException If the underlying channel fails to accept the data, or fails to close.
+     */
+    public void close() throws IOException {
+        try {
+            padAccumulator(getBuffer((getPendingBits() + 7) >>> 3));
+            stage();
+            writePending();
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    protected ByteBuffer getBuffer(int length) throws IOException {
+        if (current.remaining() < length) {
+            stage();
+        }
+        return current;
+    }
+
+    @Override
+    protected void writeAligned(ByteBuffer src) throws IOException {
+        if (src.remaining() >= getPassThroughThreshold()) {
+            // Since the caller is free to modify src once this method returns, it is written right away
+            stage();
+            committed += src.remaining();
+            pending.add(src);
+            writePending();
+        } else {
+            while (src.hasRemaining()) {
+                ByteBuffer target = getBuffer(1);
+                int count = Math.min(target.remaining(), src.remaining());
+                ByteBuffer chunk = src.duplicate();
+                chunk.limit(chunk.position() + count);
+                target.put(chunk);
+                src.position(src.position() + count);
+            }
+        }
+    }
+
+    /**
+     * Adds the current staging buffer to the data pending, if it holds any data, and replaces it by another one, writing
+     * the data pending first if all staging buffers are in use.
+     */
+    private void stage() throws IOException {
+        if (current.position() > 0) {
+            current.flip();
+            committed += current.remaining();
+            pending.add(current);
+            staged.add(current);
+            if (pool.isEmpty() && allocated == bufferCount) {
+                writePending();
+            }
+            current = pool.isEmpty() ? allocate() : pool.removeFirst();
+        }
+    }
+
+    /** Hands all data pending to the channel, and returns the staging buffers written to the {@link #pool}. */
+    private void writePending() throws IOException {
+        if (!pending.isEmpty()) {
+            ByteBuffer[] buffers = pending.toArray(new ByteBuffer[pending.size()]);
+            int offset = 0;
+            while (offset < buffers.length) {
+                channel.write(buffers, offset, buffers.length - offset);
+                while (offset < buffers.length && !buffers[offset].hasRemaining()) {
+                    offset++;
+                }
+            }
+            pending.clear();
+            for (ByteBuffer buffer : staged) {
+                buffer.clear();
+                pool.add(buffer);
+            }
+            staged.clear();
+        }
+    }
+
+    private ByteBuffer allocate() {
+        allocated++;
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+}
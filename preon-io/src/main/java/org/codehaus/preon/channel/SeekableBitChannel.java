@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.channel;
+
+import org.codehaus.preon.buffer.ByteOrder;
+
+import java.io.IOException;
+
+/**
+ * A {@link BitChannel} keeping track of absolute bit positions, and allowing bits written before to be overwritten.
+ * Useful for length prefixes and offset tables: reserve room for the value using {@link #reserve(int)}, write the data
+ * it describes, and then {@link #patch(long, int, long, ByteOrder) patch} the reserved bits once the value is known.
+ */
+public interface SeekableBitChannel extends BitChannel {
+
+    /** Returns the number of bits written to the channel so far, which is the position of the next bit written. */
+    long getBitPos();
+
+    /**
+     * Writes <code>nrbits</code> zero bits to the channel, to be {@link #patch(long, int, long, ByteOrder) patched}
+     * later on.
+     *
+     * @param nrbits The number of bits to reserve; at most 64.
+     * @return The position of the first bit reserved.
+     */
+    long reserve(int nrbits) throws IOException;
+
+    /**
+     * Overwrites <code>nrbits</code> bits written before, starting at <code>bitPos</code>, with <code>nrbits</code>
+     * bits of the long value, based on the {@link ByteOrder} passed in, in case the number of bits exceeds 8. The bits
+     * are represented exactly as {@link #write(int, long, ByteOrder)} would have written them. The position of the
+     * channel does not change.
+     *
+     * @throws BitChannelException If any of the bits has not been written yet.
+     */
+    void patch(long bitPos, int nrbits, long value, ByteOrder byteOrder) throws IOException;
+
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+
+public class BitCursorTest extends TestCase {
+
+    private byte[] data;
+
+    private BitBuffer expected;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = new byte[29];
+        new Random(29).nextBytes(data);
+        expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+    }
+
+    public void testReads() {
+        BitSource[] sources = {new DefaultBitBuffer(ByteBuffer.wrap(data)), new ByteArrayBitBuffer(data)};
+        for (BitSource source : sources) {
+            BitBuffer cursor = new BitCursor(source);
+            for (long bitPos = 0; bitPos < data.length * 8; bitPos += 3) {
+                for (int nrBits = 1; nrBits <= 64 && bitPos + nrBits <= data.length * 8; nrBits++) {
+                    assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.BigEndian),
+                            cursor.readAsLong(bitPos, nrBits, ByteOrder.BigEndian));
+                    assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian),
+                            cursor.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian));
+                    assertEquals(bitPos + nrBits, cursor.getBitPos());
+                }
+            }
+            // The source does not keep track of the position of its cursors.
+            assertEquals(0, ((BitBuffer) source).getBitPos());
+        }
+    }
+
+    public void testSliceAndDuplicate() {
+        BitBuffer cursor = new BitCursor(new ByteArrayBitBuffer(data));
+        cursor.readAsInt(5);
+        BitBuffer duplicate = cursor.duplicate();
+        BitBuffer slice = cursor.slice(20);
+        assertEquals(25, cursor.getBitPos());
+        assertEquals(5, duplicate.getBitPos());
+        assertEquals(20, slice.getBitBufBitSize());
+        assertEquals(expected.readAsInt(5, 20), slice.readAsInt(20));
+        assertEquals(25, slice.getActualBitPos());
+        try {
+            slice.readAsBoolean();
+            fail();
+        } catch (BitBufferUnderflowException bbue) {
+            // Expected: the slice is exhausted.
+        }
+        assertEquals(expected.readAsInt(5, 20), duplicate.readAsInt(20));
+    }
+
+    public void testGetByte() {
+        BitCursor cursor = new BitCursor(new ByteArrayBitBuffer(data));
+        cursor.readAsByte(4);
+        BitCursor slice = (BitCursor) cursor.slice(16);
+        // Byte positions are relative to the cursor, just like bit positions.
+        assertEquals(expected.readAsByte(4L, 8, ByteOrder.BigEndian), slice.getByte(0));
+        assertEquals(expected.readAsByte(12L, 8, ByteOrder.BigEndian), slice.getByte(1));
+    }
+
+    public void testReadAsByteBuffer() {
+        BitBuffer cursor = new BitCursor(new DefaultBitBuffer(ByteBuffer.wrap(data)));
+        cursor.readAsByte(8);
+        assertTrue(cursor.isZeroCopy(3));
+        ByteBuffer view = cursor.readAsByteBuffer(3);
+        data[1] = 42;
+        assertEquals(42, view.get(0));
+        cursor.readAsByte(1);
+        assertFalse(cursor.isZeroCopy(1));
+        ByteBuffer copy = cursor.copyAsByteBuffer(2);
+        expected.setBitPos(33);
+        assertEquals(expected.readAsByte(8), copy.get(0));
+        assertEquals(expected.readAsByte(8), copy.get(1));
+    }
+
+    public void testReadAsByteBufferOnSharedSource() throws InterruptedException {
+        final DefaultBitBuffer source = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        final long lastBitPos = (data.length - 1) * 8;
+        final byte last = expected.readAsByte(lastBitPos, 8, ByteOrder.BigEndian);
+        final int[] failures = new int[1];
+        final boolean[] done = new boolean[1];
+        Thread reader = new Thread() {
+            public void run() {
+                for (int round = 0; round < 100000; round++) {
+                    if (new BitCursor(source).readAsByte(lastBitPos, 8, ByteOrder.BigEndian) != last) {
+                        synchronized (failures) {
+                            failures[0]++;
+                        }
+                    }
+                }
+                synchronized (done) {
+                    done[0] = true;
+                }
+            }
+        };
+        reader.start();
+        while (true) {
+            synchronized (done) {
+                if (done[0]) {
+                    break;
+                }
+            }
+            // Reading through the source itself must not disturb the cursors sharing it.
+            source.setBitPos(0);
+            assertEquals(data[0], source.readAsByteBuffer(1).get(0));
+        }
+        reader.join();
+        assertEquals(0, failures[0]);
+    }
+
+    public void testConcurrentCursors() throws InterruptedException {
+        final BitSource source = new ByteArrayBitBuffer(data);
+        final int[] failures = new int[1];
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int nrBits = i + 5;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int round = 0; round < 1000; round++) {
+                        BitBuffer cursor = new BitCursor(source);
+                        BitBuffer reference = new DefaultBitBuffer(ByteBuffer.wrap(data));
+                        while (cursor.getBitPos() + nrBits <= cursor.getBitBufBitSize()) {
+                            if (cursor.readAsInt(nrBits) != reference.readAsInt(nrBits)) {
+                                synchronized (failures) {
+                                    failures[0]++;
+                                }
+                            }
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, failures[0]);
+    }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+
+public class ByteArrayBitBufferTest extends TestCase {
+
+    private byte[] data;
+
+    private BitBuffer expected;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = new byte[29];
+        new Random(29).nextBytes(data);
+        expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+    }
+
+    public void testReads() {
+        BitBuffer buffer = new ByteArrayBitBuffer(data);
+        for (long bitPos = 0; bitPos < data.length * 8; bitPos++) {
+            for (int nrBits = 1; nrBits <= 64 && bitPos + nrBits <= data.length * 8; nrBits++) {
+                assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.BigEndian),
+                        buffer.readAsLong(bitPos, nrBits, ByteOrder.BigEndian));
+                assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian),
+                        buffer.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian));
+                assertEquals(bitPos + nrBits, buffer.getBitPos());
+            }
+        }
+    }
+
+    public void testReadAsIntArray() {
+        BitBuffer buffer = new ByteArrayBitBuffer(data);
+        for (int nrBits = 1; nrBits <= 32; nrBits++) {
+            int count = (data.length * 8 - 5) / nrBits;
+            int[] values = new int[count];
+            buffer.setBitPos(5);
+            buffer.readAsIntArray(values, 0, count, nrBits, ByteOrder.LittleEndian);
+            expected.setBitPos(5);
+            for (int i = 0; i < count; i++) {
+                assertEquals(expected.readAsInt(nrBits, ByteOrder.LittleEndian), values[i]);
+            }
+            assertEquals(expected.getBitPos(), buffer.getBitPos());
+        }
+    }
+
+    public void testRegion() {
+        BitBuffer buffer = new ByteArrayBitBuffer(data, 3, 10);
+        assertEquals(80, buffer.getBitBufBitSize());
+        assertEquals(expected.readAsLong(24, 64), buffer.readAsLong(64));
+        assertEquals(expected.readAsInt(88, 16), buffer.readAsInt(16));
+        try {
+            buffer.readAsBoolean();
+            fail("Expecting exception while reading beyond end of region.");
+        } catch (BitBufferUnderflowException bue) {
+            // What we expected
+        }
+        try {
+            new ByteArrayBitBuffer(data, 20, 10);
+            fail("Expecting exception for a region exceeding the array.");
+        } catch (IndexOutOfBoundsException ioobe) {
+            // What we expected
+        }
+    }
+
+    public void testGetByteWithinRegion() {
+        ByteArrayBitBuffer buffer = new ByteArrayBitBuffer(data, 3, 10);
+        assertEquals(expected.readAsByte(8, 24L), buffer.getByte(0));
+        assertEquals(expected.readAsByte(8, 96L), buffer.getByte(9));
+        buffer.setBitPos(5);
+        ByteArrayBitBuffer slice = (ByteArrayBitBuffer) buffer.slice(16);
+        assertEquals(expected.readAsByte(8, 37L), slice.getByte(1));
+    }
+
+    public void testUnalignedSlice() {
+        BitBuffer buffer = new ByteArrayBitBuffer(data);
+        buffer.setBitPos(5);
+        BitBuffer slice = buffer.slice(70);
+        assertEquals(75, buffer.getBitPos());
+        assertEquals(expected.readAsLong(5, 64), slice.readAsLong(64));
+        assertEquals(expected.readAsInt(69, 6, ByteOrder.LittleEndian), slice.readAsInt(6, ByteOrder.LittleEndian));
+        assertEquals(75, slice.getActualBitPos());
+        try {
+            slice.readAsBoolean();
+            fail("Expecting exception while reading beyond end of slice.");
+        } catch (BitBufferUnderflowException bue) {
+            // What we expected
+        }
+    }
+
+    public void testReadAsByteBufferSharesArray() {
+        BitBuffer buffer = new ByteArrayBitBuffer(data, 1, 20);
+        buffer.readAsByte(8);
+        ByteBuffer view = buffer.readAsByteBuffer(4);
+        assertEquals(4, view.remaining());
+        data[2] = 42;
+        assertEquals(42, view.get(0));
+        assertEquals(40, buffer.getBitPos());
+        assertEquals(20, buffer.readAsByteBuffer().remaining());
+    }
+
+}
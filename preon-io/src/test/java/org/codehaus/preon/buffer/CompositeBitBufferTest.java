@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+
+public class CompositeBitBufferTest extends TestCase {
+
+    private byte[] data;
+
+    private CompositeBitBuffer buffer;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = new byte[300];
+        new Random(300).nextBytes(data);
+        // Fragments of 1 up to 24 bytes, some empty, with a position and limit of their own
+        List<ByteBuffer> fragments = new ArrayList<ByteBuffer>();
+        int pos = 0;
+        for (int size = 0; pos < data.length; size = (size + 5) % 25) {
+            int length = Math.min(size, data.length - pos);
+            byte[] fragment = new byte[length + 4];
+            System.arraycopy(data, pos, fragment, 2, length);
+            fragments.add(ByteBuffer.wrap(fragment, 2, length));
+            pos += length;
+        }
+        buffer = new CompositeBitBuffer(fragments);
+    }
+
+    public void testReads() {
+        assertEquals(data.length * 8L, buffer.getBitBufBitSize());
+        assertTrue(buffer.getFragmentCount() > 20);
+        BitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        for (long bitPos = 0; bitPos < data.length * 8; bitPos += 3) {
+            for (int nrBits = 1; nrBits <= 64 && bitPos + nrBits <= data.length * 8; nrBits += 5) {
+                assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.BigEndian),
+                        buffer.readAsLong(bitPos, nrBits, ByteOrder.BigEndian));
+                assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian),
+                        buffer.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian));
+                assertEquals(bitPos + nrBits, buffer.getBitPos());
+            }
+        }
+    }
+
+    public void testReadingBackwards() {
+        BitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        for (long bitPos = data.length * 8L - 32; bitPos >= 0; bitPos -= 29) {
+            assertEquals(expected.readAsInt(bitPos, 32), buffer.readAsInt(bitPos, 32));
+        }
+    }
+
+    public void testSliceAndDuplicate() {
+        buffer.setBitPos(13);
+        BitBuffer slice = buffer.slice(800);
+        assertEquals(813, buffer.getBitPos());
+        assertEquals(800, slice.getBitBufBitSize());
+        assertEquals(new DefaultBitBuffer(ByteBuffer.wrap(data)).readAsLong(13 + 500, 64), slice.readAsLong(500, 64));
+        BitBuffer duplicate = slice.duplicate();
+        assertEquals(slice.getBitPos(), duplicate.getBitPos());
+        assertEquals(slice.readAsInt(100, 17), duplicate.readAsInt(100, 17));
+        try {
+            slice.readAsLong(790, 11);
+            fail();
+        } catch (BitBufferUnderflowException bbue) {
+            // Expected
+        }
+    }
+
+    public void testReadAsByteBuffer() {
+        // The first non-empty fragment holds the first five bytes
+        assertTrue(buffer.isZeroCopy(5));
+        ByteBuffer view = buffer.readAsByteBuffer(5);
+        assertEquals(ByteBuffer.wrap(data, 0, 5), view);
+        assertFalse(buffer.isZeroCopy(20));
+        ByteBuffer copy = buffer.readAsByteBuffer(20);
+        assertEquals(ByteBuffer.wrap(data, 5, 20), copy);
+        assertEquals(ByteBuffer.wrap(data), buffer.readAsByteBuffer());
+        BitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        expected.setBitPos(3);
+        assertEquals(expected.copyAsByteBuffer(40), buffer.getByteBuffer(3, 40));
+    }
+
+    public void testEmpty() {
+        BitBuffer empty = new CompositeBitBuffer(ByteBuffer.allocate(0));
+        assertEquals(0, empty.getBitBufBitSize());
+        assertEquals(0, empty.readAsByteBuffer().remaining());
+        try {
+            empty.readAsByte(1);
+            fail();
+        } catch (BitBufferUnderflowException bbue) {
+            // Expected
+        }
+    }
+
+}
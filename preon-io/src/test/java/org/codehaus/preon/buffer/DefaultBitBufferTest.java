@@ -207,6 +207,59 @@ public class DefaultBitBufferTest extends TestCase {
         buffer.readAsByteBuffer(2);
     }
 
+    public void testReadAsByteBufferIsZeroCopy() {
+        byte[] data = {1, 2, 3, 4, 5, 6, 7, 8};
+        BitBuffer buffer = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        buffer.readAsByte(8);
+        assertTrue(buffer.isZeroCopy(4));
+        assertFalse(buffer.isZeroCopy(8));
+        ByteBuffer view = buffer.readAsByteBuffer(4);
+        data[1] = 42;
+        assertEquals(42, view.get(0));
+        buffer.readAsByte(3);
+        assertFalse(buffer.isZeroCopy(1));
+    }
+
+    public void testCopyAsByteBuffer() {
+        byte[] data = new byte[23];
+        new java.util.Random(23).nextBytes(data);
+        BitBuffer buffer = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        BitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        buffer.readAsByte(5);
+        expected.readAsByte(5);
+        ByteBuffer copy = buffer.copyAsByteBuffer(20);
+        assertEquals(5 + 20 * 8, buffer.getBitPos());
+        assertEquals(20, copy.remaining());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(expected.readAsByte(8), copy.get());
+        }
+        try {
+            buffer.copyAsByteBuffer(3);
+            fail();
+        } catch (BitBufferUnderflowException bbue) {
+            assertEquals(5 + 20 * 8, buffer.getBitPos());
+        }
+    }
+
+    public void testSlicesAreZeroCopy() {
+        byte[] data = {1, 2, 3, 4, 5, 6, 7, 8};
+        BitBuffer buffer = new ConcurrentBitBuffer(new DefaultBitBuffer(ByteBuffer.wrap(data)));
+        buffer.readAsByte(8);
+        BitBuffer slice = buffer.slice(24);
+        assertEquals(32, buffer.getBitPos());
+        assertTrue(slice.isZeroCopy(3));
+        assertFalse(slice.isZeroCopy(4));
+        ByteBuffer view = slice.readAsByteBuffer(3);
+        data[3] = 42;
+        assertEquals(42, view.get(2));
+        try {
+            slice.copyAsByteBuffer(1);
+            fail();
+        } catch (BitBufferUnderflowException bbue) {
+            // The slice is exhausted, even though the underlying buffer isn't
+        }
+    }
+
     private ByteBuffer getByteBuffer(String resource) throws IOException {
         ClassLoader classLoader = this.getClass().getClassLoader();
         InputStream in = classLoader.getResourceAsStream(resource);
@@ -246,6 +299,161 @@ public class DefaultBitBufferTest extends TestCase {
                 .readAsInt(3, 7, ByteOrder.BigEndian));
     }
 
+    public void testUnalignedReads() {
+        byte[] data = new byte[19];
+        new java.util.Random(19).nextBytes(data);
+        DefaultBitBuffer buffer = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        for (int bitPos = 0; bitPos < data.length * 8; bitPos++) {
+            for (int nrBits = 1; nrBits <= 64 && bitPos + nrBits <= data.length * 8; nrBits++) {
+                long bigEndian = 0;
+                for (int i = 0; i < nrBits; i++) {
+                    bigEndian = (bigEndian << 1) | getBit(data, bitPos + i);
+                }
+                assertEquals(bigEndian, buffer.readAsLong(bitPos, nrBits, ByteOrder.BigEndian));
+                assertEquals(littleEndian(data, bitPos, nrBits),
+                        buffer.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian));
+                assertEquals(bitPos + nrBits, buffer.getBitPos());
+            }
+        }
+    }
+
+    public void testLittleEndianByteBuffer() {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[]{0x01, 0x23, 0x45,
+                0x67, (byte) 0x89, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF});
+        byteBuffer.order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        BitBuffer bitBuffer = new DefaultBitBuffer(byteBuffer);
+        assertEquals(0x0123456789ABCDEFL, bitBuffer.readBits(64));
+        assertEquals(0x0123, bitBuffer.readAsInt(0, 16));
+    }
+
+    public void testReadAsIntArray() {
+        byte[] data = new byte[64];
+        new java.util.Random(64).nextBytes(data);
+        for (ByteOrder byteOrder : ByteOrder.values()) {
+            for (int nrBits = 1; nrBits <= 32; nrBits++) {
+                for (int bitPos = 0; bitPos < 8; bitPos += 3) {
+                    DefaultBitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+                    DefaultBitBuffer actual = new DefaultBitBuffer(ByteBuffer.wrap(data));
+                    expected.setBitPos(bitPos);
+                    actual.setBitPos(bitPos);
+                    int count = (data.length * 8 - bitPos) / nrBits;
+                    int[] values = new int[count + 1];
+                    actual.readAsIntArray(values, 1, count, nrBits, byteOrder);
+                    for (int i = 0; i < count; i++) {
+                        assertEquals(expected.readAsInt(nrBits, byteOrder), values[i + 1]);
+                    }
+                    assertEquals(expected.getBitPos(), actual.getBitPos());
+                }
+            }
+        }
+    }
+
+    public void testReadAsLongArray() {
+        byte[] data = new byte[64];
+        new java.util.Random(64).nextBytes(data);
+        for (ByteOrder byteOrder : ByteOrder.values()) {
+            for (int nrBits = 1; nrBits <= 64; nrBits++) {
+                for (int bitPos = 0; bitPos < 8; bitPos += 3) {
+                    DefaultBitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+                    DefaultBitBuffer actual = new DefaultBitBuffer(ByteBuffer.wrap(data));
+                    expected.setBitPos(bitPos);
+                    actual.setBitPos(bitPos);
+                    int count = (data.length * 8 - bitPos) / nrBits;
+                    long[] values = new long[count];
+                    actual.readAsLongArray(values, 0, count, nrBits, byteOrder);
+                    for (int i = 0; i < count; i++) {
+                        assertEquals(expected.readAsLong(nrBits, byteOrder), values[i]);
+                    }
+                    assertEquals(expected.getBitPos(), actual.getBitPos());
+                }
+            }
+        }
+    }
+
+    public void testReadArrayBeyondEnd() {
+        BitBuffer buffer = new DefaultBitBuffer(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+        buffer.setBitPos(3);
+        try {
+            buffer.readAsIntArray(new int[3], 0, 3, 10, ByteOrder.BigEndian);
+            fail();
+        } catch (BitBufferUnderflowException bbue) {
+            assertEquals(3, buffer.getBitPos());
+        }
+        BitBuffer slice = buffer.slice(20);
+        try {
+            slice.readAsLongArray(new long[3], 0, 3, 7, ByteOrder.BigEndian);
+            fail();
+        } catch (BitBufferUnderflowException bbue) {
+            assertEquals(0, slice.getBitPos());
+        }
+        long[] values = new long[2];
+        slice.readAsLongArray(values, 0, 2, 10, ByteOrder.BigEndian);
+        assertEquals(new DefaultBitBuffer(ByteBuffer.wrap(new byte[]{1, 2, 3, 4})).readAsLong(3, 10), values[0]);
+        assertEquals(20, slice.getBitPos());
+    }
+
+    public void testFind() {
+        byte[] data = new byte[200];
+        new java.util.Random(200).nextBytes(data);
+        BitBuffer buffer = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        for (int nrBits = 1; nrBits <= 64; nrBits += 3) {
+            for (int start = 0; start < data.length * 8; start += 97) {
+                // Take the pattern from the data itself, so it is bound to occur
+                long pattern = buffer.readAsLong(Math.min(start + 150, data.length * 8 - nrBits), nrBits);
+                buffer.setBitPos(start);
+                assertEquals(find(data, start, pattern, nrBits, false), buffer.find(pattern, nrBits, false));
+                assertEquals(find(data, start, pattern, nrBits, true), buffer.find(pattern, nrBits, true));
+                assertEquals(start, buffer.getBitPos());
+            }
+        }
+        assertEquals(-1, buffer.find(data.length * 8 - 10, 0x3ff, 11, false));
+        BitBuffer slice = buffer.duplicate();
+        slice.setBitPos(1000);
+        slice = slice.slice(32);
+        byte[] sliced = new byte[4];
+        System.arraycopy(data, 125, sliced, 0, 4);
+        for (int nrBits = 1; nrBits <= 32; nrBits++) {
+            // Patterns straddling the end of the slice should only be found within the slice
+            long pattern = buffer.readAsLong(1032 - nrBits / 2, nrBits);
+            assertEquals(find(sliced, 0, pattern, nrBits, false), slice.find(0, pattern, nrBits, false));
+        }
+    }
+
+    /** Finds the pattern by comparing it at every single position. */
+    private static long find(byte[] data, int start, long pattern, int nrBits, boolean byteAligned) {
+        for (int pos = start; pos <= data.length * 8 - nrBits; pos++) {
+            if (byteAligned && pos % 8 != 0) {
+                continue;
+            }
+            long value = 0;
+            for (int i = 0; i < nrBits; i++) {
+                value = (value << 1) | getBit(data, pos + i);
+            }
+            if (value == pattern) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    private static long getBit(byte[] data, int bitPos) {
+        return (data[bitPos / 8] >> (7 - bitPos % 8)) & 1;
+    }
+
+    /**
+     * The little endian interpretation: the bytes covering the bits are read in reverse order, dropping the
+     * <code>bitPos % 8</code> least significant bits.
+     */
+    private static long littleEndian(byte[] data, int bitPos, int nrBits) {
+        java.math.BigInteger value = java.math.BigInteger.ZERO;
+        int first = bitPos / 8;
+        int last = (bitPos + nrBits - 1) / 8;
+        for (int i = last; i >= first; i--) {
+            value = value.shiftLeft(8).or(java.math.BigInteger.valueOf(0xFF & data[i]));
+        }
+        return value.shiftRight(bitPos % 8).longValue() & (-1L >>> (64 - nrBits));
+    }
+
     public void testReading1() {
         ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0x00, 0x00, 0x00, 0x01});
         BitBuffer bitBuffer = new DefaultBitBuffer(buffer);
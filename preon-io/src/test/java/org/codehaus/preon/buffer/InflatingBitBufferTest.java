@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+
+public class InflatingBitBufferTest extends TestCase {
+
+    private byte[] data;
+
+    private File file;
+
+    private RandomAccessFile raf;
+
+    @Override
+    protected void setUp() throws Exception {
+        // Half random, half repeated short words, to get a mix of literals and back references
+        data = new byte[600 * 1024];
+        Random random = new Random(600);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (random.nextBoolean() ? random.nextInt(256) : 'a' + (i % 7));
+        }
+        file = File.createTempFile("preon", ".gz");
+        file.deleteOnExit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (raf != null) {
+            raf.close();
+        }
+        file.delete();
+    }
+
+    public void testReadSequentially() throws IOException {
+        write(gzip(data));
+        InflatingBitBuffer buffer = new InflatingBitBuffer(raf.getChannel());
+        assertEquals(Long.MAX_VALUE, buffer.getBitBufBitSize());
+        ByteBuffer result = buffer.readAsByteBuffer(data.length);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(data[i], result.get(i));
+        }
+        assertFalse(buffer.hasRemaining());
+        assertEquals(data.length * 8L, buffer.getBitBufBitSize());
+        assertEquals(0, buffer.getRestarts());
+    }
+
+    public void testReadingBackwards() throws IOException {
+        write(gzip(data));
+        InflatingBitBuffer buffer = new InflatingBitBuffer(raf.getChannel(), InflatingBitBuffer.Format.GZIP,
+                64 * 1024, 64 * 1024);
+        BitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        for (long bitPos = data.length * 8L - 64; bitPos >= 0; bitPos -= 40007) {
+            assertEquals(expected.readAsLong(bitPos, 64, ByteOrder.LittleEndian),
+                    buffer.readAsLong(bitPos, 64, ByteOrder.LittleEndian));
+        }
+        assertTrue(buffer.getCheckpoints() > 5);
+        assertTrue(buffer.getRestarts() > 5);
+
+        // Jumping forward to data decompressed before resumes from a checkpoint as well
+        int restarts = buffer.getRestarts();
+        assertEquals(expected.readAsInt(data.length * 8L - 40, 32), buffer.readAsInt(data.length * 8L - 40, 32));
+        assertEquals(restarts + 1, buffer.getRestarts());
+    }
+
+    public void testFormats() throws IOException {
+        checkFormat(zlib(data, Deflater.DEFAULT_COMPRESSION, false), InflatingBitBuffer.Format.ZLIB);
+        checkFormat(zlib(data, Deflater.BEST_COMPRESSION, true), InflatingBitBuffer.Format.DEFLATE);
+        checkFormat(zlib(data, Deflater.NO_COMPRESSION, true), InflatingBitBuffer.Format.DEFLATE);
+        byte[] first = gzip(new byte[0]);
+        byte[] second = gzip(data);
+        byte[] concatenated = new byte[first.length + second.length];
+        System.arraycopy(first, 0, concatenated, 0, first.length);
+        System.arraycopy(second, 0, concatenated, first.length, second.length);
+        checkFormat(concatenated, InflatingBitBuffer.Format.GZIP);
+    }
+
+    public void testDuplicate() throws IOException {
+        write(gzip(data));
+        BitBuffer buffer = new InflatingBitBuffer(raf.getChannel());
+        buffer.readAsInt(13);
+        BitBuffer duplicate = buffer.duplicate();
+        assertEquals(13, duplicate.getBitPos());
+        assertEquals(new DefaultBitBuffer(ByteBuffer.wrap(data)).readAsInt(13, 32), duplicate.readAsInt(32));
+        assertEquals(13, buffer.getBitPos());
+    }
+
+    public void testReadBeyondEnd() throws IOException {
+        write(gzip(data));
+        BitBuffer buffer = new InflatingBitBuffer(raf.getChannel());
+        try {
+            buffer.readAsLong(data.length * 8L - 4, 5);
+            fail();
+        } catch (BitBufferUnderflowException bbue) {
+            // Expected
+        }
+    }
+
+    public void testChecksumMismatch() throws IOException {
+        byte[] compressed = gzip(data);
+        compressed[compressed.length - 5]++;
+        write(compressed);
+        BitBuffer buffer = new InflatingBitBuffer(raf.getChannel());
+        try {
+            buffer.readAsByteBuffer(data.length + 1);
+            fail();
+        } catch (BitBufferException bbe) {
+            assertTrue(bbe.getMessage().contains("checksum"));
+        }
+    }
+
+    private void checkFormat(byte[] compressed, InflatingBitBuffer.Format format) throws IOException {
+        write(compressed);
+        assertEquals(format, InflatingBitBuffer.detectFormat(raf.getChannel()));
+        InflatingBitBuffer buffer = new InflatingBitBuffer(raf.getChannel(), format);
+        assertEquals(ByteBuffer.wrap(data), buffer.readAsByteBuffer(data.length));
+        assertFalse(buffer.hasRemaining());
+        raf.close();
+        raf = null;
+    }
+
+    private void write(byte[] compressed) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(compressed);
+        } finally {
+            out.close();
+        }
+        raf = new RandomAccessFile(file, "r");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        OutputStream out = new GZIPOutputStream(result);
+        out.write(data);
+        out.close();
+        return result.toByteArray();
+    }
+
+    private static byte[] zlib(byte[] data, int level, boolean nowrap) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        OutputStream out = new DeflaterOutputStream(result, new Deflater(level, nowrap));
+        out.write(data);
+        out.close();
+        return result.toByteArray();
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+
+public class InstrumentedBitBufferTest extends TestCase {
+
+    private InstrumentedBitBuffer buffer;
+
+    @Override
+    protected void setUp() throws Exception {
+        buffer = new InstrumentedBitBuffer(new DefaultBitBuffer(ByteBuffer.wrap(new byte[64])));
+    }
+
+    public void testCountsReads() {
+        buffer.readAsInt(32);
+        buffer.readAsInt(3);
+        buffer.readAsByte(5, ByteOrder.LittleEndian);
+        buffer.readAsBoolean(100);
+        buffer.readAsLong(16, 64);
+        buffer.readAsIntArray(new int[4], 0, 4, 12, ByteOrder.BigEndian);
+        buffer.readAsByteBuffer(2);
+        InstrumentedBitBuffer.Statistics statistics = buffer.getStatistics();
+        assertEquals(9, statistics.getReads());
+        assertEquals(1, statistics.getReads(32));
+        assertEquals(1, statistics.getReads(3));
+        assertEquals(4, statistics.getReads(12));
+        assertEquals(2, statistics.getAlignedReads());
+        assertEquals(7, statistics.getUnalignedReads());
+        assertEquals(1, statistics.getByteBufferReads());
+        assertEquals(32 + 3 + 5 + 1 + 64 + 48 + 16, statistics.getBitsRead());
+        assertEquals(4 + 1 + 1 + 1 + 8 + 6 + 2, statistics.getBytesTouched());
+    }
+
+    public void testCountsSeeks() {
+        buffer.readAsInt(8, 16);
+        buffer.readAsInt(100, 16);
+        buffer.readAsInt(0, 16);
+        buffer.setBitPos(300);
+        buffer.readAsInt(8);
+        InstrumentedBitBuffer.Statistics statistics = buffer.getStatistics();
+        assertEquals(1, statistics.getBackwardSeeks());
+        assertEquals(8 + 76 + 284, statistics.getBitsSkipped());
+        assertEquals((8 + 76 + 284) / 8, statistics.getBytesSkipped());
+    }
+
+    public void testSlices() {
+        buffer.readAsByte(4);
+        BitBuffer slice = buffer.slice(12);
+        slice.readAsByte(4);
+        slice.readAsByte(8);
+        buffer.readAsByte(8);
+        InstrumentedBitBuffer.Statistics statistics = buffer.getStatistics();
+        assertEquals(2, statistics.getAlignedReads());
+        assertEquals(2, statistics.getUnalignedReads());
+        assertEquals(4, statistics.getBytesTouched());
+        assertEquals(0, statistics.getBackwardSeeks());
+        assertEquals(0, statistics.getBitsSkipped());
+    }
+
+    public void testSharedStatistics() {
+        BitBuffer duplicate = buffer.duplicate();
+        BitBuffer slice = buffer.slice(64);
+        duplicate.readAsInt(32);
+        slice.readAsLong(64);
+        assertEquals(2, buffer.getStatistics().getReads());
+        InstrumentedBitBuffer.Statistics snapshot = buffer.getStatistics();
+        buffer.reset();
+        assertEquals(0, buffer.getStatistics().getReads());
+        assertEquals(2, snapshot.getReads());
+        assertTrue(snapshot.toString().contains("32=1, 64=1"));
+    }
+
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+
+public class MappedFileBitBufferTest extends TestCase {
+
+    private byte[] data;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = new byte[37];
+        new Random(37).nextBytes(data);
+        file = File.createTempFile("preon", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testSegments() throws IOException {
+        assertEquals(10, new MappedFileBitBuffer(file, 4).getNrSegments());
+        assertEquals(1, new MappedFileBitBuffer(file).getNrSegments());
+        assertEquals(37 * 8, new MappedFileBitBuffer(file, 4).getBitBufBitSize());
+    }
+
+    public void testReadsStraddlingSegments() throws IOException {
+        BitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        BitBuffer actual = new MappedFileBitBuffer(file, 4);
+        for (long bitPos = 0; bitPos < 37 * 8; bitPos++) {
+            for (int nrBits = 1; nrBits <= 64 && bitPos + nrBits <= 37 * 8; nrBits++) {
+                assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.BigEndian),
+                        actual.readAsLong(bitPos, nrBits, ByteOrder.BigEndian));
+                assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian),
+                        actual.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian));
+                assertEquals(bitPos + nrBits, actual.getBitPos());
+            }
+        }
+    }
+
+    public void testSegmentsMappedOnDemand() throws IOException {
+        BitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        MappedFileBitBuffer actual = new MappedFileBitBuffer(file, 4, 2);
+        assertEquals(0, actual.getNrMappedSegments());
+        for (long bitPos = 0; bitPos + 48 <= 37 * 8; bitPos += 7) {
+            assertEquals(expected.readAsLong(bitPos, 48), actual.readAsLong(bitPos, 48));
+            assertTrue(actual.getNrMappedSegments() <= 2);
+        }
+        // Reading backwards maps dropped segments again.
+        assertEquals(expected.readAsLong(0L, 64), actual.readAsLong(0L, 64));
+        assertEquals(2, actual.getNrMappedSegments());
+        actual.close();
+        assertEquals(0, actual.getNrMappedSegments());
+    }
+
+    public void testUnalignedLong() throws IOException {
+        BitBuffer buffer = new MappedFileBitBuffer(file, 4);
+        long expected = ByteBuffer.wrap(data).getLong(1) << 3
+                | (0xFF & data[9]) >>> 5;
+        assertEquals(expected, buffer.readAsLong(11, 64));
+    }
+
+    public void testReadAsByteBuffer() throws IOException {
+        BitBuffer buffer = new MappedFileBitBuffer(file, 4);
+        buffer.setBitPos(8);
+        assertTrue(buffer.isZeroCopy(3));
+        assertFalse(buffer.isZeroCopy(4));
+        ByteBuffer view = buffer.readAsByteBuffer(3);
+        assertEquals(3, view.remaining());
+        assertEquals(data[1], view.get(0));
+        assertEquals(data[3], view.get(2));
+        ByteBuffer copy = buffer.readAsByteBuffer(6);
+        assertEquals(6, copy.remaining());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(data[4 + i], copy.get(i));
+        }
+        assertEquals(80, buffer.getBitPos());
+        assertEquals(37, buffer.readAsByteBuffer().remaining());
+    }
+
+    public void testDuplicate() throws IOException {
+        BitBuffer buffer = new MappedFileBitBuffer(file, 4);
+        buffer.readAsInt(13);
+        BitBuffer duplicate = buffer.duplicate();
+        assertEquals(13, duplicate.getBitPos());
+        duplicate.readAsInt(32);
+        assertEquals(13, buffer.getBitPos());
+        assertEquals(45, duplicate.getBitPos());
+    }
+
+    public void testReadBeyondEnd() throws IOException {
+        BitBuffer buffer = new MappedFileBitBuffer(file, 4);
+        buffer.setBitPos(36 * 8);
+        buffer.readAsByte(8);
+        try {
+            buffer.readAsByte(1);
+            fail("Expecting exception while reading beyond end of buffer.");
+        } catch (BitBufferUnderflowException bue) {
+            // What we expected
+        }
+    }
+
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+
+public class OffHeapBitBufferTest extends TestCase {
+
+    private byte[] data;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = new byte[64];
+        new Random(64).nextBytes(data);
+        file = File.createTempFile("preon", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testMappedReads() throws IOException {
+        OffHeapBitBuffer buffer = OffHeapBitBuffer.map(file);
+        try {
+            assertReads(buffer);
+        } finally {
+            buffer.close();
+        }
+    }
+
+    public void testAllocatedReads() throws IOException {
+        OffHeapBitBuffer buffer = OffHeapBitBuffer.allocate(
+                Channels.newChannel(new ByteArrayInputStream(data)), data.length);
+        try {
+            assertReads(buffer);
+        } finally {
+            buffer.close();
+        }
+    }
+
+    public void testAllocateBeyondEnd() {
+        try {
+            OffHeapBitBuffer.allocate(Channels.newChannel(new ByteArrayInputStream(data)), data.length + 1);
+            fail("Expecting exception while allocating more than available.");
+        } catch (IOException ioe) {
+            // What we expected
+        }
+    }
+
+    public void testSlice() throws IOException {
+        OffHeapBitBuffer buffer = OffHeapBitBuffer.map(file);
+        buffer.setBitPos(3);
+        BitBuffer slice = buffer.slice(21);
+        assertEquals(24, buffer.getBitPos());
+        assertEquals(21, slice.getBitBufBitSize());
+        DefaultBitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        assertEquals(expected.readAsInt(3, 21), slice.readAsInt(21));
+        assertEquals(expected.readAsInt(8, 5), slice.readAsInt(5, 5));
+        slice.setBitPos(21);
+        try {
+            slice.readAsBoolean();
+            fail("Expecting exception while reading beyond end of slice.");
+        } catch (BitBufferUnderflowException bue) {
+            // What we expected
+        }
+        BitBuffer nested = buffer.slice(16).duplicate();
+        assertEquals(0xFF & data[3], 0xFF & nested.readAsInt(8));
+        assertEquals(data[4], nested.readAsByteBuffer(1).get(0));
+        buffer.close();
+    }
+
+    public void testRelease() throws IOException {
+        OffHeapBitBuffer buffer = OffHeapBitBuffer.map(file);
+        BitBuffer duplicate = buffer.duplicate();
+        assertFalse(buffer.isReleased());
+        buffer.close();
+        assertTrue(buffer.isReleased());
+        try {
+            duplicate.readAsInt(8);
+            fail("Expecting exception while reading released memory.");
+        } catch (BitBufferException bbe) {
+            // What we expected
+        }
+        buffer.close();
+    }
+
+    public void testViewsOutliveRelease() throws IOException {
+        OffHeapBitBuffer buffer = OffHeapBitBuffer.allocate(
+                Channels.newChannel(new ByteArrayInputStream(data)), data.length);
+        buffer.setBitPos(8);
+        ByteBuffer view = buffer.readAsByteBuffer(16);
+        buffer.close();
+        // The memory shared with the view has not been freed.
+        for (int i = 0; i < 16; i++) {
+            assertEquals(data[1 + i], view.get(i));
+        }
+        try {
+            buffer.isZeroCopy(8L, 4);
+            fail("Expecting exception while accessing released memory.");
+        } catch (BitBufferException bbe) {
+            // What we expected
+        }
+    }
+
+    public void testCloseWhileReading() throws Exception {
+        final OffHeapBitBuffer buffer = OffHeapBitBuffer.allocate(
+                Channels.newChannel(new ByteArrayInputStream(data)), data.length);
+        final long expected = new DefaultBitBuffer(ByteBuffer.wrap(data)).readAsLong(13, 64);
+        final Exception[] failure = new Exception[1];
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final BitBuffer duplicate = buffer.duplicate();
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        while (true) {
+                            if (duplicate.readAsLong(13, 64) != expected) {
+                                throw new IllegalStateException("Read freed memory.");
+                            }
+                        }
+                    } catch (BitBufferException bbe) {
+                        // Expected once the buffer has been closed
+                    } catch (Exception e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        Thread.sleep(50);
+        buffer.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    private void assertReads(BitBuffer buffer) {
+        DefaultBitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        for (long bitPos = 0; bitPos < data.length * 8; bitPos += 7) {
+            for (int nrBits = 1; nrBits <= 64 && bitPos + nrBits <= data.length * 8; nrBits++) {
+                assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.BigEndian),
+                        buffer.readAsLong(bitPos, nrBits, ByteOrder.BigEndian));
+                assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian),
+                        buffer.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian));
+            }
+        }
+        buffer.setBitPos(16);
+        ByteBuffer view = buffer.readAsByteBuffer(4);
+        assertEquals(4, view.remaining());
+        assertEquals(data[2], view.get(0));
+        assertEquals(48, buffer.getBitPos());
+        assertEquals(data.length, buffer.readAsByteBuffer().remaining());
+    }
+
+}
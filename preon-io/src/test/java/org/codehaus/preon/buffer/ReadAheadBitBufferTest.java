@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+
+public class ReadAheadBitBufferTest extends TestCase {
+
+    private byte[] data;
+
+    private File file;
+
+    private FileInputStream in;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = new byte[1000];
+        new Random(1000).nextBytes(data);
+        file = File.createTempFile("preon", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        in = new FileInputStream(file);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        in.close();
+        file.delete();
+    }
+
+    public void testReadsStraddlingBlocks() throws IOException {
+        BitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        ReadAheadBitBuffer actual = new ReadAheadBitBuffer(in.getChannel(), 64, 3);
+        for (long bitPos = 0; bitPos < data.length * 8; bitPos += 5) {
+            for (int nrBits = 1; nrBits <= 64 && bitPos + nrBits <= data.length * 8; nrBits += 7) {
+                assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.BigEndian),
+                        actual.readAsLong(bitPos, nrBits, ByteOrder.BigEndian));
+                assertEquals(expected.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian),
+                        actual.readAsLong(bitPos, nrBits, ByteOrder.LittleEndian));
+                assertEquals(bitPos + nrBits, actual.getBitPos());
+            }
+        }
+        assertTrue(actual.getBlocksRead() >= 16);
+        assertTrue(actual.getStalls() >= 1);
+        actual.close();
+    }
+
+    public void testReadingBackwards() throws IOException {
+        BitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+        BitBuffer actual = new ReadAheadBitBuffer(in.getChannel(), 16, 1);
+        for (long bitPos = data.length * 8 - 32; bitPos >= 0; bitPos -= 29) {
+            assertEquals(expected.readAsInt(bitPos, 32), actual.readAsInt(bitPos, 32));
+        }
+    }
+
+    public void testReadAsByteBuffer() throws IOException {
+        ReadAheadBitBuffer buffer = new ReadAheadBitBuffer(in.getChannel(), 16, 2);
+        buffer.setBitPos(8);
+        assertTrue(buffer.isZeroCopy(15));
+        ByteBuffer view = buffer.readAsByteBuffer(15);
+        assertEquals(data[1], view.get(0));
+        assertEquals(data[15], view.get(14));
+        assertFalse(buffer.isZeroCopy(20));
+        ByteBuffer copy = buffer.readAsByteBuffer(20);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(data[16 + i], copy.get(i));
+        }
+        assertEquals(data.length, buffer.readAsByteBuffer().remaining());
+    }
+
+    public void testDuplicate() throws IOException {
+        BitBuffer buffer = new ReadAheadBitBuffer(in.getChannel(), 32, 2);
+        buffer.readAsInt(13);
+        BitBuffer duplicate = buffer.duplicate();
+        assertEquals(13, duplicate.getBitPos());
+        assertEquals(new DefaultBitBuffer(ByteBuffer.wrap(data)).readAsInt(13, 32), duplicate.readAsInt(32));
+        assertEquals(13, buffer.getBitPos());
+    }
+
+    public void testDuplicatesReadingFarApart() throws Exception {
+        final ReadAheadBitBuffer buffer = new ReadAheadBitBuffer(in.getChannel(), 16, 1);
+        final Exception[] failure = new Exception[1];
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final BitBuffer duplicate = buffer.duplicate();
+            final Random random = new Random(i);
+            final BitBuffer expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int round = 0; round < 2000; round++) {
+                            long bitPos = random.nextInt(data.length * 8 - 32);
+                            // Blocks dropped by one duplicate while another one waits for them are read again.
+                            assertEquals(expected.readAsInt(bitPos, 32, ByteOrder.BigEndian),
+                                    duplicate.readAsInt(bitPos, 32, ByteOrder.BigEndian));
+                        }
+                    } catch (Exception e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    } catch (AssertionError ae) {
+                        synchronized (failure) {
+                            failure[0] = new Exception(ae);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        buffer.close();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    public void testReadBeyondEnd() throws IOException {
+        BitBuffer buffer = new ReadAheadBitBuffer(in.getChannel(), 16, 2);
+        try {
+            buffer.readAsLong(data.length * 8 - 4, 5);
+            fail();
+        } catch (BitBufferUnderflowException bbue) {
+            // Expected
+        }
+    }
+
+}
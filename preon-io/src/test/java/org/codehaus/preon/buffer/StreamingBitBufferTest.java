@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.buffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+
+public class StreamingBitBufferTest extends TestCase {
+
+    private byte[] data;
+
+    private BitBuffer expected;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = new byte[1000];
+        new Random(1000).nextBytes(data);
+        expected = new DefaultBitBuffer(ByteBuffer.wrap(data));
+    }
+
+    public void testSequentialReads() {
+        StreamingBitBuffer buffer = new StreamingBitBuffer(createStream(), 16);
+        int nrBits = 1;
+        while (buffer.getBitPos() + nrBits <= data.length * 8) {
+            assertEquals(expected.readAsLong(buffer.getBitPos(), nrBits, ByteOrder.BigEndian),
+                    buffer.readAsLong(nrBits));
+            nrBits = nrBits % 64 + 1;
+        }
+        buffer.setBitPos(data.length * 8);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(data.length * 8, buffer.getBitBufBitSize());
+    }
+
+    public void testLittleEndian() {
+        StreamingBitBuffer buffer = new StreamingBitBuffer(createStream(), 16);
+        buffer.setBitPos(3);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(expected.readAsInt(buffer.getBitPos(), 13, ByteOrder.LittleEndian),
+                    buffer.readAsInt(13, ByteOrder.LittleEndian));
+        }
+    }
+
+    public void testSkipPastWindow() {
+        StreamingBitBuffer buffer = new StreamingBitBuffer(createStream(), 16);
+        assertEquals(data[0], buffer.readAsByte(8));
+        buffer.setBitPos(500 * 8 + 4);
+        assertEquals(expected.readAsShort(500 * 8 + 4, 12), buffer.readAsShort(12));
+        assertEquals(Long.MAX_VALUE, buffer.getBitBufBitSize());
+    }
+
+    public void testReleasedData() {
+        StreamingBitBuffer buffer = new StreamingBitBuffer(createStream(), 16);
+        buffer.setBitPos(100 * 8);
+        buffer.readAsByte(8);
+        buffer.setBitPos(0);
+        try {
+            buffer.readAsByte(8);
+            fail("Expecting exception while reading released data.");
+        } catch (BitBufferException bbe) {
+            // What we expected
+        }
+    }
+
+    public void testEndOfStream() {
+        StreamingBitBuffer buffer = new StreamingBitBuffer(createStream(), 16);
+        buffer.setBitPos(999 * 8);
+        assertTrue(buffer.hasRemaining());
+        assertEquals(data[999], buffer.readAsByte(8));
+        assertFalse(buffer.hasRemaining());
+        try {
+            buffer.readAsBoolean();
+            fail("Expecting exception while reading beyond end of stream.");
+        } catch (BitBufferUnderflowException bue) {
+            // What we expected
+        }
+    }
+
+    public void testNonBlockingChannel() throws IOException {
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            new StreamingBitBuffer(pipe.source());
+            fail("Expecting non-blocking channels to be rejected.");
+        } catch (IllegalArgumentException iae) {
+            // What we expected
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+        }
+    }
+
+    public void testChannelNotReturningData() {
+        StreamingBitBuffer buffer = new StreamingBitBuffer(new ReadableByteChannel() {
+            public int read(ByteBuffer dst) {
+                return 0;
+            }
+
+            public boolean isOpen() {
+                return true;
+            }
+
+            public void close() {
+            }
+        }, 16);
+        try {
+            buffer.readAsByte(8);
+            fail("Expecting reading to be abandoned.");
+        } catch (BitBufferException bbe) {
+            // What we expected
+        }
+    }
+
+    public void testReadAsByteBuffer() {
+        StreamingBitBuffer buffer = new StreamingBitBuffer(createStream(), 16);
+        buffer.readAsByte(8);
+        ByteBuffer result = buffer.readAsByteBuffer(100);
+        assertEquals(100, result.remaining());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(data[i + 1], result.get(i));
+        }
+        assertEquals(data[101], buffer.readAsByte(8));
+    }
+
+    public void testSlice() {
+        StreamingBitBuffer buffer = new StreamingBitBuffer(createStream(), 16);
+        BitBuffer slice = buffer.slice(16);
+        assertEquals(data[0], slice.readAsByte(8));
+        assertEquals(data[1], slice.readAsByte(8));
+        assertEquals(data[2], buffer.readAsByte(8));
+    }
+
+    public void testFind() {
+        StreamingBitBuffer buffer = new StreamingBitBuffer(createStream(), 16);
+        long pattern = expected.readAsLong(6001, 23);
+        long found = expected.find(0, pattern, 23, false);
+        assertEquals(found, buffer.find(pattern, 23, false));
+        assertEquals(0, buffer.getBitPos());
+        buffer.setBitPos(found + 1);
+        assertEquals(expected.find(found + 1, pattern, 23, false), buffer.find(pattern, 23, false));
+        assertEquals(-1, buffer.find(data.length * 8 - 20, expected.readAsLong(data.length * 8 - 20, 20) << 1, 21, false));
+        assertEquals(data.length * 8L, buffer.getBitBufBitSize());
+    }
+
+    /** Creates an {@link InputStream} returning at most 7 bytes at a time. */
+    private InputStream createStream() {
+        return new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+    }
+
+}
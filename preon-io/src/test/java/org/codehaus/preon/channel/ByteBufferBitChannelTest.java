@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.channel;
+
+import org.codehaus.preon.buffer.ByteOrder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+public class ByteBufferBitChannelTest {
+
+    @Test
+    public void shouldAcceptPartialBytes() throws IOException {
+        ByteBufferBitChannel channel = new ByteBufferBitChannel();
+        channel.write(3, (byte) 0xff); // 111
+        channel.write(7, (byte) 0x00); // 0000000
+        channel.write(8, (byte) 0xff); // 11111111
+        assertEquals(2, channel.getRelativeBitPos());
+        assertEquals(18, channel.getBitPos());
+        assertArrayEquals(new byte[]{(byte) 0xe0, 0x3f, (byte) 0xc0}, toArray(channel.getByteBuffer()));
+        channel.write(6, (byte) 0x3f); // 111111
+        assertArrayEquals(new byte[]{(byte) 0xe0, 0x3f, (byte) 0xff}, toArray(channel.getByteBuffer()));
+    }
+
+    @Test
+    public void shouldAcceptLittleEndian() throws IOException {
+        ByteBufferBitChannel channel = new ByteBufferBitChannel();
+        channel.write(12, (int) 0xf00, ByteOrder.LittleEndian);
+        channel.write(4, (int) 0x0, ByteOrder.LittleEndian);
+        assertArrayEquals(new byte[]{0x00, (byte) 0xf0}, toArray(channel.getByteBuffer()));
+    }
+
+    @Test
+    public void shouldMatchOutputStreamBitChannel() throws IOException {
+        Random random = new Random(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStreamBitChannel expected = new OutputStreamBitChannel(out);
+        ByteBufferBitChannel actual = new ByteBufferBitChannel(16);
+        for (int i = 0; i < 10000; i++) {
+            ByteOrder byteOrder = random.nextBoolean() ? ByteOrder.BigEndian : ByteOrder.LittleEndian;
+            switch (random.nextInt(7)) {
+                case 0:
+                    boolean value = random.nextBoolean();
+                    expected.write(value);
+                    actual.write(value);
+                    break;
+                case 1:
+                    int nrBits = 1 + random.nextInt(8);
+                    byte b = (byte) random.nextInt();
+                    expected.write(nrBits, b);
+                    actual.write(nrBits, b);
+                    break;
+                case 2:
+                    nrBits = 1 + random.nextInt(16);
+                    short s = (short) random.nextInt();
+                    expected.write(nrBits, s, byteOrder);
+                    actual.write(nrBits, s, byteOrder);
+                    break;
+                case 3:
+                    nrBits = 1 + random.nextInt(32);
+                    int n = random.nextInt();
+                    expected.write(nrBits, n, byteOrder);
+                    actual.write(nrBits, n, byteOrder);
+                    break;
+                case 4:
+                    nrBits = 1 + random.nextInt(64);
+                    long l = random.nextLong();
+                    expected.write(nrBits, l, byteOrder);
+                    actual.write(nrBits, l, byteOrder);
+                    break;
+                case 5:
+                    byte[] bytes = new byte[random.nextInt(20)];
+                    random.nextBytes(bytes);
+                    expected.write(bytes, 0, bytes.length);
+                    actual.write(bytes, 0, bytes.length);
+                    break;
+                default:
+                    bytes = new byte[random.nextInt(20)];
+                    random.nextBytes(bytes);
+                    for (int j = 0; j < bytes.length; j++) {
+                        // OutputStreamBitChannel.write(ByteBuffer) closes the stream; write the bytes one at a time
+                        expected.write(8, bytes[j]);
+                    }
+                    actual.write(ByteBuffer.wrap(bytes));
+            }
+            assertEquals(expected.getRelativeBitPos(), actual.getRelativeBitPos());
+        }
+        // OutputStreamBitChannel only writes complete bytes
+        actual.write(8 - actual.getRelativeBitPos(), (byte) 0);
+        expected.write(8 - expected.getRelativeBitPos(), (byte) 0);
+        assertArrayEquals(out.toByteArray(), toArray(actual.getByteBuffer()));
+    }
+
+    @Test
+    public void shouldWriteToBufferPassedIn() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        buffer.order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 1);
+        ByteBufferBitChannel channel = new ByteBufferBitChannel(buffer);
+        channel.write(64, 0x0102030405060708L, ByteOrder.BigEndian);
+        channel.write(4, (byte) 0x0a);
+        channel.close();
+        assertEquals(10, buffer.position());
+        buffer.flip();
+        assertArrayEquals(new byte[]{1, 1, 2, 3, 4, 5, 6, 7, 8, (byte) 0xa0}, toArray(buffer));
+    }
+
+    @Test(expected = BitChannelException.class)
+    public void shouldRejectWritingBeyondLimit() throws IOException {
+        ByteBufferBitChannel channel = new ByteBufferBitChannel(ByteBuffer.allocate(4));
+        channel.write(new byte[5], 0, 5);
+    }
+
+    @Test
+    public void shouldPatchReservedBits() throws IOException {
+        Random random = new Random(0);
+        ByteBufferBitChannel expected = new ByteBufferBitChannel();
+        ByteBufferBitChannel actual = new ByteBufferBitChannel();
+        for (int i = 0; i < 1000; i++) {
+            int nrBits = 1 + random.nextInt(64);
+            long value = random.nextLong();
+            ByteOrder byteOrder = random.nextBoolean() ? ByteOrder.BigEndian : ByteOrder.LittleEndian;
+            long bitPos = actual.reserve(nrBits);
+            assertEquals(expected.getBitPos(), bitPos);
+            expected.write(nrBits, value, byteOrder);
+            // Write some data following the reserved bits, possibly leaving them in the accumulator
+            for (int j = random.nextInt(4); j > 0; j--) {
+                int count = 1 + random.nextInt(64);
+                long data = random.nextLong();
+                expected.write(count, data, ByteOrder.BigEndian);
+                actual.write(count, data, ByteOrder.BigEndian);
+            }
+            actual.patch(bitPos, nrBits, value, byteOrder);
+        }
+        assertArrayEquals(toArray(expected.getByteBuffer()), toArray(actual.getByteBuffer()));
+    }
+
+    @Test(expected = BitChannelException.class)
+    public void shouldRejectPatchingBeyondPosition() throws IOException {
+        ByteBufferBitChannel channel = new ByteBufferBitChannel();
+        channel.write(12, 0, ByteOrder.BigEndian);
+        channel.patch(8, 5, 0, ByteOrder.BigEndian);
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+}
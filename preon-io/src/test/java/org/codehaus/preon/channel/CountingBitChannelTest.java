@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.channel;
+
+import org.codehaus.preon.buffer.ByteOrder;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+
+public class CountingBitChannelTest {
+
+    @Test
+    public void shouldCountBitsWritten() throws IOException {
+        CountingBitChannel channel = new CountingBitChannel();
+        channel.write(true);
+        channel.write(3, (byte) 0);
+        channel.write(12, (short) 0, ByteOrder.LittleEndian);
+        assertEquals(0, channel.getRelativeBitPos());
+        channel.write(new byte[4], 1, 2);
+        ByteBuffer buffer = ByteBuffer.allocate(3);
+        assertEquals(24, channel.write(buffer));
+        assertFalse(buffer.hasRemaining());
+        long reserved = channel.reserve(7);
+        assertEquals(56, reserved);
+        channel.write(33, 0L, ByteOrder.BigEndian);
+        channel.patch(reserved, 7, 0x7f, ByteOrder.BigEndian);
+        assertEquals(96, channel.getBitPos());
+        assertEquals(0, channel.getRelativeBitPos());
+    }
+
+    @Test(expected = BitChannelException.class)
+    public void shouldRejectPatchingBeyondPosition() throws IOException {
+        CountingBitChannel channel = new CountingBitChannel();
+        channel.write(12, 0, ByteOrder.BigEndian);
+        channel.patch(8, 5, 0, ByteOrder.BigEndian);
+    }
+
+}
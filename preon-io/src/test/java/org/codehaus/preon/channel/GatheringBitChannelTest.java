@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.channel;
+
+import org.codehaus.preon.buffer.ByteOrder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class GatheringBitChannelTest {
+
+    @Test
+    public void shouldMatchByteBufferBitChannel() throws IOException {
+        File file = File.createTempFile("gathering", ".bin");
+        file.deleteOnExit();
+        Random random = new Random(0);
+        ByteBufferBitChannel expected = new ByteBufferBitChannel();
+        GatheringBitChannel actual = new GatheringBitChannel(new FileOutputStream(file).getChannel(), 16, 2);
+        for (int i = 0; i < 10000; i++) {
+            ByteOrder byteOrder = random.nextBoolean() ? ByteOrder.BigEndian : ByteOrder.LittleEndian;
+            switch (random.nextInt(6)) {
+                case 0:
+                    boolean value = random.nextBoolean();
+                    expected.write(value);
+                    actual.write(value);
+                    break;
+                case 1:
+                    int nrBits = 1 + random.nextInt(8);
+                    byte b = (byte) random.nextInt();
+                    expected.write(nrBits, b);
+                    actual.write(nrBits, b);
+                    break;
+                case 2:
+                    nrBits = 1 + random.nextInt(64);
+                    long l = random.nextLong();
+                    expected.write(nrBits, l, byteOrder);
+                    actual.write(nrBits, l, byteOrder);
+                    break;
+                case 3:
+                    if (random.nextBoolean()) {
+                        // Align, so the bytes may be passed through
+                        expected.write(8 - expected.getRelativeBitPos(), (byte) 0);
+                        actual.write(8 - actual.getRelativeBitPos(), (byte) 0);
+                    }
+                    byte[] bytes = new byte[random.nextInt(40)];
+                    random.nextBytes(bytes);
+                    expected.write(ByteBuffer.wrap(bytes));
+                    actual.write(ByteBuffer.wrap(bytes));
+                    break;
+                case 4:
+                    bytes = new byte[random.nextInt(20)];
+                    random.nextBytes(bytes);
+                    expected.write(bytes, 0, bytes.length);
+                    actual.write(bytes, 0, bytes.length);
+                    break;
+                default:
+                    if (random.nextInt(10) == 0) {
+                        actual.flush();
+                    }
+            }
+            assertEquals(expected.getBitPos(), actual.getBitPos());
+        }
+        actual.close();
+        expected.close();
+        assertArrayEquals(toArray(expected.getByteBuffer()), readFile(file));
+    }
+
+    @Test
+    public void shouldPassLargeBuffersThrough() throws IOException {
+        RecordingChannel channel = new RecordingChannel();
+        GatheringBitChannel bitChannel = new GatheringBitChannel(channel, 64, 4);
+        ByteBuffer payload = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+        bitChannel.write(4, (byte) 0x0a);
+        bitChannel.write(4, (byte) 0x0b);
+        bitChannel.write(payload);
+        assertFalse(payload.hasRemaining());
+        assertEquals(2, channel.written.size());
+        assertSame(payload, channel.written.get(1));
+        bitChannel.write(4, (byte) 0x0c);
+        bitChannel.close();
+        assertTrue(channel.closed);
+        assertArrayEquals(new byte[]{(byte) 0xab, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, (byte) 0xc0},
+                channel.out.toByteArray());
+    }
+
+    @Test
+    public void shouldCopySmallBuffers() throws IOException {
+        RecordingChannel channel = new RecordingChannel();
+        GatheringBitChannel bitChannel = new GatheringBitChannel(channel, 64, 4);
+        bitChannel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        assertEquals(0, channel.written.size());
+        bitChannel.flush();
+        assertEquals(1, channel.written.size());
+        assertTrue(channel.written.get(0).isDirect());
+        assertArrayEquals(new byte[]{1, 2, 3}, channel.out.toByteArray());
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] result = new byte[(int) in.length()];
+            in.readFully(result);
+            return result;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+    /** A channel recording the buffers passed to it, accepting at most 5 bytes per call. */
+    private static class RecordingChannel implements GatheringByteChannel {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+
+        private boolean closed;
+
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                if (!written.contains(srcs[i])) {
+                    written.add(srcs[i]);
+                }
+            }
+            long count = 0;
+            for (int i = offset; i < offset + length && count < 5; i++) {
+                while (srcs[i].hasRemaining() && count < 5) {
+                    out.write(srcs[i].get());
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        public int write(ByteBuffer src) throws IOException {
+            return (int) write(new ByteBuffer[]{src});
+        }
+
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        public void close() throws IOException {
+            closed = true;
+        }
+
+    }
+
+}
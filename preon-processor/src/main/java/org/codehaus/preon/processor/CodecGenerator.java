@@ -0,0 +1,769 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.processor;
+
+import org.codehaus.preon.codec.GeneratedCodec;
+import org.codehaus.preon.processor.ExpressionTranslator.Node;
+import org.codehaus.preon.processor.ExpressionTranslator.Type;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the source of {@link GeneratedCodec GeneratedCodecs}. Before generating anything, the class is analyzed to
+ * see if all of its fields are bound in a way supported by the generated code:
+ * <ul>
+ * <li>Fields of type <code>boolean</code> annotated with {@link org.codehaus.preon.annotation.Bound};</li>
+ * <li>Fields of type <code>byte</code>, <code>short</code>, <code>int</code> or <code>long</code> annotated with
+ * {@link org.codehaus.preon.annotation.Bound} or {@link org.codehaus.preon.annotation.BoundNumber}, without
+ * <code>match</code> or <code>type</code>;</li>
+ * <li>Fields holding objects of a class that is supported itself, annotated with {@link
+ * org.codehaus.preon.annotation.Bound} or {@link org.codehaus.preon.annotation.BoundObject}, without any alternative
+ * types;</li>
+ * <li>Arrays of any of the above, annotated with {@link org.codehaus.preon.annotation.BoundList}, without any
+ * alternative types;</li>
+ * <li>Any of the above, additionally annotated with {@link org.codehaus.preon.annotation.If} or {@link
+ * org.codehaus.preon.annotation.Slice}.</li>
+ * </ul>
+ * All expressions need to be supported by the {@link ExpressionTranslator}. Fields need to be accessible from the
+ * package of the class, and so does a public method annotated with {@link org.codehaus.preon.annotation.Init}, if there
+ * is one. If anything else is found, an {@link UnsupportedBindingException} is thrown, and no code is generated.
+ */
+class CodecGenerator {
+
+    /** The package holding all annotations used to configure Preon. */
+    private static final String ANNOTATIONS = "org.codehaus.preon.annotation.";
+
+    private static final String BOUND = ANNOTATIONS + "Bound";
+
+    private static final String BOUND_NUMBER = ANNOTATIONS + "BoundNumber";
+
+    private static final String BOUND_OBJECT = ANNOTATIONS + "BoundObject";
+
+    private static final String BOUND_LIST = ANNOTATIONS + "BoundList";
+
+    private static final String IF = ANNOTATIONS + "If";
+
+    private static final String SLICE = ANNOTATIONS + "Slice";
+
+    private static final String INIT = ANNOTATIONS + "Init";
+
+    /** The only annotation ignored, since it only affects documentation. */
+    private static final String PURPOSE = ANNOTATIONS + "Purpose";
+
+    /** The default sizes of the primitive types supported, in bits. */
+    private static final Map<TypeKind, Integer> DEFAULT_SIZES = new HashMap<TypeKind, Integer>();
+
+    static {
+        DEFAULT_SIZES.put(TypeKind.BOOLEAN, 1);
+        DEFAULT_SIZES.put(TypeKind.BYTE, 8);
+        DEFAULT_SIZES.put(TypeKind.SHORT, 16);
+        DEFAULT_SIZES.put(TypeKind.INT, 32);
+        DEFAULT_SIZES.put(TypeKind.LONG, 64);
+    }
+
+    private final ProcessingEnvironment env;
+
+    private final Elements elements;
+
+    /** The classes for which codecs will be generated, if supported. */
+    private final Set<TypeElement> candidates;
+
+    /** The models of the classes analyzed successfully. */
+    private final Map<TypeElement, TypeModel> models = new HashMap<TypeElement, TypeModel>();
+
+    /** The reasons for not supporting the classes that failed analysis. */
+    private final Map<TypeElement, UnsupportedBindingException> failures =
+            new HashMap<TypeElement, UnsupportedBindingException>();
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param env        The environment of the annotation processor.
+     * @param candidates The classes for which codecs will be generated, if supported. Classes referred to by these
+     *                   classes that are not included will only be supported if a codec has been generated for them
+     *                   before.
+     */
+    public CodecGenerator(ProcessingEnvironment env, Set<TypeElement> candidates) {
+        this.env = env;
+        this.elements = env.getElementUtils();
+        this.candidates = candidates;
+    }
+
+    /**
+     * Generates the source of the codec for the type passed in.
+     *
+     * @param type The type for which a codec needs to be generated.
+     * @throws UnsupportedBindingException If the type uses features that are not supported.
+     * @throws IOException                 If the source file cannot be written.
+     */
+    public void generate(TypeElement type) throws UnsupportedBindingException, IOException {
+        TypeModel model = analyze(type);
+        JavaFileObject file = env.getFiler().createSourceFile(model.codecName, type);
+        Writer out = file.openWriter();
+        try {
+            out.write(new SourceWriter(model).write());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the fully qualified name of the codec for the type passed in, following {@link
+     * GeneratedCodec#getCodecName(Class)}.
+     */
+    private String getCodecName(TypeElement type) {
+        String name = elements.getBinaryName(type).toString();
+        int separator = name.lastIndexOf('.');
+        return name.substring(0, separator + 1) + name.substring(separator + 1).replace('$', '_')
+                + GeneratedCodec.SUFFIX;
+    }
+
+    /**
+     * Analyzes the type passed in, and all types it refers to. The models of these types are only retained if the type
+     * passed in turns out to be supported, since they may depend on it.
+     */
+    private TypeModel analyze(TypeElement type) throws UnsupportedBindingException {
+        if (failures.containsKey(type)) {
+            throw failures.get(type);
+        }
+        Map<TypeElement, TypeModel> pending = new HashMap<TypeElement, TypeModel>();
+        try {
+            TypeModel result = analyze(type, pending);
+            models.putAll(pending);
+            return result;
+        } catch (UnsupportedBindingException ube) {
+            failures.put(type, ube);
+            throw ube;
+        }
+    }
+
+    private TypeModel analyze(TypeElement type, Map<TypeElement, TypeModel> pending)
+            throws UnsupportedBindingException {
+        if (models.containsKey(type)) {
+            return models.get(type);
+        }
+        if (pending.containsKey(type)) {
+            return pending.get(type);
+        }
+        if (failures.containsKey(type)) {
+            throw failures.get(type);
+        }
+        TypeModel model = new TypeModel(type, getCodecName(type));
+        pending.put(type, model);
+        if (!candidates.contains(type)) {
+            if (elements.getTypeElement(model.codecName) == null) {
+                throw unsupported(type, "no codec has been generated for it");
+            }
+            model.external = true;
+            return model;
+        }
+        checkType(type);
+        List<VariableElement> bound = new ArrayList<VariableElement>();
+        collectBoundFields(type, type, bound);
+        if (bound.isEmpty()) {
+            throw unsupported(type, "it does not declare any bound fields");
+        }
+        Map<String, String> references = new LinkedHashMap<String, String>();
+        for (VariableElement field : bound) {
+            String name = field.getSimpleName().toString();
+            if (references.containsKey(name)) {
+                throw unsupported(type, "field " + name + " hides another field bound");
+            }
+            TypeKind kind = field.asType().getKind();
+            references.put(name, kind.isPrimitive() ? kind.toString().toLowerCase() : null);
+        }
+        for (String name : new ArrayList<String>(references.keySet())) {
+            if (references.get(name) == null) {
+                references.remove(name);
+            }
+        }
+        ExpressionTranslator translator = new ExpressionTranslator(references);
+        for (VariableElement field : bound) {
+            try {
+                model.fields.add(analyze(field, translator, pending));
+            } catch (UnsupportedBindingException ube) {
+                String reason = ube.getMessage();
+                throw unsupported(type, "field " + field.getSimpleName() + " can't be compiled: "
+                        + reason.substring(0, reason.length() - 1));
+            }
+        }
+        model.initMethod = findInitMethod(type);
+        return model;
+    }
+
+    /** Verifies the type can be constructed by a {@link org.codehaus.preon.Builder} and referred to by its codec. */
+    private void checkType(TypeElement type) throws UnsupportedBindingException {
+        if (type.getKind() != ElementKind.CLASS) {
+            throw unsupported(type, "it is not a class");
+        }
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw unsupported(type, "it is abstract");
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            throw unsupported(type, "it declares type parameters");
+        }
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL
+                && (type.getNestingKind() != NestingKind.MEMBER || !type.getModifiers().contains(Modifier.STATIC))) {
+            throw unsupported(type, "it is not a top level class or a static member class");
+        }
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                throw unsupported(type, "it is not accessible from its package");
+            }
+        }
+        if (!getPreonAnnotations(type).isEmpty()) {
+            throw unsupported(type, "it is annotated with " + getPreonAnnotations(type).keySet());
+        }
+    }
+
+    /** Collects the bound fields of the type passed in, starting with the fields of its superclasses. */
+    private void collectBoundFields(TypeElement root, TypeElement type, List<VariableElement> fields)
+            throws UnsupportedBindingException {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            collectBoundFields(root, (TypeElement) ((DeclaredType) superclass).asElement(), fields);
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC) || getPreonAnnotations(field).isEmpty()) {
+                continue;
+            }
+            if (!getPackage(type).equals(getPackage(root))) {
+                throw unsupported(root, "field " + field.getSimpleName() + " is declared in another package");
+            }
+            if (field.getModifiers().contains(Modifier.PRIVATE)) {
+                throw unsupported(root, "field " + field.getSimpleName() + " is private");
+            }
+            if (field.getModifiers().contains(Modifier.FINAL)) {
+                throw unsupported(root, "field " + field.getSimpleName() + " is final");
+            }
+            fields.add(field);
+        }
+    }
+
+    private FieldModel analyze(VariableElement field, ExpressionTranslator translator,
+                               Map<TypeElement, TypeModel> pending) throws UnsupportedBindingException {
+        Map<String, AnnotationMirror> annotations = getPreonAnnotations(field);
+        FieldModel result = new FieldModel(field.getSimpleName().toString());
+        if (annotations.containsKey(IF)) {
+            result.condition = translator.parse(getString(annotations.remove(IF), "value"), Type.BOOLEAN);
+        }
+        if (annotations.containsKey(SLICE)) {
+            result.slice = translator.parse(getString(annotations.remove(SLICE), "size"), Type.INTEGER);
+        }
+        if (annotations.size() != 1) {
+            throw new UnsupportedBindingException("Unsupported combination of annotations " + annotations.keySet()
+                    + ".");
+        }
+        String name = annotations.keySet().iterator().next();
+        AnnotationMirror annotation = annotations.get(name);
+        TypeMirror type = field.asType();
+        if (BOUND.equals(name)) {
+            result.value = analyze(type, pending);
+        } else if (BOUND_NUMBER.equals(name)) {
+            if (!DEFAULT_SIZES.containsKey(type.getKind()) || type.getKind() == TypeKind.BOOLEAN) {
+                throw new UnsupportedBindingException("Only byte, short, int and long are supported.");
+            }
+            if (getString(annotation, "match").trim().length() != 0
+                    || !"java.lang.Number".equals(getTypeName(annotation, "type"))) {
+                throw new UnsupportedBindingException("The match and type attributes are not supported.");
+            }
+            result.value = new ValueModel(type);
+            String size = getString(annotation, "size");
+            if (size.length() != 0) {
+                result.value.size = translator.parse(size, Type.INTEGER);
+            }
+            result.value.byteOrder = getEnumConstant(annotation, "byteOrder");
+        } else if (BOUND_OBJECT.equals(name)) {
+            checkNoAlternatives(annotation);
+            if (!"java.lang.Void".equals(getTypeName(annotation, "type"))) {
+                throw new UnsupportedBindingException("Alternative types are not supported.");
+            }
+            if (type.getKind() != TypeKind.DECLARED) {
+                throw new UnsupportedBindingException("Only objects are supported.");
+            }
+            result.value = analyze(type, pending);
+        } else if (BOUND_LIST.equals(name)) {
+            checkNoAlternatives(annotation);
+            String size = getString(annotation, "size");
+            if (type.getKind() != TypeKind.ARRAY || size.length() == 0) {
+                throw new UnsupportedBindingException("Only arrays of a given size are supported.");
+            }
+            TypeMirror componentType = ((ArrayType) type).getComponentType();
+            String elementType = getTypeName(annotation, "type");
+            if (!"java.lang.Void".equals(elementType) && !elementType.equals(componentType.toString())) {
+                throw new UnsupportedBindingException("Elements of a type other than the array type are not "
+                        + "supported.");
+            }
+            result.value = new ValueModel(type);
+            result.value.size = translator.parse(size, Type.INTEGER);
+            result.value.component = analyze(componentType, pending);
+        } else {
+            throw new UnsupportedBindingException("Annotation " + name + " is not supported.");
+        }
+        return result;
+    }
+
+    /** Analyzes a value bound with the default settings, as a field annotated with @Bound, or an array element. */
+    private ValueModel analyze(TypeMirror type, Map<TypeElement, TypeModel> pending)
+            throws UnsupportedBindingException {
+        ValueModel result = new ValueModel(type);
+        if (DEFAULT_SIZES.containsKey(type.getKind())) {
+            result.byteOrder = "LittleEndian";
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            result.object = analyze((TypeElement) ((DeclaredType) type).asElement(), pending);
+        } else {
+            throw new UnsupportedBindingException("Values of type " + type + " are not supported.");
+        }
+        return result;
+    }
+
+    /** Verifies that no alternative types are given in the form of types or choices. */
+    private void checkNoAlternatives(AnnotationMirror annotation) throws UnsupportedBindingException {
+        Map<String, AnnotationValue> values = getValues(annotation);
+        AnnotationMirror choices = (AnnotationMirror) values.get("selectFrom").getValue();
+        if (!((List<?>) values.get("types").getValue()).isEmpty()
+                || !((List<?>) getValues(choices).get("alternatives").getValue()).isEmpty()
+                || !"java.lang.Void".equals(getTypeName(choices, "defaultType"))) {
+            throw new UnsupportedBindingException("Alternative types are not supported.");
+        }
+    }
+
+    /**
+     * Returns the name of the public method annotated with @Init, which will be called by the codecs created at runtime,
+     * or <code>null</code> if there is no such method.
+     */
+    private String findInitMethod(TypeElement type) throws UnsupportedBindingException {
+        String result = null;
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            if (method.getModifiers().contains(Modifier.PUBLIC) && !method.getModifiers().contains(Modifier.STATIC)
+                    && method.getParameters().isEmpty() && getAnnotation(method, INIT) != null) {
+                if (result != null) {
+                    throw unsupported(type, "it has more than one method annotated with @Init");
+                }
+                result = method.getSimpleName().toString();
+            }
+        }
+        return result;
+    }
+
+    private UnsupportedBindingException unsupported(TypeElement type, String reason) {
+        return new UnsupportedBindingException("Class " + type.getQualifiedName() + " can't be compiled, since "
+                + reason + ".");
+    }
+
+    private PackageElement getPackage(TypeElement type) {
+        return elements.getPackageOf(type);
+    }
+
+    private static String getName(AnnotationMirror annotation) {
+        return ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    private static AnnotationMirror getAnnotation(Element element, String name) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (getName(annotation).equals(name)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    /** Returns all annotations of Preon found on the element passed in, by name, except for @Purpose. */
+    private static Map<String, AnnotationMirror> getPreonAnnotations(Element element) {
+        Map<String, AnnotationMirror> result = new LinkedHashMap<String, AnnotationMirror>();
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (getName(annotation).startsWith(ANNOTATIONS) && !getName(annotation).equals(PURPOSE)) {
+                result.put(getName(annotation), annotation);
+            }
+        }
+        return result;
+    }
+
+    private Map<String, AnnotationValue> getValues(AnnotationMirror annotation) {
+        Map<String, AnnotationValue> result = new HashMap<String, AnnotationValue>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : elements.getElementValuesWithDefaults(annotation).entrySet()) {
+            result.put(entry.getKey().getSimpleName().toString(), entry.getValue());
+        }
+        return result;
+    }
+
+    private String getString(AnnotationMirror annotation, String name) {
+        return (String) getValues(annotation).get(name).getValue();
+    }
+
+    private String getTypeName(AnnotationMirror annotation, String name) {
+        return getValues(annotation).get(name).getValue().toString();
+    }
+
+    private String getEnumConstant(AnnotationMirror annotation, String name) {
+        return ((VariableElement) getValues(annotation).get(name).getValue()).getSimpleName().toString();
+    }
+
+    /** The model of a class for which a codec is generated, or referred to. */
+    private static class TypeModel {
+
+        private final TypeElement type;
+
+        private final String codecName;
+
+        private final List<FieldModel> fields = new ArrayList<FieldModel>();
+
+        private String initMethod;
+
+        /** Whether the codec has been generated before, in which case the model does not hold any fields. */
+        private boolean external;
+
+        private TypeModel(TypeElement type, String codecName) {
+            this.type = type;
+            this.codecName = codecName;
+        }
+
+    }
+
+    /** The model of a bound field. */
+    private static class FieldModel {
+
+        private final String name;
+
+        private ValueModel value;
+
+        private Node condition;
+
+        private Node slice;
+
+        private FieldModel(String name) {
+            this.name = name;
+        }
+
+    }
+
+    /** The model of a value, being either a primitive, an object, or an array of either of these. */
+    private static class ValueModel {
+
+        private final TypeMirror type;
+
+        /** The number of bits of a primitive, or the number of elements of an array. */
+        private Node size;
+
+        private String byteOrder;
+
+        private TypeModel object;
+
+        private ValueModel component;
+
+        private ValueModel(TypeMirror type) {
+            this.type = type;
+        }
+
+        private TypeKind getKind() {
+            return type.getKind();
+        }
+
+        /** Returns the number of bits of a primitive, as a Java expression. */
+        private String getBits(String target) {
+            return size == null ? DEFAULT_SIZES.get(getKind()).toString() : size.toJava(target);
+        }
+
+    }
+
+    /** Writes the source of the codec of a single class. */
+    private static class SourceWriter {
+
+        private final TypeModel model;
+
+        private final StringBuilder out = new StringBuilder();
+
+        private int indent;
+
+        /** Used to generate unique names for local variables. */
+        private int counter;
+
+        private SourceWriter(TypeModel model) {
+            this.model = model;
+        }
+
+        private String write() {
+            String type = model.type.getQualifiedName().toString();
+            int separator = model.codecName.lastIndexOf('.');
+            String codec = model.codecName.substring(separator + 1);
+            Integer size = getSize(model, new HashSet<TypeModel>());
+            if (separator > 0) {
+                line("package " + model.codecName.substring(0, separator) + ";");
+                line("");
+            }
+            for (String name : Arrays.asList("java.io.IOException", "org.codehaus.preon.Builder",
+                    "org.codehaus.preon.DecodingException", "org.codehaus.preon.Resolver",
+                    "org.codehaus.preon.buffer.BitBuffer", "org.codehaus.preon.buffer.ByteOrder",
+                    "org.codehaus.preon.channel.BitChannel", "org.codehaus.preon.channel.BoundedBitChannel",
+                    "org.codehaus.preon.codec.GeneratedCodec")) {
+                line("import " + name + ";");
+            }
+            line("");
+            line("/** The codec of {@link " + type + "}, generated by the Preon annotation processor. */");
+            open("public final class " + codec + " extends GeneratedCodec<" + type + ">");
+            line("");
+            open("public " + codec + "()");
+            line("super(" + type + ".class, " + (size == null ? -1 : size) + ");");
+            close();
+            line("");
+            open("public " + type + " decode(BitBuffer buffer, Resolver resolver, Builder builder) "
+                    + "throws DecodingException");
+            line("return read(buffer, builder);");
+            close();
+            line("");
+            open("public void encode(" + type + " value, BitChannel channel, Resolver resolver) throws IOException");
+            line("write(value, channel);");
+            close();
+            line("");
+            open("public static " + type + " read(BitBuffer buffer, Builder builder) throws DecodingException");
+            line(type + " result;");
+            open("try");
+            line("result = builder.create(" + type + ".class);");
+            reopen("catch (InstantiationException ie)");
+            line("throw new DecodingException(" + type + ".class, ie);");
+            reopen("catch (IllegalAccessException iae)");
+            line("throw new DecodingException(iae);");
+            close();
+            for (FieldModel field : model.fields) {
+                writeRead(field);
+            }
+            if (model.initMethod != null) {
+                open("try");
+                line("result." + model.initMethod + "();");
+                reopen("catch (Exception e)");
+                line("throw new DecodingException(\"Failed to invoke init method.\");");
+                close();
+            }
+            line("return result;");
+            close();
+            line("");
+            open("public static void write(" + type + " value, BitChannel channel) throws IOException");
+            for (FieldModel field : model.fields) {
+                writeWrite(field);
+            }
+            close();
+            line("");
+            close();
+            return out.toString();
+        }
+
+        private void writeRead(FieldModel field) {
+            String buffer = "buffer";
+            if (field.condition != null) {
+                open("if (" + field.condition.toJava("result") + ")");
+            }
+            if (field.slice != null) {
+                buffer = "slice" + counter++;
+                open("");
+                line("BitBuffer " + buffer + " = buffer.slice(" + field.slice.toJava("result") + ");");
+            }
+            ValueModel value = field.value;
+            if (value.getKind() == TypeKind.ARRAY) {
+                String length = "length" + counter;
+                String array = "array" + counter;
+                String index = "i" + counter++;
+                open("");
+                line("int " + length + " = " + value.size.toJava("result") + ";");
+                line(value.type + " " + array + " = new " + createArray(value.component.type, length) + ";");
+                open("for (int " + index + " = 0; " + index + " < " + length + "; " + index + "++)");
+                line(array + "[" + index + "] = " + read(value.component, buffer) + ";");
+                close();
+                line("result." + field.name + " = " + array + ";");
+                close();
+            } else {
+                line("result." + field.name + " = " + read(value, buffer) + ";");
+            }
+            if (field.slice != null) {
+                close();
+            }
+            if (field.condition != null) {
+                close();
+            }
+        }
+
+        private String read(ValueModel value, String buffer) {
+            switch (value.getKind()) {
+                case BOOLEAN:
+                    return buffer + ".readAsBoolean()";
+                case BYTE:
+                    return buffer + ".readAsByte(" + value.getBits("result") + ", ByteOrder." + value.byteOrder + ")";
+                case SHORT:
+                    return buffer + ".readAsShort(" + value.getBits("result") + ", ByteOrder." + value.byteOrder + ")";
+                case INT:
+                    return buffer + ".readAsInt(" + value.getBits("result") + ", ByteOrder." + value.byteOrder + ")";
+                case LONG:
+                    return buffer + ".readAsLong(" + value.getBits("result") + ", ByteOrder." + value.byteOrder + ")";
+                default:
+                    return value.object.codecName + ".read(" + buffer + ", builder)";
+            }
+        }
+
+        private String createArray(TypeMirror componentType, String length) {
+            return componentType + "[" + length + "]";
+        }
+
+        private void writeWrite(FieldModel field) {
+            String channel = "channel";
+            if (field.condition != null) {
+                open("if (" + field.condition.toJava("value") + ")");
+            }
+            if (field.slice != null) {
+                channel = "bounded" + counter++;
+                open("");
+                line("BitChannel " + channel + " = new BoundedBitChannel(channel, " + field.slice.toJava("value")
+                        + ");");
+            }
+            ValueModel value = field.value;
+            if (value.getKind() == TypeKind.ARRAY) {
+                String length = "length" + counter;
+                String index = "i" + counter++;
+                open("");
+                line("int " + length + " = " + value.size.toJava("value") + ";");
+                open("for (int " + index + " = 0; " + index + " < " + length + "; " + index + "++)");
+                write(value.component, "value." + field.name + "[" + index + "]", channel);
+                close();
+                close();
+            } else {
+                write(value, "value." + field.name, channel);
+            }
+            if (field.slice != null) {
+                close();
+            }
+            if (field.condition != null) {
+                close();
+            }
+        }
+
+        private void write(ValueModel value, String expression, String channel) {
+            switch (value.getKind()) {
+                case BOOLEAN:
+                    line(channel + ".write(" + expression + ");");
+                    break;
+                case BYTE:
+                    line(channel + ".write(" + value.getBits("value") + ", " + expression + ");");
+                    break;
+                case SHORT:
+                case INT:
+                case LONG:
+                    line(channel + ".write(" + value.getBits("value") + ", " + expression + ", ByteOrder."
+                            + value.byteOrder + ");");
+                    break;
+                default:
+                    line(value.object.codecName + ".write(" + expression + ", " + channel + ");");
+            }
+        }
+
+        /** Returns the size of objects of the type passed in, if it does not depend on the data. */
+        private static Integer getSize(TypeModel model, Set<TypeModel> visiting) {
+            if (model.external || !visiting.add(model)) {
+                return null;
+            }
+            try {
+                int result = 0;
+                for (FieldModel field : model.fields) {
+                    Integer size = field.slice != null ? field.slice.getConstantValue() : getSize(field.value, visiting);
+                    if (field.condition != null || size == null) {
+                        return null;
+                    }
+                    result += size;
+                }
+                return result;
+            } finally {
+                visiting.remove(model);
+            }
+        }
+
+        private static Integer getSize(ValueModel value, Set<TypeModel> visiting) {
+            switch (value.getKind()) {
+                case ARRAY:
+                    Integer length = value.size.getConstantValue();
+                    Integer element = getSize(value.component, visiting);
+                    return length == null || element == null ? null : length * element;
+                case DECLARED:
+                    return getSize(value.object, visiting);
+                default:
+                    return value.size == null ? DEFAULT_SIZES.get(value.getKind()) : value.size.getConstantValue();
+            }
+        }
+
+        private void line(String text) {
+            if (text.length() > 0) {
+                for (int i = 0; i < indent; i++) {
+                    out.append("    ");
+                }
+                out.append(text);
+            }
+            out.append('\n');
+        }
+
+        /** Opens a block, preceded by the text passed in, if any. */
+        private void open(String text) {
+            line(text.length() == 0 ? "{" : text + " {");
+            indent++;
+        }
+
+        /** Closes a block, and opens the next one, preceded by the text passed in. */
+        private void reopen(String text) {
+            indent--;
+            line("} " + text + " {");
+            indent++;
+        }
+
+        private void close() {
+            indent--;
+            line("}");
+        }
+
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * An annotation processor generating {@link org.codehaus.preon.Codec Codecs} at compile time, for all classes with
+ * fields bound using Preon's annotations. The {@link org.codehaus.preon.Codec Codecs} generated decode and encode
+ * fields directly, avoiding the costs of reflection, of parsing expressions, and of assembling {@link
+ * org.codehaus.preon.Codec Codecs} at runtime. {@link org.codehaus.preon.Codecs#create(Class)} will return the
+ * generated {@link org.codehaus.preon.Codec} if there is one.
+ * <p/>
+ * Only a subset of Preon's features is supported, as described by {@link CodecGenerator}. If a class uses anything
+ * else, a note explaining why is reported, and the class will be bound at runtime, as it would without this annotation
+ * processor.
+ */
+@SupportedAnnotationTypes({"org.codehaus.preon.annotation.Bound", "org.codehaus.preon.annotation.BoundNumber",
+        "org.codehaus.preon.annotation.BoundObject", "org.codehaus.preon.annotation.BoundList"})
+public class CodecProcessor extends AbstractProcessor {
+
+    /** The classes for which codecs have been generated in previous rounds. */
+    private final Set<TypeElement> generated = new HashSet<TypeElement>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> types = new LinkedHashSet<TypeElement>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.FIELD && element.getEnclosingElement() instanceof TypeElement) {
+                    types.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+        types.removeAll(generated);
+        CodecGenerator generator = new CodecGenerator(processingEnv, types);
+        for (TypeElement type : types) {
+            try {
+                generator.generate(type);
+                generated.add(type);
+            } catch (UnsupportedBindingException ube) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, ube.getMessage(), type);
+            } catch (IOException ioe) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Failed to write the codec of " + type.getQualifiedName() + ": " + ioe.getMessage(), type);
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.processor;
+
+import java.util.Map;
+
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.tree.Tree;
+import org.codehaus.preon.el.ExpressionCache;
+import org.codehaus.preon.el.LimboParser;
+
+/**
+ * Translates Limbo expressions into Java expressions. Only a subset of Limbo is supported: integer literals, references
+ * to fields of primitive types declared by the object itself, and the arithmetic, relational and logical operators.
+ * References to outer objects, properties, indexes and strings are not supported, and make the translation fail with
+ * an {@link UnsupportedBindingException}.
+ * <p/>
+ * Expressions are parsed by the same parser as the Limbo expressions evaluated at runtime, and the syntax tree is walked
+ * the way the <code>LimboWalker</code> does, so precedence and the places where each kind of expression is accepted
+ * cannot differ. The translation follows the semantics of the runtime as well: all arithmetic is done on integers,
+ * values of type <code>long</code> are truncated to an integer, and <code>^</code> raises to the power.
+ */
+class ExpressionTranslator {
+
+    /** The types of Limbo expressions supported. */
+    enum Type {
+        INTEGER, BOOLEAN
+    }
+
+    /** The fields that can be referred to, and the Java type of each of them. */
+    private final Map<String, String> fields;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param fields The fields that can be referred to, and the (primitive) Java type of each of them.
+     */
+    public ExpressionTranslator(Map<String, String> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Parses the expression passed in.
+     *
+     * @param expression The Limbo expression.
+     * @param type       The type of expression expected.
+     * @return The parsed expression.
+     * @throws UnsupportedBindingException If the expression cannot be translated.
+     */
+    public Node parse(String expression, Type type) throws UnsupportedBindingException {
+        Tree tree;
+        try {
+            tree = ExpressionCache.parseStrictly(expression);
+        } catch (RecognitionException re) {
+            throw new UnsupportedBindingException("Failed to parse expression \"" + expression + "\".");
+        }
+        Walker walker = new Walker(expression);
+        if (tree == null || tree.isNil()) {
+            throw walker.unsupported();
+        }
+        return type == Type.INTEGER ? walker.vexpr(tree) : walker.zexpr(tree);
+    }
+
+    /** A node in the tree of a parsed expression. */
+    static abstract class Node {
+
+        abstract Type getType();
+
+        /**
+         * Returns the Java source for this expression.
+         *
+         * @param target The name of the variable holding the object that fields are taken from.
+         */
+        abstract String toJava(String target);
+
+        /** Returns the value of this expression if it does not refer to any field, or <code>null</code> otherwise. */
+        abstract Integer getConstantValue();
+
+    }
+
+    private static class IntegerLiteral extends Node {
+
+        private final int value;
+
+        private IntegerLiteral(int value) {
+            this.value = value;
+        }
+
+        Type getType() {
+            return Type.INTEGER;
+        }
+
+        String toJava(String target) {
+            return value < 0 ? "(" + value + ")" : Integer.toString(value);
+        }
+
+        Integer getConstantValue() {
+            return value;
+        }
+
+    }
+
+    private static class BooleanLiteral extends Node {
+
+        private final boolean value;
+
+        private BooleanLiteral(boolean value) {
+            this.value = value;
+        }
+
+        Type getType() {
+            return Type.BOOLEAN;
+        }
+
+        String toJava(String target) {
+            return Boolean.toString(value);
+        }
+
+        Integer getConstantValue() {
+            return null;
+        }
+
+    }
+
+    private static class FieldReference extends Node {
+
+        private final String name;
+
+        private final String javaType;
+
+        private FieldReference(String name, String javaType) {
+            this.name = name;
+            this.javaType = javaType;
+        }
+
+        Type getType() {
+            return "boolean".equals(javaType) ? Type.BOOLEAN : Type.INTEGER;
+        }
+
+        String toJava(String target) {
+            if ("long".equals(javaType)) {
+                return "((int) " + target + "." + name + ")";
+            } else {
+                return target + "." + name;
+            }
+        }
+
+        Integer getConstantValue() {
+            return null;
+        }
+
+    }
+
+    private static class Operation extends Node {
+
+        private final String operator;
+
+        private final Node lhs;
+
+        private final Node rhs;
+
+        private Operation(String operator, Node lhs, Node rhs) {
+            this.operator = operator;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        Type getType() {
+            return isArithmetic() ? Type.INTEGER : Type.BOOLEAN;
+        }
+
+        private boolean isArithmetic() {
+            return "+-*/^".indexOf(operator) >= 0;
+        }
+
+        String toJava(String target) {
+            if ("^".equals(operator)) {
+                return "((int) Math.pow(" + lhs.toJava(target) + ", " + rhs.toJava(target) + "))";
+            } else {
+                return "(" + lhs.toJava(target) + " " + operator + " " + rhs.toJava(target) + ")";
+            }
+        }
+
+        Integer getConstantValue() {
+            Integer a = lhs.getConstantValue();
+            Integer b = rhs.getConstantValue();
+            if (!isArithmetic() || a == null || b == null) {
+                return null;
+            }
+            switch (operator.charAt(0)) {
+                case '+':
+                    return a + b;
+                case '-':
+                    return a - b;
+                case '*':
+                    return a * b;
+                case '/':
+                    return b == 0 ? null : a / b;
+                default:
+                    return (int) Math.pow(a, b);
+            }
+        }
+
+    }
+
+    /** Walks the syntax tree, accepting the same trees as the rules of the <code>LimboWalker</code>. */
+    private class Walker {
+
+        private final String expression;
+
+        private Walker(String expression) {
+            this.expression = expression;
+        }
+
+        private UnsupportedBindingException unsupported() {
+            return new UnsupportedBindingException("Failed to translate expression \"" + expression + "\".");
+        }
+
+        /** zexpr: bexpr | reference */
+        private Node zexpr(Tree tree) throws UnsupportedBindingException {
+            if (tree.getType() == LimboParser.REFERENCE) {
+                return require(Type.BOOLEAN, reference(tree));
+            } else {
+                return bexpr(tree);
+            }
+        }
+
+        /** bexpr: ^(('&&'|'||') bexpr bexpr) | ^(relationalOp vexpr vexpr) */
+        private Node bexpr(Tree tree) throws UnsupportedBindingException {
+            String operator = getOperator(tree);
+            if ("&&".equals(operator) || "||".equals(operator)) {
+                return new Operation(operator, bexpr(tree.getChild(0)), bexpr(tree.getChild(1)));
+            } else if ("<=".equals(operator) || ">=".equals(operator) || "<".equals(operator)
+                    || ">".equals(operator) || "==".equals(operator)) {
+                return new Operation(operator, vexpr(tree.getChild(0)), vexpr(tree.getChild(1)));
+            } else {
+                throw unsupported();
+            }
+        }
+
+        /** vexpr: ^(('+'|'-'|'*'|'/'|'^') vexpr vexpr) | number | reference */
+        private Node vexpr(Tree tree) throws UnsupportedBindingException {
+            String operator = getOperator(tree);
+            if ("+".equals(operator) || "-".equals(operator) || "*".equals(operator) || "/".equals(operator)
+                    || "^".equals(operator)) {
+                return new Operation(operator, vexpr(tree.getChild(0)), vexpr(tree.getChild(1)));
+            }
+            switch (tree.getType()) {
+                case LimboParser.INT:
+                    return new IntegerLiteral(parseNumber(tree.getText(), 10));
+                case LimboParser.BININT:
+                    return new IntegerLiteral(parseNumber(tree.getText().substring(2), 2));
+                case LimboParser.HEXINT:
+                    return new IntegerLiteral(parseNumber(tree.getText().substring(2), 16));
+                case LimboParser.REFERENCE:
+                    return require(Type.INTEGER, reference(tree));
+                default:
+                    throw unsupported();
+            }
+        }
+
+        /** reference: ^(REFERENCE ID), selectors not being supported */
+        private Node reference(Tree tree) throws UnsupportedBindingException {
+            if (tree.getChildCount() != 1 || tree.getChild(0).getType() != LimboParser.ID) {
+                throw unsupported();
+            }
+            String name = tree.getChild(0).getText();
+            if ("true".equals(name) || "false".equals(name)) {
+                // Like the ImplicitsContext, taking precedence over fields
+                return new BooleanLiteral(Boolean.parseBoolean(name));
+            } else if (fields.containsKey(name)) {
+                return new FieldReference(name, fields.get(name));
+            } else {
+                throw new UnsupportedBindingException("Unsupported reference \"" + name + "\" in expression \""
+                        + expression + "\".");
+            }
+        }
+
+        /**
+         * Returns the operator of a binary operation, or <code>null</code> if the node passed in is not one. The tokens
+         * of operators have no symbolic names, so they are recognized by their text.
+         */
+        private String getOperator(Tree tree) {
+            switch (tree.getType()) {
+                case LimboParser.ID:
+                case LimboParser.INT:
+                case LimboParser.BININT:
+                case LimboParser.HEXINT:
+                case LimboParser.STRING:
+                case LimboParser.REFERENCE:
+                case LimboParser.PROP:
+                case LimboParser.INDEX:
+                    return null;
+                default:
+                    return tree.getChildCount() == 2 ? tree.getText() : null;
+            }
+        }
+
+        private int parseNumber(String digits, int radix) throws UnsupportedBindingException {
+            try {
+                return Integer.parseInt(digits, radix);
+            } catch (NumberFormatException nfe) {
+                throw unsupported();
+            }
+        }
+
+        private Node require(Type type, Node node) throws UnsupportedBindingException {
+            if (node.getType() != type) {
+                throw unsupported();
+            }
+            return node;
+        }
+
+    }
+
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.processor;
+
+import org.codehaus.preon.Codec;
+import org.codehaus.preon.Codecs;
+import org.codehaus.preon.annotation.Bound;
+import org.codehaus.preon.annotation.BoundList;
+import org.codehaus.preon.annotation.BoundNumber;
+import org.codehaus.preon.annotation.BoundObject;
+import org.codehaus.preon.annotation.BoundString;
+import org.codehaus.preon.annotation.If;
+import org.codehaus.preon.annotation.Init;
+import org.codehaus.preon.annotation.Slice;
+import org.codehaus.preon.buffer.ByteOrder;
+import org.codehaus.preon.codec.GeneratedCodec;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+/** Verifies the codecs generated for the classes declared below, while compiling this test. */
+public class CodecProcessorTest {
+
+    @Test
+    public void shouldGenerateCodecs() {
+        assertTrue(Codecs.create(Header.class) instanceof GeneratedCodec);
+        assertTrue(Codecs.create(Packet.class) instanceof GeneratedCodec);
+        assertEquals("org.codehaus.preon.processor.CodecProcessorTest_Header_PreonCodec",
+                GeneratedCodec.getCodecName(Header.class));
+    }
+
+    @Test
+    public void shouldLeaveUnsupportedClassesToRuntime() {
+        assertNull(GeneratedCodec.find(Named.class));
+        assertNull(GeneratedCodec.find(Hidden.class));
+        assertNull(GeneratedCodec.find(Outer.class));
+    }
+
+    @Test
+    public void shouldDecodeHeader() throws Exception {
+        Codec<Header> codec = Codecs.create(Header.class);
+        Header header = Codecs.decode(codec, (byte) 0x85, (byte) 0x01, (byte) 0x02, (byte) 0x78, (byte) 0x56,
+                (byte) 0x34, (byte) 0x12);
+        assertTrue(header.flag);
+        assertEquals(5, header.version);
+        assertEquals(0x0102, header.sequence);
+        assertEquals(0x12345678, header.ssrc);
+        assertEquals(56, codec.getSize().eval(null).intValue());
+    }
+
+    @Test
+    public void shouldDecodePacket() throws Exception {
+        Packet packet = Codecs.decode(Codecs.create(Packet.class), data());
+        assertEquals(3, packet.length);
+        assertEquals(0x0102, packet.header.sequence);
+        assertArrayEquals(new byte[]{10, 11, 12}, packet.payload);
+        assertEquals(0xabcd, packet.trailer);
+        assertEquals(2, packet.tags.length);
+        assertEquals(7, packet.tags[0].value);
+        assertEquals(9, packet.tags[1].value);
+        assertEquals(1, packet.last);
+        assertTrue(packet.initialized);
+    }
+
+    @Test
+    public void shouldSkipConditionalFields() throws Exception {
+        byte[] data = new byte[]{2, (byte) 0x85, 1, 2, 0, 0, 0, 0, 10, 11, 0x70, 0, (byte) 0x90, 0, 1};
+        Packet packet = Codecs.decode(Codecs.create(Packet.class), data);
+        assertEquals(0, packet.trailer);
+        assertEquals(9, packet.tags[1].value);
+        assertEquals(1, packet.last);
+    }
+
+    @Test
+    public void shouldEncodeWhatItDecodes() throws Exception {
+        Codec<Header> codec = Codecs.create(Header.class);
+        byte[] data = new byte[]{(byte) 0x85, 1, 2, 0x78, 0x56, 0x34, 0x12};
+        assertArrayEquals(data, Codecs.encode(Codecs.decode(codec, data), codec));
+    }
+
+    @Test
+    public void shouldEncodePacket() throws Exception {
+        Codec<Packet> codec = Codecs.create(Packet.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Codecs.encode(Codecs.decode(codec, data()), codec, out);
+        // As with the codecs created at runtime, slices are not padded while encoding
+        byte[] expected = new byte[]{3, (byte) 0x85, 1, 2, 0, 0, 0, 0, 10, 11, 12, (byte) 0xab, (byte) 0xcd, 0x79, 1};
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    private static byte[] data() {
+        return new byte[]{3, (byte) 0x85, 1, 2, 0, 0, 0, 0, 10, 11, 12, (byte) 0xab, (byte) 0xcd, 0x70, 0,
+                (byte) 0x90, 0, 1};
+    }
+
+    public static class Header {
+
+        @Bound
+        boolean flag;
+
+        @BoundNumber(size = "7", byteOrder = ByteOrder.BigEndian)
+        byte version;
+
+        @BoundNumber(byteOrder = ByteOrder.BigEndian)
+        short sequence;
+
+        @Bound
+        int ssrc;
+
+    }
+
+    public static class Packet {
+
+        @BoundNumber(size = "8")
+        int length;
+
+        @BoundObject
+        Header header;
+
+        @BoundList(size = "length")
+        byte[] payload;
+
+        @If("length > 2")
+        @BoundNumber(size = "16", byteOrder = ByteOrder.BigEndian)
+        int trailer;
+
+        @BoundList(size = "2", type = Tag.class)
+        Tag[] tags;
+
+        @Bound
+        byte last;
+
+        boolean initialized;
+
+        @Init
+        public void init() {
+            initialized = true;
+        }
+
+    }
+
+    public static class Tag {
+
+        @Slice(size = "16")
+        @BoundNumber(size = "4", byteOrder = ByteOrder.BigEndian)
+        int value;
+
+    }
+
+    public static class Named {
+
+        @BoundString(size = "4")
+        String name;
+
+    }
+
+    public static class Hidden {
+
+        @Bound
+        private int value;
+
+    }
+
+    public static class Outer {
+
+        @Bound
+        int value;
+
+        @BoundObject
+        Inner inner;
+
+        public class Inner {
+
+            @Bound
+            int value;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2009-2016 Wilfred Springer
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.codehaus.preon.processor;
+
+import org.codehaus.preon.processor.ExpressionTranslator.Type;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ExpressionTranslatorTest {
+
+    private ExpressionTranslator translator;
+
+    @Before
+    public void createTranslator() {
+        Map<String, String> fields = new HashMap<String, String>();
+        fields.put("a", "int");
+        fields.put("b", "byte");
+        fields.put("c", "long");
+        fields.put("flag", "boolean");
+        translator = new ExpressionTranslator(fields);
+    }
+
+    @Test
+    public void shouldTranslateArithmetic() throws UnsupportedBindingException {
+        assertEquals("(result.a + (2 * result.b))", toJava("a + 2 * b", Type.INTEGER));
+        assertEquals("((result.a - 1) - 2)", toJava("a - 1 - 2", Type.INTEGER));
+        assertEquals("((int) Math.pow(2, ((int) result.c)))", toJava("2 ^ c", Type.INTEGER));
+        assertEquals("((result.a + 1) / 8)", toJava("(a + 1) / 8", Type.INTEGER));
+    }
+
+    @Test
+    public void shouldTranslateConditions() throws UnsupportedBindingException {
+        assertEquals("(result.a > 3)", toJava("a > 3", Type.BOOLEAN));
+        assertEquals("result.flag", toJava("flag", Type.BOOLEAN));
+        assertEquals("(((result.a == 1) || (((int) result.c) < 2)) && (result.b <= 31))",
+                toJava("a == 1 || c < 2 && b <= 0x1f", Type.BOOLEAN));
+        assertEquals("((result.a < 1) && ((result.a >= 2) || (result.b > 3)))",
+                toJava("a < 1 && (a >= 2 || b > 3)", Type.BOOLEAN));
+    }
+
+    @Test(expected = UnsupportedBindingException.class)
+    public void shouldRejectReferencesCombinedByBooleanOperators() throws UnsupportedBindingException {
+        // Like the LimboWalker, which only accepts relations on either side of && and ||
+        translator.parse("flag && a > 1", Type.BOOLEAN);
+    }
+
+    @Test
+    public void shouldEvaluateConstants() throws UnsupportedBindingException {
+        assertEquals(Integer.valueOf(32), translator.parse("2 ^ 3 * 4", Type.INTEGER).getConstantValue());
+        assertEquals(Integer.valueOf(5), translator.parse("0b101", Type.INTEGER).getConstantValue());
+        assertNull(translator.parse("a * 8", Type.INTEGER).getConstantValue());
+        assertNull(translator.parse("8 / 0", Type.INTEGER).getConstantValue());
+    }
+
+    @Test(expected = UnsupportedBindingException.class)
+    public void shouldRejectOuterReferences() throws UnsupportedBindingException {
+        translator.parse("outer.a", Type.INTEGER);
+    }
+
+    @Test(expected = UnsupportedBindingException.class)
+    public void shouldRejectUnknownReferences() throws UnsupportedBindingException {
+        translator.parse("d + 1", Type.INTEGER);
+    }
+
+    @Test(expected = UnsupportedBindingException.class)
+    public void shouldRejectStrings() throws UnsupportedBindingException {
+        translator.parse("a == 'x'", Type.BOOLEAN);
+    }
+
+    @Test(expected = UnsupportedBindingException.class)
+    public void shouldRejectTypeMismatches() throws UnsupportedBindingException {
+        translator.parse("a + 1", Type.BOOLEAN);
+    }
+
+    private String toJava(String expression, Type type) throws UnsupportedBindingException {
+        return translator.parse(expression, type).toJava("result");
+    }
+
+}